@@ -1,82 +1,187 @@
-import java.util.Arrays;
-import java.util.List;
-import java.util.Scanner;
-
-import gridgames.data.Direction;
-import gridgames.data.action.Action;
-import gridgames.data.action.MoveAction;
-import gridgames.display.ConsoleDisplay;
-import gridgames.display.Display;
-import gridgames.display.EV3Display;
-import gridgames.ev3.EV3;
-import gridgames.grid.Cell;
-import gridgames.player.EV3Player;
-import gridgames.player.HumanPlayer;
-import gridgames.player.Player;
-import studentworld.StudentWorld;
-import studentworld.ev3.StudentWorldEV3;
-import studentworld.player.CSPPlayer;
-import studentworld.player.StudentWorldEV3Player;
-import studentworld.player.StudentWorldPlayer;
-
-public class Main {
-    public static void main(String[] args) {
-    	List<Action> allActions = Arrays.asList(MoveAction.MOVE_ACTIONS);
-    	if(args.length > 0 && "-console".equals(args[0])) {
-    		runOnConsole(allActions);
-    	} else {
-    		runOnRobot(allActions);
-    	}
-    }
-    
-    public static void runOnConsole(List<Action> allActions) {
-    	Scanner scanner = new Scanner(System.in);
-    	Display display = new ConsoleDisplay();
-        String choice;
-        Player player = null;
-        StudentWorld game = null;
-        
-        do {
-        	game = new StudentWorld(display, 5, 5, 5);
-        	player = getPlayer(scanner, game, display);
-            do {
-            	game.play(player);
-                System.out.print("Play again? [YES, NO]: ");
-                choice = scanner.next().toLowerCase();
-            } while(!choice.equals("yes") && !choice.equals("no"));
-        } while(choice.equals("yes"));
-        scanner.close();
-    }
-    
-    public static void runOnRobot(List<Action> allActions) {
-    	EV3Display display = new EV3Display();
-    	StudentWorld game = new StudentWorld(display, 5, 5, 5);
-        Cell initialCell = game.getInitialCell();
-        String instructions = "Place the robot in the upper left most cell facing right";
-        EV3 ev3 = new StudentWorldEV3(Direction.RIGHT, "StudentWorld", instructions, 100, 50, true, 100);
-        Player p = new StudentWorldPlayer(MoveAction.getAllActions(), display, initialCell);
-        EV3Player robot = new StudentWorldEV3Player(ev3, p);
-        display.setEv3Display(ev3.getDisplay());
-        ev3.displayInstructions();
-        game.play(robot);
-    }
-    
-    private static Player getPlayer(Scanner scanner, StudentWorld game, Display display) {
-    	List<Action> actions = Arrays.asList(MoveAction.MOVE_ACTIONS);
-    	Cell initialCell = game.getInitialCell();
-    	Player player = null;
-    	String choice;
-    	 do {
-             System.out.print("Human play or computer play? [HUMAN, COMPUTER]: ");
-             choice = scanner.next().toLowerCase();
-         } while(!choice.equals("human") && !choice.equals("computer"));
-    	 
-    	 if(choice.equals("human")) {
-    		 StudentWorldPlayer studentWorldPlayer = new StudentWorldPlayer(actions, display, initialCell);
-    		 player = new HumanPlayer(studentWorldPlayer, scanner);
-         } else {
-    		 player = new CSPPlayer(actions, display, initialCell);
-         }
-    	return player;
-    }
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+
+import gridgames.data.Direction;
+import gridgames.data.action.Action;
+import gridgames.data.action.MoveAction;
+import gridgames.display.ConsoleDisplay;
+import gridgames.display.Display;
+import gridgames.display.EV3Display;
+import gridgames.ev3.EV3;
+import gridgames.grid.Cell;
+import gridgames.player.EV3Player;
+import gridgames.player.HumanPlayer;
+import gridgames.player.Player;
+import studentworld.StudentWorld;
+import studentworld.display.BufferedConsoleDisplay;
+import studentworld.ev3.StudentWorldEV3;
+import studentworld.player.CSPPlayer;
+import studentworld.player.StudentWorldEV3Player;
+import studentworld.player.StudentWorldPlayer;
+import studentworld.policy.PolicyTable;
+import studentworld.trace.DecisionLogDumper;
+import studentworld.trace.GameTraceRecorder;
+
+public class Main {
+	// the brick can't stall on a turn, the solver decides on what it knows by then
+	private static final long ROBOT_TURN_BUDGET_MILLIS = 500;
+	
+    public static void main(String[] args) {
+    	List<Action> allActions = Arrays.asList(MoveAction.MOVE_ACTIONS);
+    	PolicyTable policyTable = loadPolicyTable(args);
+    	if(args.length > 0 && "-console".equals(args[0])) {
+    		GameTraceRecorder recorder = openTraceRecorder(args);
+    		runOnConsole(allActions, policyTable, recorder, getMaxFramesPerSecond(args));
+    		if(recorder != null) {
+    			try {
+    				recorder.close();
+    			} catch (IOException e) {
+    				System.out.println("Could not close trace: " + e.getMessage());
+    			}
+    		}
+    	} else {
+    		runOnRobot(allActions, policyTable, getNoiseRates(args));
+    	}
+    }
+    
+    // "-policy <file>" plays the computer player from a table written by PolicyTableBuilder
+    private static PolicyTable loadPolicyTable(String[] args) {
+    	for(int i=0; i<args.length-1; i++) {
+    		if("-policy".equals(args[i])) {
+    			try {
+    				return PolicyTable.load(new File(args[i+1]));
+    			} catch (IOException e) {
+    				System.out.println("Could not load policy table " + args[i+1] + ": " + e.getMessage());
+    			}
+    		}
+    	}
+    	return null;
+    }
+    
+    // "-trace <file>" appends every console game to a trace for GameTraceReplayer
+    private static GameTraceRecorder openTraceRecorder(String[] args) {
+    	for(int i=0; i<args.length-1; i++) {
+    		if("-trace".equals(args[i])) {
+    			try {
+    				return new GameTraceRecorder(new File(args[i+1]));
+    			} catch (IOException e) {
+    				System.out.println("Could not open trace " + args[i+1] + ": " + e.getMessage());
+    			}
+    		}
+    	}
+    	return null;
+    }
+    
+    // "-fps <n>" redraws only changed cells (ANSI terminals) and shows the computer player at most n frames a second
+    private static int getMaxFramesPerSecond(String[] args) {
+    	for(int i=0; i<args.length-1; i++) {
+    		if("-fps".equals(args[i])) {
+    			try {
+    				return Integer.parseInt(args[i+1]);
+    			} catch (NumberFormatException e) {
+    				System.out.println("Could not read frame rate " + args[i+1]);
+    			}
+    		}
+    	}
+    	return -1;
+    }
+    
+    // "-noisy <miss rate> <false alarm rate>" has the robot play on beliefs, not constraints, see CSPPlayer.setNoisyPercepts
+    private static double[] getNoiseRates(String[] args) {
+    	for(int i=0; i<args.length-2; i++) {
+    		if("-noisy".equals(args[i])) {
+    			try {
+    				return new double[] {Double.parseDouble(args[i+1]), Double.parseDouble(args[i+2])};
+    			} catch (NumberFormatException e) {
+    				System.out.println("Could not read error rates " + args[i+1] + " " + args[i+2]);
+    			}
+    		}
+    	}
+    	return null;
+    }
+    
+    public static void runOnConsole(List<Action> allActions, PolicyTable policyTable, GameTraceRecorder recorder, int maxFramesPerSecond) {
+    	Scanner scanner = new Scanner(System.in);
+    	Display display;
+    	BufferedConsoleDisplay bufferedDisplay = null;
+    	if(maxFramesPerSecond >= 0) {
+    		bufferedDisplay = new BufferedConsoleDisplay();
+    		display = bufferedDisplay;
+    	} else {
+    		display = new ConsoleDisplay();
+    	}
+        String choice;
+        Player player = null;
+        StudentWorld game = null;
+        
+        do {
+        	game = new StudentWorld(display, 5, 5, 5);
+        	if(recorder != null) {
+        		game.addListener(recorder);
+        	}
+        	game.addListener(new DecisionLogDumper(System.out));
+        	player = getPlayer(scanner, game, display, policyTable);
+        	if(bufferedDisplay != null) {
+        		// a human needs to see every turn
+        		bufferedDisplay.setMaxFramesPerSecond(player instanceof HumanPlayer ? 0 : maxFramesPerSecond);
+        	}
+            do {
+            	game.play(player);
+                System.out.print("Play again? [YES, NO]: ");
+                choice = scanner.next().toLowerCase();
+            } while(!choice.equals("yes") && !choice.equals("no"));
+        } while(choice.equals("yes"));
+        scanner.close();
+    }
+    
+    public static void runOnRobot(List<Action> allActions, PolicyTable policyTable, double[] noiseRates) {
+    	EV3Display display = new EV3Display();
+    	StudentWorld game = new StudentWorld(display, 5, 5, 5);
+        Cell initialCell = game.getInitialCell();
+        String instructions = "Place the robot in the upper left most cell facing right";
+        EV3 ev3 = new StudentWorldEV3(Direction.RIGHT, "StudentWorld", instructions, 100, 50, true, 100);
+        Player p;
+        if(policyTable != null) {
+        	CSPPlayer cspPlayer = new CSPPlayer(MoveAction.getAllActions(), display, initialCell, policyTable);
+        	cspPlayer.setTurnBudget(ROBOT_TURN_BUDGET_MILLIS);
+        	p = cspPlayer;
+        } else if(noiseRates != null) {
+        	CSPPlayer cspPlayer = new CSPPlayer(MoveAction.getAllActions(), display, initialCell);
+        	// 5 students on 25 cells
+        	cspPlayer.setNoisyPercepts(0.2, noiseRates[0], noiseRates[1]);
+        	p = cspPlayer;
+        } else {
+        	p = new StudentWorldPlayer(MoveAction.getAllActions(), display, initialCell);
+        }
+        EV3Player robot = new StudentWorldEV3Player(ev3, p);
+        display.setEv3Display(ev3.getDisplay());
+        ev3.displayInstructions();
+        game.play(robot);
+    }
+    
+    private static Player getPlayer(Scanner scanner, StudentWorld game, Display display, PolicyTable policyTable) {
+    	List<Action> actions = Arrays.asList(MoveAction.MOVE_ACTIONS);
+    	Cell initialCell = game.getInitialCell();
+    	Player player = null;
+    	String choice;
+    	 do {
+             System.out.print("Human play or computer play? [HUMAN, COMPUTER]: ");
+             choice = scanner.next().toLowerCase();
+         } while(!choice.equals("human") && !choice.equals("computer"));
+    	 
+    	 if(choice.equals("human")) {
+    		 StudentWorldPlayer studentWorldPlayer = new StudentWorldPlayer(actions, display, initialCell);
+    		 player = new HumanPlayer(studentWorldPlayer, scanner);
+         } else {
+    		 if(policyTable != null) {
+    			 player = new CSPPlayer(actions, display, initialCell, policyTable);
+    		 } else {
+    			 player = new CSPPlayer(actions, display, initialCell);
+    		 }
+         }
+    	return player;
+    }
 }
\ No newline at end of file
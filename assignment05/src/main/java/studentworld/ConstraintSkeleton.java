@@ -0,0 +1,127 @@
+package studentworld;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import studentworld.data.StudentWorldItem;
+import studentworld.data.StudentWorldPercept;
+
+/*
+ * The parts of the Choco model that only depend on the board size: the variable names
+ * and, for every cell, the doors the door rule rules out away from it; the percept
+ * neighborhoods are compiled by PerceptRuleTable. They are compiled once per size into
+ * flat index arrays (offsets into one array of cell indexes) and shared by every solver
+ * for that size, so a new game only creates the variables and posts the constraints.
+ *
+ * Immutable once built, forBoard() may be called from any thread.
+ */
+public final class ConstraintSkeleton {
+	public static final int SMELLY = 0;
+	public static final int GLOWY = 1;
+	public static final int STUDENT = 2;
+	public static final int DOOR = 3;
+	// the percepts, then the items, each in declaration order
+	private static final String[] KIND_NAMES = {"smelly", "glowy", "student", "door"};
+
+	private static final ConcurrentMap<Long, ConstraintSkeleton> SKELETONS = new ConcurrentHashMap<Long, ConstraintSkeleton>();
+
+	private final int numRows;
+	private final int numCols;
+	// doors a glowy cell c rules out are farDoors[farDoorStart[c]] up to farDoorStart[c+1]
+	private final int[] farDoorStart;
+	private final int[] farDoors;
+	private final String[] names;
+
+	private ConstraintSkeleton(int numRows, int numCols) {
+		this.numRows = numRows;
+		this.numCols = numCols;
+		int numCells = numRows * numCols;
+		this.farDoorStart = new int[numCells + 1];
+		for(int cell=0; cell<numCells; cell++) {
+			farDoorStart[cell+1] = farDoorStart[cell] + collectFarDoors(cell / numCols, cell % numCols, null, 0);
+		}
+		this.farDoors = new int[farDoorStart[numCells]];
+		this.names = new String[KIND_NAMES.length * numCells];
+		for(int cell=0; cell<numCells; cell++) {
+			int row = cell / numCols;
+			int col = cell % numCols;
+			collectFarDoors(row, col, farDoors, farDoorStart[cell]);
+			for(int kind=0; kind<KIND_NAMES.length; kind++) {
+				names[cell * KIND_NAMES.length + kind] = KIND_NAMES[kind] + " (" + row + "," + col + ")";
+			}
+		}
+	}
+
+	// the skeleton for the board size, compiled on first use
+	public static ConstraintSkeleton forBoard(int numRows, int numCols) {
+		Long size = ((long) numRows << 32) | (numCols & 0xFFFFFFFFL);
+		ConstraintSkeleton skeleton = SKELETONS.get(size);
+		if(skeleton == null) {
+			skeleton = new ConstraintSkeleton(numRows, numCols);
+			ConstraintSkeleton raced = SKELETONS.putIfAbsent(size, skeleton);
+			if(raced != null) {
+				skeleton = raced;
+			}
+		}
+		return skeleton;
+	}
+
+	/*
+	 * The door cells the glowy constraint of a cell sums over, in the order the solver
+	 * always posted them: the last row and column are left out, and so are the cell,
+	 * its left and right neighbors and the whole rows above and below it. Writes them
+	 * from offset on if cells isn't null; returns how many there are.
+	 */
+	private int collectFarDoors(int row, int col, int[] cells, int offset) {
+		int size = 0;
+		for(int farRow=0; farRow<numRows-1; farRow++) {
+			if(farRow == row - 1 || farRow == row + 1) {
+				continue;
+			}
+			for(int farCol=0; farCol<numCols-1; farCol++) {
+				if(farRow == row && (farCol == col || farCol == col + 1 || farCol == col - 1)) {
+					continue;
+				}
+				if(cells != null) {
+					cells[offset + size] = farRow * numCols + farCol;
+				}
+				size++;
+			}
+		}
+		return size;
+	}
+
+	public int getNumRows() {
+		return this.numRows;
+	}
+
+	public int getNumCols() {
+		return this.numCols;
+	}
+
+	public int getFarDoorStart(int cell) {
+		return farDoorStart[cell];
+	}
+
+	public int getFarDoorEnd(int cell) {
+		return farDoorStart[cell + 1];
+	}
+
+	// cell index at a position between getFarDoorStart and getFarDoorEnd
+	public int getFarDoor(int position) {
+		return farDoors[position];
+	}
+
+	public static int kindOf(StudentWorldPercept percept) {
+		return percept.ordinal();
+	}
+
+	public static int kindOf(StudentWorldItem item) {
+		return StudentWorldPercept.values().length + item.ordinal();
+	}
+
+	// kind is SMELLY, GLOWY, STUDENT or DOOR, see kindOf()
+	public String getName(int kind, int cell) {
+		return names[cell * KIND_NAMES.length + kind];
+	}
+}
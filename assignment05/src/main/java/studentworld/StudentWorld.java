@@ -1,98 +1,163 @@
-package studentworld;
-
-import gridgames.data.action.Action;
-import gridgames.display.Display;
-import gridgames.game.Game;
-import gridgames.grid.Cell;
-import gridgames.player.EV3Player;
-import gridgames.player.HumanPlayer;
-import gridgames.player.Player;
-import lejos.hardware.Button;
-import studentworld.data.StudentWorldPercept;
-import studentworld.grid.StudentWorldBoard;
-import studentworld.grid.StudentWorldCell;
-import studentworld.player.CSPPlayer;
-import studentworld.player.StudentWorldEV3Player;
-import studentworld.player.StudentWorldPlayer;
-
-public class StudentWorld extends Game {
-
-    private Display display;
-    private int numRows;
-    private int numCols;
-    private int numStudents;
-
-    public StudentWorld(Display display, int numRows, int numCols, int numStudents) {
-    	this.numRows = numRows;
-    	this.numCols = numCols;
-    	this.numStudents = numStudents;
-    	this.display = display;
-    	initializeBoard();
-    }
-
-    public Cell getInitialCell() {
-        return this.board.getPlayerCell();
-    }
-
-    public void play(Player player) {
-    	StudentWorldPlayer studentWorldPlayer = (StudentWorldPlayer) player.getGamePlayer();
-    	boolean isHumanPlayer = player instanceof HumanPlayer || player instanceof CSPPlayer;
-        boolean isEV3Player = player instanceof EV3Player;
-        boolean isGameOver;
-        Cell currentCell;
-        Action move;
-        boolean turnWithoutMove;
-        
-        do {
-            currentCell = this.board.getPlayerCell();
-            player.setCell(currentCell);
-            for(StudentWorldPercept p : ((StudentWorldCell) player.getCell()).getPercepts()) {
-        		display.addMessage(p.getMessage());
-        	}
-            
-            if(isHumanPlayer) {
-            	display.printState(false);
-            } else {
-            	display.printBoard(false);
-            }
-            
-            move = player.getAction();
-        	studentWorldPlayer.incrementNumActionsExecuted();
-        	board.movePlayer(move);
-        	
-        	if(!isHumanPlayer) {
-        		display.printMessages();
-        	}
-        	
-        	isGameOver = isGameOver();
-        	//move robot
-        	if(player instanceof StudentWorldEV3Player) {
-        		turnWithoutMove = currentCell.equals(this.board.getPlayerCell());
-        		((StudentWorldEV3Player)player).processAction(move, turnWithoutMove);
-        	}
-        } while (!isGameOver);
-        
-        if (((StudentWorldBoard)board).didWin()) {
-            display.addMessage("Congratulations you're free!");
-        } else {
-            display.addMessage("You were trapped by a student.");
-        }
-        display.addMessage("You made " + studentWorldPlayer.getNumActionsExecuted() + " moves.");
-        display.printState(true);
-        
-        if(isEV3Player) {
-        	Button.waitForAnyPress();
-        }
-    }
-
-    private boolean isGameOver() {
-        return ((StudentWorldBoard)board).didLose() || ((StudentWorldBoard)board).didWin();
-    }
-
-	@Override
-	public void initializeBoard() {
-		this.board = new StudentWorldBoard(numRows, numCols, numStudents);
-		((StudentWorldBoard)this.board).initializeBoard();
-		this.display.setBoard(board);		
-	}
-}
+package studentworld;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import gridgames.data.action.Action;
+import gridgames.display.Display;
+import gridgames.game.Game;
+import gridgames.grid.Cell;
+import gridgames.player.EV3Player;
+import gridgames.player.HumanPlayer;
+import gridgames.player.Player;
+import lejos.hardware.Button;
+import studentworld.data.StudentWorldPercept;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.grid.StudentWorldCell;
+import studentworld.knowledge.Zobrist;
+import studentworld.player.CSPPlayer;
+import studentworld.player.StudentWorldEV3Player;
+import studentworld.player.StudentWorldPlayer;
+
+public class StudentWorld extends Game {
+
+    private Display display;
+    private int numRows;
+    private int numCols;
+    private int numStudents;
+    private long seed;
+    private List<StudentWorldListener> listeners = new ArrayList<StudentWorldListener>();
+    private int studentMoveInterval;
+    private Random studentRandom;
+
+    public StudentWorld(Display display, int numRows, int numCols, int numStudents) {
+    	this(display, numRows, numCols, numStudents, new Random().nextLong());
+    }
+
+    public StudentWorld(Display display, int numRows, int numCols, int numStudents, long seed) {
+    	this.numRows = numRows;
+    	this.numCols = numCols;
+    	this.numStudents = numStudents;
+    	this.seed = seed;
+    	this.display = display;
+    	initializeBoard();
+    }
+
+    // plays on an already initialized board, e.g. one rebuilt from a recorded layout
+    public StudentWorld(Display display, StudentWorldBoard board) {
+    	this.numRows = board.getNumRows();
+    	this.numCols = board.getNumCols();
+    	this.numStudents = board.getNumStudents();
+    	this.seed = board.getSeed();
+    	this.display = display;
+    	this.board = board;
+    	this.display.setBoard(board);
+    }
+
+    public void addListener(StudentWorldListener listener) {
+    	listeners.add(listener);
+    }
+
+    public void removeListener(StudentWorldListener listener) {
+    	listeners.remove(listener);
+    }
+
+    // students wander one step after every turns moves, 0 (the default) keeps them in place
+    public void setStudentMoveInterval(int turns) {
+    	this.studentMoveInterval = turns;
+    	this.studentRandom = new Random(Zobrist.mix(seed));
+    }
+
+    public Cell getInitialCell() {
+        return this.board.getPlayerCell();
+    }
+
+    public void play(Player player) {
+    	StudentWorldPlayer studentWorldPlayer = (StudentWorldPlayer) player.getGamePlayer();
+    	boolean isHumanPlayer = player instanceof HumanPlayer || player instanceof CSPPlayer;
+        boolean isEV3Player = player instanceof EV3Player;
+        boolean isGameOver;
+        Cell currentCell;
+        Action move;
+        boolean turnWithoutMove;
+        long decisionStart;
+        long decisionNanos;
+        
+        //a solver that isn't told the students move takes their first move for a contradiction
+        if(player instanceof CSPPlayer && ((CSPPlayer) player).getStudentMoveInterval() != studentMoveInterval) {
+        	throw new IllegalStateException("students move every " + studentMoveInterval + " turns, the player expects "
+        			+ ((CSPPlayer) player).getStudentMoveInterval() + ", see CSPPlayer.setStudentMoveInterval");
+        }
+        for(StudentWorldListener listener : listeners) {
+        	listener.gameStarted((StudentWorldBoard) board, player);
+        }
+        
+        do {
+            currentCell = this.board.getPlayerCell();
+            player.setCell(currentCell);
+            for(StudentWorldPercept p : ((StudentWorldCell) player.getCell()).getPercepts()) {
+        		display.addMessage(p.getMessage());
+        	}
+            
+            if(isHumanPlayer) {
+            	display.printState(false);
+            } else {
+            	display.printBoard(false);
+            }
+            
+            decisionStart = System.nanoTime();
+            move = player.getAction();
+            decisionNanos = System.nanoTime() - decisionStart;
+            for(StudentWorldListener listener : listeners) {
+            	listener.turnPlayed((StudentWorldCell) currentCell, move, decisionNanos);
+            }
+        	studentWorldPlayer.incrementNumActionsExecuted();
+        	board.movePlayer(move);
+        	
+        	if(!isHumanPlayer) {
+        		display.printMessages();
+        	}
+        	
+        	isGameOver = isGameOver();
+        	if(!isGameOver && studentMoveInterval > 0 && studentWorldPlayer.getNumActionsExecuted() % studentMoveInterval == 0) {
+        		((StudentWorldBoard) board).moveStudents(studentRandom);
+        	}
+        	//move robot
+        	if(player instanceof StudentWorldEV3Player) {
+        		turnWithoutMove = currentCell.equals(this.board.getPlayerCell());
+        		((StudentWorldEV3Player)player).processAction(move, turnWithoutMove);
+        	}
+        } while (!isGameOver);
+        
+        if (((StudentWorldBoard)board).didWin()) {
+            display.addMessage("Congratulations you're free!");
+        } else {
+            display.addMessage("You were trapped by a student.");
+        }
+        display.addMessage("You made " + studentWorldPlayer.getNumActionsExecuted() + " moves.");
+        display.printState(true);
+        
+        for(StudentWorldListener listener : listeners) {
+        	listener.gameEnded((StudentWorldBoard) board, player, ((StudentWorldBoard)board).didWin());
+        }
+        if(player instanceof CSPPlayer) {
+        	((CSPPlayer) player).shutdown();
+        }
+        
+        if(isEV3Player) {
+        	Button.waitForAnyPress();
+        }
+    }
+
+    private boolean isGameOver() {
+        return ((StudentWorldBoard)board).didLose() || ((StudentWorldBoard)board).didWin();
+    }
+
+	@Override
+	public void initializeBoard() {
+		this.board = new StudentWorldBoard(numRows, numCols, numStudents, seed);
+		((StudentWorldBoard)this.board).initializeBoard();
+		this.display.setBoard(board);		
+	}
+}
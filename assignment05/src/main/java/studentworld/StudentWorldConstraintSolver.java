@@ -1,258 +1,724 @@
-package studentworld;
-
-import java.util.ArrayList;
-
-import org.chocosolver.solver.Model;
-import org.chocosolver.solver.Solver;
-import org.chocosolver.solver.exception.ContradictionException;
-import org.chocosolver.solver.variables.BoolVar;
-
-import gridgames.player.Player;
-import studentworld.data.StudentWorldPercept;
-import studentworld.grid.StudentWorldCell;
-import studentworld.player.StudentWorldPlayer;
-
-public class StudentWorldConstraintSolver {
-	private Model model;
-	private BoolVar[][] smellyCells;
-	private BoolVar[][] glowyCells;
-	private BoolVar[][] studentCells;
-	private BoolVar[][] doorCells;
-	private Solver solver;
-	private StudentWorldPlayer player;
-	
-	public StudentWorldConstraintSolver(StudentWorldPlayer player) {
-		model = new Model("studentWorld");
-		smellyCells = new BoolVar[5][5];
-		glowyCells = new BoolVar[5][5];
-		studentCells = new BoolVar[5][5];
-		doorCells = new BoolVar[5][5];
-		solver = model.getSolver();
-		this.player = player;
-		
-		initializeVariables();
-		createConstraints();
-	}
-	
-	public String getBoardState() {
-		updateCurrentCellVariables();
-		try {
-			solver.propagate();
-		} catch (ContradictionException e) {
-			e.printStackTrace();
-		}
-		StringBuilder sb = new StringBuilder();
-		for(int row=0; row<5; row++) {
-			for(int col=0; col<5; col++) {
-				sb.append(studentCells[row][col] + "\n");
-				sb.append(doorCells[row][col] + "\n");
-			}
-		}
-		return sb.toString();
-	}
-	
-	private void initializeVariables() {
-		for(int row=0; row<5; row++) {
-			for(int col=0; col<5; col++) {
-				smellyCells[row][col] = model.boolVar("smelly ("+row+","+col+")");
-				glowyCells[row][col] = model.boolVar("glowy ("+row+","+col+")");
-				studentCells[row][col] = model.boolVar("student ("+row+","+col+")");
-				doorCells[row][col] = model.boolVar("door ("+row+","+col+")");
-			}
-		}
-	}
-	
-	private void createConstraints() {			
-
-		for(int row=0; row<5; row++) {
-			for(int col=0; col<5; col++) {
-				// get potential student neighbors for every cell
-				BoolVar[] studentNeighbors = studentArray(row, col);
-				BoolVar[] doorNeighbors = doorArray(row, col);
-	
-				// if the cell is smelly, then at least one OR more of the neighboring cells for a student is true
-				model.ifThen(smellyCells[row][col], model.sum(studentNeighbors, ">=", 1));
-				// if cell is not smelly, make the student neighbors false
-				model.ifThen(model.arithm(smellyCells[row][col], "=", 0), model.sum(studentNeighbors, "=", 0));
-				
-				// if the cell is glowy, then only one of the neighboring cells is a door
-				model.ifThen(glowyCells[row][col], model.sum(doorNeighbors, "=", 1));
-				// if cell is not glowy, make the door neighbors false
-				model.ifThen(model.arithm(glowyCells[row][col], "=", 0), model.sum(doorNeighbors, "=", 0));
-				//model.sum(doorNeighbors, "=", 0).post();
-				
-				BoolVar[] nonAdjacentDoors;
-				ArrayList<BoolVar> nonAdjacentDoorsList = new ArrayList<BoolVar>();
-				for (int remainingRow = 0; remainingRow < 4; remainingRow++) {
-					for (int remainingCol = 0; remainingCol < 4; remainingCol++) {
-
-						// we don't want to include current cell
-						if (remainingRow == row && remainingCol == col) {
-
-						} 
-						// we don't want to include above neighbor
-						else if (remainingRow == row - 1) {
-
-						} 
-						// we don't want to include right neighbor
-						else if ( remainingRow == row && remainingCol == col + 1) {
-
-						} 
-						// we don't want to include below neighbor
-						else if (remainingRow == row + 1) {
-
-						} 
-						// we don't want to include left neighbor
-						else if (remainingRow == row && remainingCol == col - 1) {
-
-						} 
-						// add everything outside adjacent cells to array
-						else {
-							nonAdjacentDoorsList.add(doorCells[remainingRow][remainingCol]);
-						}
-					}
-				}
-				nonAdjacentDoors = nonAdjacentDoorsList.toArray(new BoolVar[nonAdjacentDoorsList.size()]);
-				// since we found a glowy cell, we can infer that remaining non-adjacent cells are not doors
-				model.ifThen(glowyCells[row][col], model.sum(nonAdjacentDoors, "=", 0));
-			}
-		}		
-	}
-
-	private BoolVar[] glowArray(int row, int col)
-	{
-		BoolVar[] glowyNeighbors;	// when current cell is a smelly, fill array with studentNeighbors
-		ArrayList<BoolVar> glowyNeighborsList = new ArrayList<BoolVar>();
-		
-		// if neighbor above, add to ArrayList
-		if (row > 0) {
-			glowyNeighborsList.add(glowyCells[row - 1][col]);
-		}
-		// if neighbor right, add to ArrayList
-		if (col < 4) {
-			glowyNeighborsList.add(glowyCells[row][col + 1]);
-		}
-		// if neighbor below, add to ArrayList
-		if (row < 4) {
-			glowyNeighborsList.add(glowyCells[row + 1][col]);
-		}
-		// if neighbor left, add to ArrayList
-		if (col > 0) {
-			glowyNeighborsList.add(glowyCells[row][col - 1]);
-		}
-		// convert ArrayList neighbors to array
-		glowyNeighbors = glowyNeighborsList.toArray(new BoolVar[glowyNeighborsList.size()]);
-		// return studentNeighbors
-		return glowyNeighbors;
-	}
-		
-	// if current cell is smelly: get student neighbors
-	private BoolVar[] studentArray(int row, int col)
-	{
-		BoolVar[] studentNeighbors;	// when current cell is a smelly, fill array with studentNeighbors
-		ArrayList<BoolVar> studentNeighborsList = new ArrayList<BoolVar>();
-		
-		// if neighbor above, add to ArrayList
-		if (row > 0) {
-			studentNeighborsList.add(studentCells[row - 1][col]);
-		}
-		// if neighbor right, add to ArrayList
-		if (col < 4) {
-			studentNeighborsList.add(studentCells[row][col + 1]);
-		}
-		// if neighbor below, add to ArrayList
-		if (row < 4) {
-			studentNeighborsList.add(studentCells[row + 1][col]);
-		}
-		// if neighbor left, add to ArrayList
-		if (col > 0) {
-			studentNeighborsList.add(studentCells[row][col - 1]);
-		}
-		// convert ArrayList neighbors to array
-		studentNeighbors = studentNeighborsList.toArray(new BoolVar[studentNeighborsList.size()]);
-		// return studentNeighbors
-		return studentNeighbors;
-	}
-	
-	// if current cell is glowy: get door neighbors
-	private BoolVar[] doorArray(int row, int col) 
-	{
-		
-		BoolVar[] doorNeighbors;	// when current cell is a glowly, fill neighbors with door
-		ArrayList<BoolVar> doorNeighborsList = new ArrayList<BoolVar>();
-		
-		// if neighbor above, add to ArrayList
-		if (row > 0) {
-			doorNeighborsList.add(doorCells[row - 1][col]);
-		}
-		// if neighbor right, add to ArrayList
-		if (col < 4) {
-			doorNeighborsList.add(doorCells[row][col + 1]);
-		}
-		// if neighbor below, add to ArrayList
-		if (row < 4) {
-			doorNeighborsList.add(doorCells[row + 1][col]);
-		}
-		// if neighbor left, add to ArrayList
-		if (col > 0) {
-			doorNeighborsList.add(doorCells[row][col - 1]);
-		}
-		// convert ArrayList neighbors to array
-		doorNeighbors = doorNeighborsList.toArray(new BoolVar[doorNeighborsList.size()]);
-		// return studentNeighbors
-		return doorNeighbors;
-	}
-
-	
-	private void updateCurrentCellVariables() {
-		// get current position		
-		// used to obtain percepts
-		StudentWorldCell currentCell = (StudentWorldCell) player.getCell();
-		int row = currentCell.getRow();
-		int col = currentCell.getCol();
-		
-		// if current cell smells with no glowly cell, set smellyCells to true
-		if (currentCell.getPercepts().contains(StudentWorldPercept.SMELL) && !currentCell.getPercepts().contains(StudentWorldPercept.GLOW)) {
-			model.arithm(smellyCells[row][col], "=", 1).post(); // smell true
-			model.arithm(glowyCells[row][col], "=", 0).post();	// glow false
-		}
-		// if current cell is glowly with no smelly cell, set glowlyCells to true
-		else if(currentCell.getPercepts().contains(StudentWorldPercept.GLOW) && !currentCell.getPercepts().contains(StudentWorldPercept.SMELL))
-		{
-			model.arithm(smellyCells[row][col], "=", 0).post(); // smell false
-			model.arithm(glowyCells[row][col], "=", 1).post();	// glow true
-		}
-		// if current cell has both percepts: smelly and glowy, add constraints
-		else if(currentCell.getPercepts().contains(StudentWorldPercept.SMELL) && currentCell.getPercepts().contains(StudentWorldPercept.GLOW))
-		{
-			model.arithm(smellyCells[row][col], "=", 1).post(); // smell true
-			model.arithm(glowyCells[row][col], "=", 1).post();	// glow true
-		}
-		// set current cells instance variables (i.e. smellyCells, glowlyCells, etc) with false for current position
-		// since our percepts are empty
-		else
-		{
-			// everything is false since we don't have knowledge of any of them.
-			model.arithm(glowyCells[row][col], "=", 0).post();
-			model.arithm(smellyCells[row][col], "=", 0).post();
-		}
-		// always set door/student to false
-		model.arithm(studentCells[row][col], "=", 0).post();// student false
-		model.arithm(doorCells[row][col], "=", 0).post();	// door false
-		
-		printAllVariables();
-	}
-	
-	
-	@SuppressWarnings("unused")
-	private void printAllVariables() {
-		for(int row=0; row<5; row++) {
-			for(int col=0; col<5; col++) {
-				System.out.println(smellyCells[row][col]);
-				System.out.println(glowyCells[row][col]);
-				System.out.println(studentCells[row][col]);
-				System.out.println(doorCells[row][col]);
-			}
-		}
-	}
-}
+package studentworld;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.chocosolver.memory.IEnvironment;
+import org.chocosolver.solver.Cause;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.exception.ContradictionException;
+import org.chocosolver.solver.variables.BoolVar;
+
+import gridgames.player.Player;
+import studentworld.data.PerceptRule;
+import studentworld.data.PerceptRuleTable;
+import studentworld.data.StudentWorldItem;
+import studentworld.data.StudentWorldPercept;
+import studentworld.grid.StudentWorldCell;
+import studentworld.knowledge.BoardKnowledge;
+import studentworld.knowledge.Deadline;
+import studentworld.knowledge.DiagonalSymmetry;
+import studentworld.knowledge.FrontierCounter;
+import studentworld.knowledge.InferenceStage;
+import studentworld.knowledge.InferenceTier;
+import studentworld.knowledge.KnowledgeCache;
+import studentworld.knowledge.KnowledgeDelta;
+import studentworld.knowledge.KnowledgeKey;
+import studentworld.knowledge.LocalRuleInference;
+import studentworld.knowledge.WorldSampler;
+import studentworld.knowledge.Zobrist;
+import studentworld.player.StudentWorldPlayer;
+import studentworld.sat.StudentWorldCnf;
+import studentworld.trace.DecisionLog;
+
+public class StudentWorldConstraintSolver {
+	
+	public enum Backend {
+		CHOCO,
+		SAT
+	}
+	
+	// getKnowledge(deadlineNanos) without a turn budget
+	public static final long NO_DEADLINE = Deadline.NONE;
+	
+	private Model model;
+	// by StudentWorldPercept and StudentWorldItem ordinal, the named arrays below are among them
+	private BoolVar[][][] perceptCells;
+	private BoolVar[][][] itemCells;
+	private BoolVar[][] smellyCells;
+	private BoolVar[][] glowyCells;
+	private BoolVar[][] studentCells;
+	private BoolVar[][] doorCells;
+	private Solver solver;
+	private ConstraintSkeleton skeleton;
+	private PerceptRuleTable perceptRules;
+	// how far an observation can change what probing finds
+	private int probeRadius;
+	private StudentWorldPlayer player;
+	private KnowledgeKey knowledgeKey;
+	private KnowledgeCache knowledgeCache;
+	private boolean printVariables = true;
+	private LocalRuleInference localRules;
+	private InferenceTier lastTier;
+	private int[] tierCounts;
+	private int numRows;
+	private int numCols;
+	private StudentWorldCnf cnf;
+	private boolean probing;
+	private boolean[][] probeDirty;
+	private int numProbes;
+	private FrontierCounter frontierCounter;
+	private WorldSampler worldSampler;
+	private DecisionLog decisionLog;
+	private InferenceStage lastStage;
+	private int[] stageCounts;
+	private int numInterruptedTurns;
+	private int numContradictions;
+	private BoardKnowledge decided;
+	private KnowledgeDelta lastDelta = new KnowledgeDelta();
+	private boolean movingStudents;
+	// answer since the last new observation, with moving students nothing else changes it
+	private BoardKnowledge movingKnowledge;
+	
+	public StudentWorldConstraintSolver(StudentWorldPlayer player) {
+		this(player, null);
+	}
+	
+	// knowledgeCache may be shared between solvers for the same board size, or null to always propagate
+	public StudentWorldConstraintSolver(StudentWorldPlayer player, KnowledgeCache knowledgeCache) {
+		this(player, knowledgeCache, Backend.CHOCO, 5, 5);
+	}
+	
+	// the SAT backend never builds the Choco model, so it also works for boards too large for it
+	public StudentWorldConstraintSolver(StudentWorldPlayer player, KnowledgeCache knowledgeCache, Backend backend, int numRows, int numCols) {
+		this(player, knowledgeCache, backend, numRows, numCols, PerceptRule.STANDARD);
+	}
+	
+	/*
+	 * For game variants with other percepts, see PerceptRule: the Choco model is built
+	 * from the rules, one sum per rule and cell. Everything else, the SAT backend, the
+	 * local rules and the percept signatures, is written for PerceptRule.STANDARD.
+	 */
+	public StudentWorldConstraintSolver(StudentWorldPlayer player, KnowledgeCache knowledgeCache, Backend backend, int numRows, int numCols,
+			List<PerceptRule> rules) {
+		if(backend == Backend.SAT && !rules.equals(PerceptRule.STANDARD)) {
+			throw new IllegalArgumentException("the SAT backend only knows the standard percept rules");
+		}
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.player = player;
+		// a shared cache only answers for solvers with the same backend and rules
+		this.knowledgeKey = new KnowledgeKey(numRows, numCols, Zobrist.modelKey(backend.ordinal(), rules));
+		this.knowledgeCache = knowledgeCache;
+		this.localRules = new LocalRuleInference(numRows, numCols);
+		this.tierCounts = new int[InferenceTier.values().length];
+		this.frontierCounter = new FrontierCounter(numRows, numCols);
+		this.stageCounts = new int[InferenceStage.values().length];
+		this.decided = new BoardKnowledge(numRows, numCols);
+		
+		if(backend == Backend.SAT) {
+			cnf = new StudentWorldCnf(numRows, numCols);
+		} else {
+			model = new Model("studentWorld");
+			perceptCells = new BoolVar[StudentWorldPercept.values().length][numRows][numCols];
+			itemCells = new BoolVar[StudentWorldItem.values().length][numRows][numCols];
+			smellyCells = perceptCells[StudentWorldPercept.SMELL.ordinal()];
+			glowyCells = perceptCells[StudentWorldPercept.GLOW.ordinal()];
+			studentCells = itemCells[StudentWorldItem.STUDENT.ordinal()];
+			doorCells = itemCells[StudentWorldItem.DOOR.ordinal()];
+			solver = model.getSolver();
+			skeleton = ConstraintSkeleton.forBoard(numRows, numCols);
+			perceptRules = PerceptRuleTable.compile(rules, numRows, numCols);
+			for(PerceptRule rule : rules) {
+				probeRadius = Math.max(probeRadius, 2 * rule.getRadius());
+			}
+			probeDirty = new boolean[numRows][numCols];
+			markProbeDirty(0, 0, numRows + numCols);
+			
+			initializeVariables();
+			createConstraints();
+		}
+	}
+	
+	public String getBoardState() {
+		return getKnowledge().toString();
+	}
+	
+	// knowledge for the current cell from the cheapest tier that finds the door or a safe
+	// fringe cell; the local rules are tried first, the cache and propagation only if needed
+	public BoardKnowledge getKnowledge() {
+		return getKnowledge(NO_DEADLINE);
+	}
+	
+	/*
+	 * As getKnowledge(), with a System.nanoTime() deadline for the turn. Probing is
+	 * checked against the deadline between cells and returns what it settled so far;
+	 * the cells it didn't reach are probed on a later turn. If the result has no safe
+	 * move and there is time left, the open fringe cells get student probabilities
+	 * from a FrontierCounter, or a WorldSampler (see setSampling()), so the risky move
+	 * can go to the least likely one.
+	 */
+	public BoardKnowledge getKnowledge(long deadlineNanos) {
+		updateCurrentCellVariables();
+		lastStage = null;
+		// the local rules and the cache assume what is known about the students stays true
+		if(!movingStudents && localRules.isDecisive()) {
+			return answeredBy(InferenceTier.LOCAL_RULES, localRules.getKnowledge().copy());
+		}
+		
+		BoardKnowledge knowledge = null;
+		// the cache holds mirror-image states once, in their canonical orientation
+		boolean transposed = knowledgeKey.isTransposed();
+		if(knowledgeCache != null && !movingStudents) {
+			knowledge = knowledgeCache.get(knowledgeKey.getCanonicalKey());
+			// on a hit propagation is skipped, the observations are still posted
+			// so a later miss propagates everything observed so far
+			if(knowledge != null) {
+				knowledge = transposed ? DiagonalSymmetry.transpose(knowledge) : knowledge;
+				return answeredBy(InferenceTier.CACHE, estimateRisk(knowledge, deadlineNanos));
+			}
+		}
+		if(movingKnowledge != null) {
+			return answeredBy(InferenceTier.PROPAGATION, movingKnowledge);
+		}
+		boolean complete;
+		if(cnf != null) {
+			knowledge = getKnowledgeFromCnf(deadlineNanos);
+			complete = cnf.isComplete();
+			// the root-level values come for free, the backbone is the SAT side of probing
+			stageFinished(InferenceStage.PROPAGATION);
+			if(complete) {
+				stageFinished(InferenceStage.PROBING);
+			}
+		} else {
+			try {
+				solver.propagate();
+				stageFinished(InferenceStage.PROPAGATION);
+				complete = !probing || probeFringe(deadlineNanos);
+				if(probing && complete) {
+					stageFinished(InferenceStage.PROBING);
+				}
+				knowledge = getKnowledgeFromVariables();
+			} catch (ContradictionException e) {
+				numContradictions++;
+				if(decisionLog != null) {
+					decisionLog.dump(System.err, "Contradiction: " + e.getMessage());
+				}
+				e.printStackTrace();
+				return answeredBy(InferenceTier.PROPAGATION, getKnowledgeFromVariables());
+			}
+		}
+		if(!complete) {
+			numInterruptedTurns++;
+		} else if(movingStudents) {
+			movingKnowledge = knowledge;
+		}
+		// knowledge cut short by the deadline isn't cached, the next miss finishes it
+		if(knowledgeCache != null && complete && !movingStudents) {
+			knowledgeCache.put(knowledgeKey.getCanonicalKey(), transposed ? DiagonalSymmetry.transpose(knowledge) : knowledge);
+		}
+		return answeredBy(InferenceTier.PROPAGATION, estimateRisk(knowledge, deadlineNanos));
+	}
+	
+	// counting only runs under a turn budget, without one it could take exponential time
+	private BoardKnowledge estimateRisk(BoardKnowledge knowledge, long deadlineNanos) {
+		if(deadlineNanos == NO_DEADLINE || movingStudents || Deadline.isPast(deadlineNanos) || hasSafeMove(knowledge)) {
+			return knowledge;
+		}
+		// the knowledge may be shared with the cache
+		BoardKnowledge estimated = knowledge.copy();
+		// with a sampler, counting gets half the time left and the sampler the rest
+		long countingDeadline = deadlineNanos;
+		if(worldSampler != null) {
+			long now = System.nanoTime();
+			countingDeadline = now + (deadlineNanos - now) / 2;
+		}
+		if(frontierCounter.count(localRules, estimated, localRules.getFringeCells(), countingDeadline)) {
+			stageFinished(InferenceStage.COUNTING);
+		} else if(worldSampler != null && worldSampler.sample(localRules, estimated, localRules.getFringeCells(), deadlineNanos)) {
+			stageFinished(InferenceStage.SAMPLING);
+		} else {
+			numInterruptedTurns++;
+		}
+		return estimated;
+	}
+	
+	private boolean hasSafeMove(BoardKnowledge knowledge) {
+		for(int cell : localRules.getFringeCells()) {
+			int row = cell / numCols;
+			int col = cell % numCols;
+			if(knowledge.isSafe(row, col) || knowledge.isDoor(row, col)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private void stageFinished(InferenceStage stage) {
+		lastStage = stage;
+		stageCounts[stage.ordinal()]++;
+	}
+	
+	// strongest stage that finished on the last getKnowledge(), null if the local rules or the cache answered
+	public InferenceStage getLastStage() {
+		return this.lastStage;
+	}
+	
+	// number of turns on which the stage finished, a turn that got through probing also counts for propagation
+	public int getStageCount(InferenceStage stage) {
+		return stageCounts[stage.ordinal()];
+	}
+	
+	// turns on which the deadline stopped probing, or counting and sampling, before it was done
+	public int getNumInterruptedTurns() {
+		return this.numInterruptedTurns;
+	}
+	
+	// turns on which the solver found that the observations contradict each other
+	public int getNumContradictions() {
+		return this.numContradictions;
+	}
+	
+	/*
+	 * Propagation alone leaves some forced cells at [0,1]. With probing on, each open
+	 * student/door variable of the fringe is tried with both values in a pushed world;
+	 * a value that fails propagation is ruled out by posting the other one for good,
+	 * which may force more, until nothing changes. Observations only add constraints,
+	 * so a cell found open is only probed again once something within two cells of it
+	 * (the reach of the percept constraints touching it) was observed or forced.
+	 * The SAT backend always settles every forced fringe cell, this only affects Choco.
+	 */
+	public void setProbing(boolean probing) {
+		this.probing = probing;
+	}
+	
+	/*
+	 * Falls back on a WorldSampler with the given number of threads when counting the
+	 * fringe doesn't finish in the first half of the time left, so large boards still
+	 * get risk estimates for every open fringe cell; 0 turns sampling off again.
+	 */
+	public void setSampling(int numThreads) {
+		if(worldSampler != null) {
+			worldSampler.shutdown();
+			worldSampler = null;
+		}
+		if(numThreads > 0) {
+			worldSampler = new WorldSampler(numRows, numCols, numThreads, Zobrist.mix(numRows * 31 + numCols));
+		}
+	}
+	
+	// dumped to System.err if the observations contradict each other, with either backend
+	public void setDecisionLog(DecisionLog decisionLog) {
+		this.decisionLog = decisionLog;
+	}
+	
+	// what the local rules made of the observations, shared with the solver: copy before observing more
+	public LocalRuleInference getLocalRules() {
+		return this.localRules;
+	}
+	
+	public WorldSampler getWorldSampler() {
+		return this.worldSampler;
+	}
+	
+	/*
+	 * For games where the students wander (StudentWorld.setStudentMoveInterval): call
+	 * before the first observation, then studentsMoved() each time they may have moved.
+	 * Only the SAT backend can retract what it learnt about the students, see
+	 * StudentWorldCnf, so with Choco this fails before the game starts (CSPPlayer
+	 * checks its backend first). The local rules and the knowledge cache are
+	 * bypassed, and getDecided() and getLastDelta() start over with every move.
+	 */
+	public void setMovingStudents() {
+		if(cnf == null) {
+			throw new IllegalStateException("moving students need the SAT backend");
+		}
+		cnf.setMovingStudents();
+		movingStudents = true;
+	}
+	
+	public void studentsMoved() {
+		cnf.studentsMoved();
+		decided = new BoardKnowledge(numRows, numCols);
+		movingKnowledge = null;
+	}
+	
+	// number of pushed-world propagations run by probing so far
+	public int getNumProbes() {
+		return this.numProbes;
+	}
+	
+	// false if the deadline passed before every fringe cell was probed
+	private boolean probeFringe(long deadlineNanos) throws ContradictionException {
+		boolean forced = true;
+		while(forced) {
+			forced = false;
+			for(int cell : localRules.getFringeCells()) {
+				int row = cell / numCols;
+				int col = cell % numCols;
+				if(probeDirty[row][col]) {
+					if(Deadline.isPast(deadlineNanos)) {
+						return false;
+					}
+					probeDirty[row][col] = false;
+					forced |= probe(studentCells[row][col], row, col);
+					forced |= probe(doorCells[row][col], row, col);
+				}
+			}
+		}
+		return true;
+	}
+	
+	private boolean probe(BoolVar var, int row, int col) throws ContradictionException {
+		for(int value=0; value<=1 && !var.isInstantiated(); value++) {
+			if(!isConsistentWith(var, value)) {
+				model.arithm(var, "=", 1 - value).post();
+				solver.propagate();
+				markProbeDirty(row, col, probeRadius);
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private boolean isConsistentWith(BoolVar var, int value) {
+		IEnvironment environment = model.getEnvironment();
+		numProbes++;
+		environment.worldPush();
+		try {
+			var.instantiateTo(value, Cause.Null);
+			solver.propagate();
+			return true;
+		} catch (ContradictionException e) {
+			// drop the events still queued from the failed propagation
+			solver.getEngine().flush();
+			return false;
+		} finally {
+			environment.worldPop();
+		}
+	}
+	
+	private void markProbeDirty(int row, int col, int distance) {
+		for(int r=Math.max(0, row-distance); r<=Math.min(numRows-1, row+distance); r++) {
+			for(int c=Math.max(0, col-distance); c<=Math.min(numCols-1, col+distance); c++) {
+				if(Math.abs(r - row) + Math.abs(c - col) <= distance) {
+					probeDirty[r][c] = true;
+				}
+			}
+		}
+	}
+	
+	private BoardKnowledge answeredBy(InferenceTier tier, BoardKnowledge knowledge) {
+		lastTier = tier;
+		tierCounts[tier.ordinal()]++;
+		lastDelta = decided.addDecided(knowledge);
+		return knowledge;
+	}
+	
+	/*
+	 * Cells newly decided by the last getKnowledge(), relative to everything decided
+	 * before it. Each turn's answer may leave open what an earlier, deeper one settled
+	 * (a cache hit, a probe cut short), so this is taken against getDecided(), which
+	 * only grows, and a value shows up in exactly one delta.
+	 */
+	public KnowledgeDelta getLastDelta() {
+		return this.lastDelta;
+	}
+	
+	// every value decided on any turn so far, updated in place
+	public BoardKnowledge getDecided() {
+		return this.decided;
+	}
+	
+	// tier that answered the last getKnowledge(), null before the first call
+	public InferenceTier getLastTier() {
+		return this.lastTier;
+	}
+	
+	public int getTierCount(InferenceTier tier) {
+		return tierCounts[tier.ordinal()];
+	}
+	
+	// the variable dump after every observation, off for replays and batch runs
+	public void setPrintVariables(boolean printVariables) {
+		this.printVariables = printVariables;
+	}
+	
+	// cell indexes of the unvisited cells next to a visited one
+	public int[] getFringeCells() {
+		return localRules.getFringeCells();
+	}
+	
+	public KnowledgeKey getKnowledgeKey() {
+		return this.knowledgeKey;
+	}
+
+	// estimated bytes held by the SAT encoding, see StudentWorldCnf.getFootprintBytes; -1 on
+	// the Choco backend, whose model doesn't report a size
+	public long getModelFootprintBytes() {
+		return cnf == null ? -1 : cnf.getFootprintBytes();
+	}
+	
+	private BoardKnowledge getKnowledgeFromVariables() {
+		BoardKnowledge knowledge = localRules.getKnowledge().copy();
+		for(int row=0; row<numRows; row++) {
+			for(int col=0; col<numCols; col++) {
+				// the local rules may know cells the propagation leaves open
+				if(studentCells[row][col].isInstantiated()) {
+					knowledge.setStudent(row, col, getValue(studentCells[row][col]));
+				}
+				if(doorCells[row][col].isInstantiated()) {
+					knowledge.setDoor(row, col, getValue(doorCells[row][col]));
+				}
+			}
+		}
+		return knowledge;
+	}
+	
+	// the SAT backend settles every fringe cell that is forced, not just what propagation finds
+	private BoardKnowledge getKnowledgeFromCnf(long deadlineNanos) {
+		int[] cells = localRules.getFringeCells();
+		// within an epoch knowledge only grows, so cells decided earlier in it aren't checked again
+		if(movingStudents) {
+			cells = getUndecided(cells);
+		}
+		BoardKnowledge knowledge = cnf.getKnowledge(cells, deadlineNanos);
+		// the observations contradict each other, the local rules are all there is to go on
+		if(knowledge == null) {
+			numContradictions++;
+			if(decisionLog != null) {
+				decisionLog.dump(System.err, "Contradiction in the SAT model");
+			}
+			return localRules.getKnowledge().copy();
+		}
+		// the local rules may know cells without SAT variables
+		if(!movingStudents) {
+			knowledge.addDecided(localRules.getKnowledge());
+		} else {
+			knowledge.addDecided(decided);
+		}
+		return knowledge;
+	}
+	
+	private int[] getUndecided(int[] cells) {
+		int[] undecided = new int[cells.length];
+		int size = 0;
+		for(int cell : cells) {
+			int row = cell / numCols;
+			int col = cell % numCols;
+			if(decided.getStudent(row, col) == BoardKnowledge.UNKNOWN || decided.getDoor(row, col) == BoardKnowledge.UNKNOWN) {
+				undecided[size++] = cell;
+			}
+		}
+		return Arrays.copyOf(undecided, size);
+	}
+	
+	private static byte getValue(BoolVar var) {
+		if(var.isInstantiated()) {
+			return (byte) var.getValue();
+		}
+		return BoardKnowledge.UNKNOWN;
+	}
+	
+	// every percept and item gets variables, whichever of them the rules use, since observe() posts them all
+	private void initializeVariables() {
+		for(int row=0; row<numRows; row++) {
+			for(int col=0; col<numCols; col++) {
+				int cell = row * numCols + col;
+				for(StudentWorldPercept percept : StudentWorldPercept.values()) {
+					perceptCells[percept.ordinal()][row][col] = model.boolVar(skeleton.getName(ConstraintSkeleton.kindOf(percept), cell));
+				}
+				for(StudentWorldItem item : StudentWorldItem.values()) {
+					itemCells[item.ordinal()][row][col] = model.boolVar(skeleton.getName(ConstraintSkeleton.kindOf(item), cell));
+				}
+			}
+		}
+	}
+	
+	private void createConstraints() {
+		for(int r=0; r<perceptRules.getNumRules(); r++) {
+			PerceptRule rule = perceptRules.getRule(r);
+			BoolVar[][] sensed = perceptCells[rule.getPercept().ordinal()];
+			BoolVar[][] items = itemCells[rule.getItem().ordinal()];
+			String cardinality = rule.getCardinality() == PerceptRule.Cardinality.EXACTLY_ONE ? "=" : ">=";
+			for(int row=0; row<numRows; row++) {
+				for(int col=0; col<numCols; col++) {
+					BoolVar[] neighborhood = neighborhoodArray(items, r, row * numCols + col);
+					// if the cell senses the item, its neighborhood holds one (or more) of them
+					model.ifThen(sensed[row][col], model.sum(neighborhood, cardinality, 1));
+					// if it doesn't, none of the neighborhood does
+					model.ifThen(model.arithm(sensed[row][col], "=", 0), model.sum(neighborhood, "=", 0));
+					
+					// there is one door, so a cell that senses it rules out the cells away from it
+					if(rule.getItem() == StudentWorldItem.DOOR) {
+						model.ifThen(sensed[row][col], model.sum(farDoorArray(r, row * numCols + col), "=", 0));
+					}
+				}
+			}
+		}
+	}
+
+	// the variables of the cells in the neighborhood of a rule, see PerceptRuleTable
+	private BoolVar[] neighborhoodArray(BoolVar[][] variables, int rule, int cell) {
+		int start = perceptRules.getNeighborhoodStart(rule, cell);
+		BoolVar[] neighborhood = new BoolVar[perceptRules.getNeighborhoodEnd(rule, cell) - start];
+		for(int i=0; i<neighborhood.length; i++) {
+			int neighbor = perceptRules.getNeighborhoodCell(rule, start + i);
+			neighborhood[i] = variables[neighbor / numCols][neighbor % numCols];
+		}
+		return neighborhood;
+	}
+	
+	/*
+	 * The doors a cell sensing the door under the rule rules out. For the standard rule
+	 * these are the non-adjacent cells the model always used, see ConstraintSkeleton,
+	 * otherwise every cell outside the neighborhood.
+	 */
+	private BoolVar[] farDoorArray(int rule, int cell) {
+		if(perceptRules.getRule(rule).equals(PerceptRule.STANDARD_GLOW)) {
+			BoolVar[] farDoors = new BoolVar[skeleton.getFarDoorEnd(cell) - skeleton.getFarDoorStart(cell)];
+			for(int i=0; i<farDoors.length; i++) {
+				int farDoor = skeleton.getFarDoor(skeleton.getFarDoorStart(cell) + i);
+				farDoors[i] = doorCells[farDoor / numCols][farDoor % numCols];
+			}
+			return farDoors;
+		}
+		boolean[] near = new boolean[numRows * numCols];
+		for(int i=perceptRules.getNeighborhoodStart(rule, cell); i<perceptRules.getNeighborhoodEnd(rule, cell); i++) {
+			near[perceptRules.getNeighborhoodCell(rule, i)] = true;
+		}
+		List<BoolVar> farDoors = new ArrayList<BoolVar>();
+		for(int other=0; other<numRows*numCols; other++) {
+			if(!near[other]) {
+				farDoors.add(doorCells[other / numCols][other % numCols]);
+			}
+		}
+		return farDoors.toArray(new BoolVar[farDoors.size()]);
+	}
+	
+	private void updateCurrentCellVariables() {
+		// a solver without a player is only fed through observe(), e.g. one shared by several agents
+		if(player == null) {
+			return;
+		}
+		// get current position		
+		// used to obtain percepts
+		StudentWorldCell currentCell = (StudentWorldCell) player.getCell();
+		observe(currentCell.getRow(), currentCell.getCol(), currentCell.getPercepts());
+	}
+	
+	// posts the facts for a visited cell, the next getBoardState() propagates them
+	public void observe(int row, int col, Set<StudentWorldPercept> percepts) {
+		// a revisited cell has nothing new to post, unless the students moved since
+		boolean firstVisit = knowledgeKey.observe(row, col, percepts);
+		if(!firstVisit && !movingStudents) {
+			return;
+		}
+		if(firstVisit) {
+			localRules.observe(row, col, StudentWorldPercept.getSignature(percepts));
+		}
+		if(cnf != null) {
+			if(cnf.observe(row, col, StudentWorldPercept.getSignature(percepts))) {
+				movingKnowledge = null;
+			}
+			return;
+		}
+		markProbeDirty(row, col, probeRadius);
+		
+		// the cell senses what it senses, and holds no item since the player is on it
+		for(StudentWorldPercept percept : StudentWorldPercept.values()) {
+			model.arithm(perceptCells[percept.ordinal()][row][col], "=", percepts.contains(percept) ? 1 : 0).post();
+		}
+		for(BoolVar[][] items : itemCells) {
+			model.arithm(items[row][col], "=", 0).post();
+		}
+		
+		if(printVariables) {
+			printAllVariables();
+		}
+	}
+	
+	
+	/*
+	 * Posts a batch of observations, (row, col, percept signature) triples as in
+	 * StudentWorldPercept.getSignature, e.g. from a replay or from several agents.
+	 * The local rules and the SAT backend propagate once for the whole batch instead
+	 * of after every cell, and the Choco model gets one constraint for all the values
+	 * the batch fixes; the next getBoardState() propagates them as after observe().
+	 */
+	public void observeAll(int[] observations) {
+		if(observations.length % 3 != 0) {
+			throw new IllegalArgumentException("observations must be (row, col, signature) triples");
+		}
+		int[] firstVisits = new int[observations.length];
+		int[] posted = new int[observations.length];
+		int numFirstVisits = 0;
+		int numPosted = 0;
+		for(int i=0; i<observations.length; i+=3) {
+			boolean firstVisit = knowledgeKey.observe(observations[i], observations[i+1], observations[i+2]);
+			if(firstVisit) {
+				System.arraycopy(observations, i, firstVisits, numFirstVisits, 3);
+				numFirstVisits += 3;
+			}
+			if(firstVisit || movingStudents) {
+				System.arraycopy(observations, i, posted, numPosted, 3);
+				numPosted += 3;
+			}
+		}
+		localRules.observeAll(Arrays.copyOf(firstVisits, numFirstVisits));
+		if(cnf != null) {
+			if(cnf.observeAll(Arrays.copyOf(posted, numPosted))) {
+				movingKnowledge = null;
+			}
+			return;
+		}
+		if(numPosted == 0) {
+			return;
+		}
+		
+		// a visited cell holds neither a student nor the door, its percepts say the rest
+		int numCells = numPosted / 3;
+		BoolVar[] zeros = new BoolVar[(perceptCells.length + itemCells.length) * numCells];
+		BoolVar[] ones = new BoolVar[perceptCells.length * numCells];
+		int numZeros = 0;
+		int numOnes = 0;
+		for(int i=0; i<numPosted; i+=3) {
+			int row = posted[i];
+			int col = posted[i+1];
+			markProbeDirty(row, col, probeRadius);
+			for(StudentWorldPercept percept : StudentWorldPercept.values()) {
+				if(percept.isIn(posted[i+2])) {
+					ones[numOnes++] = perceptCells[percept.ordinal()][row][col];
+				} else {
+					zeros[numZeros++] = perceptCells[percept.ordinal()][row][col];
+				}
+			}
+			for(BoolVar[][] items : itemCells) {
+				zeros[numZeros++] = items[row][col];
+			}
+		}
+		model.sum(Arrays.copyOf(zeros, numZeros), "=", 0).post();
+		if(numOnes > 0) {
+			model.sum(Arrays.copyOf(ones, numOnes), "=", numOnes).post();
+		}
+		
+		if(printVariables) {
+			printAllVariables();
+		}
+	}
+	
+	@SuppressWarnings("unused")
+	private void printAllVariables() {
+		for(int row=0; row<numRows; row++) {
+			for(int col=0; col<numCols; col++) {
+				System.out.println(smellyCells[row][col]);
+				System.out.println(glowyCells[row][col]);
+				System.out.println(studentCells[row][col]);
+				System.out.println(doorCells[row][col]);
+			}
+		}
+	}
+}
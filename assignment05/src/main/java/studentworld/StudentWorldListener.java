@@ -0,0 +1,20 @@
+package studentworld;
+
+import gridgames.data.action.Action;
+import gridgames.player.Player;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.grid.StudentWorldCell;
+
+/*
+ * Receives the events of StudentWorld.play, e.g. to record or measure games.
+ * Listeners are called on the thread playing the game.
+ */
+public interface StudentWorldListener {
+
+	void gameStarted(StudentWorldBoard board, Player player);
+
+	// cell is where the player decided on the move, decisionNanos is the time spent in getAction()
+	void turnPlayed(StudentWorldCell cell, Action move, long decisionNanos);
+
+	void gameEnded(StudentWorldBoard board, Player player, boolean won);
+}
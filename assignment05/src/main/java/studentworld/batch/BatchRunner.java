@@ -0,0 +1,212 @@
+package studentworld.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import gridgames.data.action.MoveAction;
+import studentworld.StudentWorld;
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.corpus.BoardCorpus;
+import studentworld.corpus.BoardView;
+import studentworld.display.SilentDisplay;
+import studentworld.grid.SparseStudentWorldBoard;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.knowledge.KnowledgeCache;
+import studentworld.knowledge.Zobrist;
+import studentworld.player.CSPPlayer;
+import studentworld.trace.AllocationProfile;
+
+/*
+ * Plays many CSPPlayer games without a display and streams the results to a
+ * ColumnarResultWriter. Boards come from a BoardCorpus, or are generated from
+ * seeds derived from -seed and the game number, so runs are repeatable whatever
+ * the number of threads.
+ *
+ * Usage: BatchRunner <results file> <number of games> [-corpus <file>] [-threads <n>] [-seed <seed>]
+ *                    [-size <rows> <cols> <students>] [-sat] [-sparse] [-memory]
+ *        BatchRunner -summary <results file>
+ *
+ * -sparse generates SparseStudentWorldBoards, for sizes whose dense boards don't fit
+ * in memory; it implies -sat. -memory plays with allocation accounting (see
+ * CSPPlayer.setAllocationAccounting), the summary then gives a memory profile per
+ * game for choosing the heap of a process running many sessions.
+ */
+public class BatchRunner {
+	private static final int CACHE_CAPACITY = 1 << 16;
+
+	private BoardCorpus corpus;
+	private long seed;
+	private KnowledgeCache knowledgeCache = new KnowledgeCache(CACHE_CAPACITY);
+	private int numRows = 5;
+	private int numCols = 5;
+	private int numStudents = 5;
+	private StudentWorldConstraintSolver.Backend backend = StudentWorldConstraintSolver.Backend.CHOCO;
+	private boolean sparse;
+	private boolean allocationAccounting;
+
+	public BatchRunner(BoardCorpus corpus, long seed) {
+		this.corpus = corpus;
+		this.seed = seed;
+		if(corpus != null) {
+			this.numRows = corpus.getNumRows();
+			this.numCols = corpus.getNumCols();
+			this.numStudents = corpus.getNumStudents();
+		}
+	}
+
+	// size of generated boards, ignored when playing from a corpus
+	public void setBoardSize(int numRows, int numCols, int numStudents) {
+		if(corpus == null) {
+			this.numRows = numRows;
+			this.numCols = numCols;
+			this.numStudents = numStudents;
+		}
+	}
+
+	public void setBackend(StudentWorldConstraintSolver.Backend backend) {
+		this.backend = backend;
+	}
+
+	// generated boards are SparseStudentWorldBoards, ignored when playing from a corpus
+	public void setSparse(boolean sparse) {
+		this.sparse = sparse;
+	}
+
+	// players count what they allocate per turn and phase, see CSPPlayer.setAllocationAccounting
+	public void setAllocationAccounting(boolean allocationAccounting) {
+		this.allocationAccounting = allocationAccounting;
+	}
+
+	// a game thread failing, e.g. because the sink couldn't store a result, fails the run once the other threads are done
+	public void run(final long numGames, int numThreads, final GameResultSink sink) throws InterruptedException {
+		final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for(int i=0; i<numThreads; i++) {
+			final long first = numGames * i / numThreads;
+			final long last = numGames * (i+1) / numThreads;
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						playGames(first, last, sink);
+					} catch (RuntimeException e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			}, "batch-" + i);
+			threads.add(thread);
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		if(failure.get() != null) {
+			throw failure.get();
+		}
+	}
+
+	private void playGames(long first, long last, GameResultSink sink) {
+		SilentDisplay display = new SilentDisplay();
+		GameResultCollector collector = new GameResultCollector(sink);
+		BoardView view = corpus != null ? corpus.view() : null;
+		StudentWorldBoard board;
+
+		for(long i=first; i<last; i++) {
+			if(view != null) {
+				board = view.moveTo(i % corpus.getNumBoards()).toBoard();
+			} else if(sparse) {
+				board = new SparseStudentWorldBoard(numRows, numCols, numStudents, Zobrist.mix(seed + i));
+				board.initializeBoard();
+			} else {
+				board = new StudentWorldBoard(numRows, numCols, numStudents, Zobrist.mix(seed + i));
+				board.initializeBoard();
+			}
+			StudentWorld game = new StudentWorld(display, board);
+			CSPPlayer player = new CSPPlayer(MoveAction.getAllActions(), display, board.getPlayerCell(), knowledgeCache, backend, numRows, numCols);
+			player.setPrintSolverVariables(false);
+			player.setAllocationAccounting(allocationAccounting);
+			game.addListener(collector);
+			game.play(player);
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length == 2 && "-summary".equals(args[0])) {
+			ColumnarResultReader reader = new ColumnarResultReader(new File(args[1]));
+			try {
+				System.out.println(reader.summarize());
+			} finally {
+				reader.close();
+			}
+			return;
+		}
+		if(args.length < 2) {
+			System.out.println("Usage: BatchRunner <results file> <number of games> [-corpus <file>] [-threads <n>] [-seed <seed>]");
+			System.out.println("                   [-size <rows> <cols> <students>] [-sat] [-sparse] [-memory]");
+			System.out.println("       BatchRunner -summary <results file>");
+			return;
+		}
+		long numGames = Long.parseLong(args[1]);
+		BoardCorpus corpus = null;
+		int numThreads = 1;
+		long seed = 0;
+		int[] size = null;
+		boolean sat = false;
+		boolean sparse = false;
+		boolean memory = false;
+		for(int i=2; i<args.length; i++) {
+			if("-sat".equals(args[i])) {
+				sat = true;
+			} else if("-sparse".equals(args[i])) {
+				sparse = true;
+				sat = true;
+			} else if("-memory".equals(args[i])) {
+				memory = true;
+			} else if(i == args.length-1) {
+				break;
+			} else if("-size".equals(args[i]) && i+3 < args.length) {
+				size = new int[] {Integer.parseInt(args[i+1]), Integer.parseInt(args[i+2]), Integer.parseInt(args[i+3])};
+				i += 3;
+			} else if("-corpus".equals(args[i])) {
+				corpus = BoardCorpus.load(new File(args[++i]));
+			} else if("-threads".equals(args[i])) {
+				numThreads = Integer.parseInt(args[++i]);
+			} else if("-seed".equals(args[i])) {
+				seed = Long.parseLong(args[++i]);
+			}
+		}
+
+		long start = System.currentTimeMillis();
+		final ResultSummary summary = new ResultSummary();
+		final ColumnarResultWriter writer = new ColumnarResultWriter(new File(args[0]));
+		try {
+			BatchRunner runner = new BatchRunner(corpus, seed);
+			if(size != null) {
+				runner.setBoardSize(size[0], size[1], size[2]);
+			}
+			if(sat) {
+				runner.setBackend(StudentWorldConstraintSolver.Backend.SAT);
+			}
+			runner.setSparse(sparse);
+			runner.setAllocationAccounting(memory);
+			if(memory && !AllocationProfile.isSupported()) {
+				System.out.println("this JVM doesn't count allocations per thread, -memory is ignored");
+			}
+			runner.run(numGames, numThreads, new GameResultSink() {
+				@Override
+				public void add(GameResult result) {
+					writer.add(result);
+					synchronized(summary) {
+						summary.add(result);
+					}
+				}
+			});
+		} finally {
+			writer.close();
+		}
+		System.out.println(summary + " in " + (System.currentTimeMillis() - start) + " ms");
+	}
+}
@@ -0,0 +1,177 @@
+package studentworld.batch;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import studentworld.trace.AllocationProfile;
+import studentworld.trace.VarInt;
+
+/*
+ * Reads a file written by ColumnarResultWriter one block at a time. Columns a
+ * pass doesn't need are skipped without being inflated.
+ */
+public class ColumnarResultReader implements Closeable {
+	private FileChannel channel;
+	private Inflater inflater;
+	private ByteBuffer[] columns;
+	private ByteBuffer header;
+	// columns stored per block, fewer in files from before the memory columns
+	private int numColumns;
+
+	public ColumnarResultReader(File file) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.inflater = new Inflater();
+		this.columns = new ByteBuffer[ColumnarResultWriter.NUM_COLUMNS];
+		this.header = ByteBuffer.allocate(8);
+		readFully(header, 8);
+		if(header.getInt(0) != ColumnarResultWriter.MAGIC || header.getInt(4) < 1 || header.getInt(4) > ColumnarResultWriter.VERSION) {
+			throw new IOException("not a StudentWorld result file");
+		}
+		this.numColumns = header.getInt(4) == 1 ? ColumnarResultWriter.NUM_VERSION_1_COLUMNS : ColumnarResultWriter.NUM_COLUMNS;
+	}
+
+	// pushes every stored result to sink, in the order they were added
+	public void read(GameResultSink sink) throws IOException {
+		boolean[] wanted = new boolean[ColumnarResultWriter.NUM_COLUMNS];
+		Arrays.fill(wanted, true);
+		int numResults;
+		rewind();
+		while((numResults = nextBlock(wanted)) > 0) {
+			for(int i=0; i<numResults; i++) {
+				sink.add(new GameResult(
+						columns[ColumnarResultWriter.COLUMN_SEED].getLong(),
+						(int) VarInt.getUnsigned(columns[ColumnarResultWriter.COLUMN_ROWS]),
+						(int) VarInt.getUnsigned(columns[ColumnarResultWriter.COLUMN_COLS]),
+						columns[ColumnarResultWriter.COLUMN_WON].get() != 0,
+						(int) VarInt.getUnsigned(columns[ColumnarResultWriter.COLUMN_ACTIONS]),
+						VarInt.getUnsigned(columns[ColumnarResultWriter.COLUMN_SOLVER_NANOS]),
+						(int) VarInt.getUnsigned(columns[ColumnarResultWriter.COLUMN_RISKY_MOVES]),
+						getAllocatedBytes(),
+						getUnsigned(ColumnarResultWriter.COLUMN_MAX_TURN_ALLOCATED),
+						getPeakModelBytes()));
+			}
+		}
+	}
+
+	// aggregates over all results, reading only the outcome columns
+	public ResultSummary summarize() throws IOException {
+		ResultSummary summary = new ResultSummary();
+		boolean[] wanted = new boolean[ColumnarResultWriter.NUM_COLUMNS];
+		wanted[ColumnarResultWriter.COLUMN_WON] = true;
+		wanted[ColumnarResultWriter.COLUMN_ACTIONS] = true;
+		wanted[ColumnarResultWriter.COLUMN_SOLVER_NANOS] = true;
+		wanted[ColumnarResultWriter.COLUMN_RISKY_MOVES] = true;
+		for(int i=ColumnarResultWriter.COLUMN_ALLOCATED; i<ColumnarResultWriter.NUM_COLUMNS; i++) {
+			wanted[i] = true;
+		}
+		int numResults;
+		rewind();
+		while((numResults = nextBlock(wanted)) > 0) {
+			for(int i=0; i<numResults; i++) {
+				long numActions = VarInt.getUnsigned(columns[ColumnarResultWriter.COLUMN_ACTIONS]);
+				summary.add(columns[ColumnarResultWriter.COLUMN_WON].get() != 0, numActions,
+						VarInt.getUnsigned(columns[ColumnarResultWriter.COLUMN_SOLVER_NANOS]),
+						VarInt.getUnsigned(columns[ColumnarResultWriter.COLUMN_RISKY_MOVES]));
+				long[] allocatedBytes = getAllocatedBytes();
+				long maxTurnAllocatedBytes = getUnsigned(ColumnarResultWriter.COLUMN_MAX_TURN_ALLOCATED);
+				long peakModelBytes = getPeakModelBytes();
+				//games played without allocation accounting have nothing allocated
+				if(maxTurnAllocatedBytes > 0) {
+					summary.addAllocations(allocatedBytes, numActions, maxTurnAllocatedBytes, peakModelBytes);
+				}
+			}
+		}
+		return summary;
+	}
+
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+		channel.close();
+	}
+
+	// the next value of a varint column, 0 for a column the file doesn't have
+	private long getUnsigned(int column) {
+		return column < numColumns ? VarInt.getUnsigned(columns[column]) : 0;
+	}
+
+	// -1 for a footprint that isn't known, stored as 0
+	private long getPeakModelBytes() {
+		long peakModelBytes = getUnsigned(ColumnarResultWriter.COLUMN_PEAK_MODEL);
+		return peakModelBytes > 0 ? peakModelBytes : -1;
+	}
+
+	private long[] getAllocatedBytes() {
+		long[] allocatedBytes = new long[AllocationProfile.Phase.values().length];
+		for(int i=0; i<allocatedBytes.length; i++) {
+			allocatedBytes[i] = getUnsigned(ColumnarResultWriter.COLUMN_ALLOCATED + i);
+		}
+		return allocatedBytes;
+	}
+
+	private void rewind() throws IOException {
+		channel.position(8);
+	}
+
+	// loads the wanted columns of the next block, returns its number of results or 0 at the end
+	private int nextBlock(boolean[] wanted) throws IOException {
+		if(channel.position() >= channel.size()) {
+			return 0;
+		}
+		readFully(header, 4);
+		int numResults = header.getInt(0);
+		for(int i=0; i<numColumns; i++) {
+			readFully(header, 8);
+			int rawLength = header.getInt(0);
+			int compressedLength = header.getInt(4);
+			if(!wanted[i]) {
+				channel.position(channel.position() + compressedLength);
+				continue;
+			}
+			ByteBuffer compressed = ByteBuffer.allocate(compressedLength);
+			readFully(compressed, compressedLength);
+			if(columns[i] == null || columns[i].capacity() < rawLength) {
+				columns[i] = ByteBuffer.allocate(rawLength);
+			}
+			columns[i].clear();
+			inflater.setInput(compressed.array(), 0, compressedLength);
+			try {
+				int inflated = 0;
+				while(inflated < rawLength && !inflater.finished()) {
+					int n = inflater.inflate(columns[i].array(), inflated, rawLength - inflated);
+					if(n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						break;
+					}
+					inflated += n;
+				}
+				if(inflated != rawLength) {
+					throw new IOException("corrupt result block");
+				}
+			} catch (DataFormatException e) {
+				throw new IOException("corrupt result block", e);
+			}
+			inflater.reset();
+			columns[i].limit(rawLength);
+		}
+		return numResults;
+	}
+
+	private void readFully(ByteBuffer buffer, int length) throws IOException {
+		buffer.clear();
+		buffer.limit(length);
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer) < 0) {
+				throw new EOFException("truncated result file");
+			}
+		}
+		buffer.flip();
+	}
+}
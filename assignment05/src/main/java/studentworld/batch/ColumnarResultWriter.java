@@ -0,0 +1,181 @@
+package studentworld.batch;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+
+import studentworld.trace.AllocationProfile;
+import studentworld.trace.VarInt;
+
+/*
+ * Streams game results to a file in compressed blocks, one column after the other
+ * within each block, so memory stays at one block however many games are played
+ * and a reader only inflates the columns it needs.
+ *
+ * Layout: MAGIC and VERSION, then blocks of
+ *   number of results (int)
+ *   per column: raw length (int), compressed length (int), deflated column bytes
+ * Seeds are stored as 8 byte longs, won as one byte, the other columns as varints.
+ * Version 2 added the memory columns, bytes allocated per AllocationProfile.Phase,
+ * the most allocated in a turn and the solver model's peak footprint, all 0 for games
+ * played without allocation accounting. A peak footprint that isn't known is stored
+ * as 0 too, a known one never is. Version 1 files are still read.
+ */
+public class ColumnarResultWriter implements GameResultSink, Closeable {
+	static final int MAGIC = 0x53574752; // "SWGR"
+	static final int VERSION = 2;
+	static final int COLUMN_SEED = 0;
+	static final int COLUMN_ROWS = 1;
+	static final int COLUMN_COLS = 2;
+	static final int COLUMN_WON = 3;
+	static final int COLUMN_ACTIONS = 4;
+	static final int COLUMN_SOLVER_NANOS = 5;
+	static final int COLUMN_RISKY_MOVES = 6;
+	static final int NUM_VERSION_1_COLUMNS = 7;
+	// one column per AllocationProfile.Phase, in ordinal order
+	static final int COLUMN_ALLOCATED = 7;
+	static final int COLUMN_MAX_TURN_ALLOCATED = 12;
+	static final int COLUMN_PEAK_MODEL = 13;
+	static final int NUM_COLUMNS = 14;
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+
+	private FileChannel channel;
+	private int blockSize;
+	private ByteBuffer[] columns;
+	private int numBuffered;
+	private long numWritten;
+	private Deflater deflater;
+	private byte[] compressed;
+	// set once a block couldn't be written, the file is incomplete from then on
+	private IOException failure;
+
+	public ColumnarResultWriter(File file) throws IOException {
+		this(file, DEFAULT_BLOCK_SIZE);
+	}
+
+	public ColumnarResultWriter(File file, int blockSize) throws IOException {
+		this(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), blockSize);
+	}
+
+	// writes to an open channel, which the writer closes
+	ColumnarResultWriter(FileChannel channel, int blockSize) throws IOException {
+		this.channel = channel;
+		this.blockSize = blockSize;
+		this.columns = new ByteBuffer[NUM_COLUMNS];
+		for(int i=0; i<NUM_COLUMNS; i++) {
+			columns[i] = ByteBuffer.allocate(blockSize * (i == COLUMN_WON ? 1 : i == COLUMN_SEED ? 8 : VarInt.MAX_LONG_BYTES));
+		}
+		this.deflater = new Deflater(Deflater.BEST_SPEED);
+		this.compressed = new byte[columns[COLUMN_SOLVER_NANOS].capacity() + 64];
+
+		ByteBuffer header = ByteBuffer.allocate(8);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.flip();
+		write(header);
+	}
+
+	/*
+	 * Safe to call from several game threads. Throws IllegalStateException if the
+	 * block the result completes can't be written, and on every call after that: the
+	 * file then ends in a partial block and no more results can go into it.
+	 */
+	@Override
+	public synchronized void add(GameResult result) {
+		if(failure != null) {
+			throw new IllegalStateException("result file is incomplete, an earlier block couldn't be written", failure);
+		}
+		columns[COLUMN_SEED].putLong(result.getSeed());
+		VarInt.putUnsigned(columns[COLUMN_ROWS], result.getNumRows());
+		VarInt.putUnsigned(columns[COLUMN_COLS], result.getNumCols());
+		columns[COLUMN_WON].put(result.isWon() ? (byte) 1 : 0);
+		VarInt.putUnsigned(columns[COLUMN_ACTIONS], result.getNumActions());
+		VarInt.putUnsigned(columns[COLUMN_SOLVER_NANOS], Math.max(0, result.getSolverNanos()));
+		VarInt.putUnsigned(columns[COLUMN_RISKY_MOVES], result.getNumRiskyMoves());
+		for(AllocationProfile.Phase phase : AllocationProfile.Phase.values()) {
+			VarInt.putUnsigned(columns[COLUMN_ALLOCATED + phase.ordinal()], Math.max(0, result.getAllocatedBytes(phase)));
+		}
+		VarInt.putUnsigned(columns[COLUMN_MAX_TURN_ALLOCATED], Math.max(0, result.getMaxTurnAllocatedBytes()));
+		VarInt.putUnsigned(columns[COLUMN_PEAK_MODEL], Math.max(0, result.getPeakModelBytes()));
+		numBuffered++;
+		if(numBuffered == blockSize) {
+			try {
+				writeBlock();
+			} catch (IOException e) {
+				failure = e;
+				discardBlock();
+				throw new IllegalStateException("writing a result block failed", e);
+			}
+		}
+	}
+
+	public synchronized long getNumResults() {
+		return numWritten + numBuffered;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			if(failure != null) {
+				throw new IOException("result file is incomplete, a block couldn't be written", failure);
+			}
+			writeBlock();
+		} finally {
+			channel.close();
+			deflater.end();
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		if(numBuffered == 0) {
+			return;
+		}
+		ByteBuffer header = ByteBuffer.allocate(4);
+		header.putInt(numBuffered);
+		header.flip();
+		write(header);
+
+		for(ByteBuffer column : columns) {
+			deflater.setInput(column.array(), 0, column.position());
+			deflater.finish();
+			int compressedLength = 0;
+			while(!deflater.finished()) {
+				if(compressedLength == compressed.length) {
+					byte[] larger = new byte[compressed.length * 2];
+					System.arraycopy(compressed, 0, larger, 0, compressedLength);
+					compressed = larger;
+				}
+				compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+			}
+			deflater.reset();
+
+			ByteBuffer lengths = ByteBuffer.allocate(8);
+			lengths.putInt(column.position());
+			lengths.putInt(compressedLength);
+			lengths.flip();
+			write(lengths);
+			write(ByteBuffer.wrap(compressed, 0, compressedLength));
+			column.clear();
+		}
+		numWritten += numBuffered;
+		numBuffered = 0;
+	}
+
+	private void discardBlock() {
+		for(ByteBuffer column : columns) {
+			column.clear();
+		}
+		deflater.reset();
+		numBuffered = 0;
+	}
+
+	private void write(ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
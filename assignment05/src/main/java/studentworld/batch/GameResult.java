@@ -0,0 +1,109 @@
+package studentworld.batch;
+
+import studentworld.trace.AllocationProfile;
+
+/*
+ * Outcome of one game as stored by a GameResultSink.
+ */
+public class GameResult {
+	private static final int NUM_PHASES = AllocationProfile.Phase.values().length;
+
+	private long seed;
+	private int numRows;
+	private int numCols;
+	private boolean won;
+	private int numActions;
+	private long solverNanos;
+	private int numRiskyMoves;
+	private long[] allocatedBytes;
+	private long maxTurnAllocatedBytes;
+	private long peakModelBytes;
+
+	public GameResult(long seed, int numRows, int numCols, boolean won, int numActions, long solverNanos, int numRiskyMoves) {
+		this(seed, numRows, numCols, won, numActions, solverNanos, numRiskyMoves, null, 0, -1);
+	}
+
+	// allocatedBytes by AllocationProfile.Phase ordinal, null and 0s for a game played without allocation accounting;
+	// peakModelBytes is -1 if the footprint isn't known
+	public GameResult(long seed, int numRows, int numCols, boolean won, int numActions, long solverNanos, int numRiskyMoves,
+			long[] allocatedBytes, long maxTurnAllocatedBytes, long peakModelBytes) {
+		this.seed = seed;
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.won = won;
+		this.numActions = numActions;
+		this.solverNanos = solverNanos;
+		this.numRiskyMoves = numRiskyMoves;
+		this.allocatedBytes = allocatedBytes == null ? new long[NUM_PHASES] : allocatedBytes.clone();
+		this.maxTurnAllocatedBytes = maxTurnAllocatedBytes;
+		this.peakModelBytes = peakModelBytes;
+	}
+
+	public long getSeed() {
+		return this.seed;
+	}
+
+	public int getNumRows() {
+		return this.numRows;
+	}
+
+	public int getNumCols() {
+		return this.numCols;
+	}
+
+	public boolean isWon() {
+		return this.won;
+	}
+
+	public int getNumActions() {
+		return this.numActions;
+	}
+
+	// total time the player spent deciding on moves
+	public long getSolverNanos() {
+		return this.solverNanos;
+	}
+
+	// moves onto a cell that wasn't known to be safe
+	public int getNumRiskyMoves() {
+		return this.numRiskyMoves;
+	}
+
+	// true if the game was played with allocation accounting, see CSPPlayer.setAllocationAccounting
+	public boolean isAccounted() {
+		return getAllocatedBytes() > 0;
+	}
+
+	// bytes the player allocated on the game's thread, 0 without allocation accounting
+	public long getAllocatedBytes() {
+		long total = 0;
+		for(long bytes : allocatedBytes) {
+			total += bytes;
+		}
+		return total;
+	}
+
+	public long getAllocatedBytes(AllocationProfile.Phase phase) {
+		return allocatedBytes[phase.ordinal()];
+	}
+
+	public long getMaxTurnAllocatedBytes() {
+		return this.maxTurnAllocatedBytes;
+	}
+
+	// largest solver model footprint after a turn, -1 if it wasn't known
+	public long getPeakModelBytes() {
+		return this.peakModelBytes;
+	}
+
+	@Override
+	public String toString() {
+		String memory = "";
+		if(isAccounted()) {
+			memory = ", " + getAllocatedBytes() / 1024 + " KB allocated (max " + maxTurnAllocatedBytes / 1024
+					+ " KB in a turn), model peak " + (peakModelBytes < 0 ? "unknown" : peakModelBytes / 1024 + " KB");
+		}
+		return "seed " + seed + " " + numRows + "x" + numCols + " " + (won ? "won" : "lost") + " in " + numActions
+				+ " actions, " + solverNanos / 1000 + " us, " + numRiskyMoves + " risky" + memory;
+	}
+}
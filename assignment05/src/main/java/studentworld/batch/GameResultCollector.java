@@ -0,0 +1,52 @@
+package studentworld.batch;
+
+import gridgames.data.action.Action;
+import gridgames.player.Player;
+import studentworld.StudentWorldListener;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.grid.StudentWorldCell;
+import studentworld.player.CSPPlayer;
+import studentworld.trace.AllocationProfile;
+
+/*
+ * Turns the events of StudentWorld.play into a GameResult per game and pushes it
+ * to a sink. One collector per game thread.
+ */
+public class GameResultCollector implements StudentWorldListener {
+	private GameResultSink sink;
+	private long solverNanos;
+
+	public GameResultCollector(GameResultSink sink) {
+		this.sink = sink;
+	}
+
+	@Override
+	public void gameStarted(StudentWorldBoard board, Player player) {
+		solverNanos = 0;
+	}
+
+	@Override
+	public void turnPlayed(StudentWorldCell cell, Action move, long decisionNanos) {
+		solverNanos += decisionNanos;
+	}
+
+	@Override
+	public void gameEnded(StudentWorldBoard board, Player player, boolean won) {
+		Player gamePlayer = player.getGamePlayer();
+		int numRiskyMoves = gamePlayer instanceof CSPPlayer ? ((CSPPlayer) gamePlayer).getNumRiskyMoves() : 0;
+		AllocationProfile profile = gamePlayer instanceof CSPPlayer ? ((CSPPlayer) gamePlayer).getAllocationProfile() : null;
+		long[] allocatedBytes = null;
+		long maxTurnAllocatedBytes = 0;
+		long peakModelBytes = -1;
+		if(profile != null) {
+			allocatedBytes = new long[AllocationProfile.Phase.values().length];
+			for(AllocationProfile.Phase phase : AllocationProfile.Phase.values()) {
+				allocatedBytes[phase.ordinal()] = profile.getAllocatedBytes(phase);
+			}
+			maxTurnAllocatedBytes = profile.getMaxTurnAllocatedBytes();
+			peakModelBytes = profile.getPeakModelBytes();
+		}
+		sink.add(new GameResult(board.getSeed(), board.getNumRows(), board.getNumCols(), won,
+				gamePlayer.getNumActionsExecuted(), solverNanos, numRiskyMoves, allocatedBytes, maxTurnAllocatedBytes, peakModelBytes));
+	}
+}
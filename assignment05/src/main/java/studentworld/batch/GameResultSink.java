@@ -0,0 +1,9 @@
+package studentworld.batch;
+
+/*
+ * Receives game results as they are produced, e.g. from a GameResultCollector.
+ */
+public interface GameResultSink {
+
+	void add(GameResult result);
+}
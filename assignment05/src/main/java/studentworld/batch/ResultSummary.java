@@ -0,0 +1,175 @@
+package studentworld.batch;
+
+import studentworld.trace.AllocationProfile;
+
+/*
+ * Running totals over game results, kept without holding on to the results. Games
+ * played with allocation accounting also add to a memory profile: what a game and a
+ * turn allocate, by phase, and how large the solver's model gets, over the games its
+ * size is known for.
+ */
+public class ResultSummary implements GameResultSink {
+	private long numGames;
+	private long numWins;
+	private long numActions;
+	private long solverNanos;
+	private long maxSolverNanos;
+	private long numRiskyMoves;
+	private long numRiskyLosses;
+	private long numAccountedGames;
+	private long numAccountedActions;
+	private long[] allocatedBytes = new long[AllocationProfile.Phase.values().length];
+	private long maxGameAllocatedBytes;
+	private long maxTurnAllocatedBytes;
+	private long numModelSizedGames;
+	private long peakModelBytes;
+	private long maxPeakModelBytes = -1;
+
+	@Override
+	public void add(GameResult result) {
+		add(result.isWon(), result.getNumActions(), result.getSolverNanos(), result.getNumRiskyMoves());
+		if(result.isAccounted()) {
+			long[] phaseBytes = new long[allocatedBytes.length];
+			for(AllocationProfile.Phase phase : AllocationProfile.Phase.values()) {
+				phaseBytes[phase.ordinal()] = result.getAllocatedBytes(phase);
+			}
+			addAllocations(phaseBytes, result.getNumActions(), result.getMaxTurnAllocatedBytes(), result.getPeakModelBytes());
+		}
+	}
+
+	public void add(boolean won, long numActions, long solverNanos, long numRiskyMoves) {
+		this.numGames++;
+		if(won) {
+			this.numWins++;
+		} else if(numRiskyMoves > 0) {
+			this.numRiskyLosses++;
+		}
+		this.numActions += numActions;
+		this.solverNanos += solverNanos;
+		this.maxSolverNanos = Math.max(this.maxSolverNanos, solverNanos);
+		this.numRiskyMoves += numRiskyMoves;
+	}
+
+	// memory profile of a game played with allocation accounting, phaseBytes by AllocationProfile.Phase ordinal,
+	// peakModelBytes -1 if the footprint isn't known
+	public void addAllocations(long[] phaseBytes, long numActions, long maxTurnAllocatedBytes, long peakModelBytes) {
+		long gameBytes = 0;
+		for(int i=0; i<allocatedBytes.length; i++) {
+			allocatedBytes[i] += phaseBytes[i];
+			gameBytes += phaseBytes[i];
+		}
+		this.numAccountedGames++;
+		this.numAccountedActions += numActions;
+		this.maxGameAllocatedBytes = Math.max(this.maxGameAllocatedBytes, gameBytes);
+		this.maxTurnAllocatedBytes = Math.max(this.maxTurnAllocatedBytes, maxTurnAllocatedBytes);
+		if(peakModelBytes >= 0) {
+			this.numModelSizedGames++;
+			this.peakModelBytes += peakModelBytes;
+			this.maxPeakModelBytes = Math.max(this.maxPeakModelBytes, peakModelBytes);
+		}
+	}
+
+	public long getNumGames() {
+		return this.numGames;
+	}
+
+	public long getNumWins() {
+		return this.numWins;
+	}
+
+	public double getWinRate() {
+		return numGames == 0 ? 0 : (double) numWins / numGames;
+	}
+
+	public double getMeanActions() {
+		return numGames == 0 ? 0 : (double) numActions / numGames;
+	}
+
+	public double getMeanSolverMillis() {
+		return numGames == 0 ? 0 : solverNanos / 1e6 / numGames;
+	}
+
+	public double getMaxSolverMillis() {
+		return maxSolverNanos / 1e6;
+	}
+
+	public double getMeanRiskyMoves() {
+		return numGames == 0 ? 0 : (double) numRiskyMoves / numGames;
+	}
+
+	// losses after at least one risky move, the rest were lost some other way (e.g. a bug)
+	public long getNumRiskyLosses() {
+		return this.numRiskyLosses;
+	}
+
+	// games played with allocation accounting, the memory figures are over these
+	public long getNumAccountedGames() {
+		return this.numAccountedGames;
+	}
+
+	public double getMeanAllocatedBytes() {
+		return numAccountedGames == 0 ? 0 : (double) getTotalAllocatedBytes() / numAccountedGames;
+	}
+
+	public double getMeanAllocatedBytes(AllocationProfile.Phase phase) {
+		return numAccountedGames == 0 ? 0 : (double) allocatedBytes[phase.ordinal()] / numAccountedGames;
+	}
+
+	public double getMeanTurnAllocatedBytes() {
+		return numAccountedActions == 0 ? 0 : (double) getTotalAllocatedBytes() / numAccountedActions;
+	}
+
+	public long getMaxGameAllocatedBytes() {
+		return this.maxGameAllocatedBytes;
+	}
+
+	public long getMaxTurnAllocatedBytes() {
+		return this.maxTurnAllocatedBytes;
+	}
+
+	// accounted games the solver's model footprint is known for, the model figures are over these
+	public long getNumModelSizedGames() {
+		return this.numModelSizedGames;
+	}
+
+	// -1 if no footprint was known
+	public double getMeanPeakModelBytes() {
+		return numModelSizedGames == 0 ? -1 : (double) peakModelBytes / numModelSizedGames;
+	}
+
+	// -1 if no footprint was known
+	public long getMaxPeakModelBytes() {
+		return this.maxPeakModelBytes;
+	}
+
+	private long getTotalAllocatedBytes() {
+		long total = 0;
+		for(long bytes : allocatedBytes) {
+			total += bytes;
+		}
+		return total;
+	}
+
+	@Override
+	public String toString() {
+		String memory = "";
+		if(numAccountedGames > 0) {
+			StringBuilder phases = new StringBuilder();
+			for(AllocationProfile.Phase phase : AllocationProfile.Phase.values()) {
+				phases.append(String.format("%s%s %.0f%%", phase.ordinal() == 0 ? "" : ", ", phase.name().toLowerCase(),
+						100 * getMeanAllocatedBytes(phase) / Math.max(1, getMeanAllocatedBytes())));
+			}
+			String model = "model peak unknown";
+			if(numModelSizedGames > 0) {
+				model = String.format("model peak %.1f KB (max %.1f KB) over %d games", getMeanPeakModelBytes() / 1024,
+						maxPeakModelBytes / 1024.0, numModelSizedGames);
+			}
+			memory = String.format("; %d games accounted, %.1f KB allocated per game (max %.1f KB), %.1f KB per turn (max %.1f KB), %s, %s",
+					numAccountedGames, getMeanAllocatedBytes() / 1024, maxGameAllocatedBytes / 1024.0, getMeanTurnAllocatedBytes() / 1024,
+					maxTurnAllocatedBytes / 1024.0, phases, model);
+		}
+		return String.format("%d games, %.2f%% won, %.2f actions, %.3f ms solver (max %.3f ms), %.3f risky moves per game, %d of %d losses after a risky move",
+				numGames, 100 * getWinRate(), getMeanActions(), getMeanSolverMillis(), getMaxSolverMillis(), getMeanRiskyMoves(),
+				numRiskyLosses, numGames - numWins) + memory;
+	}
+}
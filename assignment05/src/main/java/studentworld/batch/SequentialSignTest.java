@@ -0,0 +1,124 @@
+package studentworld.batch;
+
+/*
+ * Wald's sequential probability ratio test on paired outcomes that differ, e.g. games
+ * one strategy won and the other lost on the same board. Without a difference each
+ * such pair favors either side with probability 1/2; a difference worth detecting
+ * makes it 1/2 + delta for one of them. One SPRT is run for each side, each at level
+ * alpha / 2, so the test decides for a side once its log likelihood ratio crosses the
+ * upper bound, and for no difference once both have crossed the lower bound.
+ *
+ * Pairs that don't differ tell the sign test nothing, so two strategies that nearly
+ * always play the same would run to any maximum. With minDifferingShare > 0 another
+ * SPRT, on the share of pairs that differ at all, decides for no difference once
+ * that share is shown to be minDifferingShare / 4 rather than minDifferingShare;
+ * strategies apart on fewer boards than that are treated as the same.
+ */
+public class SequentialSignTest {
+	public enum Decision {
+		UNDECIDED,
+		FIRST_BETTER,
+		SECOND_BETTER,
+		NO_DIFFERENCE
+	}
+
+	private double upperBound;
+	private double lowerBound;
+	private double favoredStep;
+	private double disfavoredStep;
+	private double differingStep;
+	private double tieStep;
+	// log likelihood ratio of pairs differing minDifferingShare of the time rather than a quarter of it
+	private double differing;
+	private boolean differingOften;
+	private long numFirst;
+	private long numSecond;
+	private long numTies;
+	private Decision decision = Decision.UNDECIDED;
+
+	// alpha: chance of deciding for a side without a difference, beta: of missing a difference of delta
+	public SequentialSignTest(double alpha, double beta, double delta) {
+		this(alpha, beta, delta, 0);
+	}
+
+	public SequentialSignTest(double alpha, double beta, double delta, double minDifferingShare) {
+		if(delta <= 0 || delta >= 0.5) {
+			throw new IllegalArgumentException("delta must be in (0, 0.5)");
+		}
+		if(minDifferingShare < 0 || minDifferingShare >= 1) {
+			throw new IllegalArgumentException("minDifferingShare must be in [0, 1)");
+		}
+		this.upperBound = Math.log((1 - beta) / (alpha / 2));
+		this.lowerBound = Math.log(beta / (1 - alpha / 2));
+		this.favoredStep = Math.log((0.5 + delta) / 0.5);
+		this.disfavoredStep = Math.log((0.5 - delta) / 0.5);
+		this.differingOften = minDifferingShare == 0;
+		if(!differingOften) {
+			this.differingStep = Math.log(4);
+			this.tieStep = Math.log((1 - minDifferingShare) / (1 - minDifferingShare / 4));
+		}
+	}
+
+	// a pair that went the first side's way (true) or the second's; ignored once decided
+	public void add(boolean firstBetter) {
+		if(decision != Decision.UNDECIDED) {
+			return;
+		}
+		if(firstBetter) {
+			numFirst++;
+		} else {
+			numSecond++;
+		}
+		if(!differingOften) {
+			differing += differingStep;
+			differingOften = differing >= upperBound;
+		}
+		double first = numFirst * favoredStep + numSecond * disfavoredStep;
+		double second = numSecond * favoredStep + numFirst * disfavoredStep;
+		if(first >= upperBound) {
+			decision = Decision.FIRST_BETTER;
+		} else if(second >= upperBound) {
+			decision = Decision.SECOND_BETTER;
+		} else if(first <= lowerBound && second <= lowerBound) {
+			decision = Decision.NO_DIFFERENCE;
+		}
+	}
+
+	// a pair that went neither way, e.g. both strategies lost; ignored once decided
+	public void addTie() {
+		if(decision != Decision.UNDECIDED) {
+			return;
+		}
+		numTies++;
+		if(!differingOften) {
+			differing += tieStep;
+			if(differing <= lowerBound) {
+				decision = Decision.NO_DIFFERENCE;
+			}
+		}
+	}
+
+	public Decision getDecision() {
+		return this.decision;
+	}
+
+	public boolean isDecided() {
+		return decision != Decision.UNDECIDED;
+	}
+
+	public boolean isDifferent() {
+		return decision == Decision.FIRST_BETTER || decision == Decision.SECOND_BETTER;
+	}
+
+	public long getNumFirst() {
+		return this.numFirst;
+	}
+
+	public long getNumSecond() {
+		return this.numSecond;
+	}
+
+	public long getNumTies() {
+		return this.numTies;
+	}
+}
@@ -0,0 +1,15 @@
+package studentworld.batch;
+
+import gridgames.display.Display;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.player.StudentWorldPlayer;
+
+/*
+ * A way of playing for a Tournament: makes a fresh player for every game.
+ */
+public interface Strategy {
+
+	String getName();
+
+	StudentWorldPlayer newPlayer(StudentWorldBoard board, Display display);
+}
@@ -0,0 +1,274 @@
+package studentworld.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import gridgames.display.Display;
+import studentworld.StudentWorld;
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.display.SilentDisplay;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.knowledge.Zobrist;
+import studentworld.player.CSPPlayer;
+import studentworld.player.StudentWorldPlayer;
+
+/*
+ * Plays two strategies against each other on the same boards: pair i is one game of
+ * each on the board generated from seed + i, as in BatchRunner. Pairs are played in
+ * parallel but fed to the tests in order, so the outcome of a run is the same for any
+ * number of threads. One SequentialSignTest on the pairs' outcomes decides when to
+ * stop: a game won beats a game lost, and of two games won the one in fewer moves is
+ * better; pairs both lost or both won in as many moves are ties. A single test keeps
+ * the chance of a false difference at alpha, and a loss counts against a strategy
+ * instead of dropping the pair from the move comparison. The run stops once the test
+ * decides, ties included (see SequentialSignTest), or after the maximum number of
+ * pairs, and stops far earlier than a fixed-size run whenever the strategies are
+ * clearly apart or clearly alike.
+ *
+ * Usage: Tournament <strategy> <strategy> [-size <rows> <cols> <students>] [-threads <n>]
+ *                   [-seed <seed>] [-max <pairs>] [-delta <d>]
+ * with strategies choco, sat, sat:<turn budget millis> or lookahead:<depth>.
+ */
+public class Tournament {
+	private static final double ALPHA = 0.05;
+	private static final double BETA = 0.1;
+	// strategies whose games differ on fewer boards than this are treated as the same
+	private static final double MIN_DIFFERING_SHARE = 0.02;
+
+	private Strategy first;
+	private Strategy second;
+	private int numRows = 5;
+	private int numCols = 5;
+	private int numStudents = 5;
+	private long seed;
+	private double delta = 0.1;
+
+	public Tournament(Strategy first, Strategy second, long seed) {
+		this.first = first;
+		this.second = second;
+		this.seed = seed;
+	}
+
+	public void setBoardSize(int numRows, int numCols, int numStudents) {
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.numStudents = numStudents;
+	}
+
+	// the smallest difference worth detecting, as the share of differing pairs above 1/2 it takes
+	public void setDelta(double delta) {
+		this.delta = delta;
+	}
+
+	public Result run(final long maxPairs, int numThreads) throws InterruptedException {
+		final Result result = new Result(first.getName(), second.getName(),
+				new SequentialSignTest(ALPHA, BETA, delta, MIN_DIFFERING_SHARE));
+		final AtomicLong nextPair = new AtomicLong();
+		List<Thread> threads = new ArrayList<Thread>();
+		for(int i=0; i<numThreads; i++) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					SilentDisplay display = new SilentDisplay();
+					long pair;
+					while(!result.isDone() && (pair = nextPair.getAndIncrement()) < maxPairs) {
+						Game firstGame = play(first, pair, display);
+						Game secondGame = play(second, pair, display);
+						result.add(pair, firstGame, secondGame);
+					}
+				}
+			}, "tournament-" + i);
+			threads.add(thread);
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		return result;
+	}
+
+	private Game play(Strategy strategy, long pair, Display display) {
+		StudentWorldBoard board = new StudentWorldBoard(numRows, numCols, numStudents, Zobrist.mix(seed + pair));
+		board.initializeBoard();
+		StudentWorldPlayer player = strategy.newPlayer(board, display);
+		new StudentWorld(display, board).play(player);
+		return new Game(board.didWin(), player.getNumActionsExecuted());
+	}
+
+	private static class Game {
+		private boolean won;
+		private int numActions;
+
+		Game(boolean won, int numActions) {
+			this.won = won;
+			this.numActions = numActions;
+		}
+	}
+
+	/*
+	 * What the pairs fed to the tests so far add up to. Pairs finished out of order wait
+	 * until the ones before them are in.
+	 */
+	public static class Result {
+		private String firstName;
+		private String secondName;
+		private SequentialSignTest outcomes;
+		private List<Game[]> waiting = new ArrayList<Game[]>();
+		private long numPairs;
+		private long firstWins;
+		private long secondWins;
+		private long firstMoves;
+		private long secondMoves;
+		private long numBothWon;
+		private volatile boolean done;
+
+		Result(String firstName, String secondName, SequentialSignTest outcomes) {
+			this.firstName = firstName;
+			this.secondName = secondName;
+			this.outcomes = outcomes;
+		}
+
+		synchronized void add(long pair, Game first, Game second) {
+			int offset = (int) (pair - numPairs);
+			while(waiting.size() <= offset) {
+				waiting.add(null);
+			}
+			waiting.set(offset, new Game[] {first, second});
+			while(!done && !waiting.isEmpty() && waiting.get(0) != null) {
+				Game[] next = waiting.remove(0);
+				test(next[0], next[1]);
+			}
+		}
+
+		private void test(Game first, Game second) {
+			numPairs++;
+			firstWins += first.won ? 1 : 0;
+			secondWins += second.won ? 1 : 0;
+			if(first.won && second.won) {
+				numBothWon++;
+				firstMoves += first.numActions;
+				secondMoves += second.numActions;
+			}
+			if(first.won != second.won) {
+				outcomes.add(first.won);
+			} else if(first.won && first.numActions != second.numActions) {
+				outcomes.add(first.numActions < second.numActions);
+			} else {
+				outcomes.addTie();
+			}
+			done = outcomes.isDecided();
+		}
+
+		public boolean isDone() {
+			return this.done;
+		}
+
+		public synchronized long getNumPairs() {
+			return this.numPairs;
+		}
+
+		public synchronized long getFirstWins() {
+			return this.firstWins;
+		}
+
+		public synchronized long getSecondWins() {
+			return this.secondWins;
+		}
+
+		public SequentialSignTest.Decision getDecision() {
+			return outcomes.getDecision();
+		}
+
+		@Override
+		public synchronized String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(numPairs).append(" pairs: ");
+			sb.append(firstName).append(" won ").append(firstWins).append(", ");
+			sb.append(secondName).append(" won ").append(secondWins);
+			if(numBothWon > 0) {
+				sb.append(String.format(", moves when both won %.2f vs %.2f", (double) firstMoves / numBothWon, (double) secondMoves / numBothWon));
+			}
+			sb.append(", better outcome ").append(outcomes.getNumFirst()).append(" vs ").append(outcomes.getNumSecond());
+			sb.append(" (").append(describe(outcomes.getDecision())).append(")");
+			return sb.toString();
+		}
+
+		private String describe(SequentialSignTest.Decision decision) {
+			switch(decision) {
+			case FIRST_BETTER:
+				return firstName + " better";
+			case SECOND_BETTER:
+				return secondName + " better";
+			case NO_DIFFERENCE:
+				return "no difference";
+			default:
+				return "undecided";
+			}
+		}
+	}
+
+	// the strategies main() knows by name
+	public static Strategy parseStrategy(final String name, final int numRows, final int numCols) {
+		final String[] parts = name.split(":");
+		if(!"choco".equals(parts[0]) && !"sat".equals(parts[0]) && !"lookahead".equals(parts[0])) {
+			throw new IllegalArgumentException("unknown strategy " + name);
+		}
+		return new Strategy() {
+			@Override
+			public String getName() {
+				return name;
+			}
+
+			@Override
+			public StudentWorldPlayer newPlayer(StudentWorldBoard board, Display display) {
+				StudentWorldConstraintSolver.Backend backend = "choco".equals(parts[0])
+						? StudentWorldConstraintSolver.Backend.CHOCO : StudentWorldConstraintSolver.Backend.SAT;
+				CSPPlayer player = new CSPPlayer(gridgames.data.action.MoveAction.getAllActions(), display, board.getPlayerCell(),
+						null, backend, numRows, numCols);
+				player.setPrintSolverVariables(false);
+				if("sat".equals(parts[0]) && parts.length > 1) {
+					player.setTurnBudget(Long.parseLong(parts[1]));
+				} else if("lookahead".equals(parts[0])) {
+					player.setTurnBudget(200);
+					player.setLookahead(parts.length > 1 ? Integer.parseInt(parts[1]) : 2, (double) board.getNumStudents() / (numRows * numCols), 1);
+				}
+				return player;
+			}
+		};
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		if(args.length < 2) {
+			System.out.println("Usage: Tournament <strategy> <strategy> [-size <rows> <cols> <students>] [-threads <n>]");
+			System.out.println("                  [-seed <seed>] [-max <pairs>] [-delta <d>]");
+			System.out.println("       strategies: choco, sat, sat:<turn budget millis>, lookahead:<depth>");
+			return;
+		}
+		int[] size = {5, 5, 5};
+		int numThreads = 1;
+		long seed = 0;
+		long maxPairs = 100000;
+		double delta = 0.1;
+		for(int i=2; i<args.length-1; i++) {
+			if("-size".equals(args[i]) && i+3 < args.length) {
+				size = new int[] {Integer.parseInt(args[i+1]), Integer.parseInt(args[i+2]), Integer.parseInt(args[i+3])};
+				i += 3;
+			} else if("-threads".equals(args[i])) {
+				numThreads = Integer.parseInt(args[++i]);
+			} else if("-seed".equals(args[i])) {
+				seed = Long.parseLong(args[++i]);
+			} else if("-max".equals(args[i])) {
+				maxPairs = Long.parseLong(args[++i]);
+			} else if("-delta".equals(args[i])) {
+				delta = Double.parseDouble(args[++i]);
+			}
+		}
+		Tournament tournament = new Tournament(parseStrategy(args[0], size[0], size[1]), parseStrategy(args[1], size[0], size[1]), seed);
+		tournament.setBoardSize(size[0], size[1], size[2]);
+		tournament.setDelta(delta);
+		long start = System.currentTimeMillis();
+		Result result = tournament.run(maxPairs, numThreads);
+		System.out.println(result + " in " + (System.currentTimeMillis() - start) + " ms");
+	}
+}
@@ -0,0 +1,141 @@
+package studentworld.coop;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gridgames.data.action.Action;
+import gridgames.data.action.MoveAction;
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.data.StudentWorldItem;
+import studentworld.display.SilentDisplay;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.grid.StudentWorldCell;
+import studentworld.player.CSPPlayer;
+
+/*
+ * Several CSPPlayers exploring one board at the same time, each on its own thread,
+ * all feeding one SharedKnowledgeBase. StudentWorld.play and the board's movePlayer
+ * follow a single player, so agent positions are kept here instead and the board is
+ * only read. The team wins as soon as any agent reaches the door and loses once every
+ * agent is trapped by a student or has nothing left to explore.
+ *
+ * An agent without a target waits while another agent may still change that: an
+ * observation is on its way into the solver, another agent holds a claim, or either
+ * happened while it was looking. An agent that stops playing releases its claim.
+ */
+public class CooperativeStudentWorld {
+	private StudentWorldBoard board;
+	private StudentWorldConstraintSolver.Backend backend;
+	private SharedKnowledgeBase sharedKnowledge;
+	private volatile boolean won;
+	private int[] numMoves;
+	private boolean[] trapped;
+	private volatile RuntimeException failure;
+
+	public CooperativeStudentWorld(StudentWorldBoard board, StudentWorldConstraintSolver.Backend backend) {
+		this.board = board;
+		this.backend = backend;
+	}
+
+	// true if an agent got out; turnBudgetMillis as CSPPlayer.setTurnBudget
+	public boolean play(int numAgents, long turnBudgetMillis) throws InterruptedException {
+		sharedKnowledge = new SharedKnowledgeBase(backend, board.getNumRows(), board.getNumCols());
+		won = false;
+		numMoves = new int[numAgents];
+		trapped = new boolean[numAgents];
+		failure = null;
+		StudentWorldCell initialCell = (StudentWorldCell) board.getPlayerCell();
+		List<Thread> threads = new ArrayList<Thread>();
+		for(int i=0; i<numAgents; i++) {
+			final int agent = i;
+			final CSPPlayer player = new CSPPlayer(MoveAction.getAllActions(), new SilentDisplay(), initialCell, sharedKnowledge);
+			player.setTurnBudget(turnBudgetMillis);
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						playAgent(agent, player);
+					} catch (RuntimeException e) {
+						failure = e;
+					}
+				}
+			}, "agent-" + i);
+			threads.add(thread);
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		if(failure != null) {
+			throw failure;
+		}
+		return won;
+	}
+
+	private void playAgent(int agent, CSPPlayer player) {
+		try {
+			StudentWorldCell cell = (StudentWorldCell) player.getCell();
+			while(!won) {
+				player.setCell(cell);
+				int numChanges = sharedKnowledge.getNumChanges();
+				Action move = player.getActionIfAny();
+				if(move == null) {
+					// a claim taken and released while this agent looked may have been what stopped it
+					if(!sharedKnowledge.hasPendingObservations() && !sharedKnowledge.hasClaimsByOthers(player)
+							&& sharedKnowledge.getNumChanges() == numChanges) {
+						// every cell the team can reach is explored
+						return;
+					}
+					Thread.yield();
+					continue;
+				}
+				cell = getCellAfter(cell, (MoveAction) move);
+				numMoves[agent]++;
+				if(cell.contains(StudentWorldItem.STUDENT)) {
+					trapped[agent] = true;
+					return;
+				}
+				if(cell.contains(StudentWorldItem.DOOR)) {
+					won = true;
+				}
+			}
+		} finally {
+			player.releaseClaim();
+		}
+	}
+
+	// moves off the board leave the agent where it is, as movePlayer does
+	private StudentWorldCell getCellAfter(StudentWorldCell cell, MoveAction move) {
+		int row = cell.getRow();
+		int col = cell.getCol();
+		if(move == MoveAction.UP) {
+			row--;
+		} else if(move == MoveAction.DOWN) {
+			row++;
+		} else if(move == MoveAction.LEFT) {
+			col--;
+		} else {
+			col++;
+		}
+		if(row < 0 || row >= board.getNumRows() || col < 0 || col >= board.getNumCols()) {
+			return cell;
+		}
+		// a sparse board creates tiles on first access
+		synchronized(board) {
+			return (StudentWorldCell) board.getCell(row, col);
+		}
+	}
+
+	public SharedKnowledgeBase getSharedKnowledge() {
+		return this.sharedKnowledge;
+	}
+
+	// moves made by each agent in the last game
+	public int getNumMoves(int agent) {
+		return this.numMoves[agent];
+	}
+
+	public boolean isTrapped(int agent) {
+		return this.trapped[agent];
+	}
+}
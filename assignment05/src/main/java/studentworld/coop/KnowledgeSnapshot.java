@@ -0,0 +1,34 @@
+package studentworld.coop;
+
+import studentworld.knowledge.BoardKnowledge;
+
+/*
+ * What the shared solver knew after folding in the first getNumObservations()
+ * observations. A snapshot is published whole and never changed afterwards, so
+ * agents read it without taking the solver lock; it may lag behind cells other
+ * agents have visited since, which only ever makes it more cautious.
+ */
+public class KnowledgeSnapshot {
+	private int numObservations;
+	private BoardKnowledge knowledge;
+	private int[] fringeCells;
+
+	KnowledgeSnapshot(int numObservations, BoardKnowledge knowledge, int[] fringeCells) {
+		this.numObservations = numObservations;
+		this.knowledge = knowledge;
+		this.fringeCells = fringeCells;
+	}
+
+	public int getNumObservations() {
+		return this.numObservations;
+	}
+
+	// shared between agents, don't modify
+	public BoardKnowledge getKnowledge() {
+		return this.knowledge;
+	}
+
+	public int[] getFringeCells() {
+		return this.fringeCells;
+	}
+}
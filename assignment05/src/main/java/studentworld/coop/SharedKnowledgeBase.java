@@ -0,0 +1,211 @@
+package studentworld.coop;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.data.StudentWorldPercept;
+import studentworld.grid.StudentWorldCell;
+import studentworld.knowledge.BoardKnowledge;
+import studentworld.knowledge.KnowledgeDelta;
+
+/*
+ * One knowledge base fed by several agents exploring the same board. Agents post the
+ * cells they visit from their own threads with observe(), which only claims the
+ * cell's visited bit (a CAS on a bitset word) and queues the observation. The single
+ * solver behind it is driven by whichever agent calls refresh(): under the solver lock
+ * it drains the queue, solves, and publishes a KnowledgeSnapshot that the other agents
+ * read without locking.
+ *
+ * The unvisited safe cells and the door are kept from the solver's deltas in
+ * concurrent structures. Agents split the frontier with claim(): a claimed cell is
+ * left to its agent until it is visited or the claim is released.
+ */
+public class SharedKnowledgeBase {
+	private int numRows;
+	private int numCols;
+	private StudentWorldConstraintSolver solver;
+	private ReentrantLock solverLock = new ReentrantLock();
+	private ConcurrentLinkedQueue<StudentWorldCell> observations = new ConcurrentLinkedQueue<StudentWorldCell>();
+	// observations being posted or queued and not yet in the solver
+	private AtomicInteger numPending = new AtomicInteger();
+	// bumped by every new observation, claim and release, see getNumChanges()
+	private AtomicInteger numChanges = new AtomicInteger();
+	private AtomicLongArray visitedBits;
+	private Map<Integer, StudentWorldCell> visitedCells = new ConcurrentHashMap<Integer, StudentWorldCell>();
+	private Set<Integer> safeCells = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+	private ConcurrentHashMap<Integer, Object> claims = new ConcurrentHashMap<Integer, Object>();
+	private volatile KnowledgeSnapshot snapshot;
+	private volatile int doorCell = -1;
+	// guarded by solverLock
+	private int numObservations;
+	private boolean stale = true;
+
+	public SharedKnowledgeBase(StudentWorldConstraintSolver.Backend backend, int numRows, int numCols) {
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.visitedBits = new AtomicLongArray((numRows * numCols + 63) >>> 6);
+		this.solver = new StudentWorldConstraintSolver(null, null, backend, numRows, numCols);
+		this.solver.setPrintVariables(false);
+		this.solver.setProbing(true);
+	}
+
+	public int getNumRows() {
+		return this.numRows;
+	}
+
+	public int getNumCols() {
+		return this.numCols;
+	}
+
+	// false if another agent visited the cell first, then there's nothing new to post
+	public boolean observe(StudentWorldCell cell) {
+		int index = cell.getRow() * numCols + cell.getCol();
+		// counted before the cell shows as visited, so no agent sees the visit without the pending observation
+		numPending.incrementAndGet();
+		if(!markVisited(index)) {
+			numPending.decrementAndGet();
+			return false;
+		}
+		visitedCells.put(index, cell);
+		safeCells.remove(index);
+		claims.remove(index);
+		observations.add(cell);
+		numChanges.incrementAndGet();
+		return true;
+	}
+
+	// true if an observation is on its way into the solver, the next refresh() may know more
+	public boolean hasPendingObservations() {
+		return numPending.get() > 0;
+	}
+
+	// an agent that found nothing to do compares this before and after looking, to see if it missed a change
+	public int getNumChanges() {
+		return numChanges.get();
+	}
+
+	private boolean markVisited(int cell) {
+		int word = cell >>> 6;
+		long bit = 1L << cell;
+		long bits;
+		do {
+			bits = visitedBits.get(word);
+			if((bits & bit) != 0) {
+				return false;
+			}
+		} while(!visitedBits.compareAndSet(word, bits, bits | bit));
+		return true;
+	}
+
+	public boolean isVisited(int cell) {
+		return (visitedBits.get(cell >>> 6) & 1L << cell) != 0;
+	}
+
+	/*
+	 * Folds every queued observation into the solver and publishes the result, or
+	 * returns the current snapshot if nothing was observed since. Blocks while another
+	 * agent is solving; that agent's snapshot then usually covers this one's cells too.
+	 */
+	public KnowledgeSnapshot refresh(long deadlineNanos) {
+		solverLock.lock();
+		try {
+			// posted as one batch, the solver propagates once for all of them
+			int[] batch = new int[3 * 4];
+			int size = 0;
+			StudentWorldCell cell;
+			while((cell = observations.poll()) != null) {
+				if(size == batch.length) {
+					batch = Arrays.copyOf(batch, 2 * size);
+				}
+				batch[size++] = cell.getRow();
+				batch[size++] = cell.getCol();
+				batch[size++] = StudentWorldPercept.getSignature(cell.getPercepts());
+				numObservations++;
+				numPending.decrementAndGet();
+				stale = true;
+			}
+			solver.observeAll(Arrays.copyOf(batch, size));
+			if(stale) {
+				int numInterruptedTurns = solver.getNumInterruptedTurns();
+				BoardKnowledge knowledge = solver.getKnowledge(deadlineNanos);
+				applyDelta(solver.getLastDelta());
+				snapshot = new KnowledgeSnapshot(numObservations, knowledge, solver.getFringeCells());
+				// a solve cut short by the deadline is finished by the next refresh
+				stale = solver.getNumInterruptedTurns() != numInterruptedTurns;
+			}
+			return snapshot;
+		} finally {
+			solverLock.unlock();
+		}
+	}
+
+	private void applyDelta(KnowledgeDelta delta) {
+		for(int i=0; i<delta.size(); i++) {
+			int cell = delta.getCell(i);
+			if(delta.getDoor(i) == BoardKnowledge.TRUE) {
+				doorCell = cell;
+			}
+			if(delta.getStudent(i) == BoardKnowledge.FALSE && !isVisited(cell)) {
+				safeCells.add(cell);
+			}
+		}
+	}
+
+	// latest published snapshot, null before the first refresh()
+	public KnowledgeSnapshot getSnapshot() {
+		return this.snapshot;
+	}
+
+	// cells visited by any agent, by row * numCols + col
+	public Map<Integer, StudentWorldCell> getVisitedCells() {
+		return this.visitedCells;
+	}
+
+	// unvisited cells known to be safe; may briefly hold a cell another agent just visited
+	public Set<Integer> getSafeCells() {
+		return this.safeCells;
+	}
+
+	// cell index of the door once it's known, -1 before
+	public int getDoorCell() {
+		return this.doorCell;
+	}
+
+	// true if the cell is now the agent's to explore, false if another agent holds it
+	public boolean claim(int cell, Object agent) {
+		Object holder = claims.putIfAbsent(cell, agent);
+		if(holder == null) {
+			numChanges.incrementAndGet();
+		}
+		return holder == null || holder == agent;
+	}
+
+	public void release(int cell, Object agent) {
+		if(claims.remove(cell, agent)) {
+			numChanges.incrementAndGet();
+		}
+	}
+
+	// true if an agent other than this one is heading for a cell
+	public boolean hasClaimsByOthers(Object agent) {
+		for(Object holder : claims.values()) {
+			if(holder != agent) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean isClaimedByOther(int cell, Object agent) {
+		Object holder = claims.get(cell);
+		return holder != null && holder != agent;
+	}
+}
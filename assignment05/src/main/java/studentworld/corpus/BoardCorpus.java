@@ -0,0 +1,109 @@
+package studentworld.corpus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Read-only, memory-mapped view of a corpus written by BoardCorpusWriter. Boards
+ * are fixed-width records, so board i is found without an index and nothing is
+ * read until it is used. The mapping is shared: each worker thread takes its own
+ * BoardView from view() and moves it over the boards it was given.
+ *
+ * Layout: a HEADER_SIZE byte header followed by numBoards records of recordSize
+ * bytes, each holding the seed the board was generated from and its cells packed
+ * four to a byte (StudentWorldBoard.LAYOUT_* values, first cell in the low bits).
+ * Records are padded to a multiple of 8 bytes so the seeds stay aligned.
+ */
+public class BoardCorpus {
+	static final int MAGIC = 0x53574243; // "SWBC"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+
+	private ByteBuffer[] segments;
+	private int boardsPerSegment;
+	private int numRows;
+	private int numCols;
+	private int numStudents;
+	private int recordSize;
+	private long numBoards;
+
+	private BoardCorpus(FileChannel channel) throws IOException {
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+		if(header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+			throw new IOException("not a StudentWorld board corpus");
+		}
+		this.numRows = header.getInt(8);
+		this.numCols = header.getInt(12);
+		this.numStudents = header.getInt(16);
+		this.recordSize = header.getInt(20);
+		this.numBoards = header.getLong(24);
+		if(recordSize != recordSize(numRows * numCols) || channel.size() < HEADER_SIZE + numBoards * recordSize) {
+			throw new IOException("truncated or corrupt board corpus");
+		}
+
+		// a single mapping is limited to 2 GB, larger corpora are mapped in whole-record segments
+		this.boardsPerSegment = Integer.MAX_VALUE / recordSize;
+		int numSegments = (int) ((numBoards + boardsPerSegment - 1) / boardsPerSegment);
+		this.segments = new ByteBuffer[numSegments];
+		for(int i=0; i<numSegments; i++) {
+			long first = (long) i * boardsPerSegment;
+			long count = Math.min(boardsPerSegment, numBoards - first);
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * recordSize, count * recordSize);
+		}
+	}
+
+	public static BoardCorpus load(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			// the mappings stay valid after the channel is closed
+			return new BoardCorpus(raf.getChannel());
+		} finally {
+			raf.close();
+		}
+	}
+
+	// a view positioned on board 0, views are cheap and not thread-safe, use one per thread
+	public BoardView view() {
+		BoardView view = new BoardView(this);
+		if(numBoards > 0) {
+			view.moveTo(0);
+		}
+		return view;
+	}
+
+	// first board of part out of numParts equal parts, e.g. the range of one worker thread
+	public long getPartStart(int part, int numParts) {
+		return numBoards * part / numParts;
+	}
+
+	ByteBuffer getSegment(long index) {
+		return segments[(int) (index / boardsPerSegment)];
+	}
+
+	int getOffset(long index) {
+		return (int) (index % boardsPerSegment) * recordSize;
+	}
+
+	static int recordSize(int numCells) {
+		return (8 + (numCells + 3) / 4 + 7) & ~7;
+	}
+
+	public int getNumRows() {
+		return this.numRows;
+	}
+
+	public int getNumCols() {
+		return this.numCols;
+	}
+
+	public int getNumStudents() {
+		return this.numStudents;
+	}
+
+	public long getNumBoards() {
+		return this.numBoards;
+	}
+}
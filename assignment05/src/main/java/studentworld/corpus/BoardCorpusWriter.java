@@ -0,0 +1,98 @@
+package studentworld.corpus;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import studentworld.grid.StudentWorldBoard;
+
+/*
+ * Generates boards the way StudentWorld does and writes them as a BoardCorpus.
+ * Board seeds are drawn from one corpus seed, so the same arguments always give
+ * the same corpus.
+ *
+ * Usage: BoardCorpusWriter <output file> <number of boards> [seed [rows cols students]]
+ */
+public class BoardCorpusWriter {
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private int numRows;
+	private int numCols;
+	private int numStudents;
+
+	public BoardCorpusWriter(int numRows, int numCols, int numStudents) {
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.numStudents = numStudents;
+	}
+
+	public void write(File file, long numBoards, long seed) throws IOException {
+		int numCells = numRows * numCols;
+		int recordSize = BoardCorpus.recordSize(numCells);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE - BUFFER_SIZE % recordSize);
+		Random seeds = new Random(seed);
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			buffer.putInt(BoardCorpus.MAGIC);
+			buffer.putInt(BoardCorpus.VERSION);
+			buffer.putInt(numRows);
+			buffer.putInt(numCols);
+			buffer.putInt(numStudents);
+			buffer.putInt(recordSize);
+			buffer.putLong(numBoards);
+
+			for(long i=0; i<numBoards; i++) {
+				long boardSeed = seeds.nextLong();
+				StudentWorldBoard board = new StudentWorldBoard(numRows, numCols, numStudents, boardSeed);
+				board.initializeBoard();
+				byte[] layout = board.getLayout();
+
+				if(buffer.remaining() < recordSize) {
+					drain(buffer, channel);
+				}
+				int start = buffer.position();
+				buffer.putLong(boardSeed);
+				for(int cell=0; cell<numCells; cell+=4) {
+					int packed = 0;
+					for(int j=0; j<4 && cell+j<numCells; j++) {
+						packed |= (layout[cell+j] & 3) << (2 * j);
+					}
+					buffer.put((byte) packed);
+				}
+				while(buffer.position() < start + recordSize) {
+					buffer.put((byte) 0);
+				}
+			}
+			drain(buffer, channel);
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length != 2 && args.length != 3 && args.length != 6) {
+			System.out.println("Usage: BoardCorpusWriter <output file> <number of boards> [seed [rows cols students]]");
+			return;
+		}
+		long numBoards = Long.parseLong(args[1]);
+		long seed = args.length >= 3 ? Long.parseLong(args[2]) : 0L;
+		int numRows = args.length == 6 ? Integer.parseInt(args[3]) : 5;
+		int numCols = args.length == 6 ? Integer.parseInt(args[4]) : 5;
+		int numStudents = args.length == 6 ? Integer.parseInt(args[5]) : 5;
+
+		long start = System.currentTimeMillis();
+		new BoardCorpusWriter(numRows, numCols, numStudents).write(new File(args[0]), numBoards, seed);
+		System.out.println("Wrote " + numBoards + " boards in " + (System.currentTimeMillis() - start) + " ms");
+	}
+}
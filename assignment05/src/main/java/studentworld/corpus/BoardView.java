@@ -0,0 +1,73 @@
+package studentworld.corpus;
+
+import java.nio.ByteBuffer;
+
+import studentworld.grid.StudentWorldBoard;
+
+/*
+ * Cursor over the records of a BoardCorpus. Reads go straight to the mapped file,
+ * nothing is copied unless copyLayoutTo or toBoard is called.
+ */
+public class BoardView {
+	private BoardCorpus corpus;
+	private ByteBuffer segment;
+	private int offset;
+	private long index = -1;
+
+	BoardView(BoardCorpus corpus) {
+		this.corpus = corpus;
+	}
+
+	public BoardView moveTo(long index) {
+		if(index < 0 || index >= corpus.getNumBoards()) {
+			throw new IndexOutOfBoundsException("board " + index + " of " + corpus.getNumBoards());
+		}
+		this.index = index;
+		this.segment = corpus.getSegment(index);
+		this.offset = corpus.getOffset(index);
+		return this;
+	}
+
+	public long getIndex() {
+		return this.index;
+	}
+
+	public long getSeed() {
+		return segment.getLong(offset);
+	}
+
+	// one of the StudentWorldBoard.LAYOUT_* values
+	public byte getCell(int row, int col) {
+		int cell = row * corpus.getNumCols() + col;
+		return (byte) ((segment.get(offset + 8 + (cell >> 2)) >> (2 * (cell & 3))) & 3);
+	}
+
+	public boolean isStudent(int row, int col) {
+		return getCell(row, col) == StudentWorldBoard.LAYOUT_STUDENT;
+	}
+
+	public boolean isDoor(int row, int col) {
+		return getCell(row, col) == StudentWorldBoard.LAYOUT_DOOR;
+	}
+
+	// layout must hold numRows * numCols cells, so one array can be reused for every board
+	public void copyLayoutTo(byte[] layout) {
+		int numCells = corpus.getNumRows() * corpus.getNumCols();
+		int packed = 0;
+		for(int i=0; i<numCells; i++) {
+			if((i & 3) == 0) {
+				packed = segment.get(offset + 8 + (i >> 2));
+			}
+			layout[i] = (byte) ((packed >> (2 * (i & 3))) & 3);
+		}
+	}
+
+	// a playable board with the items of this record, built without generating a new layout
+	public StudentWorldBoard toBoard() {
+		byte[] layout = new byte[corpus.getNumRows() * corpus.getNumCols()];
+		copyLayoutTo(layout);
+		StudentWorldBoard board = new StudentWorldBoard(corpus.getNumRows(), corpus.getNumCols(), corpus.getNumStudents(), getSeed());
+		board.initializeBoard(layout);
+		return board;
+	}
+}
@@ -0,0 +1,137 @@
+package studentworld.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * One line of the table saying what the player senses: a cell has the percept if a
+ * cell in its neighborhood holds the item. The neighborhood is every cell within
+ * radius of it but itself, by Manhattan distance (ORTHOGONAL) or by the larger of the
+ * row and column distance (SQUARE); both are symmetric, so the cells an item is
+ * sensed from are the cells in its own neighborhood. The cardinality is how many of
+ * the items a sensing cell's neighborhood holds: at least one, or exactly one.
+ *
+ * PerceptRuleTable compiles a list of rules for a board size, the game and the
+ * Choco model both work from that. STANDARD is the StudentWorld everything else
+ * assumes, e.g. the percept signatures, the SAT encoding and the local rules.
+ */
+public final class PerceptRule {
+	public enum Shape {
+		ORTHOGONAL,
+		SQUARE
+	}
+
+	public enum Cardinality {
+		AT_LEAST_ONE,
+		EXACTLY_ONE
+	}
+
+	public static final PerceptRule STANDARD_SMELL = new PerceptRule(StudentWorldItem.STUDENT, StudentWorldPercept.SMELL,
+			Shape.ORTHOGONAL, 1, Cardinality.AT_LEAST_ONE);
+	public static final PerceptRule STANDARD_GLOW = new PerceptRule(StudentWorldItem.DOOR, StudentWorldPercept.GLOW,
+			Shape.ORTHOGONAL, 1, Cardinality.EXACTLY_ONE);
+	public static final List<PerceptRule> STANDARD = Collections.unmodifiableList(Arrays.asList(STANDARD_SMELL, STANDARD_GLOW));
+
+	private final StudentWorldItem item;
+	private final StudentWorldPercept percept;
+	private final Shape shape;
+	private final int radius;
+	private final Cardinality cardinality;
+	// (row, col) offsets of the neighborhood, for radius 1 orthogonal up, right, down, left
+	private final int[] offsets;
+
+	public PerceptRule(StudentWorldItem item, StudentWorldPercept percept, Shape shape, int radius, Cardinality cardinality) {
+		if(radius < 1) {
+			throw new IllegalArgumentException("radius must be at least 1");
+		}
+		this.item = item;
+		this.percept = percept;
+		this.shape = shape;
+		this.radius = radius;
+		this.cardinality = cardinality;
+
+		List<int[]> neighborhood = new ArrayList<int[]>();
+		// ring by ring: straight up and the right half top to bottom, then the left half bottom to top,
+		// which for radius 1 is the up, right, down, left order used everywhere else
+		for(int distance=1; distance<=radius; distance++) {
+			for(int rowOffset=-distance; rowOffset<=distance; rowOffset++) {
+				for(int colOffset=0; colOffset<=distance; colOffset++) {
+					addIfAtDistance(neighborhood, rowOffset, colOffset, distance);
+				}
+			}
+			for(int rowOffset=distance; rowOffset>=-distance; rowOffset--) {
+				for(int colOffset=-1; colOffset>=-distance; colOffset--) {
+					addIfAtDistance(neighborhood, rowOffset, colOffset, distance);
+				}
+			}
+		}
+		this.offsets = new int[2 * neighborhood.size()];
+		for(int i=0; i<neighborhood.size(); i++) {
+			offsets[2*i] = neighborhood.get(i)[0];
+			offsets[2*i+1] = neighborhood.get(i)[1];
+		}
+	}
+
+	private void addIfAtDistance(List<int[]> neighborhood, int rowOffset, int colOffset, int distance) {
+		int rowDistance = Math.abs(rowOffset);
+		int colDistance = Math.abs(colOffset);
+		int actual = shape == Shape.ORTHOGONAL ? rowDistance + colDistance : Math.max(rowDistance, colDistance);
+		if(actual == distance) {
+			neighborhood.add(new int[] {rowOffset, colOffset});
+		}
+	}
+
+	public StudentWorldItem getItem() {
+		return this.item;
+	}
+
+	public StudentWorldPercept getPercept() {
+		return this.percept;
+	}
+
+	public Shape getShape() {
+		return this.shape;
+	}
+
+	public int getRadius() {
+		return this.radius;
+	}
+
+	public Cardinality getCardinality() {
+		return this.cardinality;
+	}
+
+	public int getNeighborhoodSize() {
+		return offsets.length / 2;
+	}
+
+	public int getRowOffset(int i) {
+		return offsets[2*i];
+	}
+
+	public int getColOffset(int i) {
+		return offsets[2*i+1];
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(!(o instanceof PerceptRule)) {
+			return false;
+		}
+		PerceptRule other = (PerceptRule) o;
+		return item == other.item && percept == other.percept && shape == other.shape && radius == other.radius
+				&& cardinality == other.cardinality;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(new Object[] {item, percept, shape, radius, cardinality});
+	}
+
+	@Override
+	public String toString() {
+		return item.name() + " -> " + percept.name() + " " + shape.name() + " " + radius + " " + cardinality.name();
+	}
+}
@@ -0,0 +1,114 @@
+package studentworld.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+ * A list of PerceptRules compiled for one board size: for every rule and cell, the
+ * cell indexes (row * numCols + col) of its neighborhood clipped to the board, as
+ * offsets into one flat array per rule. Boards add their percepts and the Choco
+ * model posts its constraints by walking these arrays, so neither needs code for a
+ * particular item, percept or neighborhood.
+ *
+ * Tables are immutable and shared by everything using the same rules on the same
+ * board size, compile() may be called from any thread.
+ */
+public final class PerceptRuleTable {
+	private static final ConcurrentMap<List<Object>, PerceptRuleTable> TABLES = new ConcurrentHashMap<List<Object>, PerceptRuleTable>();
+
+	private final List<PerceptRule> rules;
+	private final int numRows;
+	private final int numCols;
+	// neighborhood of cell c under rule r is cells[r][start[r][c]] up to cells[r][start[r][c+1]]
+	private final int[][] start;
+	private final int[][] cells;
+
+	private PerceptRuleTable(List<PerceptRule> rules, int numRows, int numCols) {
+		this.rules = rules;
+		this.numRows = numRows;
+		this.numCols = numCols;
+		int numCells = numRows * numCols;
+		this.start = new int[rules.size()][numCells + 1];
+		this.cells = new int[rules.size()][];
+		for(int r=0; r<rules.size(); r++) {
+			PerceptRule rule = rules.get(r);
+			int[] neighborhood = new int[rule.getNeighborhoodSize()];
+			int[] ruleCells = new int[Math.min(numCells, 16)];
+			int size = 0;
+			for(int cell=0; cell<numCells; cell++) {
+				int numNeighbors = 0;
+				for(int i=0; i<rule.getNeighborhoodSize(); i++) {
+					int row = cell / numCols + rule.getRowOffset(i);
+					int col = cell % numCols + rule.getColOffset(i);
+					if(row >= 0 && row < numRows && col >= 0 && col < numCols) {
+						neighborhood[numNeighbors++] = row * numCols + col;
+					}
+				}
+				if(size + numNeighbors > ruleCells.length) {
+					ruleCells = Arrays.copyOf(ruleCells, Math.max(2 * ruleCells.length, size + numNeighbors));
+				}
+				System.arraycopy(neighborhood, 0, ruleCells, size, numNeighbors);
+				size += numNeighbors;
+				start[r][cell+1] = size;
+			}
+			cells[r] = Arrays.copyOf(ruleCells, size);
+		}
+	}
+
+	// the table for the rules on the board size, compiled on first use
+	public static PerceptRuleTable compile(List<PerceptRule> rules, int numRows, int numCols) {
+		List<Object> key = new ArrayList<Object>(rules);
+		key.add(numRows);
+		key.add(numCols);
+		PerceptRuleTable table = TABLES.get(key);
+		if(table == null) {
+			table = new PerceptRuleTable(new ArrayList<PerceptRule>(rules), numRows, numCols);
+			PerceptRuleTable raced = TABLES.putIfAbsent(key, table);
+			if(raced != null) {
+				table = raced;
+			}
+		}
+		return table;
+	}
+
+	public List<PerceptRule> getRules() {
+		return this.rules;
+	}
+
+	public int getNumRules() {
+		return rules.size();
+	}
+
+	public PerceptRule getRule(int rule) {
+		return rules.get(rule);
+	}
+
+	public int getNumRows() {
+		return this.numRows;
+	}
+
+	public int getNumCols() {
+		return this.numCols;
+	}
+
+	public int getNeighborhoodStart(int rule, int cell) {
+		return start[rule][cell];
+	}
+
+	public int getNeighborhoodEnd(int rule, int cell) {
+		return start[rule][cell + 1];
+	}
+
+	// cell index at a position between getNeighborhoodStart and getNeighborhoodEnd
+	public int getNeighborhoodCell(int rule, int position) {
+		return cells[rule][position];
+	}
+
+	// true if the rules are the ones everything outside the Choco model is written for
+	public boolean isStandard() {
+		return rules.equals(PerceptRule.STANDARD);
+	}
+}
@@ -1,24 +1,24 @@
-package studentworld.data;
-
-import gridgames.data.item.Item;
-
-public enum StudentWorldItem implements Item {
-    STUDENT,
-    DOOR;
-
-    @Override
-    public String toString() {
-        if(this.equals(STUDENT)) {
-            return "S";
-        } else if(this.equals(StudentWorldItem.DOOR)) {
-            return "D";
-        } else {
-            return "";
-        }
-    }
-
-	@Override
-	public boolean isHiddenItem() {
-		return true;
-	}
-}
+package studentworld.data;
+
+import gridgames.data.item.Item;
+
+public enum StudentWorldItem implements Item {
+    STUDENT,
+    DOOR;
+
+    @Override
+    public String toString() {
+        if(this.equals(STUDENT)) {
+            return "S";
+        } else if(this.equals(StudentWorldItem.DOOR)) {
+            return "D";
+        } else {
+            return "";
+        }
+    }
+
+	@Override
+	public boolean isHiddenItem() {
+		return true;
+	}
+}
@@ -1,16 +1,56 @@
-package studentworld.data;
-
-public enum StudentWorldPercept {
-    SMELL,
-    GLOW;
-	
-	public String getMessage() {
-		if(this.equals(SMELL)) {
-			return "You smell something... funky"; 
-		} else if(this.equals(GLOW)) {
-			return "You see the warm glow of the exit sign";
-		} else {
-			return "";
-		}
-	}
-}
+package studentworld.data;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+public enum StudentWorldPercept {
+    SMELL,
+    GLOW;
+	
+	public String getMessage() {
+		if(this.equals(SMELL)) {
+			return "You smell something... funky"; 
+		} else if(this.equals(GLOW)) {
+			return "You see the warm glow of the exit sign";
+		} else {
+			return "";
+		}
+	}
+
+	// encodes a cell's percepts as 0 (none), 1 (smell), 2 (glow) or 3 (both)
+	public static int getSignature(Set<StudentWorldPercept> percepts) {
+		int signature = 0;
+		if(percepts.contains(SMELL)) {
+			signature |= 1;
+		}
+		if(percepts.contains(GLOW)) {
+			signature |= 2;
+		}
+		return signature;
+	}
+
+	// the percepts getSignature encoded
+	public static Set<StudentWorldPercept> fromSignature(int signature) {
+		Set<StudentWorldPercept> percepts = EnumSet.noneOf(StudentWorldPercept.class);
+		if(hasSmell(signature)) {
+			percepts.add(SMELL);
+		}
+		if(hasGlow(signature)) {
+			percepts.add(GLOW);
+		}
+		return percepts;
+	}
+
+	// signature bits follow the declaration order, SMELL is bit 0 and GLOW bit 1
+	public boolean isIn(int signature) {
+		return (signature & (1 << ordinal())) != 0;
+	}
+
+	public static boolean hasSmell(int signature) {
+		return (signature & 1) != 0;
+	}
+
+	public static boolean hasGlow(int signature) {
+		return (signature & 2) != 0;
+	}
+}
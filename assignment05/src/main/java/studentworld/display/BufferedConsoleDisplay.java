@@ -0,0 +1,199 @@
+package studentworld.display;
+
+import java.io.PrintStream;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import gridgames.display.Display;
+import gridgames.grid.Board;
+import gridgames.grid.Cell;
+
+/*
+ * Console display that draws the same picture as ConsoleDisplay but builds each turn
+ * into one buffer and writes it in a single call. With incremental set, only the first
+ * frame of a board is drawn in full; later frames move the cursor (ANSI escapes) to the
+ * cells whose text changed since the last drawn frame and rewrite just those, then
+ * rewrite the message lines below the board. Without showAllItems a cell's text only
+ * changes when the player enters or leaves it, so only the cells the player was on
+ * since the last drawn frame are looked at, not the whole board. Terminals without
+ * ANSI support should use it with incremental off, which still buffers and rate-limits
+ * full frames.
+ *
+ * setMaxFramesPerSecond caps how often a frame is drawn; frames that come too soon are
+ * dropped along with their messages. The game over frame is always drawn.
+ */
+public class BufferedConsoleDisplay extends Display {
+	private static final String ESC = "\u001B[";
+	private static final int CELL_WIDTH = 4;
+
+	private PrintStream out;
+	private boolean incremental;
+	private StringBuilder frame = new StringBuilder();
+	private String[][] drawnCells;
+	private boolean drawnAllItems;
+	// cell indexes the player was on since the last drawn frame, including the one it was drawn on
+	private Set<Integer> dirtyCells = new LinkedHashSet<Integer>();
+	private long minFrameNanos;
+	private long lastFrameNanos;
+	private boolean frameSkipped;
+	private boolean framePending;
+	private int numFramesDrawn;
+	private int numFramesSkipped;
+
+	public BufferedConsoleDisplay() {
+		this(System.out, true);
+	}
+
+	public BufferedConsoleDisplay(PrintStream out, boolean incremental) {
+		this.out = out;
+		this.incremental = incremental;
+	}
+
+	// 0 draws every frame
+	public void setMaxFramesPerSecond(int maxFramesPerSecond) {
+		this.minFrameNanos = maxFramesPerSecond > 0 ? 1000000000L / maxFramesPerSecond : 0;
+	}
+
+	@Override
+	public void setBoard(Board board) {
+		super.setBoard(board);
+		this.drawnCells = null;
+		this.dirtyCells.clear();
+	}
+
+	@Override
+	public void printState(boolean showAllItems) {
+		printBoard(showAllItems);
+		printMessages();
+	}
+
+	@Override
+	public void printBoard(boolean showAllItems) {
+		flush();
+		Cell playerCell = board.getPlayerCell();
+		if(playerCell != null) {
+			dirtyCells.add(playerCell.getRow() * board.getNumCols() + playerCell.getCol());
+		}
+		long now = System.nanoTime();
+		if(!showAllItems && numFramesDrawn > 0 && now - lastFrameNanos < minFrameNanos) {
+			frameSkipped = true;
+			numFramesSkipped++;
+			return;
+		}
+		frameSkipped = false;
+		framePending = true;
+		lastFrameNanos = now;
+		numFramesDrawn++;
+		if(incremental && isSameSize()) {
+			appendChangedCells(showAllItems);
+		} else {
+			appendFullBoard(showAllItems);
+		}
+		drawnAllItems = showAllItems;
+		// the player's cell changes again when it leaves
+		dirtyCells.clear();
+		if(playerCell != null) {
+			dirtyCells.add(playerCell.getRow() * board.getNumCols() + playerCell.getCol());
+		}
+	}
+
+	@Override
+	public void printMessages() {
+		if(frameSkipped) {
+			messages.clear();
+			return;
+		}
+		if(incremental && drawnCells != null) {
+			// messages start on the line after the bottom border
+			moveCursor(2 * board.getNumRows() + 2, 1);
+			frame.append(ESC).append('J');
+		}
+		for(String message : messages) {
+			frame.append(message).append('\n');
+		}
+		messages.clear();
+		framePending = true;
+		flush();
+	}
+
+	public int getNumFramesDrawn() {
+		return this.numFramesDrawn;
+	}
+
+	public int getNumFramesSkipped() {
+		return this.numFramesSkipped;
+	}
+
+	private void flush() {
+		if(framePending) {
+			out.print(frame);
+			out.flush();
+			frame.setLength(0);
+			framePending = false;
+		}
+	}
+
+	private boolean isSameSize() {
+		return drawnCells != null && drawnCells.length == board.getNumRows()
+				&& drawnCells[0].length == board.getNumCols();
+	}
+
+	private void appendFullBoard(boolean showAllItems) {
+		int numRows = board.getNumRows();
+		int numCols = board.getNumCols();
+		drawnCells = new String[numRows][numCols];
+		if(incremental) {
+			frame.append(ESC).append("2J").append(ESC).append('H');
+		} else {
+			frame.append('\n');
+		}
+		for(int i=0; i<numRows; i++) {
+			appendBorder(numCols);
+			frame.append('|');
+			for(int j=0; j<numCols; j++) {
+				drawnCells[i][j] = getCellDisplay(board.getCell(i, j), showAllItems);
+				frame.append(drawnCells[i][j]);
+			}
+			frame.append('\n');
+		}
+		appendBorder(numCols);
+	}
+
+	private void appendChangedCells(boolean showAllItems) {
+		int numCols = board.getNumCols();
+		// hidden items are shown or hidden again anywhere on the board
+		if(showAllItems || drawnAllItems) {
+			for(int i=0; i<drawnCells.length; i++) {
+				for(int j=0; j<numCols; j++) {
+					appendIfChanged(i, j, showAllItems);
+				}
+			}
+			return;
+		}
+		for(int cell : dirtyCells) {
+			appendIfChanged(cell / numCols, cell % numCols, showAllItems);
+		}
+	}
+
+	private void appendIfChanged(int row, int col, boolean showAllItems) {
+		String cell = getCellDisplay(board.getCell(row, col), showAllItems);
+		if(!cell.equals(drawnCells[row][col])) {
+			// a row is on line 2row+2, below its top border, a col starts after its left bar
+			moveCursor(2 * row + 2, CELL_WIDTH * col + 2);
+			frame.append(cell);
+			drawnCells[row][col] = cell;
+		}
+	}
+
+	private void appendBorder(int numCols) {
+		frame.append('+');
+		for(int j=0; j<numCols; j++) {
+			frame.append("---+");
+		}
+		frame.append('\n');
+	}
+
+	private void moveCursor(int line, int column) {
+		frame.append(ESC).append(line).append(';').append(column).append('H');
+	}
+}
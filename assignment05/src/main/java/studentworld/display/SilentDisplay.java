@@ -0,0 +1,25 @@
+package studentworld.display;
+
+import gridgames.display.Display;
+
+/*
+ * Display that renders nothing, for games played without anyone watching
+ * (replays, batch runs). Messages are dropped as they are printed so they
+ * don't pile up over many games.
+ */
+public class SilentDisplay extends Display {
+
+	@Override
+	public void printState(boolean isGameOver) {
+		messages.clear();
+	}
+
+	@Override
+	public void printBoard(boolean isGameOver) {
+	}
+
+	@Override
+	public void printMessages() {
+		messages.clear();
+	}
+}
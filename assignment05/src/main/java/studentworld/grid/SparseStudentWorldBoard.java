@@ -0,0 +1,319 @@
+package studentworld.grid;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import gridgames.data.action.Action;
+import gridgames.data.action.MoveAction;
+import gridgames.data.item.MoveItem;
+import gridgames.grid.Cell;
+import studentworld.data.PerceptRule;
+import studentworld.data.StudentWorldItem;
+import studentworld.knowledge.Zobrist;
+
+/*
+ * StudentWorldBoard for boards too large to allocate cell by cell, e.g. 1000x1000.
+ * What a cell holds follows from a hash of the seed and the cell, and cells are
+ * only created, with their items and percepts, a TILE_SIZE x TILE_SIZE tile at a
+ * time when first asked for, so a game pays for the tiles the player gets near.
+ *
+ * Every cell but the start and its neighbors holds a student with probability
+ * numStudents / number of cells, so numStudents is the expected count, and the door
+ * is at a seed-derived cell. Unlike the dense board, a path to the door isn't
+ * guaranteed, checking for one would need the whole board.
+ *
+ * Cells whose content no longer follows from the seed, because the board was built
+ * from a layout or a student moved, are kept in an overlay that getContent() checks
+ * first. Moving students only move on the tiles created so far; the rest of the board
+ * keeps its seed-derived students until the player gets near it.
+ */
+public class SparseStudentWorldBoard extends StudentWorldBoard {
+    private static final int TILE_BITS = 6;
+    public static final int TILE_SIZE = 1 << TILE_BITS;
+
+    private StudentWorldCell[][] tiles;
+    private int numTileCols;
+    private int numMaterializedTiles;
+    private int doorCell;
+    // a cell's hash >>> 1 below this holds a student
+    private long studentThreshold;
+    private StudentWorldCell playerCell;
+    // contents that replace the seed-derived ones, by cell index
+    private Map<Integer, Byte> overlay = new HashMap<Integer, Byte>();
+    // the students on created tiles, in the order moveStudents() moves them
+    private List<StudentWorldCell> students = new ArrayList<StudentWorldCell>();
+
+    public SparseStudentWorldBoard(int numRows, int numCols, int numStudents, long seed) {
+        super(numRows, numCols, numStudents, seed, false);
+        int numTileRows = (numRows + TILE_SIZE - 1) >> TILE_BITS;
+        this.numTileCols = (numCols + TILE_SIZE - 1) >> TILE_BITS;
+        this.tiles = new StudentWorldCell[numTileRows * numTileCols][];
+        this.studentThreshold = (long) (Math.min(1.0, (double) numStudents / ((long) numRows * numCols)) * Long.MAX_VALUE);
+
+        Random r = new Random(seed);
+        int row;
+        int col;
+        //same rule as the dense board, the door isn't next to the start
+        do {
+            row = r.nextInt(numRows);
+            col = r.nextInt(numCols);
+        } while(row+col <= 1);
+        this.doorCell = row * numCols + col;
+    }
+
+    @Override
+    public void initializeBoard() {
+        playerCell = (StudentWorldCell) getCell(0, 0);
+        playerCell.add(MoveItem.PLAYER);
+        playerCell.setVisited(true);
+    }
+
+    // the cells that differ from the seed go into the overlay, tiles created before are dropped
+    @Override
+    public void initializeBoard(byte[] layout) {
+        tiles = new StudentWorldCell[tiles.length][];
+        numMaterializedTiles = 0;
+        students.clear();
+        overlay.clear();
+        for(int i=0; i<this.numRows; i++) {
+            for(int j=0; j<this.numCols; j++) {
+                if(layout[i*numCols + j] != getContent(i, j)) {
+                    overlay.put(i*numCols + j, layout[i*numCols + j]);
+                }
+            }
+        }
+        initializeBoard();
+    }
+
+    /*
+     * Same moves as the dense board, except a student only moves to a cell on a tile
+     * that was already created, so moving never creates tiles by itself.
+     */
+    @Override
+    public void moveStudents(Random random) {
+        List<StudentWorldCell> emptyCells = new ArrayList<StudentWorldCell>(4);
+        for(int i=0; i<students.size(); i++) {
+            StudentWorldCell from = students.get(i);
+            int row = from.getRow();
+            int col = from.getCol();
+            emptyCells.clear();
+            int[] neighbors = {row-1, col, row, col+1, row+1, col, row, col-1};
+            for(int k=0; k<neighbors.length; k+=2) {
+                StudentWorldCell neighbor = getCreatedCell(neighbors[k], neighbors[k+1]);
+                if(neighbor != null && neighbor.getItems().isEmpty()) {
+                    emptyCells.add(neighbor);
+                }
+            }
+            if(emptyCells.isEmpty()) {
+                continue;
+            }
+            StudentWorldCell to = emptyCells.get(random.nextInt(emptyCells.size()));
+            from.remove(StudentWorldItem.STUDENT);
+            to.add(StudentWorldItem.STUDENT);
+            overlay.put(row * numCols + col, LAYOUT_EMPTY);
+            overlay.put(to.getRow() * numCols + to.getCol(), LAYOUT_STUDENT);
+            students.set(i, to);
+            updateSmellAround(from);
+            updateSmellAround(to);
+        }
+    }
+
+    // a student moved from or to the cell, the created cells sensing students around it are checked again
+    private void updateSmellAround(StudentWorldCell cell) {
+        for(PerceptRule rule : getPerceptRules()) {
+            if(rule.getItem() != StudentWorldItem.STUDENT) {
+                continue;
+            }
+            for(int k=0; k<rule.getNeighborhoodSize(); k++) {
+                StudentWorldCell sensing = getCreatedCell(cell.getRow() - rule.getRowOffset(k), cell.getCol() - rule.getColOffset(k));
+                if(sensing == null) {
+                    continue;
+                }
+                if(senses(sensing.getRow(), sensing.getCol(), rule)) {
+                    sensing.addPercept(rule.getPercept());
+                } else {
+                    sensing.removePercept(rule.getPercept());
+                }
+            }
+        }
+    }
+
+    private boolean senses(int row, int col, PerceptRule rule) {
+        for(int k=0; k<rule.getNeighborhoodSize(); k++) {
+            int r = row + rule.getRowOffset(k);
+            int c = col + rule.getColOffset(k);
+            if(r >= 0 && r < numRows && c >= 0 && c < numCols && holds(getContent(r, c), rule.getItem())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // null if the cell is off the board or its tile wasn't created
+    private StudentWorldCell getCreatedCell(int row, int col) {
+        if(row < 0 || row >= numRows || col < 0 || col >= numCols) {
+            return null;
+        }
+        StudentWorldCell[] tile = tiles[(row >> TILE_BITS) * numTileCols + (col >> TILE_BITS)];
+        return tile != null ? tile[((row & (TILE_SIZE-1)) << TILE_BITS) | (col & (TILE_SIZE-1))] : null;
+    }
+
+    // LAYOUT_EMPTY, LAYOUT_STUDENT or LAYOUT_DOOR, without creating the cell
+    public byte getContent(int row, int col) {
+        int cell = row * numCols + col;
+        Byte content = overlay.get(cell);
+        if(content != null) {
+            return content;
+        } else if(cell == doorCell) {
+            return LAYOUT_DOOR;
+        } else if(row+col <= 1) {
+            return LAYOUT_EMPTY;
+        } else if((Zobrist.mix(getSeed() + 0x9E3779B97F4A7C15L * (cell + 1)) >>> 1) < studentThreshold) {
+            return LAYOUT_STUDENT;
+        }
+        return LAYOUT_EMPTY;
+    }
+
+    @Override
+    public byte[] getLayout() {
+        byte[] layout = new byte[numRows * numCols];
+        for(int i=0; i<this.numRows; i++) {
+            for(int j=0; j<this.numCols; j++) {
+                layout[i*numCols + j] = getContent(i, j);
+            }
+        }
+        return layout;
+    }
+
+    @Override
+    public Cell getCell(int row, int col) {
+        return getTile(row, col)[((row & (TILE_SIZE-1)) << TILE_BITS) | (col & (TILE_SIZE-1))];
+    }
+
+    @Override
+    public void setCell(int row, int col, Cell cell) {
+        cell.setRow(row);
+        cell.setCol(col);
+        getTile(row, col)[((row & (TILE_SIZE-1)) << TILE_BITS) | (col & (TILE_SIZE-1))] = (StudentWorldCell) cell;
+    }
+
+    // the dense board searches every cell for the player
+    @Override
+    public Cell getPlayerCell() {
+        return this.playerCell;
+    }
+
+    @Override
+    public void movePlayer(Action action) {
+        int row = playerCell.getRow();
+        int col = playerCell.getCol();
+        if(MoveAction.UP.equals(action) && row > 0) {
+            row--;
+        } else if(MoveAction.RIGHT.equals(action) && col < numCols-1) {
+            col++;
+        } else if(MoveAction.DOWN.equals(action) && row < numRows-1) {
+            row++;
+        } else if(MoveAction.LEFT.equals(action) && col > 0) {
+            col--;
+        } else {
+            return;
+        }
+        playerCell.remove(MoveItem.PLAYER);
+        playerCell = (StudentWorldCell) getCell(row, col);
+        playerCell.add(MoveItem.PLAYER);
+        playerCell.setVisited(true);
+    }
+
+    public int getNumMaterializedTiles() {
+        return this.numMaterializedTiles;
+    }
+
+    private StudentWorldCell[] getTile(int row, int col) {
+        int tileRow = row >> TILE_BITS;
+        int tileCol = col >> TILE_BITS;
+        StudentWorldCell[] tile = tiles[tileRow * numTileCols + tileCol];
+        if(tile == null) {
+            tile = materializeTile(tileRow, tileCol);
+            tiles[tileRow * numTileCols + tileCol] = tile;
+            numMaterializedTiles++;
+        }
+        return tile;
+    }
+
+    private StudentWorldCell[] materializeTile(int tileRow, int tileCol) {
+        StudentWorldCell[] tile = new StudentWorldCell[TILE_SIZE * TILE_SIZE];
+        int firstRow = tileRow << TILE_BITS;
+        int firstCol = tileCol << TILE_BITS;
+        for(int i=firstRow; i<Math.min(numRows, firstRow + TILE_SIZE); i++) {
+            for(int j=firstCol; j<Math.min(numCols, firstCol + TILE_SIZE); j++) {
+                StudentWorldCell cell = new StudentWorldCell(i, j);
+                addItem(cell, getContent(i, j));
+                if(cell.contains(StudentWorldItem.STUDENT)) {
+                    students.add(cell);
+                }
+                //percepts come from the neighborhoods' contents, which needs no other tile
+                for(PerceptRule rule : getPerceptRules()) {
+                    if(senses(i, j, rule)) {
+                        cell.addPercept(rule.getPercept());
+                    }
+                }
+                tile[((i - firstRow) << TILE_BITS) | (j - firstCol)] = cell;
+            }
+        }
+        return tile;
+    }
+
+    private static void addItem(StudentWorldCell cell, byte content) {
+        if(content == LAYOUT_STUDENT) {
+            cell.add(StudentWorldItem.STUDENT);
+        } else if(content == LAYOUT_DOOR) {
+            cell.add(StudentWorldItem.DOOR);
+        }
+    }
+
+    private static boolean holds(byte content, StudentWorldItem item) {
+        return content == LAYOUT_STUDENT && item == StudentWorldItem.STUDENT || content == LAYOUT_DOOR && item == StudentWorldItem.DOOR;
+    }
+
+    // same contents, created tiles, visited cells and player cell
+    @Override
+    public Object clone() {
+        SparseStudentWorldBoard b = new SparseStudentWorldBoard(numRows, numCols, getNumStudents(), getSeed());
+        b.setPerceptRules(getPerceptRules());
+        b.overlay.putAll(overlay);
+        for(int t=0; t<tiles.length; t++) {
+            if(tiles[t] == null) {
+                continue;
+            }
+            StudentWorldCell[] tile = b.getTile((t / numTileCols) << TILE_BITS, (t % numTileCols) << TILE_BITS);
+            for(int i=0; i<tile.length; i++) {
+                if(tile[i] != null) {
+                    tile[i].setVisited(tiles[t][i].wasVisited());
+                }
+            }
+        }
+        // in this board's order, so both move their students the same way
+        b.students.clear();
+        for(StudentWorldCell student : students) {
+            b.students.add(b.getCreatedCell(student.getRow(), student.getCol()));
+        }
+        b.playerCell = (StudentWorldCell) b.getCell(playerCell.getRow(), playerCell.getCol());
+        b.playerCell.add(MoveItem.PLAYER);
+        return b;
+    }
+
+    // creates every tile, only meant for boards small enough to print
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for(int i=0; i<this.numRows; i++) {
+            for (int j = 0; j < this.numCols; j++) {
+                sb.append(getCell(i, j).toString());
+            }
+        }
+        return sb.toString();
+    }
+}
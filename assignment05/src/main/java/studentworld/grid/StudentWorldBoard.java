@@ -1,160 +1,303 @@
-package studentworld.grid;
-
-import java.util.*;
-
-import gridgames.data.item.Item;
-import gridgames.data.item.MoveItem;
-import gridgames.grid.Board;
-import studentworld.data.StudentWorldItem;
-import studentworld.data.StudentWorldPercept;
-
-public class StudentWorldBoard extends Board {
-
-    private int numStudents;
-
-    public StudentWorldBoard(int numRows, int numCols, int numStudents) {
-    	super(numRows, numCols);
-        this.numStudents = numStudents;
-
-        for(int i=0; i<this.numRows; i++) {
-            for(int j=0; j<this.numCols; j++) {
-                cells[i][j] = new StudentWorldCell(i, j);
-            }
-        }
-    }
-
-    public void initializeBoard() {
-    	cells[0][0].add(MoveItem.PLAYER);
-    	cells[0][0].setVisited(true);
-        placeDoor();
-        placeStudents(numStudents);
-        addPercepts();
-    }
-
-    public boolean didLose() {
-        return getPlayerCell().getItems().contains(StudentWorldItem.STUDENT);
-    }
-
-    public boolean didWin() {
-        return getPlayerCell().getItems().contains(StudentWorldItem.DOOR);
-    }
-
-    public Set<StudentWorldPercept> getCurrentPercepts() {
-        return ((StudentWorldCell) getPlayerCell()).getPercepts();
-    }
-
-    private void placeDoor() {
-        Random r = new Random();
-        int row;
-        int col;
-        //repeat until a valid placement is found
-        do {
-            row = r.nextInt(this.numRows);
-            col = r.nextInt(this.numCols);
-        } while(row+col <= 1);
-        cells[row][col].add(StudentWorldItem.DOOR);
-    }
-
-    private void placeStudents(int numStudents) {
-        Random r = new Random();
-        int row;
-        int col;
-        for(int i=0; i<numStudents; i++) {
-            //repeat until a valid placement is found
-            do {
-                row = r.nextInt(this.numRows);
-                col = r.nextInt(this.numCols);
-            } while(!isValidPlacement(row, col));
-
-            cells[row][col].add(StudentWorldItem.STUDENT);
-
-            //if placement causes board to be unsolvable, undo it
-            if(!isSolveable((StudentWorldCell) getPlayerCell())) {
-                cells[row][col].remove(StudentWorldItem.STUDENT);
-                i--;
-            }
-        }
-    }
-
-    private void addPercepts() {
-        StudentWorldCell currentCell;
-        List<StudentWorldCell> adjacentCells;
-        for(int i=0; i<this.numRows; i++) {
-            for(int j=0; j<this.numCols; j++) {
-                currentCell = (StudentWorldCell) cells[i][j];
-                adjacentCells = getAdjacentCells(currentCell);
-                for(StudentWorldCell adjacentCell : adjacentCells) {
-                    for(Item item : adjacentCell.getItems()) {
-                        currentCell.addPerceptForItem(item);
-                    }
-                }
-            }
-        }
-    }
-
-    private List<StudentWorldCell> getAdjacentCells(StudentWorldCell cell) {
-        List<StudentWorldCell> adjacentCells = new ArrayList<StudentWorldCell>();
-        int row = cell.getRow();
-        int col = cell.getCol();
-
-        if(row>0) {
-            adjacentCells.add((StudentWorldCell)cells[row-1][col]);
-        }
-        if(col<numCols-1) {
-            adjacentCells.add((StudentWorldCell)cells[row][col+1]);
-        }
-        if(row<numRows-1) {
-            adjacentCells.add((StudentWorldCell)cells[row+1][col]);
-        }
-        if(col>0) {
-            adjacentCells.add((StudentWorldCell)cells[row][col-1]);
-        }
-        return adjacentCells;
-    }
-
-    private boolean isValidPlacement(int row, int col) {
-        //if cell isn't empty
-        if(!cells[row][col].getItems().isEmpty()) {
-            return false;
-        }
-        //if cell is adjacent to start cell
-        else if(row+col==1) {
-            return false;
-        }
-        return true;
-    }
-
-    private boolean isSolveable(StudentWorldCell playerCell) {
-        if(playerCell.getItems().contains(StudentWorldItem.DOOR)) {
-            return true;
-        } else if(playerCell.getItems().contains(StudentWorldItem.STUDENT)) {
-            return false;
-        } else {
-            int row = playerCell.getRow();
-            int col = playerCell.getCol();
-            return (row < numRows-1 && isSolveable((StudentWorldCell)cells[row+1][col])) || (col < numCols-1 && isSolveable((StudentWorldCell)cells[row][col+1]));
-        }
-    }
-
-    @Override
-    public Object clone() {
-        StudentWorldBoard b = new StudentWorldBoard(numRows, numCols, numStudents);
-        for(int i=0; i<numRows; i++) {
-            for(int j=0; j<numCols; j++) {
-                b.cells[i][j].addAll(this.cells[i][j].getItems());
-            }
-        }
-        return b;
-    }
-
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        for(int i=0; i<this.numRows; i++) {
-            for (int j = 0; j < this.numCols; j++) {
-                sb.append(this.cells[i][j].toString());
-            }
-        }
-        return sb.toString();
-    }
+package studentworld.grid;
+
+import java.util.*;
+
+import gridgames.data.item.MoveItem;
+import gridgames.grid.Board;
+import studentworld.data.PerceptRule;
+import studentworld.data.PerceptRuleTable;
+import studentworld.data.StudentWorldItem;
+import studentworld.data.StudentWorldPercept;
+
+public class StudentWorldBoard extends Board {
+
+    // cell contents as stored by getLayout()
+    public static final byte LAYOUT_EMPTY = 0;
+    public static final byte LAYOUT_STUDENT = 1;
+    public static final byte LAYOUT_DOOR = 2;
+
+    private int numStudents;
+    private long seed;
+    private List<PerceptRule> perceptRules = PerceptRule.STANDARD;
+    private Random random;
+    // found on the first moveStudents()
+    private List<StudentWorldCell> students;
+
+    public StudentWorldBoard(int numRows, int numCols, int numStudents) {
+    	this(numRows, numCols, numStudents, new Random().nextLong());
+    }
+
+    // the same seed always generates the same board
+    public StudentWorldBoard(int numRows, int numCols, int numStudents, long seed) {
+    	this(numRows, numCols, numStudents, seed, true);
+    }
+
+    // without allocateCells the cells array stays empty, for subclasses that create cells on demand
+    protected StudentWorldBoard(int numRows, int numCols, int numStudents, long seed, boolean allocateCells) {
+    	super(allocateCells ? numRows : 0, allocateCells ? numCols : 0);
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.numStudents = numStudents;
+        this.seed = seed;
+        this.random = new Random(seed);
+
+        if(allocateCells) {
+            for(int i=0; i<this.numRows; i++) {
+                for(int j=0; j<this.numCols; j++) {
+                    cells[i][j] = new StudentWorldCell(i, j);
+                }
+            }
+        }
+    }
+
+    // what the cells sense, see PerceptRule; call before initializeBoard()
+    public void setPerceptRules(List<PerceptRule> perceptRules) {
+        this.perceptRules = perceptRules;
+    }
+
+    public List<PerceptRule> getPerceptRules() {
+        return this.perceptRules;
+    }
+
+    public void initializeBoard() {
+    	cells[0][0].add(MoveItem.PLAYER);
+    	cells[0][0].setVisited(true);
+        placeDoor();
+        placeStudents(numStudents);
+        addPercepts();
+    }
+
+    // rebuilds a board from getLayout() of another board instead of placing items randomly
+    public void initializeBoard(byte[] layout) {
+    	cells[0][0].add(MoveItem.PLAYER);
+    	cells[0][0].setVisited(true);
+        for(int i=0; i<this.numRows; i++) {
+            for(int j=0; j<this.numCols; j++) {
+                if(layout[i*numCols + j] == LAYOUT_STUDENT) {
+                    cells[i][j].add(StudentWorldItem.STUDENT);
+                } else if(layout[i*numCols + j] == LAYOUT_DOOR) {
+                    cells[i][j].add(StudentWorldItem.DOOR);
+                }
+            }
+        }
+        addPercepts();
+    }
+
+    public byte[] getLayout() {
+        byte[] layout = new byte[numRows * numCols];
+        for(int i=0; i<this.numRows; i++) {
+            for(int j=0; j<this.numCols; j++) {
+                if(cells[i][j].contains(StudentWorldItem.STUDENT)) {
+                    layout[i*numCols + j] = LAYOUT_STUDENT;
+                } else if(cells[i][j].contains(StudentWorldItem.DOOR)) {
+                    layout[i*numCols + j] = LAYOUT_DOOR;
+                }
+            }
+        }
+        return layout;
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    public int getNumStudents() {
+        return this.numStudents;
+    }
+
+    public boolean didLose() {
+        return getPlayerCell().getItems().contains(StudentWorldItem.STUDENT);
+    }
+
+    public boolean didWin() {
+        return getPlayerCell().getItems().contains(StudentWorldItem.DOOR);
+    }
+
+    public Set<StudentWorldPercept> getCurrentPercepts() {
+        return ((StudentWorldCell) getPlayerCell()).getPercepts();
+    }
+
+    /*
+     * Moves every student one step to a random neighboring cell with nothing in it (no
+     * other student, not the door, not the player); a student without one stays put.
+     * Only the smell of the cells next to a student's old and new cell is recomputed.
+     */
+    public void moveStudents(Random random) {
+        if(students == null) {
+            students = new ArrayList<StudentWorldCell>();
+            for(int i=0; i<this.numRows; i++) {
+                for(int j=0; j<this.numCols; j++) {
+                    if(cells[i][j].contains(StudentWorldItem.STUDENT)) {
+                        students.add((StudentWorldCell) cells[i][j]);
+                    }
+                }
+            }
+        }
+        List<StudentWorldCell> emptyCells = new ArrayList<StudentWorldCell>(4);
+        for(int i=0; i<students.size(); i++) {
+            StudentWorldCell from = students.get(i);
+            emptyCells.clear();
+            for(StudentWorldCell adjacentCell : getAdjacentCells(from)) {
+                if(adjacentCell.getItems().isEmpty()) {
+                    emptyCells.add(adjacentCell);
+                }
+            }
+            if(emptyCells.isEmpty()) {
+                continue;
+            }
+            StudentWorldCell to = emptyCells.get(random.nextInt(emptyCells.size()));
+            from.remove(StudentWorldItem.STUDENT);
+            to.add(StudentWorldItem.STUDENT);
+            students.set(i, to);
+            updateSmellAround(from);
+            updateSmellAround(to);
+        }
+    }
+
+    // a student moved from or to the cell, the cells sensing students around it are checked again
+    private void updateSmellAround(StudentWorldCell cell) {
+        PerceptRuleTable table = PerceptRuleTable.compile(perceptRules, numRows, numCols);
+        int index = cell.getRow() * numCols + cell.getCol();
+        for(int r=0; r<table.getNumRules(); r++) {
+            if(table.getRule(r).getItem() != StudentWorldItem.STUDENT) {
+                continue;
+            }
+            for(int i=table.getNeighborhoodStart(r, index); i<table.getNeighborhoodEnd(r, index); i++) {
+                int sensing = table.getNeighborhoodCell(r, i);
+                boolean sensed = false;
+                for(int j=table.getNeighborhoodStart(r, sensing); j<table.getNeighborhoodEnd(r, sensing) && !sensed; j++) {
+                    int next = table.getNeighborhoodCell(r, j);
+                    sensed = cells[next / numCols][next % numCols].contains(StudentWorldItem.STUDENT);
+                }
+                StudentWorldCell sensingCell = (StudentWorldCell) cells[sensing / numCols][sensing % numCols];
+                if(sensed) {
+                    sensingCell.addPercept(table.getRule(r).getPercept());
+                } else {
+                    sensingCell.removePercept(table.getRule(r).getPercept());
+                }
+            }
+        }
+    }
+
+    private void placeDoor() {
+        Random r = this.random;
+        int row;
+        int col;
+        //repeat until a valid placement is found
+        do {
+            row = r.nextInt(this.numRows);
+            col = r.nextInt(this.numCols);
+        } while(row+col <= 1);
+        cells[row][col].add(StudentWorldItem.DOOR);
+    }
+
+    private void placeStudents(int numStudents) {
+        Random r = this.random;
+        int row;
+        int col;
+        for(int i=0; i<numStudents; i++) {
+            //repeat until a valid placement is found
+            do {
+                row = r.nextInt(this.numRows);
+                col = r.nextInt(this.numCols);
+            } while(!isValidPlacement(row, col));
+
+            cells[row][col].add(StudentWorldItem.STUDENT);
+
+            //if placement causes board to be unsolvable, undo it
+            if(!isSolveable((StudentWorldCell) getPlayerCell())) {
+                cells[row][col].remove(StudentWorldItem.STUDENT);
+                i--;
+            }
+        }
+    }
+
+    private void addPercepts() {
+        PerceptRuleTable table = PerceptRuleTable.compile(perceptRules, numRows, numCols);
+        for(int r=0; r<table.getNumRules(); r++) {
+            PerceptRule rule = table.getRule(r);
+            for(int cell=0; cell<numRows*numCols; cell++) {
+                if(!cells[cell / numCols][cell % numCols].contains(rule.getItem())) {
+                    continue;
+                }
+                for(int i=table.getNeighborhoodStart(r, cell); i<table.getNeighborhoodEnd(r, cell); i++) {
+                    int sensing = table.getNeighborhoodCell(r, i);
+                    ((StudentWorldCell) cells[sensing / numCols][sensing % numCols]).addPercept(rule.getPercept());
+                }
+            }
+        }
+    }
+
+    private List<StudentWorldCell> getAdjacentCells(StudentWorldCell cell) {
+        List<StudentWorldCell> adjacentCells = new ArrayList<StudentWorldCell>();
+        int row = cell.getRow();
+        int col = cell.getCol();
+
+        if(row>0) {
+            adjacentCells.add((StudentWorldCell)cells[row-1][col]);
+        }
+        if(col<numCols-1) {
+            adjacentCells.add((StudentWorldCell)cells[row][col+1]);
+        }
+        if(row<numRows-1) {
+            adjacentCells.add((StudentWorldCell)cells[row+1][col]);
+        }
+        if(col>0) {
+            adjacentCells.add((StudentWorldCell)cells[row][col-1]);
+        }
+        return adjacentCells;
+    }
+
+    private boolean isValidPlacement(int row, int col) {
+        //if cell isn't empty
+        if(!cells[row][col].getItems().isEmpty()) {
+            return false;
+        }
+        //if cell is adjacent to start cell
+        else if(row+col==1) {
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isSolveable(StudentWorldCell playerCell) {
+        return isSolveable(playerCell, new boolean[numRows][numCols]);
+    }
+
+    // deadEnds marks cells already found not to lead to the door, so each cell is searched once
+    private boolean isSolveable(StudentWorldCell playerCell, boolean[][] deadEnds) {
+        int row = playerCell.getRow();
+        int col = playerCell.getCol();
+        if(playerCell.getItems().contains(StudentWorldItem.DOOR)) {
+            return true;
+        } else if(playerCell.getItems().contains(StudentWorldItem.STUDENT) || deadEnds[row][col]) {
+            return false;
+        } else if((row < numRows-1 && isSolveable((StudentWorldCell)cells[row+1][col], deadEnds)) || (col < numCols-1 && isSolveable((StudentWorldCell)cells[row][col+1], deadEnds))) {
+            return true;
+        }
+        deadEnds[row][col] = true;
+        return false;
+    }
+
+    @Override
+    public Object clone() {
+        StudentWorldBoard b = new StudentWorldBoard(numRows, numCols, numStudents);
+        for(int i=0; i<numRows; i++) {
+            for(int j=0; j<numCols; j++) {
+                b.cells[i][j].addAll(this.cells[i][j].getItems());
+            }
+        }
+        return b;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for(int i=0; i<this.numRows; i++) {
+            for (int j = 0; j < this.numCols; j++) {
+                sb.append(this.cells[i][j].toString());
+            }
+        }
+        return sb.toString();
+    }
 }
\ No newline at end of file
@@ -1,40 +1,46 @@
-package studentworld.grid;
-
-import java.util.Set;
-import java.util.TreeSet;
-
-import gridgames.data.item.Item;
-import gridgames.grid.Cell;
-import studentworld.data.StudentWorldItem;
-import studentworld.data.StudentWorldPercept;
-
-public class StudentWorldCell extends Cell {
- 
-    private Set<StudentWorldPercept> percepts;
-
-    public StudentWorldCell(int row, int col) {
-        super(row, col);
-        this.percepts = new TreeSet<StudentWorldPercept>();
-    }
-
-    public StudentWorldCell(int row, int col, StudentWorldItem item) {
-        this(row, col);
-        this.add(item);
-    }
-
-    public Set<StudentWorldPercept> getPercepts() {
-        return this.percepts;
-    }
-
-    public void addPercept(StudentWorldPercept p) {
-        this.percepts.add(p);
-    }
-
-    public void addPerceptForItem(Item i) {
-        if(StudentWorldItem.STUDENT.equals(i)) {
-            addPercept(StudentWorldPercept.SMELL);
-        } else if(StudentWorldItem.DOOR.equals(i)) {
-            addPercept(StudentWorldPercept.GLOW);
-        }
-    }
-}
+package studentworld.grid;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import gridgames.data.item.Item;
+import gridgames.grid.Cell;
+import studentworld.data.PerceptRule;
+import studentworld.data.StudentWorldItem;
+import studentworld.data.StudentWorldPercept;
+
+public class StudentWorldCell extends Cell {
+ 
+    private Set<StudentWorldPercept> percepts;
+
+    public StudentWorldCell(int row, int col) {
+        super(row, col);
+        this.percepts = new TreeSet<StudentWorldPercept>();
+    }
+
+    public StudentWorldCell(int row, int col, StudentWorldItem item) {
+        this(row, col);
+        this.add(item);
+    }
+
+    public Set<StudentWorldPercept> getPercepts() {
+        return this.percepts;
+    }
+
+    public void addPercept(StudentWorldPercept p) {
+        this.percepts.add(p);
+    }
+
+    public void removePercept(StudentWorldPercept p) {
+        this.percepts.remove(p);
+    }
+
+    // adds what the standard rules sense of the item, see PerceptRule.STANDARD
+    public void addPerceptForItem(Item i) {
+        for(PerceptRule rule : PerceptRule.STANDARD) {
+            if(rule.getItem().equals(i)) {
+                addPercept(rule.getPercept());
+            }
+        }
+    }
+}
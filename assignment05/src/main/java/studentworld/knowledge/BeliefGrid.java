@@ -0,0 +1,169 @@
+package studentworld.knowledge;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import studentworld.data.StudentWorldPercept;
+
+/*
+ * Beliefs about the board for unreliable sensors, e.g. the EV3's. A percept is
+ * missed with probability missRate when there is something to sense and reported
+ * with probability falseAlarmRate when there isn't, so no reading is ever taken as
+ * certain and no sequence of readings contradicts another.
+ *
+ * Students are kept as per-cell log-odds, each cell on its own (a mean-field
+ * approximation): a reading moves every neighbor by how much more likely it is if
+ * that neighbor holds a student than if it doesn't, given the current beliefs about
+ * the other neighbors. The one door is kept exactly, as unnormalized log weights of
+ * a distribution over the cells: a reading only changes the relative weight of the
+ * neighbors, normalization is left to the first query after it. Either way an
+ * observation costs O(neighbors), independent of the board size.
+ *
+ * A cell is only read once, the simulator gives the same percepts on every visit
+ * so a second reading would count the same evidence twice.
+ */
+public class BeliefGrid {
+	private int numRows;
+	private int numCols;
+	private double missRate;
+	private double falseAlarmRate;
+	private double[] studentLogOdds;
+	private double[] doorLogWeights;
+	private boolean[] observed;
+	private Set<Integer> fringeCells = new LinkedHashSet<Integer>();
+	// log of the sum of exp(doorLogWeights), NaN until the next query needs it
+	private double doorLogTotal = Double.NaN;
+
+	// studentPrior is the chance a cell not yet read holds a student, rates as in the class comment
+	public BeliefGrid(int numRows, int numCols, double studentPrior, double missRate, double falseAlarmRate) {
+		if(missRate <= 0 || missRate >= 0.5 || falseAlarmRate <= 0 || falseAlarmRate >= 0.5) {
+			throw new IllegalArgumentException("error rates must be in (0, 0.5)");
+		}
+		if(studentPrior <= 0 || studentPrior >= 1) {
+			throw new IllegalArgumentException("student prior must be in (0, 1)");
+		}
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.missRate = missRate;
+		this.falseAlarmRate = falseAlarmRate;
+		this.studentLogOdds = new double[numRows * numCols];
+		Arrays.fill(studentLogOdds, Math.log(studentPrior / (1 - studentPrior)));
+		this.doorLogWeights = new double[numRows * numCols];
+		this.observed = new boolean[numRows * numCols];
+	}
+
+	public int getNumRows() {
+		return this.numRows;
+	}
+
+	public int getNumCols() {
+		return this.numCols;
+	}
+
+	/*
+	 * The player stands on the cell, so it holds neither a student nor the door, and
+	 * senses its neighbors with the given signature (see StudentWorldPercept.getSignature).
+	 * Returns false if the cell was read before, see the class comment.
+	 */
+	public boolean observe(int row, int col, int signature) {
+		int cell = row * numCols + col;
+		if(observed[cell]) {
+			return false;
+		}
+		observed[cell] = true;
+		fringeCells.remove(cell);
+		studentLogOdds[cell] = Double.NEGATIVE_INFINITY;
+		doorLogWeights[cell] = Double.NEGATIVE_INFINITY;
+		int[] neighbors = Neighbors.of(cell, numRows, numCols);
+		for(int neighbor : neighbors) {
+			if(neighbor >= 0 && !observed[neighbor]) {
+				fringeCells.add(neighbor);
+			}
+		}
+		updateStudents(neighbors, StudentWorldPercept.hasSmell(signature));
+		updateDoor(neighbors, StudentWorldPercept.hasGlow(signature));
+		doorLogTotal = Double.NaN;
+		return true;
+	}
+
+	private void updateStudents(int[] neighbors, boolean smell) {
+		// chance none of the neighbors before / after i holds a student
+		double[] noneBefore = new double[neighbors.length + 1];
+		double[] noneAfter = new double[neighbors.length + 1];
+		noneBefore[0] = 1;
+		noneAfter[neighbors.length] = 1;
+		for(int i=0; i<neighbors.length; i++) {
+			noneBefore[i+1] = noneBefore[i] * (1 - getStudentProbability(neighbors[i]));
+		}
+		for(int i=neighbors.length-1; i>=0; i--) {
+			noneAfter[i] = noneAfter[i+1] * (1 - getStudentProbability(neighbors[i]));
+		}
+		for(int i=0; i<neighbors.length; i++) {
+			if(neighbors[i] < 0 || observed[neighbors[i]]) {
+				continue;
+			}
+			double otherStudent = 1 - noneBefore[i] * noneAfter[i+1];
+			double smellIfStudent = 1 - missRate;
+			double smellIfNot = otherStudent * (1 - missRate) + (1 - otherStudent) * falseAlarmRate;
+			if(smell) {
+				studentLogOdds[neighbors[i]] += Math.log(smellIfStudent / smellIfNot);
+			} else {
+				studentLogOdds[neighbors[i]] += Math.log((1 - smellIfStudent) / (1 - smellIfNot));
+			}
+		}
+	}
+
+	// only the neighbors' weight changes relative to the other cells'
+	private void updateDoor(int[] neighbors, boolean glow) {
+		double ratio = glow ? Math.log((1 - missRate) / falseAlarmRate) : Math.log(missRate / (1 - falseAlarmRate));
+		for(int neighbor : neighbors) {
+			if(neighbor >= 0) {
+				doorLogWeights[neighbor] += ratio;
+			}
+		}
+	}
+
+	public boolean isObserved(int row, int col) {
+		return observed[row * numCols + col];
+	}
+
+	public float getStudentProbability(int row, int col) {
+		return (float) getStudentProbability(row * numCols + col);
+	}
+
+	private double getStudentProbability(int cell) {
+		if(cell < 0) {
+			return 0;
+		}
+		return 1 / (1 + Math.exp(-studentLogOdds[cell]));
+	}
+
+	public float getDoorProbability(int row, int col) {
+		if(observed[row * numCols + col]) {
+			return 0;
+		}
+		if(Double.isNaN(doorLogTotal)) {
+			double max = Double.NEGATIVE_INFINITY;
+			for(double weight : doorLogWeights) {
+				max = Math.max(max, weight);
+			}
+			double sum = 0;
+			for(double weight : doorLogWeights) {
+				sum += Math.exp(weight - max);
+			}
+			doorLogTotal = max + Math.log(sum);
+		}
+		return (float) Math.exp(doorLogWeights[row * numCols + col] - doorLogTotal);
+	}
+
+	// cell indexes of the unread cells next to a read one, kept up to date by observe()
+	public int[] getFringeCells() {
+		int[] cells = new int[fringeCells.size()];
+		int i = 0;
+		for(int cell : fringeCells) {
+			cells[i++] = cell;
+		}
+		return cells;
+	}
+}
@@ -0,0 +1,162 @@
+package studentworld.knowledge;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Derived student/door classification for every cell of the board.
+ * Each cell holds FALSE, TRUE or UNKNOWN for both the student and the door.
+ * Cells left UNKNOWN may carry an estimated student probability, see FrontierCounter.
+ * Values are kept as bitsets (known, and true if known) so copying and comparing
+ * states is a pass over words, not cells, see addDecided().
+ */
+public class BoardKnowledge {
+	public static final byte FALSE = 0;
+	public static final byte TRUE = 1;
+	public static final byte UNKNOWN = 2;
+
+	private int numRows;
+	private int numCols;
+	private long[] studentKnown;
+	private long[] studentTrue;
+	private long[] doorKnown;
+	private long[] doorTrue;
+	// by cell index, only the cells an estimate was set for
+	private Map<Integer, Float> studentProbabilities;
+
+	public BoardKnowledge(int numRows, int numCols) {
+		this.numRows = numRows;
+		this.numCols = numCols;
+		int numWords = (numRows * numCols + 63) >>> 6;
+		this.studentKnown = new long[numWords];
+		this.studentTrue = new long[numWords];
+		this.doorKnown = new long[numWords];
+		this.doorTrue = new long[numWords];
+	}
+
+	public int getNumRows() {
+		return this.numRows;
+	}
+
+	public int getNumCols() {
+		return this.numCols;
+	}
+
+	public byte getStudent(int row, int col) {
+		return get(studentKnown, studentTrue, row * numCols + col);
+	}
+
+	public void setStudent(int row, int col, byte value) {
+		set(studentKnown, studentTrue, row * numCols + col, value);
+	}
+
+	public byte getDoor(int row, int col) {
+		return get(doorKnown, doorTrue, row * numCols + col);
+	}
+
+	public void setDoor(int row, int col, byte value) {
+		set(doorKnown, doorTrue, row * numCols + col, value);
+	}
+
+	private static byte get(long[] known, long[] isTrue, int cell) {
+		long bit = 1L << cell;
+		if((known[cell >>> 6] & bit) == 0) {
+			return UNKNOWN;
+		}
+		return (isTrue[cell >>> 6] & bit) != 0 ? TRUE : FALSE;
+	}
+
+	private static void set(long[] known, long[] isTrue, int cell, byte value) {
+		long bit = 1L << cell;
+		if(value == UNKNOWN) {
+			known[cell >>> 6] &= ~bit;
+		} else {
+			known[cell >>> 6] |= bit;
+		}
+		if(value == TRUE) {
+			isTrue[cell >>> 6] |= bit;
+		} else {
+			isTrue[cell >>> 6] &= ~bit;
+		}
+	}
+
+	/*
+	 * Takes over every value other decided that this leaves UNKNOWN and returns the
+	 * cells that changed. Values this already decided are kept; knowledge about one
+	 * game only grows, so other never disagrees with them.
+	 */
+	public KnowledgeDelta addDecided(BoardKnowledge other) {
+		KnowledgeDelta delta = new KnowledgeDelta();
+		for(int word=0; word<studentKnown.length; word++) {
+			long newStudents = other.studentKnown[word] & ~studentKnown[word];
+			long newDoors = other.doorKnown[word] & ~doorKnown[word];
+			if((newStudents | newDoors) == 0) {
+				continue;
+			}
+			studentKnown[word] |= newStudents;
+			studentTrue[word] |= other.studentTrue[word] & newStudents;
+			doorKnown[word] |= newDoors;
+			doorTrue[word] |= other.doorTrue[word] & newDoors;
+			for(long changed = newStudents | newDoors; changed != 0; changed &= changed - 1) {
+				int cell = (word << 6) + Long.numberOfTrailingZeros(changed);
+				delta.add(cell, get(studentKnown, studentTrue, cell), get(doorKnown, doorTrue, cell));
+			}
+		}
+		return delta;
+	}
+
+	public boolean isSafe(int row, int col) {
+		return getStudent(row, col) == FALSE;
+	}
+
+	public boolean isDoor(int row, int col) {
+		return getDoor(row, col) == TRUE;
+	}
+
+	// NaN unless an estimate was set for the cell
+	public float getStudentProbability(int row, int col) {
+		Float probability = studentProbabilities != null ? studentProbabilities.get(row * numCols + col) : null;
+		return probability != null ? probability : Float.NaN;
+	}
+
+	public void setStudentProbability(int row, int col, float probability) {
+		if(studentProbabilities == null) {
+			studentProbabilities = new HashMap<Integer, Float>();
+		}
+		studentProbabilities.put(row * numCols + col, probability);
+	}
+
+	public BoardKnowledge copy() {
+		BoardKnowledge copy = new BoardKnowledge(numRows, numCols);
+		System.arraycopy(studentKnown, 0, copy.studentKnown, 0, studentKnown.length);
+		System.arraycopy(studentTrue, 0, copy.studentTrue, 0, studentTrue.length);
+		System.arraycopy(doorKnown, 0, copy.doorKnown, 0, doorKnown.length);
+		System.arraycopy(doorTrue, 0, copy.doorTrue, 0, doorTrue.length);
+		if(studentProbabilities != null) {
+			copy.studentProbabilities = new HashMap<Integer, Float>(studentProbabilities);
+		}
+		return copy;
+	}
+
+	// same layout as the solver variables print, so it can stand in for getBoardState()
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for(int row=0; row<numRows; row++) {
+			for(int col=0; col<numCols; col++) {
+				appendValue(sb.append("student (").append(row).append(',').append(col).append(") = "), getStudent(row, col));
+				appendValue(sb.append("door (").append(row).append(',').append(col).append(") = "), getDoor(row, col));
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void appendValue(StringBuilder sb, byte value) {
+		if(value == UNKNOWN) {
+			sb.append("[0,1]");
+		} else {
+			sb.append(value);
+		}
+		sb.append('\n');
+	}
+}
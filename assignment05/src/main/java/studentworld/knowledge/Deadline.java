@@ -0,0 +1,16 @@
+package studentworld.knowledge;
+
+/*
+ * Deadlines are System.nanoTime() values, NONE for none. nanoTime() may wrap, so
+ * they are compared by the sign of the difference.
+ */
+public final class Deadline {
+	public static final long NONE = Long.MAX_VALUE;
+
+	private Deadline() {
+	}
+
+	public static boolean isPast(long deadlineNanos) {
+		return deadlineNanos != NONE && System.nanoTime() - deadlineNanos > 0;
+	}
+}
@@ -0,0 +1,39 @@
+package studentworld.knowledge;
+
+/*
+ * Mirroring across the main diagonal maps a square StudentWorld onto another valid
+ * world with the same start cell, so a knowledge state and its transpose have the
+ * same answers up to transposing the cells. Keys are canonicalized by taking the
+ * smaller of the key and the transposed key; results computed in the canonical
+ * orientation are mapped back with transposeCell/transpose when isTransposed.
+ */
+public final class DiagonalSymmetry {
+
+	private DiagonalSymmetry() {
+	}
+
+	public static long canonical(long key, long transposedKey) {
+		return Math.min(key, transposedKey);
+	}
+
+	// true if the canonical orientation is the transposed one
+	public static boolean isTransposed(long key, long transposedKey) {
+		return transposedKey < key;
+	}
+
+	// cell index row * size + col of a square board mapped to col * size + row
+	public static int transposeCell(int cell, int size) {
+		return (cell % size) * size + cell / size;
+	}
+
+	public static BoardKnowledge transpose(BoardKnowledge knowledge) {
+		BoardKnowledge transposed = new BoardKnowledge(knowledge.getNumCols(), knowledge.getNumRows());
+		for(int row=0; row<knowledge.getNumRows(); row++) {
+			for(int col=0; col<knowledge.getNumCols(); col++) {
+				transposed.setStudent(col, row, knowledge.getStudent(row, col));
+				transposed.setDoor(col, row, knowledge.getDoor(row, col));
+			}
+		}
+		return transposed;
+	}
+}
@@ -0,0 +1,240 @@
+package studentworld.knowledge;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import studentworld.data.StudentWorldPercept;
+
+/*
+ * Estimates how likely each open fringe cell is to hold a student, for the turns on
+ * which nothing safe is known and a risky move has to be picked. Only the smells of
+ * visited cells constrain the fringe, and each one only asks for a student on one of
+ * its open neighbors, so the placements on the fringe that agree with every smell can
+ * be enumerated exactly; the probability of a cell is the share of them that put a
+ * student on it (every placement counts the same, the number of students is unknown).
+ * Open cells that share no smell are counted independently, smallest group first, so
+ * a deadline only leaves the largest groups without an estimate.
+ */
+public class FrontierCounter {
+	private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+	private int numRows;
+	private int numCols;
+	private long deadlineNanos;
+	private long numNodes;
+	private boolean interrupted;
+
+	// per group: the open cells and, for each smell, the positions of its open neighbors
+	private int[] cells;
+	private int[][] clauses;
+	// clauses whose last open neighbor in enumeration order is the position
+	private List<List<int[]>> clausesEndingAt;
+	private boolean[] assignment;
+	private long[] studentCounts;
+	private long numPlacements;
+
+	public FrontierCounter(int numRows, int numCols) {
+		this.numRows = numRows;
+		this.numCols = numCols;
+	}
+
+	// sets the student probability of each open fringe cell whose group was counted
+	// before the System.nanoTime() deadline; false if the deadline cut the counting short
+	public boolean count(LocalRuleInference observations, BoardKnowledge knowledge, int[] fringeCells, long deadlineNanos) {
+		this.deadlineNanos = deadlineNanos;
+		this.numNodes = 0;
+		this.interrupted = false;
+
+		List<Integer> openCells = new ArrayList<Integer>();
+		List<int[]> smells = new ArrayList<int[]>();
+		findOpenCellsAndSmells(observations, knowledge, fringeCells, openCells, smells);
+		List<Group> groups = group(openCells, smells);
+		for(Group group : groups) {
+			if(!countGroup(group)) {
+				return false;
+			}
+			for(int i=0; i<cells.length; i++) {
+				knowledge.setStudentProbability(cells[i] / numCols, cells[i] % numCols,
+						numPlacements == 0 ? Float.NaN : (float) studentCounts[i] / numPlacements);
+			}
+		}
+		return true;
+	}
+
+	// the open fringe cells and, for each smell not explained by a known student, its open neighbors
+	void findOpenCellsAndSmells(LocalRuleInference observations, BoardKnowledge knowledge, int[] fringeCells,
+			List<Integer> openCells, List<int[]> smells) {
+		Set<Integer> smellyCells = new LinkedHashSet<Integer>();
+		for(int cell : fringeCells) {
+			int row = cell / numCols;
+			int col = cell % numCols;
+			if(knowledge.getStudent(row, col) != BoardKnowledge.UNKNOWN) {
+				continue;
+			}
+			openCells.add(cell);
+			for(int neighbor : Neighbors.of(cell, numRows, numCols)) {
+				if(neighbor < 0) {
+					continue;
+				}
+				int signature = observations.getSignature(neighbor / numCols, neighbor % numCols);
+				if(signature >= 0 && StudentWorldPercept.hasSmell(signature)) {
+					smellyCells.add(neighbor);
+				}
+			}
+		}
+		for(int smellyCell : smellyCells) {
+			List<Integer> open = new ArrayList<Integer>();
+			boolean satisfied = false;
+			for(int neighbor : Neighbors.of(smellyCell, numRows, numCols)) {
+				if(neighbor < 0) {
+					continue;
+				}
+				byte student = knowledge.getStudent(neighbor / numCols, neighbor % numCols);
+				if(student == BoardKnowledge.TRUE) {
+					satisfied = true;
+				} else if(student == BoardKnowledge.UNKNOWN) {
+					open.add(neighbor);
+				}
+			}
+			// a smell already explained by a known student constrains nothing
+			if(!satisfied) {
+				int[] clause = new int[open.size()];
+				for(int i=0; i<clause.length; i++) {
+					clause[i] = open.get(i);
+				}
+				smells.add(clause);
+			}
+		}
+	}
+
+	private static class Group {
+		List<Integer> cells = new ArrayList<Integer>();
+		List<int[]> clauses = new ArrayList<int[]>();
+	}
+
+	// splits the open cells into groups that share no smell, smallest first
+	private List<Group> group(List<Integer> openCells, List<int[]> smells) {
+		int[] parent = new int[openCells.size()];
+		// by cell index, sized by the fringe rather than the board
+		Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
+		for(int i=0; i<parent.length; i++) {
+			parent[i] = i;
+			positions.put(openCells.get(i), i);
+		}
+		for(int[] clause : smells) {
+			for(int i=1; i<clause.length; i++) {
+				parent[find(parent, positions.get(clause[i]))] = find(parent, positions.get(clause[0]));
+			}
+		}
+		List<Group> groups = new ArrayList<Group>();
+		Group[] byRoot = new Group[parent.length];
+		for(int i=0; i<parent.length; i++) {
+			int root = find(parent, i);
+			if(byRoot[root] == null) {
+				byRoot[root] = new Group();
+				groups.add(byRoot[root]);
+			}
+			byRoot[root].cells.add(openCells.get(i));
+		}
+		for(int[] clause : smells) {
+			if(clause.length > 0) {
+				byRoot[find(parent, positions.get(clause[0]))].clauses.add(clause);
+			}
+		}
+		Collections.sort(groups, new Comparator<Group>() {
+			@Override
+			public int compare(Group a, Group b) {
+				return a.cells.size() - b.cells.size();
+			}
+		});
+		return groups;
+	}
+
+	private static int find(int[] parent, int i) {
+		while(parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private boolean countGroup(Group group) {
+		int size = group.cells.size();
+		cells = new int[size];
+		for(int i=0; i<size; i++) {
+			cells[i] = group.cells.get(i);
+		}
+		clausesEndingAt = new ArrayList<List<int[]>>();
+		for(int i=0; i<size; i++) {
+			clausesEndingAt.add(new ArrayList<int[]>());
+		}
+		for(int[] clause : group.clauses) {
+			int[] positions = new int[clause.length];
+			int last = 0;
+			for(int i=0; i<clause.length; i++) {
+				positions[i] = indexOf(cells, clause[i]);
+				last = Math.max(last, positions[i]);
+			}
+			clausesEndingAt.get(last).add(positions);
+		}
+		assignment = new boolean[size];
+		studentCounts = new long[size];
+		numPlacements = 0;
+		enumerate(0);
+		return !interrupted;
+	}
+
+	private void enumerate(int position) {
+		if(interrupted) {
+			return;
+		}
+		if(++numNodes % DEADLINE_CHECK_INTERVAL == 0 && Deadline.isPast(deadlineNanos)) {
+			interrupted = true;
+			return;
+		}
+		if(position == cells.length) {
+			numPlacements++;
+			for(int i=0; i<cells.length; i++) {
+				if(assignment[i]) {
+					studentCounts[i]++;
+				}
+			}
+			return;
+		}
+		for(int value=0; value<=1; value++) {
+			assignment[position] = value == 1;
+			if(isSatisfied(clausesEndingAt.get(position))) {
+				enumerate(position + 1);
+			}
+		}
+	}
+
+	// every clause here has all its cells assigned, it needs one of them to hold a student
+	private boolean isSatisfied(List<int[]> clauses) {
+		for(int[] clause : clauses) {
+			boolean any = false;
+			for(int position : clause) {
+				any |= assignment[position];
+			}
+			if(!any) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int indexOf(int[] values, int value) {
+		for(int i=0; i<values.length; i++) {
+			if(values[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,17 @@
+package studentworld.knowledge;
+
+/*
+ * Increasingly expensive stages the solver runs on a turn when the cheap tiers find
+ * nothing decisive. Under a turn budget the strongest stage that finished before the
+ * deadline is recorded, see StudentWorldConstraintSolver.getLastStage().
+ */
+public enum InferenceStage {
+	// consequences of the observations without search
+	PROPAGATION,
+	// every open fringe variable tried both ways
+	PROBING,
+	// student probabilities of the open fringe cells, see FrontierCounter
+	COUNTING,
+	// the same estimated from samples when counting runs out of time, see WorldSampler
+	SAMPLING
+}
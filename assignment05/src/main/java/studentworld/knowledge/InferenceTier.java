@@ -0,0 +1,11 @@
+package studentworld.knowledge;
+
+/*
+ * Which stage of StudentWorldConstraintSolver.getKnowledge() produced the answer
+ * for a turn, from cheapest to most expensive.
+ */
+public enum InferenceTier {
+	LOCAL_RULES,
+	CACHE,
+	PROPAGATION
+}
@@ -0,0 +1,101 @@
+package studentworld.knowledge;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Bounded, thread-safe LRU cache from knowledge-state keys to the classification
+ * the solver derived for them. One cache can be shared by every game of a batch
+ * run on the same board size. Entries are shared between callers and must not be
+ * modified after they are put.
+ */
+public class KnowledgeCache {
+
+	private int capacity;
+	private LinkedHashMap<Long, BoardKnowledge> entries;
+	private AtomicLong hits;
+	private AtomicLong misses;
+	private AtomicLong evictions;
+
+	public KnowledgeCache(int capacity) {
+		if(capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+		this.evictions = new AtomicLong();
+		// access order makes iteration order least recently used first
+		this.entries = new LinkedHashMap<Long, BoardKnowledge>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, BoardKnowledge> eldest) {
+				if(size() > KnowledgeCache.this.capacity) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public BoardKnowledge get(long key) {
+		BoardKnowledge knowledge;
+		synchronized(entries) {
+			knowledge = entries.get(key);
+		}
+		if(knowledge == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return knowledge;
+	}
+
+	public void put(long key, BoardKnowledge knowledge) {
+		synchronized(entries) {
+			entries.put(key, knowledge);
+		}
+	}
+
+	public int size() {
+		synchronized(entries) {
+			return entries.size();
+		}
+	}
+
+	public void clear() {
+		synchronized(entries) {
+			entries.clear();
+		}
+	}
+
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	public double getHitRate() {
+		long total = getHitCount() + getMissCount();
+		return total == 0 ? 0.0 : (double) getHitCount() / total;
+	}
+
+	@Override
+	public String toString() {
+		return "KnowledgeCache[size=" + size() + "/" + capacity + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+				+ ", evictions=" + getEvictionCount() + ", hitRate=" + String.format("%.3f", getHitRate()) + "]";
+	}
+}
@@ -0,0 +1,48 @@
+package studentworld.knowledge;
+
+import java.util.Arrays;
+
+/*
+ * Cells whose student or door value became decided during one
+ * StudentWorldConstraintSolver.getKnowledge() call, with the values they have now.
+ * Consumers that keep their own view of the board apply these instead of scanning
+ * the whole BoardKnowledge every turn.
+ */
+public class KnowledgeDelta {
+	private int[] cells = new int[8];
+	private byte[] values = new byte[8];
+	private int size;
+
+	void add(int cell, byte student, byte door) {
+		if(size == cells.length) {
+			cells = Arrays.copyOf(cells, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		cells[size] = cell;
+		values[size] = (byte) (student << 2 | door);
+		size++;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	// cell index (row * numCols + col) of the i-th change
+	public int getCell(int i) {
+		return cells[i];
+	}
+
+	// BoardKnowledge value, UNKNOWN if only the door was decided
+	public byte getStudent(int i) {
+		return (byte) (values[i] >> 2);
+	}
+
+	// BoardKnowledge value, UNKNOWN if only the student was decided
+	public byte getDoor(int i) {
+		return (byte) (values[i] & 3);
+	}
+}
@@ -0,0 +1,115 @@
+package studentworld.knowledge;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import studentworld.data.StudentWorldPercept;
+
+/*
+ * Incrementally maintained Zobrist key of the set of (cell, percept) observations.
+ * Two games that observed the same cells with the same percepts have the same key,
+ * regardless of the order the cells were visited in. On square boards the key of
+ * the transposed observations is kept as well, see DiagonalSymmetry.
+ */
+public class KnowledgeKey {
+	private static final byte UNOBSERVED = -1;
+
+	private int numRows;
+	private int numCols;
+	private byte[] signatures;
+	private int numObserved;
+	private long key;
+	private long transposedKey;
+
+	public KnowledgeKey(int numRows, int numCols) {
+		this(numRows, numCols, 0);
+	}
+
+	// modelKey (see Zobrist.modelKey) is mixed into every key, 0 for the keys of a policy table
+	public KnowledgeKey(int numRows, int numCols, long modelKey) {
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.signatures = new byte[numRows * numCols];
+		Arrays.fill(signatures, UNOBSERVED);
+		this.key = Zobrist.boardKey(numRows, numCols) ^ modelKey;
+		this.transposedKey = key;
+	}
+
+	public int getNumRows() {
+		return this.numRows;
+	}
+
+	public int getNumCols() {
+		return this.numCols;
+	}
+
+	// returns false if the cell was already observed, in which case the key is unchanged
+	public boolean observe(int row, int col, Set<StudentWorldPercept> percepts) {
+		return observe(row, col, StudentWorldPercept.getSignature(percepts));
+	}
+
+	public boolean observe(int row, int col, int signature) {
+		int index = row * numCols + col;
+		if(signatures[index] != UNOBSERVED) {
+			return false;
+		}
+		signatures[index] = (byte) signature;
+		key ^= Zobrist.observationKey(numCols, row, col, signature);
+		if(isSquare()) {
+			transposedKey ^= Zobrist.observationKey(numCols, col, row, signature);
+		} else {
+			transposedKey = key;
+		}
+		numObserved++;
+		return true;
+	}
+
+	public boolean isObserved(int row, int col) {
+		return signatures[row * numCols + col] != UNOBSERVED;
+	}
+
+	// percept signature of an observed cell, or -1 if it hasn't been observed
+	public int getSignature(int row, int col) {
+		return signatures[row * numCols + col];
+	}
+
+	public int getNumObserved() {
+		return this.numObserved;
+	}
+
+	public long getKey() {
+		return this.key;
+	}
+
+	public boolean isSquare() {
+		return numRows == numCols;
+	}
+
+	public long getCanonicalKey() {
+		return DiagonalSymmetry.canonical(key, transposedKey);
+	}
+
+	public boolean isTransposed() {
+		return DiagonalSymmetry.isTransposed(key, transposedKey);
+	}
+
+	// key of the observations together with the player position, in canonical orientation
+	public long getCanonicalStateKey(int row, int col) {
+		return DiagonalSymmetry.canonical(getStateKey(row, col), getTransposedStateKey(row, col));
+	}
+
+	public boolean isStateTransposed(int row, int col) {
+		return DiagonalSymmetry.isTransposed(getStateKey(row, col), getTransposedStateKey(row, col));
+	}
+
+	private long getStateKey(int row, int col) {
+		return key ^ Zobrist.positionKey(numCols, row, col);
+	}
+
+	private long getTransposedStateKey(int row, int col) {
+		if(!isSquare()) {
+			return getStateKey(row, col);
+		}
+		return transposedKey ^ Zobrist.positionKey(numCols, col, row);
+	}
+}
@@ -0,0 +1,228 @@
+package studentworld.knowledge;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import studentworld.data.StudentWorldPercept;
+
+/*
+ * Fast, incomplete inference from the percepts of visited cells, using only rules
+ * that look at one cell and its neighbors:
+ *   a visited cell holds neither a student nor the door
+ *   no smell (glow): no neighbor holds a student (the door)
+ *   smell (glow) with a single neighbor left that can hold a student (the door): it does
+ *   glow, or a known door: no other cell holds the door
+ *   a cell holding the door holds no student and the other way around
+ * Everything these rules derive holds on every board consistent with the percepts,
+ * so what they find is safe to act on. They are not complete: each rule reads one
+ * percept at a time, so whatever takes two at once, e.g. a smell whose open neighbors
+ * include all of another's, or the student count ruling out the rest of the fringe,
+ * is left UNKNOWN here although the solver decides it.
+ * An UNKNOWN from here only means these rules can't decide the cell, a turn they
+ * find no safe cell or door for still needs the solver.
+ * Rules are only re-run for visited cells next to a cell whose value changed; a glow
+ * or a found door still rules out the door on every cell of the board.
+ */
+public class LocalRuleInference {
+	private int numRows;
+	private int numCols;
+	// by cell index, only the visited cells are in it
+	private Map<Integer, Byte> signatures;
+	private BoardKnowledge knowledge;
+	private Set<Integer> fringeCells;
+	// each cell is queued once however many of its neighbors change
+	private Set<Integer> pending;
+	private int doorCell = -1;
+	private long key;
+
+	public LocalRuleInference(int numRows, int numCols) {
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.signatures = new HashMap<Integer, Byte>();
+		this.knowledge = new BoardKnowledge(numRows, numCols);
+		this.fringeCells = new LinkedHashSet<Integer>();
+		this.pending = new LinkedHashSet<Integer>();
+	}
+
+	// signature as in StudentWorldPercept.getSignature, rules are applied until nothing changes
+	public void observe(int row, int col, int signature) {
+		if(record(row * numCols + col, signature)) {
+			applyPendingRules();
+		}
+	}
+
+	// observe() for each (row, col, signature) triple, with the rules applied once after all of them
+	public void observeAll(int[] observations) {
+		for(int i=0; i<observations.length; i+=3) {
+			record(observations[i] * numCols + observations[i+1], observations[i+2]);
+		}
+		applyPendingRules();
+	}
+
+	// what the cell itself says, its rules are queued; false if it was already visited
+	private boolean record(int cell, int signature) {
+		if(signatures.containsKey(cell)) {
+			return false;
+		}
+		int row = cell / numCols;
+		int col = cell % numCols;
+		signatures.put(cell, (byte) signature);
+		key ^= Zobrist.observationKey(numCols, row, col, signature);
+		fringeCells.remove(cell);
+		for(int neighbor : Neighbors.of(cell, numRows, numCols)) {
+			if(neighbor >= 0 && !signatures.containsKey(neighbor)) {
+				fringeCells.add(neighbor);
+			}
+		}
+		set(cell, true, BoardKnowledge.FALSE);
+		set(cell, false, BoardKnowledge.FALSE);
+		if(StudentWorldPercept.hasGlow(signature)) {
+			excludeDoorsAwayFrom(row, col);
+		}
+		pending.add(cell);
+		return true;
+	}
+
+	private void applyPendingRules() {
+		while(!pending.isEmpty()) {
+			Iterator<Integer> first = pending.iterator();
+			int next = first.next();
+			first.remove();
+			int signature = signatures.get(next);
+			applyNeighborRule(next, StudentWorldPercept.hasSmell(signature), true);
+			applyNeighborRule(next, StudentWorldPercept.hasGlow(signature), false);
+		}
+	}
+
+	// independent copy, e.g. to try an observation without making it
+	public LocalRuleInference copy() {
+		LocalRuleInference copy = new LocalRuleInference(numRows, numCols, new HashMap<Integer, Byte>(signatures), knowledge.copy(),
+				new LinkedHashSet<Integer>(fringeCells));
+		copy.doorCell = doorCell;
+		copy.key = key;
+		return copy;
+	}
+
+	private LocalRuleInference(int numRows, int numCols, Map<Integer, Byte> signatures, BoardKnowledge knowledge, Set<Integer> fringeCells) {
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.signatures = signatures;
+		this.knowledge = knowledge;
+		this.fringeCells = fringeCells;
+		this.pending = new LinkedHashSet<Integer>();
+	}
+
+	// Zobrist key of the observations, see Zobrist.observationKey
+	public long getKey() {
+		return this.key;
+	}
+
+	public int getNumRows() {
+		return this.numRows;
+	}
+
+	public int getNumCols() {
+		return this.numCols;
+	}
+
+	public boolean isVisited(int row, int col) {
+		return signatures.containsKey(row * numCols + col);
+	}
+
+	// signature the cell was observed with, -1 if it wasn't visited
+	public int getSignature(int row, int col) {
+		Byte signature = signatures.get(row * numCols + col);
+		return signature != null ? signature : -1;
+	}
+
+	public BoardKnowledge getKnowledge() {
+		return this.knowledge;
+	}
+
+	// cell indexes of the unvisited cells next to a visited one, kept up to date by observe()
+	public int[] getFringeCells() {
+		int[] cells = new int[fringeCells.size()];
+		int i = 0;
+		for(int cell : fringeCells) {
+			cells[i++] = cell;
+		}
+		return cells;
+	}
+
+	// true if the rules know where the door is or of a safe unvisited cell next to a visited one
+	public boolean isDecisive() {
+		if(doorCell >= 0) {
+			return true;
+		}
+		for(int cell : fringeCells) {
+			if(knowledge.isSafe(cell / numCols, cell % numCols)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// sensed: neighbors must hold at least one (student) or exactly one (door), otherwise none
+	private void applyNeighborRule(int cell, boolean sensed, boolean student) {
+		int candidates = 0;
+		int candidate = -1;
+		for(int neighbor : Neighbors.of(cell, numRows, numCols)) {
+			if(neighbor < 0) {
+				continue;
+			}
+			if(!sensed) {
+				set(neighbor, student, BoardKnowledge.FALSE);
+			} else if(get(neighbor, student) != BoardKnowledge.FALSE) {
+				candidates++;
+				candidate = neighbor;
+			}
+		}
+		if(sensed && candidates == 1) {
+			set(candidate, student, BoardKnowledge.TRUE);
+		}
+	}
+
+	// there is one door, so a glow rules it out everywhere but next to the glowing cell
+	private void excludeDoorsAwayFrom(int row, int col) {
+		for(int r=0; r<numRows; r++) {
+			for(int c=0; c<numCols; c++) {
+				if(Math.abs(r - row) + Math.abs(c - col) != 1) {
+					set(r * numCols + c, false, BoardKnowledge.FALSE);
+				}
+			}
+		}
+	}
+
+	private byte get(int cell, boolean student) {
+		return student ? knowledge.getStudent(cell / numCols, cell % numCols) : knowledge.getDoor(cell / numCols, cell % numCols);
+	}
+
+	// sets an unknown value and queues the visited neighbors whose rules it may trigger
+	private void set(int cell, boolean student, byte value) {
+		if(get(cell, student) != BoardKnowledge.UNKNOWN) {
+			return;
+		}
+		if(student) {
+			knowledge.setStudent(cell / numCols, cell % numCols, value);
+		} else {
+			knowledge.setDoor(cell / numCols, cell % numCols, value);
+		}
+		for(int neighbor : Neighbors.of(cell, numRows, numCols)) {
+			if(neighbor >= 0 && signatures.containsKey(neighbor)) {
+				pending.add(neighbor);
+			}
+		}
+		if(value == BoardKnowledge.TRUE) {
+			set(cell, !student, BoardKnowledge.FALSE);
+			if(!student) {
+				doorCell = cell;
+				for(int other=0; other<numRows*numCols; other++) {
+					set(other, false, BoardKnowledge.FALSE);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package studentworld.knowledge;
+
+/*
+ * The cells next to a cell, by cell index (row * numCols + col), for the classes
+ * that only know the board by its size.
+ */
+public final class Neighbors {
+
+	private Neighbors() {
+	}
+
+	// up, right, down, left, -1 where the board ends
+	public static int[] of(int cell, int numRows, int numCols) {
+		int row = cell / numCols;
+		int col = cell % numCols;
+		return new int[] {
+			row > 0 ? cell - numCols : -1,
+			col < numCols-1 ? cell + 1 : -1,
+			row < numRows-1 ? cell + numCols : -1,
+			col > 0 ? cell - 1 : -1
+		};
+	}
+}
@@ -0,0 +1,257 @@
+package studentworld.knowledge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/*
+ * Estimates the same student probabilities as FrontierCounter for fringes too large
+ * to enumerate, by sampling the placements instead of counting them. Each thread runs
+ * its own Gibbs chain: a cell is redrawn 50/50 unless it is the only student some
+ * smell has left, then it stays. The smells only ever ask for a student, so every
+ * placement agrees with them once all cells hold one, which is where the chains start
+ * and how any placement reaches any other; the chain's samples are spread evenly over
+ * the placements, as the counter's are.
+ *
+ * Samples are averaged in batches of BATCH_SWEEPS sweeps over the cells, and the spread
+ * of the batch means over all threads gives a 95% confidence radius for every
+ * estimate. Chains run until the deadline, without one each thread stops after
+ * MAX_BATCHES batches. The door is left out, as it is by the counter.
+ */
+public class WorldSampler {
+	private static final int BURN_IN_SWEEPS = 16;
+	private static final int BATCH_SWEEPS = 16;
+	private static final int MIN_BATCHES = 2;
+	private static final int MAX_BATCHES = 256;
+
+	private int numRows;
+	private int numCols;
+	private int numThreads;
+	private long seed;
+	private int numCalls;
+	private FrontierCounter frontier;
+	private ExecutorService threads;
+	// by cell index, only the cells sampled by the last call
+	private Map<Integer, Float> confidenceRadii = new HashMap<Integer, Float>();
+	private long numSweeps;
+
+	// the model of the fringe after a call to sample(), shared by the chains
+	private int[] cells;
+	private int[][] clauses;
+	private int[][] cellClauses;
+
+	public WorldSampler(int numRows, int numCols, int numThreads, long seed) {
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.numThreads = numThreads;
+		this.seed = seed;
+		this.frontier = new FrontierCounter(numRows, numCols);
+		this.threads = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "world-sampler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/*
+	 * Sets the student probability of each open fringe cell that doesn't have one yet,
+	 * e.g. because counting ran out of time, from samples drawn until the System.nanoTime()
+	 * deadline; false if there was no time for enough samples to estimate anything.
+	 */
+	public boolean sample(LocalRuleInference observations, BoardKnowledge knowledge, int[] fringeCells, long deadlineNanos) {
+		List<Integer> openCells = new ArrayList<Integer>();
+		List<int[]> smells = new ArrayList<int[]>();
+		frontier.findOpenCellsAndSmells(observations, knowledge, fringeCells, openCells, smells);
+		buildModel(openCells, smells);
+		confidenceRadii.clear();
+		numSweeps = 0;
+		if(cells.length == 0) {
+			return true;
+		}
+
+		List<Callable<Chain>> chains = new ArrayList<Callable<Chain>>();
+		for(int i=0; i<numThreads; i++) {
+			final Chain chain = new Chain(new Random(Zobrist.mix(seed + (long) numCalls * numThreads + i)), deadlineNanos);
+			chains.add(new Callable<Chain>() {
+				@Override
+				public Chain call() {
+					chain.run();
+					return chain;
+				}
+			});
+		}
+		numCalls++;
+
+		double[] sums = new double[cells.length];
+		double[] sumSquares = new double[cells.length];
+		int numBatches = 0;
+		try {
+			for(Future<Chain> future : threads.invokeAll(chains)) {
+				Chain chain = future.get();
+				for(int i=0; i<cells.length; i++) {
+					sums[i] += chain.sums[i];
+					sumSquares[i] += chain.sumSquares[i];
+				}
+				numBatches += chain.numBatches;
+				numSweeps += chain.numSweeps;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		if(numBatches < MIN_BATCHES) {
+			return false;
+		}
+		for(int i=0; i<cells.length; i++) {
+			int row = cells[i] / numCols;
+			int col = cells[i] % numCols;
+			double mean = sums[i] / numBatches;
+			double variance = Math.max(0, (sumSquares[i] - numBatches * mean * mean) / (numBatches - 1));
+			confidenceRadii.put(cells[i], (float) (1.96 * Math.sqrt(variance / numBatches)));
+			if(Float.isNaN(knowledge.getStudentProbability(row, col))) {
+				knowledge.setStudentProbability(row, col, (float) mean);
+			}
+		}
+		return true;
+	}
+
+	// half width of the 95% confidence interval around the last estimate of the cell, NaN if it wasn't sampled
+	public float getConfidenceRadius(int row, int col) {
+		Float radius = confidenceRadii.get(row * numCols + col);
+		return radius != null ? radius : Float.NaN;
+	}
+
+	// sweeps over all open cells by all threads in the last call to sample()
+	public long getNumSweeps() {
+		return this.numSweeps;
+	}
+
+	public int getNumThreads() {
+		return this.numThreads;
+	}
+
+	public void shutdown() {
+		threads.shutdownNow();
+	}
+
+	public boolean isShutdown() {
+		return threads.isShutdown();
+	}
+
+	private void buildModel(List<Integer> openCells, List<int[]> smells) {
+		cells = new int[openCells.size()];
+		Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
+		for(int i=0; i<cells.length; i++) {
+			cells[i] = openCells.get(i);
+			positions.put(cells[i], i);
+		}
+		clauses = new int[smells.size()][];
+		int[] numCellClauses = new int[cells.length];
+		for(int c=0; c<clauses.length; c++) {
+			int[] smell = smells.get(c);
+			clauses[c] = new int[smell.length];
+			for(int i=0; i<smell.length; i++) {
+				clauses[c][i] = positions.get(smell[i]);
+				numCellClauses[clauses[c][i]]++;
+			}
+		}
+		cellClauses = new int[cells.length][];
+		for(int i=0; i<cells.length; i++) {
+			cellClauses[i] = new int[numCellClauses[i]];
+			numCellClauses[i] = 0;
+		}
+		for(int c=0; c<clauses.length; c++) {
+			for(int position : clauses[c]) {
+				cellClauses[position][numCellClauses[position]++] = c;
+			}
+		}
+	}
+
+	// one thread's Gibbs chain and its batch means
+	private class Chain {
+		private Random random;
+		private long deadlineNanos;
+		private boolean[] assignment;
+		// students on the open neighbors of each smell
+		private int[] numStudents;
+		private int[] batchCounts;
+		private double[] sums;
+		private double[] sumSquares;
+		private int numBatches;
+		private long numSweeps;
+
+		Chain(Random random, long deadlineNanos) {
+			this.random = random;
+			this.deadlineNanos = deadlineNanos;
+			this.assignment = new boolean[cells.length];
+			Arrays.fill(assignment, true);
+			this.numStudents = new int[clauses.length];
+			for(int c=0; c<clauses.length; c++) {
+				numStudents[c] = clauses[c].length;
+			}
+			this.batchCounts = new int[cells.length];
+			this.sums = new double[cells.length];
+			this.sumSquares = new double[cells.length];
+		}
+
+		void run() {
+			for(int i=0; i<BURN_IN_SWEEPS && !Deadline.isPast(deadlineNanos); i++) {
+				sweep();
+			}
+			while(numBatches < MAX_BATCHES && !Deadline.isPast(deadlineNanos)) {
+				Arrays.fill(batchCounts, 0);
+				for(int i=0; i<BATCH_SWEEPS; i++) {
+					sweep();
+					for(int position=0; position<cells.length; position++) {
+						if(assignment[position]) {
+							batchCounts[position]++;
+						}
+					}
+				}
+				for(int position=0; position<cells.length; position++) {
+					double mean = (double) batchCounts[position] / BATCH_SWEEPS;
+					sums[position] += mean;
+					sumSquares[position] += mean * mean;
+				}
+				numBatches++;
+			}
+		}
+
+		private void sweep() {
+			for(int position=0; position<cells.length; position++) {
+				boolean student = random.nextBoolean();
+				if(student == assignment[position] || !student && isOnlyStudentOfASmell(position)) {
+					continue;
+				}
+				assignment[position] = student;
+				for(int c : cellClauses[position]) {
+					numStudents[c] += student ? 1 : -1;
+				}
+			}
+			numSweeps++;
+		}
+
+		private boolean isOnlyStudentOfASmell(int position) {
+			for(int c : cellClauses[position]) {
+				if(numStudents[c] == 1) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
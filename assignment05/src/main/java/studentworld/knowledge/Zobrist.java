@@ -0,0 +1,56 @@
+package studentworld.knowledge;
+
+import java.util.List;
+
+import studentworld.data.PerceptRule;
+
+/*
+ * Zobrist keys for knowledge states. Instead of a random table the keys are
+ * derived by hashing the feature index, so every game of the same board size
+ * agrees on them and large boards don't need a table allocated up front.
+ */
+public final class Zobrist {
+	private static final long SEED = 0x2545F4914F6CDD1DL;
+
+	// number of distinct percept signatures, see StudentWorldPercept.getSignature
+	public static final int NUM_SIGNATURES = 4;
+
+	private Zobrist() {
+	}
+
+	public static long boardKey(int numRows, int numCols) {
+		return mix(SEED ^ (((long) numRows << 32) | (numCols & 0xFFFFFFFFL)));
+	}
+
+	/*
+	 * Fingerprint of what a classification was derived with, the solver backend (by
+	 * ordinal) and the percept rules, so a cache shared by solvers with other rules
+	 * or another backend never answers for a model that isn't its own.
+	 */
+	public static long modelKey(int backend, List<PerceptRule> rules) {
+		long key = mix(SEED ^ (backend + 1));
+		for(PerceptRule rule : rules) {
+			long packed = (((long) rule.getItem().ordinal() * 8 + rule.getPercept().ordinal()) * 8 + rule.getShape().ordinal()) * 8
+					+ rule.getCardinality().ordinal();
+			key = mix(key ^ (packed << 32 | rule.getRadius()));
+		}
+		return key;
+	}
+
+	public static long observationKey(int numCols, int row, int col, int signature) {
+		long feature = ((long) row * numCols + col) * NUM_SIGNATURES + signature;
+		return mix(SEED + 0x9E3779B97F4A7C15L * (feature + 1));
+	}
+
+	// mixed into a knowledge key when the decision also depends on where the player stands
+	public static long positionKey(int numCols, int row, int col) {
+		return mix(~SEED - 0x9E3779B97F4A7C15L * ((long) row * numCols + col + 1));
+	}
+
+	// splitmix64 finalizer
+	public static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -1,252 +1,748 @@
-package studentworld.player;
-
-import java.util.ArrayList;
-import java.util.List;
-
-import gridgames.data.action.Action;
-import gridgames.data.action.MoveAction;
-import gridgames.display.Display;
-import gridgames.grid.Cell;
-import studentworld.StudentWorldConstraintSolver;
-import studentworld.grid.StudentWorldCell;
-
-public class CSPPlayer extends StudentWorldPlayer {
-	
-	private StudentWorldConstraintSolver swConstraintSolver;
-	private List<Action> moves;
-	
-	public CSPPlayer(List<Action> actions, Display display, Cell initialCell) {
-		super(actions, display, initialCell);
-		swConstraintSolver = new StudentWorldConstraintSolver(this);
-		moves = new ArrayList<Action>();
-	}
-	
-	@Override
-	public Action getAction() {
-		addVisitedCell((StudentWorldCell) getCell());
-		if(moves.isEmpty()) {
-			String solverBoard = swConstraintSolver.getBoardState();
-			String targetCell = getTargetCell(solverBoard);
-			generateMovesOnPath(targetCell);
-		}
-		return moves.remove(0);
-	}
-	
-	private void generateMovesOnPath(String targetCell) {
-		List<StudentWorldCell> visitedNeighbors;
-		MoveAction move;
-		int distance;
-		int closestDistance = Integer.MAX_VALUE;
-		StudentWorldCell moveToNeighbor = null;
-		Cell currentCell = getCell();
-		int onPathRow = currentCell.getRow();
-		int onPathCol = currentCell.getCol();
-		int parenIndex = targetCell.indexOf("(");
-		int targetRow = Character.getNumericValue(targetCell.charAt(parenIndex+1));
-		int targetCol = Character.getNumericValue(targetCell.charAt(parenIndex+3));
-		int rowDiff = Math.abs(onPathRow - targetRow);
-		int colDiff = Math.abs(onPathCol - targetCol);
-		
-		while(rowDiff + colDiff != 1) {
-			//find visited neighbors
-			visitedNeighbors = getVisitedNeighbors(onPathRow, onPathCol);
-			//pick closest neighbor to target
-			for(StudentWorldCell visitedNeighbor : visitedNeighbors) {
-				distance = Math.abs(visitedNeighbor.getRow() - targetRow) + Math.abs(visitedNeighbor.getCol() - targetCol);
-				if(distance < closestDistance) {
-					moveToNeighbor = visitedNeighbor;
-					closestDistance = distance;
-				}
-			}
-			//push move to neighbor
-			move = getMoveToNeighbor(moveToNeighbor, onPathRow, onPathCol);
-			moves.add(move);
-			
-			//update variables
-			onPathRow = moveToNeighbor.getRow();
-			onPathCol = moveToNeighbor.getCol();
-			rowDiff = Math.abs(onPathRow - targetRow);
-			colDiff = Math.abs(onPathCol - targetCol);
-		}
-		addMoveToUnvisitedCell(targetRow, targetCol, onPathRow, onPathCol);
-	}
-	
-	private MoveAction getMoveToNeighbor(StudentWorldCell neighbor, int fromRow, int fromCol) {
-		int neighborRow = neighbor.getRow();
-		int neighborCol = neighbor.getCol();
-		
-		if(neighborRow < fromRow) {
-			return MoveAction.UP;
-		} else if(neighborCol > fromCol) {
-			return MoveAction.RIGHT;
-		} else if(neighborRow > fromRow) {
-			return MoveAction.DOWN;
-		} else {
-			return MoveAction.LEFT;
-		}
-	}
-	
-	private void addMoveToUnvisitedCell(int targetRow, int targetCol, int onPathRow, int onPathCol) {
-		//if move down
-		if(targetRow > onPathRow) {
-			moves.add(MoveAction.DOWN);
-		}
-		//if move up
-		else if(targetRow < onPathRow){
-			moves.add(MoveAction.UP);
-		}
-		//if move right
-		else if(targetCol > onPathCol) {
-			moves.add(MoveAction.RIGHT);
-		}
-		//if move left
-		else {
-			moves.add(MoveAction.LEFT);
-		}
-	}
-	
-	private List<StudentWorldCell> getVisitedNeighbors(int row, int col) {
-		List<StudentWorldCell> visitedNeighbors = new ArrayList<StudentWorldCell>();
-		int visitedCellRow;
-		int visitedCellCol;
-		
-		for(StudentWorldCell visitedCell : getVisitedCells()) {
-			visitedCellRow = visitedCell.getRow();
-			visitedCellCol = visitedCell.getCol();
-			if(Math.abs(visitedCellRow - row) + Math.abs(visitedCellCol - col) == 1) {
-				visitedNeighbors.add(visitedCell);
-			}
-		}
-		return visitedNeighbors;
-	}
-	
-	private boolean visitedCellsContains(int row, int col) {
-		for(StudentWorldCell visitedCell : getVisitedCells()) {
-			if(visitedCell.getRow() == row && visitedCell.getCol() == col) {
-				return true;
-			}
-		}
-		return false;
-	}
-	
-	private String getTargetCell(String solverBoard) {
-		List<String> fringeCells;
-		String closestSafeFringeCell;
-		String closestRiskyFringeCell;
-		String doorCell = getDoorCell(solverBoard);
-		Cell currentCell = getCell();
-		
-		//if door cell is known, go there
-		if(doorCell != null) {
-			return doorCell;
-		}
-		
-		fringeCells = getFringeCells(solverBoard);
-		closestSafeFringeCell = getClosestSafeFringeCell(fringeCells, currentCell);
-		//otherwise, if safe fringe cell is known, go there
-		if(closestSafeFringeCell != null && !closestSafeFringeCell.isEmpty()) {
-			return closestSafeFringeCell;
-		}
-		
-		closestRiskyFringeCell = getClosestRiskyFringeCell(fringeCells, currentCell);
-		//otherwise, if unknown fringe cell is known, go there
-		if(closestRiskyFringeCell != null && !closestRiskyFringeCell.isEmpty()) {
-			return closestRiskyFringeCell;
-		}
-		
-		return null;
-	}
-	
-	private List<String> getFringeCells(String solverBoard) {
-		int parenIndex;
-		int row;
-		int col;
-		
-		List<String> fringeCells = new ArrayList<String>();
-		String[] allCellInfo = solverBoard.split("\n");
-		for(String cellInfo : allCellInfo) {
-			if(cellInfo.startsWith("student")) {
-				parenIndex = cellInfo.indexOf("(");
-				row = Character.getNumericValue(cellInfo.charAt(parenIndex+1));
-				col = Character.getNumericValue(cellInfo.charAt(parenIndex+3));		
-				if(isOnFringe(row, col)) {
-					fringeCells.add(cellInfo);
-				}
-			}
-		}
-		return fringeCells;
-	}
-	
-	private boolean isOnFringe(int row, int col) {
-		int visitedRow;
-		int visitedCol;
-		
-		//if the cell has been visited, it is not on the fringe
-		if(visitedCellsContains(row, col)) {
-			return false;
-		}
-		
-		//if the cell is adjacent to a visited cell, it is on the fringe
-		for(Cell visitedCell : getVisitedCells()) {
-			visitedRow = visitedCell.getRow();
-			visitedCol = visitedCell.getCol();
-			if(Math.abs(visitedRow - row) + Math.abs(visitedCol - col) == 1) {
-				return true;
-			}
-		}
-		
-		return false;
-	}
-	
-	private String getDoorCell(String solverBoard) {
-		String[] allCellInfo = solverBoard.split("\n");
-		for(String cellInfo : allCellInfo) {
-			if(cellInfo.startsWith("door") && cellInfo.endsWith("1")) {
-				return cellInfo;
-			}
-		}
-		return null;
-	}
-	
-	private String getClosestRiskyFringeCell(List<String> fringeCells, Cell currentCell) {
-		return getClosestFringeCell(fringeCells, currentCell, false);
-	}
-	
-	private String getClosestSafeFringeCell(List<String> fringeCells, Cell currentCell) {
-		return getClosestFringeCell(fringeCells, currentCell, true);
-	}
-	
-	private String getClosestFringeCell(List<String> fringeCells, Cell currentCell, boolean isSafe) {
-		String closestSafeCell = null;
-		int closestDistance = Integer.MAX_VALUE;
-		int currentRow = currentCell.getRow();
-		int currentCol = currentCell.getCol();
-		int parenIndex;
-		int row;
-		int col;
-		int distance;
-		String cellStatus;
-		
-		if(isSafe) {
-			cellStatus = "0";
-		} else {
-			cellStatus = "]";
-		}
-		
-		for(String cellInfo : fringeCells) {
-			//if sell is safe
-			if(cellInfo.startsWith("student") && cellInfo.endsWith(cellStatus)) {
-				parenIndex = cellInfo.indexOf("(");
-				row = Character.getNumericValue(cellInfo.charAt(parenIndex+1));
-				col = Character.getNumericValue(cellInfo.charAt(parenIndex+3));
-				distance = Math.abs(currentRow - row) + Math.abs(currentCol - col);
-				//if distance is less than closestDistance
-				if(distance < closestDistance) {
-					closestSafeCell = cellInfo;
-					closestDistance = distance;
-				}
-			}
-		}
-		return closestSafeCell;
-	}
-}
+package studentworld.player;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import gridgames.data.action.Action;
+import gridgames.data.action.MoveAction;
+import gridgames.display.Display;
+import gridgames.grid.Cell;
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.coop.KnowledgeSnapshot;
+import studentworld.coop.SharedKnowledgeBase;
+import studentworld.data.StudentWorldPercept;
+import studentworld.grid.StudentWorldCell;
+import studentworld.knowledge.BeliefGrid;
+import studentworld.knowledge.BoardKnowledge;
+import studentworld.knowledge.DiagonalSymmetry;
+import studentworld.knowledge.InferenceStage;
+import studentworld.knowledge.InferenceTier;
+import studentworld.knowledge.KnowledgeCache;
+import studentworld.knowledge.KnowledgeDelta;
+import studentworld.knowledge.KnowledgeKey;
+import studentworld.knowledge.WorldSampler;
+import studentworld.policy.LookaheadPlanner;
+import studentworld.policy.PolicyTable;
+import studentworld.trace.AllocationProfile;
+import studentworld.trace.DecisionEvent;
+import studentworld.trace.DecisionLog;
+
+public class CSPPlayer extends StudentWorldPlayer {
+	// entries kept in the decision log, a turn takes three to six
+	private static final int DECISION_LOG_CAPACITY = 256;
+	
+	private StudentWorldConstraintSolver swConstraintSolver;
+	private List<Action> moves;
+	private KnowledgeCache knowledgeCache;
+	private PolicyTable policyTable;
+	private KnowledgeKey policyKey;
+	private boolean printSolverVariables = true;
+	private int numRiskyMoves;
+	private StudentWorldConstraintSolver.Backend backend = StudentWorldConstraintSolver.Backend.CHOCO;
+	private int numRows = 5;
+	private int numCols = 5;
+	private long turnBudgetNanos;
+	private Map<Integer, StudentWorldCell> visitedByIndex = new HashMap<Integer, StudentWorldCell>();
+	private Set<Integer> safeCells = new HashSet<Integer>();
+	private int knownDoorCell = -1;
+	private SharedKnowledgeBase sharedKnowledge;
+	private int claimedCell = -1;
+	private int studentMoveInterval;
+	private int numTurns;
+	private BeliefGrid beliefs;
+	private int numSamplingThreads;
+	private LookaheadPlanner planner;
+	private DecisionLog decisionLog;
+	private AllocationProfile allocationProfile;
+	
+	public CSPPlayer(List<Action> actions, Display display, Cell initialCell) {
+		this(actions, display, initialCell, (KnowledgeCache) null);
+	}
+	
+	// knowledgeCache lets consecutive games on the same board size reuse derived knowledge states
+	public CSPPlayer(List<Action> actions, Display display, Cell initialCell, KnowledgeCache knowledgeCache) {
+		this(actions, display, initialCell, knowledgeCache, StudentWorldConstraintSolver.Backend.CHOCO, 5, 5);
+	}
+	
+	// any board size, large boards need the SAT backend
+	public CSPPlayer(List<Action> actions, Display display, Cell initialCell, KnowledgeCache knowledgeCache,
+			StudentWorldConstraintSolver.Backend backend, int numRows, int numCols) {
+		super(actions, display, initialCell);
+		this.knowledgeCache = knowledgeCache;
+		this.backend = backend;
+		this.numRows = numRows;
+		this.numCols = numCols;
+		decisionLog = new DecisionLog(numCols, DECISION_LOG_CAPACITY);
+		swConstraintSolver = new StudentWorldConstraintSolver(this, knowledgeCache, backend, numRows, numCols);
+		swConstraintSolver.setProbing(true);
+		swConstraintSolver.setDecisionLog(decisionLog);
+		moves = new ArrayList<Action>();
+	}
+	
+	// targets are looked up in a precomputed policy table, the solver is only built
+	// if the game reaches a state the table doesn't cover
+	public CSPPlayer(List<Action> actions, Display display, Cell initialCell, PolicyTable policyTable) {
+		this(actions, display, initialCell, policyTable, StudentWorldConstraintSolver.Backend.CHOCO);
+	}
+	
+	// backend is the solver's for the states the table doesn't cover
+	public CSPPlayer(List<Action> actions, Display display, Cell initialCell, PolicyTable policyTable,
+			StudentWorldConstraintSolver.Backend backend) {
+		super(actions, display, initialCell);
+		this.backend = backend;
+		this.policyTable = policyTable;
+		this.policyKey = new KnowledgeKey(policyTable.getNumRows(), policyTable.getNumCols());
+		this.numRows = policyTable.getNumRows();
+		this.numCols = policyTable.getNumCols();
+		decisionLog = new DecisionLog(numCols, DECISION_LOG_CAPACITY);
+		moves = new ArrayList<Action>();
+	}
+	
+	// one of several agents on the same board, the solver and the visited and safe
+	// cells are the shared knowledge base's; each agent claims the cell it heads for
+	public CSPPlayer(List<Action> actions, Display display, Cell initialCell, SharedKnowledgeBase sharedKnowledge) {
+		super(actions, display, initialCell);
+		this.sharedKnowledge = sharedKnowledge;
+		this.numRows = sharedKnowledge.getNumRows();
+		this.numCols = sharedKnowledge.getNumCols();
+		this.visitedByIndex = sharedKnowledge.getVisitedCells();
+		this.safeCells = sharedKnowledge.getSafeCells();
+		decisionLog = new DecisionLog(numCols, DECISION_LOG_CAPACITY);
+		moves = new ArrayList<Action>();
+	}
+	
+	@Override
+	public Action getAction() {
+		Action move = getActionIfAny();
+		if(move == null) {
+			throw new IllegalStateException("no cell left to explore");
+		}
+		return move;
+	}
+	
+	/*
+	 * As getAction(), but null when there is no cell to head for. An agent sharing a
+	 * knowledge base also gets null while the only cells it could head for are claimed
+	 * by other agents, see CooperativeStudentWorld.
+	 */
+	public Action getActionIfAny() {
+		long turnStart = System.nanoTime();
+		if(allocationProfile != null) {
+			allocationProfile.startTurn();
+		}
+		long deadline = StudentWorldConstraintSolver.NO_DEADLINE;
+		if(turnBudgetNanos > 0) {
+			deadline = System.nanoTime() + turnBudgetNanos;
+		}
+		if(studentMoveInterval > 0 && numTurns > 0 && numTurns % studentMoveInterval == 0) {
+			getSolver().studentsMoved();
+			//what was planned and known safe may not be any more
+			moves.clear();
+			safeCells.clear();
+		}
+		numTurns++;
+		addVisitedCell((StudentWorldCell) getCell());
+		endPhase(AllocationProfile.Phase.OBSERVE);
+		int currentCell = getCell().getRow() * numCols + getCell().getCol();
+		decisionLog.record(DecisionEvent.TURN_STARTED, currentCell, numTurns);
+		//another agent got to the target first
+		if(sharedKnowledge != null && claimedCell >= 0 && sharedKnowledge.isVisited(claimedCell)) {
+			claimedCell = -1;
+			moves.clear();
+		}
+		if(moves.isEmpty()) {
+			int targetCell = -1;
+			if(policyTable != null) {
+				targetCell = getPolicyTargetCell();
+			}
+			if(beliefs != null) {
+				targetCell = getBeliefTargetCell();
+				decisionLog.record(DecisionEvent.TARGET_OTHER, targetCell, -1);
+			} else if(targetCell < 0 && sharedKnowledge != null) {
+				KnowledgeSnapshot snapshot = sharedKnowledge.refresh(deadline);
+				endPhase(AllocationProfile.Phase.KNOWLEDGE);
+				targetCell = getSharedTargetCell(snapshot);
+				decisionLog.record(DecisionEvent.TARGET_OTHER, targetCell, -1);
+			} else if(targetCell < 0) {
+				long knowledgeStart = System.nanoTime();
+				BoardKnowledge knowledge = getKnowledge(deadline);
+				InferenceTier tier = getSolver().getLastTier();
+				decisionLog.record(DecisionEvent.KNOWLEDGE, currentCell, tier == null ? -1 : tier.ordinal(), System.nanoTime() - knowledgeStart);
+				endPhase(AllocationProfile.Phase.KNOWLEDGE);
+				targetCell = getTargetCell(knowledge, deadline);
+			} else {
+				decisionLog.record(DecisionEvent.TARGET_OTHER, targetCell, -1);
+			}
+			endPhase(AllocationProfile.Phase.TARGET);
+			if(targetCell < 0) {
+				decisionLog.record(DecisionEvent.TURN_ENDED, currentCell, 0, System.nanoTime() - turnStart);
+				return null;
+			}
+			generateMovesOnPath(targetCell / numCols, targetCell % numCols);
+			endPhase(AllocationProfile.Phase.PATH);
+			decisionLog.record(DecisionEvent.PATH_PLANNED, targetCell, moves.size());
+		}
+		Action move = moves.remove(0);
+		decisionLog.record(DecisionEvent.TURN_ENDED, currentCell, moves.size(), System.nanoTime() - turnStart);
+		if(allocationProfile != null) {
+			allocationProfile.endTurn(swConstraintSolver == null ? -1 : swConstraintSolver.getModelFootprintBytes());
+		}
+		return move;
+	}
+	
+	private void endPhase(AllocationProfile.Phase phase) {
+		if(allocationProfile != null) {
+			allocationProfile.endPhase(phase);
+		}
+	}
+	
+	private StudentWorldConstraintSolver getSolver() {
+		if(swConstraintSolver == null) {
+			swConstraintSolver = new StudentWorldConstraintSolver(this, knowledgeCache, backend, numRows, numCols);
+			swConstraintSolver.setPrintVariables(printSolverVariables);
+			swConstraintSolver.setProbing(true);
+			swConstraintSolver.setSampling(numSamplingThreads);
+			swConstraintSolver.setDecisionLog(decisionLog);
+			//catch up on everything seen while playing from the policy table
+			for(StudentWorldCell visitedCell : getVisitedCells()) {
+				swConstraintSolver.observe(visitedCell.getRow(), visitedCell.getCol(), visitedCell.getPercepts());
+			}
+		}
+		return swConstraintSolver;
+	}
+	
+	public void setPrintSolverVariables(boolean printSolverVariables) {
+		this.printSolverVariables = printSolverVariables;
+		if(swConstraintSolver != null) {
+			swConstraintSolver.setPrintVariables(printSolverVariables);
+		}
+	}
+	
+	/*
+	 * Bounds the time getAction() spends in the solver, 0 (the default) for no bound.
+	 * The solver stops probing at the deadline and decides on what it knows by then,
+	 * and uses time left on a turn without a safe move to estimate which risky cell is
+	 * least likely to hold a student. The budget doesn't cover the local rules and
+	 * propagation, which always run to the end.
+	 */
+	public void setTurnBudget(long millis) {
+		this.turnBudgetNanos = millis * 1000000L;
+	}
+	
+	public long getTurnBudget() {
+		return this.turnBudgetNanos / 1000000L;
+	}
+	
+	public StudentWorldConstraintSolver.Backend getBackend() {
+		return this.backend;
+	}
+	
+	/*
+	 * Risk estimates for boards too large to count the fringe on within the turn
+	 * budget are sampled on numThreads threads instead, see WorldSampler; only has an
+	 * effect with a turn budget.
+	 */
+	public void setSampling(int numThreads) {
+		this.numSamplingThreads = numThreads;
+		if(swConstraintSolver != null) {
+			swConstraintSolver.setSampling(numThreads);
+		}
+	}
+	
+	public int getNumSamplingThreads() {
+		return this.numSamplingThreads;
+	}
+	
+	/*
+	 * Picks risky moves by looking depth moves ahead, see LookaheadPlanner, instead of
+	 * taking the least risky fringe cell; studentDensity is the chance a cell nothing
+	 * is known about holds a student. The search stops at the turn budget, if any.
+	 */
+	public void setLookahead(int depth, double studentDensity, int numThreads) {
+		if(policyTable != null || sharedKnowledge != null || beliefs != null || studentMoveInterval > 0) {
+			throw new IllegalStateException("only a player with its own solver on a static board can look ahead");
+		}
+		if(planner != null) {
+			planner.shutdown();
+		}
+		planner = new LookaheadPlanner(numRows, numCols, depth, studentDensity, numThreads);
+	}
+	
+	/*
+	 * Counts the bytes each turn allocates on the game's thread, by phase, and the
+	 * solver's model footprint after every turn, see AllocationProfile. Off by default,
+	 * reading the counter costs a little on every phase of every turn.
+	 */
+	public void setAllocationAccounting(boolean enabled) {
+		this.allocationProfile = enabled ? new AllocationProfile() : null;
+	}
+	
+	// null unless allocation accounting is on
+	public AllocationProfile getAllocationProfile() {
+		return this.allocationProfile;
+	}
+	
+	// the last decisions of the game, see DecisionLogDumper
+	public DecisionLog getDecisionLog() {
+		return this.decisionLog;
+	}
+	
+	public LookaheadPlanner getPlanner() {
+		return this.planner;
+	}
+	
+	// stops the lookahead and sampling threads, StudentWorld.play calls it once the game is over
+	public void shutdown() {
+		if(planner != null) {
+			planner.shutdown();
+		}
+		if(swConstraintSolver != null) {
+			swConstraintSolver.setSampling(0);
+		}
+	}
+	
+	/*
+	 * For a StudentWorld whose students wander every turns moves (see
+	 * StudentWorld.setStudentMoveInterval), needs the SAT backend. After every move
+	 * of the students the player drops its plan and safe cells and asks again. Its
+	 * path still runs over cells visited before, a student may have wandered onto one.
+	 */
+	public void setStudentMoveInterval(int turns) {
+		if(policyTable != null || sharedKnowledge != null || beliefs != null || planner != null) {
+			throw new IllegalStateException("only a player with its own solver can follow moving students");
+		}
+		if(turns > 0 && backend != StudentWorldConstraintSolver.Backend.SAT) {
+			throw new IllegalStateException("moving students need the SAT backend, this player uses " + backend);
+		}
+		this.studentMoveInterval = turns;
+		if(turns > 0) {
+			getSolver().setMovingStudents();
+		}
+	}
+	
+	/*
+	 * For sensors that can be wrong (see BeliefGrid for the error rates): the player
+	 * drops its solver, which would take the first false reading for a contradiction,
+	 * and heads for the fringe cell most likely to be the door rather than a student.
+	 * studentPrior is the chance an unread cell holds a student, e.g. students / cells.
+	 */
+	public void setNoisyPercepts(double studentPrior, double missRate, double falseAlarmRate) {
+		if(policyTable != null || sharedKnowledge != null || studentMoveInterval > 0 || planner != null) {
+			throw new IllegalStateException("only a player with its own solver can switch to noisy percepts");
+		}
+		beliefs = new BeliefGrid(numRows, numCols, studentPrior, missRate, falseAlarmRate);
+		//the sampler's threads go with the solver
+		if(swConstraintSolver != null) {
+			swConstraintSolver.setSampling(0);
+		}
+		swConstraintSolver = null;
+		for(StudentWorldCell visitedCell : getVisitedCells()) {
+			beliefs.observe(visitedCell.getRow(), visitedCell.getCol(), StudentWorldPercept.getSignature(visitedCell.getPercepts()));
+		}
+	}
+	
+	public BeliefGrid getBeliefs() {
+		return this.beliefs;
+	}
+	
+	public int getStudentMoveInterval() {
+		return this.studentMoveInterval;
+	}
+	
+	// moves the solver made onto a cell it couldn't prove safe, policy table and noisy percept moves aren't counted
+	public int getNumRiskyMoves() {
+		return this.numRiskyMoves;
+	}
+	
+	// solver tier that answered each turn, see InferenceTier
+	public int getTierCount(InferenceTier tier) {
+		return swConstraintSolver == null ? 0 : swConstraintSolver.getTierCount(tier);
+	}
+	
+	// turns on which each solver stage finished within the turn budget, see InferenceStage
+	public int getStageCount(InferenceStage stage) {
+		return swConstraintSolver == null ? 0 : swConstraintSolver.getStageCount(stage);
+	}
+	
+	public int getNumInterruptedTurns() {
+		return swConstraintSolver == null ? 0 : swConstraintSolver.getNumInterruptedTurns();
+	}
+	
+	public int getNumContradictions() {
+		return swConstraintSolver == null ? 0 : swConstraintSolver.getNumContradictions();
+	}
+	
+	// null without sampling, or before the solver is built
+	public WorldSampler getWorldSampler() {
+		return swConstraintSolver == null ? null : swConstraintSolver.getWorldSampler();
+	}
+	
+	// cell index of the table's target, or -1 if the state isn't in the table or the target isn't valid in it
+	private int getPolicyTargetCell() {
+		StudentWorldCell currentCell = (StudentWorldCell) getCell();
+		int row = currentCell.getRow();
+		int col = currentCell.getCol();
+		policyKey.observe(row, col, currentCell.getPercepts());
+		int target = policyTable.lookup(policyKey.getCanonicalStateKey(row, col));
+		//the table answers for the canonical orientation of mirror-image states
+		if(target >= 0 && policyKey.isStateTransposed(row, col)) {
+			target = DiagonalSymmetry.transposeCell(target, numCols);
+		}
+		return isValidPolicyTarget(target) ? target : -1;
+	}
+	
+	/*
+	 * A lookup matches on a fingerprint of the state key, so another state's target
+	 * can come back. A target is used only if it is on the fringe, which is where the
+	 * table's targets always are. It must also be safe: next to a visited cell without
+	 * a smell, or else a risk the table would take. The table only takes a risk when no
+	 * fringe cell is safe, and the solver checks that.
+	 */
+	private boolean isValidPolicyTarget(int target) {
+		if(target < 0 || target >= numRows * numCols || !isOnFringe(target)) {
+			return false;
+		}
+		for(StudentWorldCell neighbor : getVisitedNeighbors(target / numCols, target % numCols)) {
+			if(!neighbor.getPercepts().contains(StudentWorldPercept.SMELL)) {
+				return true;
+			}
+		}
+		BoardKnowledge knowledge = getKnowledge(StudentWorldConstraintSolver.NO_DEADLINE);
+		if(knowledge.isSafe(target / numCols, target % numCols)) {
+			return true;
+		} else if(knowledge.getStudent(target / numCols, target % numCols) == BoardKnowledge.TRUE) {
+			return false;
+		}
+		for(int cell : getSolver().getFringeCells()) {
+			if(knowledge.isSafe(cell / numCols, cell % numCols)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void generateMovesOnPath(int targetRow, int targetCol) {
+		StudentWorldCell currentCell = (StudentWorldCell) getCell();
+		Map<StudentWorldCell, StudentWorldCell> previousOnPath = new HashMap<StudentWorldCell, StudentWorldCell>();
+		LinkedList<StudentWorldCell> queue = new LinkedList<StudentWorldCell>();
+		StudentWorldCell onPath = null;
+		
+		//breadth first search through visited cells for the closest one next to the target
+		previousOnPath.put(currentCell, null);
+		queue.add(currentCell);
+		while(!queue.isEmpty()) {
+			StudentWorldCell cell = queue.removeFirst();
+			if(Math.abs(cell.getRow() - targetRow) + Math.abs(cell.getCol() - targetCol) == 1) {
+				onPath = cell;
+				break;
+			}
+			for(StudentWorldCell visitedNeighbor : getVisitedNeighbors(cell.getRow(), cell.getCol())) {
+				if(!previousOnPath.containsKey(visitedNeighbor)) {
+					previousOnPath.put(visitedNeighbor, cell);
+					queue.add(visitedNeighbor);
+				}
+			}
+		}
+		
+		//push moves from the current cell to the cell next to the target
+		LinkedList<StudentWorldCell> path = new LinkedList<StudentWorldCell>();
+		for(StudentWorldCell cell = onPath; cell != null; cell = previousOnPath.get(cell)) {
+			path.addFirst(cell);
+		}
+		for(int i=1; i<path.size(); i++) {
+			moves.add(getMoveToNeighbor(path.get(i), path.get(i-1).getRow(), path.get(i-1).getCol()));
+		}
+		addMoveToUnvisitedCell(targetRow, targetCol, onPath.getRow(), onPath.getCol());
+	}
+	
+	private MoveAction getMoveToNeighbor(StudentWorldCell neighbor, int fromRow, int fromCol) {
+		int neighborRow = neighbor.getRow();
+		int neighborCol = neighbor.getCol();
+		
+		if(neighborRow < fromRow) {
+			return MoveAction.UP;
+		} else if(neighborCol > fromCol) {
+			return MoveAction.RIGHT;
+		} else if(neighborRow > fromRow) {
+			return MoveAction.DOWN;
+		} else {
+			return MoveAction.LEFT;
+		}
+	}
+	
+	private void addMoveToUnvisitedCell(int targetRow, int targetCol, int onPathRow, int onPathCol) {
+		//if move down
+		if(targetRow > onPathRow) {
+			moves.add(MoveAction.DOWN);
+		}
+		//if move up
+		else if(targetRow < onPathRow){
+			moves.add(MoveAction.UP);
+		}
+		//if move right
+		else if(targetCol > onPathCol) {
+			moves.add(MoveAction.RIGHT);
+		}
+		//if move left
+		else {
+			moves.add(MoveAction.LEFT);
+		}
+	}
+	
+	// visited cells are also indexed by row * numCols + col, so neighbors are found without a scan
+	@Override
+	public void addVisitedCell(StudentWorldCell cell) {
+		super.addVisitedCell(cell);
+		if(sharedKnowledge != null) {
+			sharedKnowledge.observe(cell);
+		}
+		if(beliefs != null) {
+			beliefs.observe(cell.getRow(), cell.getCol(), StudentWorldPercept.getSignature(cell.getPercepts()));
+		}
+		//a solver built for an earlier policy table miss or check isn't told about cells the table leads to
+		if(policyTable != null && swConstraintSolver != null) {
+			swConstraintSolver.observe(cell.getRow(), cell.getCol(), cell.getPercepts());
+		}
+		visitedByIndex.put(cell.getRow() * numCols + cell.getCol(), cell);
+		safeCells.remove(cell.getRow() * numCols + cell.getCol());
+	}
+	
+	private List<StudentWorldCell> getVisitedNeighbors(int row, int col) {
+		List<StudentWorldCell> visitedNeighbors = new ArrayList<StudentWorldCell>();
+		int[] neighbors = {row-1, col, row, col+1, row+1, col, row, col-1};
+		
+		for(int i=0; i<neighbors.length; i+=2) {
+			if(neighbors[i] >= 0 && neighbors[i] < numRows && neighbors[i+1] >= 0 && neighbors[i+1] < numCols) {
+				StudentWorldCell visitedCell = visitedByIndex.get(neighbors[i] * numCols + neighbors[i+1]);
+				if(visitedCell != null) {
+					visitedNeighbors.add(visitedCell);
+				}
+			}
+		}
+		return visitedNeighbors;
+	}
+	
+	// cell index (row * numCols + col) to head for next, or -1 if nothing is left to explore
+	private int getTargetCell(BoardKnowledge knowledge, long deadline) {
+		int closestSafeCell;
+		int closestRiskyFringeCell;
+		Cell currentCell = getCell();
+		
+		//if door cell is known, go there
+		//the door can be known before it can be reached, e.g. once it's the only cell left
+		if(knownDoorCell >= 0 && isOnFringe(knownDoorCell)) {
+			decisionLog.record(DecisionEvent.TARGET_DOOR, knownDoorCell, -1);
+			return knownDoorCell;
+		}
+		
+		closestSafeCell = getClosestSafeCell(currentCell, false);
+		//otherwise, if safe fringe cell is known, go there
+		if(closestSafeCell >= 0) {
+			decisionLog.record(DecisionEvent.TARGET_SAFE, closestSafeCell, -1);
+			return closestSafeCell;
+		}
+		
+		int[] fringeCells = getSolver().getFringeCells();
+		closestRiskyFringeCell = -1;
+		if(planner != null) {
+			closestRiskyFringeCell = planner.plan(getSolver().getLocalRules(), knowledge,
+					currentCell.getRow() * numCols + currentCell.getCol(), deadline);
+		}
+		if(closestRiskyFringeCell < 0) {
+			closestRiskyFringeCell = getLeastRiskyFringeCell(knowledge, fringeCells);
+		}
+		if(closestRiskyFringeCell < 0) {
+			closestRiskyFringeCell = getClosestRiskyFringeCell(knowledge, fringeCells, currentCell);
+		}
+		//otherwise, if unknown fringe cell is known, go there
+		if(closestRiskyFringeCell >= 0) {
+			numRiskyMoves++;
+			float probability = knowledge.getStudentProbability(closestRiskyFringeCell / numCols, closestRiskyFringeCell % numCols);
+			decisionLog.record(DecisionEvent.TARGET_RISKY, closestRiskyFringeCell, Float.isNaN(probability) ? -1 : Math.round(probability * 1000));
+			return closestRiskyFringeCell;
+		}
+		
+		return -1;
+	}
+	
+	/*
+	 * As getTargetCell, on the shared knowledge, for a cell this agent can claim. The
+	 * door needs no claim, any agent reaching it wins. If every safe cell left is claimed
+	 * by another agent, or the risky cell picked is, there is no target: that agent's
+	 * visit may make more cells safe, so this one waits for it rather than take a risk.
+	 * A safe cell lost to another agent between the choice and the claim is skipped.
+	 */
+	private int getSharedTargetCell(KnowledgeSnapshot snapshot) {
+		Cell currentCell = getCell();
+		int targetCell;
+		
+		knownDoorCell = sharedKnowledge.getDoorCell();
+		if(knownDoorCell >= 0 && isOnFringe(knownDoorCell)) {
+			releaseClaim();
+			return knownDoorCell;
+		}
+		
+		//a safe cell claimed meanwhile is claimed by another agent from then on, so the next choice skips it
+		while((targetCell = getClosestSafeCell(currentCell, true)) >= 0) {
+			if(claim(targetCell)) {
+				return targetCell;
+			}
+		}
+		if(getClosestSafeCell(currentCell, false) >= 0) {
+			releaseClaim();
+			return -1;
+		}
+		targetCell = getLeastRiskyFringeCell(snapshot.getKnowledge(), snapshot.getFringeCells());
+		if(targetCell < 0) {
+			targetCell = getClosestRiskyFringeCell(snapshot.getKnowledge(), snapshot.getFringeCells(), currentCell);
+		}
+		if(targetCell < 0 || !claim(targetCell)) {
+			releaseClaim();
+			return -1;
+		}
+		numRiskyMoves++;
+		return targetCell;
+	}
+	
+	// the cell becomes this agent's target, false if another agent holds it
+	private boolean claim(int cell) {
+		if(!sharedKnowledge.claim(cell, this)) {
+			return false;
+		}
+		if(claimedCell >= 0 && claimedCell != cell) {
+			sharedKnowledge.release(claimedCell, this);
+		}
+		claimedCell = cell;
+		return true;
+	}
+	
+	// gives up the cell this agent was heading for, e.g. when it stops playing
+	public void releaseClaim() {
+		if(sharedKnowledge != null && claimedCell >= 0) {
+			sharedKnowledge.release(claimedCell, this);
+		}
+		claimedCell = -1;
+	}
+	
+	// fringe cell with the best odds of the door over a student, ties go to the closest
+	// and then the lowest cell index
+	private int getBeliefTargetCell() {
+		Cell currentCell = getCell();
+		int bestCell = -1;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		int bestDistance = Integer.MAX_VALUE;
+		int distance;
+		
+		for(int cell : beliefs.getFringeCells()) {
+			int row = cell / numCols;
+			int col = cell % numCols;
+			double score = beliefs.getDoorProbability(row, col) - beliefs.getStudentProbability(row, col);
+			distance = Math.abs(currentCell.getRow() - row) + Math.abs(currentCell.getCol() - col);
+			if(score > bestScore || score == bestScore && (distance < bestDistance || distance == bestDistance && cell < bestCell)) {
+				bestCell = cell;
+				bestScore = score;
+				bestDistance = distance;
+			}
+		}
+		return bestCell;
+	}
+	
+	// every solver answer goes through here, a delta is only reported by the call that found it
+	private BoardKnowledge getKnowledge(long deadline) {
+		BoardKnowledge knowledge = getSolver().getKnowledge(deadline);
+		applyDelta(getSolver().getLastDelta());
+		return knowledge;
+	}
+	
+	// the door and the unvisited safe cells are tracked from the solver's deltas, so a
+	// turn costs the number of changes, not a pass over the board
+	private void applyDelta(KnowledgeDelta delta) {
+		for(int i=0; i<delta.size(); i++) {
+			int cell = delta.getCell(i);
+			if(delta.getDoor(i) == BoardKnowledge.TRUE) {
+				knownDoorCell = cell;
+			}
+			if(delta.getStudent(i) == BoardKnowledge.FALSE && !visitedByIndex.containsKey(cell)) {
+				safeCells.add(cell);
+			}
+		}
+	}
+	
+	private boolean isOnFringe(int cell) {
+		int row = cell / numCols;
+		int col = cell % numCols;
+		//if the cell has been visited, it is not on the fringe
+		if(visitedByIndex.containsKey(cell)) {
+			return false;
+		}
+		//if the cell is adjacent to a visited cell, it is on the fringe
+		return !getVisitedNeighbors(row, col).isEmpty();
+	}
+	
+	// closest unvisited cell known to be safe that is next to a visited one, ties go to
+	// the lowest cell index
+	private int getClosestSafeCell(Cell currentCell, boolean skipClaimed) {
+		int closestCell = -1;
+		int closestDistance = Integer.MAX_VALUE;
+		int distance;
+		
+		for(int cell : safeCells) {
+			if(isOnFringe(cell) && !(skipClaimed && sharedKnowledge.isClaimedByOther(cell, this))) {
+				distance = Math.abs(currentCell.getRow() - cell / numCols) + Math.abs(currentCell.getCol() - cell % numCols);
+				if(distance < closestDistance || distance == closestDistance && cell < closestCell) {
+					closestCell = cell;
+					closestDistance = distance;
+				}
+			}
+		}
+		return closestCell;
+	}
+	
+	// open fringe cell with the lowest estimated student probability, -1 if there are no estimates
+	private int getLeastRiskyFringeCell(BoardKnowledge knowledge, int[] fringeCells) {
+		int leastRiskyCell = -1;
+		float lowestProbability = Float.MAX_VALUE;
+		
+		for(int cell : fringeCells) {
+			int row = cell / numCols;
+			int col = cell % numCols;
+			float probability = knowledge.getStudentProbability(row, col);
+			//cells without an estimate compare false and are skipped
+			if(knowledge.getStudent(row, col) == BoardKnowledge.UNKNOWN && !visitedByIndex.containsKey(cell) && (probability < lowestProbability
+					|| probability == lowestProbability && cell < leastRiskyCell)) {
+				leastRiskyCell = cell;
+				lowestProbability = probability;
+			}
+		}
+		return leastRiskyCell;
+	}
+	
+	// closest fringe cell that might hold a student
+	private int getClosestRiskyFringeCell(BoardKnowledge knowledge, int[] fringeCells, Cell currentCell) {
+		int closestCell = -1;
+		int closestDistance = Integer.MAX_VALUE;
+		int currentRow = currentCell.getRow();
+		int currentCol = currentCell.getCol();
+		int distance;
+		
+		for(int cell : fringeCells) {
+			int row = cell / numCols;
+			int col = cell % numCols;
+			//a shared snapshot may not have caught up with cells other agents visited
+			if(knowledge.getStudent(row, col) == BoardKnowledge.UNKNOWN && !visitedByIndex.containsKey(cell)) {
+				distance = Math.abs(currentRow - row) + Math.abs(currentCol - col);
+				//if distance is less than closestDistance
+				if(distance < closestDistance || distance == closestDistance && cell < closestCell) {
+					closestCell = cell;
+					closestDistance = distance;
+				}
+			}
+		}
+		return closestCell;
+	}
+}
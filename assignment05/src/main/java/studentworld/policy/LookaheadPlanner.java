@@ -0,0 +1,361 @@
+package studentworld.policy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import studentworld.knowledge.BoardKnowledge;
+import studentworld.knowledge.Deadline;
+import studentworld.knowledge.FrontierCounter;
+import studentworld.knowledge.LocalRuleInference;
+import studentworld.knowledge.Neighbors;
+import studentworld.knowledge.Zobrist;
+
+/*
+ * Online counterpart of PolicyTableBuilder for boards too large for a table: a depth
+ * limited expectimax over the knowledge states a risky move can lead to, picking the
+ * fringe cell that minimizes LOSS_COST * P(loss) + expected number of moves. A move
+ * onto a cell ends the game with its student probability, wins with its door
+ * probability and otherwise branches on the percepts the cell may show, each leading
+ * to a copy of the local rules with that observation made. As in the table, safe
+ * moves stay greedy, only the closest safe cells are considered while there are any.
+ *
+ * Probabilities come from a FrontierCounter on each state; cells beyond the fringe
+ * hold a student with the given density and the door is equally likely on every cell
+ * not ruled out. Distances are Manhattan distances, paths through visited cells may be
+ * longer. Subtrees are evaluated in parallel on a fork/join pool. The counted states
+ * are kept across turns, a turn's tree mostly revisits the states below the last
+ * turn's move, and so are state values for the depth they were evaluated to. Past the
+ * deadline the states still to evaluate are scored as leaves.
+ */
+public class LookaheadPlanner {
+	// one loss is worth this many moves, as in PolicyTableBuilder
+	private static final double LOSS_COST = 1000.0;
+	// risky moves tried per state, the least likely to hold a student
+	private static final int MAX_RISKY_MOVES = 4;
+	// memo tables are dropped once they hold this many states
+	private static final int MAX_MEMO_SIZE = 1 << 16;
+
+	private int numRows;
+	private int numCols;
+	private int depth;
+	private double studentDensity;
+	private ForkJoinPool pool;
+	private Map<Long, BoardKnowledge> estimates = new ConcurrentHashMap<Long, BoardKnowledge>();
+	private Map<Long, Double> costs = new ConcurrentHashMap<Long, Double>();
+	private AtomicLong numEstimateHits = new AtomicLong();
+	private AtomicLong numEstimateMisses = new AtomicLong();
+
+	// depth counts the moves looked ahead, 1 only weighs the next move's own risk
+	public LookaheadPlanner(int numRows, int numCols, int depth, double studentDensity, int numThreads) {
+		if(depth < 1) {
+			throw new IllegalArgumentException("depth must be at least 1");
+		}
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.depth = depth;
+		this.studentDensity = studentDensity;
+		this.pool = new ForkJoinPool(numThreads);
+	}
+
+	/*
+	 * Fringe cell to move to from position (a cell index), on a turn without a safe
+	 * move. rootKnowledge is what the solver made of the observations, which may know
+	 * more than the local rules and carry counted probabilities; -1 if no fringe cell
+	 * may be entered.
+	 */
+	public int plan(LocalRuleInference rules, BoardKnowledge rootKnowledge, int position, long deadlineNanos) {
+		if(estimates.size() > MAX_MEMO_SIZE) {
+			estimates.clear();
+		}
+		if(costs.size() > MAX_MEMO_SIZE) {
+			costs.clear();
+		}
+		BoardKnowledge estimated = getEstimates(rules, deadlineNanos);
+		List<Integer> candidates = getCandidates(rootKnowledge, rules.getFringeCells(), estimated, position);
+		final List<MoveCost> moves = new ArrayList<MoveCost>();
+		for(int cell : candidates) {
+			moves.add(new MoveCost(rules, rootKnowledge, estimated, position, cell, depth, deadlineNanos));
+		}
+		pool.invoke(new RecursiveTask<Void>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected Void compute() {
+				invokeAll(moves);
+				return null;
+			}
+		});
+		int best = -1;
+		double bestCost = Double.MAX_VALUE;
+		for(MoveCost move : moves) {
+			double cost = move.join();
+			if(cost < bestCost || cost == bestCost && move.cell < best) {
+				best = move.cell;
+				bestCost = cost;
+			}
+		}
+		return best;
+	}
+
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	public boolean isShutdown() {
+		return pool.isShutdown();
+	}
+
+	public int getDepth() {
+		return this.depth;
+	}
+
+	public double getStudentDensity() {
+		return this.studentDensity;
+	}
+
+	public int getNumThreads() {
+		return pool.getParallelism();
+	}
+
+	// states whose counted probabilities were reused from an earlier evaluation
+	public long getNumEstimateHits() {
+		return numEstimateHits.get();
+	}
+
+	public long getNumEstimateMisses() {
+		return numEstimateMisses.get();
+	}
+
+	private BoardKnowledge getEstimates(LocalRuleInference rules, long deadlineNanos) {
+		BoardKnowledge estimated = estimates.get(rules.getKey());
+		if(estimated != null) {
+			numEstimateHits.incrementAndGet();
+			return estimated;
+		}
+		numEstimateMisses.incrementAndGet();
+		estimated = rules.getKnowledge().copy();
+		// cut short it leaves cells without an estimate, they fall back on the density
+		if(new FrontierCounter(numRows, numCols).count(rules, estimated, rules.getFringeCells(), deadlineNanos)) {
+			estimates.put(rules.getKey(), estimated);
+		}
+		return estimated;
+	}
+
+	// the known door, or the closest safe cells, or the least risky cells that may be entered
+	private List<Integer> getCandidates(BoardKnowledge knowledge, int[] fringeCells, final BoardKnowledge estimated, int position) {
+		List<Integer> candidates = new ArrayList<Integer>();
+		int closestSafe = Integer.MAX_VALUE;
+		for(int cell : fringeCells) {
+			if(knowledge.isDoor(cell / numCols, cell % numCols)) {
+				candidates.clear();
+				candidates.add(cell);
+				return candidates;
+			}
+			if(knowledge.isSafe(cell / numCols, cell % numCols)) {
+				int distance = getDistance(position, cell);
+				if(distance < closestSafe) {
+					candidates.clear();
+					closestSafe = distance;
+				}
+				if(distance == closestSafe) {
+					candidates.add(cell);
+				}
+			}
+		}
+		if(!candidates.isEmpty()) {
+			return candidates;
+		}
+		for(int cell : fringeCells) {
+			if(knowledge.getStudent(cell / numCols, cell % numCols) == BoardKnowledge.UNKNOWN) {
+				candidates.add(cell);
+			}
+		}
+		final BoardKnowledge risks = knowledge;
+		Collections.sort(candidates, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(getStudentProbability(risks, estimated, a), getStudentProbability(risks, estimated, b));
+			}
+		});
+		return candidates.size() > MAX_RISKY_MOVES ? candidates.subList(0, MAX_RISKY_MOVES) : candidates;
+	}
+
+	// the solver's estimate, or the counted one, or the density for cells nothing constrains
+	private double getStudentProbability(BoardKnowledge knowledge, BoardKnowledge estimated, int cell) {
+		int row = cell / numCols;
+		int col = cell % numCols;
+		byte student = knowledge.getStudent(row, col);
+		if(student != BoardKnowledge.UNKNOWN) {
+			return student == BoardKnowledge.TRUE ? 1 : 0;
+		}
+		float probability = knowledge.getStudentProbability(row, col);
+		if(Float.isNaN(probability)) {
+			probability = estimated.getStudentProbability(row, col);
+		}
+		return Float.isNaN(probability) ? studentDensity : probability;
+	}
+
+	private int getNumDoorCandidates(BoardKnowledge knowledge) {
+		int numCandidates = 0;
+		for(int row=0; row<numRows; row++) {
+			for(int col=0; col<numCols; col++) {
+				if(knowledge.getDoor(row, col) == BoardKnowledge.UNKNOWN) {
+					numCandidates++;
+				}
+			}
+		}
+		return numCandidates;
+	}
+
+	private int getDistance(int from, int to) {
+		return Math.abs(from / numCols - to / numCols) + Math.abs(from % numCols - to % numCols);
+	}
+
+	// cost of the state with the player on position, looking depth moves ahead
+	private double getCost(LocalRuleInference rules, int position, int depth, long deadlineNanos) {
+		long key = Zobrist.mix(Zobrist.mix(rules.getKey() ^ Zobrist.positionKey(numCols, position / numCols, position % numCols)) ^ depth);
+		Double memo = costs.get(key);
+		if(memo != null) {
+			return memo;
+		}
+		BoardKnowledge knowledge = rules.getKnowledge();
+		BoardKnowledge estimated = getEstimates(rules, deadlineNanos);
+		List<Integer> candidates = getCandidates(knowledge, rules.getFringeCells(), estimated, position);
+		double cost;
+		if(candidates.isEmpty()) {
+			// trapped, as good as lost
+			cost = LOSS_COST;
+		} else if(depth == 0 || Deadline.isPast(deadlineNanos)) {
+			cost = Double.MAX_VALUE;
+			for(int cell : candidates) {
+				double risk = knowledge.isDoor(cell / numCols, cell % numCols) ? 0 : getStudentProbability(knowledge, estimated, cell);
+				cost = Math.min(cost, getDistance(position, cell) + LOSS_COST * risk);
+			}
+		} else {
+			List<MoveCost> moves = new ArrayList<MoveCost>();
+			for(int cell : candidates) {
+				moves.add(new MoveCost(rules, knowledge, estimated, position, cell, depth, deadlineNanos));
+			}
+			RecursiveTask.invokeAll(moves);
+			cost = Double.MAX_VALUE;
+			for(MoveCost move : moves) {
+				cost = Math.min(cost, move.join());
+			}
+		}
+		if(!Deadline.isPast(deadlineNanos)) {
+			costs.put(key, cost);
+		}
+		return cost;
+	}
+
+	// expected cost of moving to cell and playing on, branching on what the cell shows
+	private class MoveCost extends RecursiveTask<Double> {
+		private static final long serialVersionUID = 1L;
+
+		private LocalRuleInference rules;
+		private BoardKnowledge knowledge;
+		private BoardKnowledge estimated;
+		private int position;
+		private int cell;
+		private int depth;
+		private long deadlineNanos;
+
+		MoveCost(LocalRuleInference rules, BoardKnowledge knowledge, BoardKnowledge estimated, int position, int cell,
+				int depth, long deadlineNanos) {
+			this.rules = rules;
+			this.knowledge = knowledge;
+			this.estimated = estimated;
+			this.position = position;
+			this.cell = cell;
+			this.depth = depth;
+			this.deadlineNanos = deadlineNanos;
+		}
+
+		@Override
+		protected Double compute() {
+			int row = cell / numCols;
+			int col = cell % numCols;
+			double cost = getDistance(position, cell);
+			if(knowledge.isDoor(row, col)) {
+				return cost;
+			}
+			double studentProbability = getStudentProbability(knowledge, estimated, cell);
+			double doorProbability = 0;
+			int numDoorCandidates = getNumDoorCandidates(knowledge);
+			if(knowledge.getDoor(row, col) == BoardKnowledge.UNKNOWN) {
+				doorProbability = Math.min(1 - studentProbability, 1.0 / numDoorCandidates);
+			}
+			double continueProbability = 1 - studentProbability - doorProbability;
+			cost += LOSS_COST * studentProbability;
+			if(continueProbability <= 0) {
+				return cost;
+			}
+
+			double smellProbability = getSmellProbability();
+			double glowProbability = getGlowProbability(numDoorCandidates);
+			List<ChildCost> children = new ArrayList<ChildCost>();
+			for(int signature=0; signature<Zobrist.NUM_SIGNATURES; signature++) {
+				double probability = ((signature & 1) != 0 ? smellProbability : 1 - smellProbability)
+						* ((signature & 2) != 0 ? glowProbability : 1 - glowProbability);
+				if(probability > 0) {
+					children.add(new ChildCost(signature, probability));
+				}
+			}
+			invokeAll(children);
+			for(ChildCost child : children) {
+				cost += continueProbability * child.probability * child.join();
+			}
+			return cost;
+		}
+
+		private double getSmellProbability() {
+			double noStudent = 1;
+			for(int neighbor : Neighbors.of(cell, numRows, numCols)) {
+				if(neighbor >= 0 && !rules.isVisited(neighbor / numCols, neighbor % numCols)) {
+					noStudent *= 1 - getStudentProbability(knowledge, estimated, neighbor);
+				}
+			}
+			return 1 - noStudent;
+		}
+
+		// the door isn't on the cell itself, so it is next to it in the share of the other candidates
+		private double getGlowProbability(int numDoorCandidates) {
+			if(numDoorCandidates <= 1) {
+				return 0;
+			}
+			int nextTo = 0;
+			for(int neighbor : Neighbors.of(cell, numRows, numCols)) {
+				if(neighbor >= 0 && knowledge.getDoor(neighbor / numCols, neighbor % numCols) == BoardKnowledge.UNKNOWN) {
+					nextTo++;
+				}
+			}
+			return Math.min(1.0, (double) nextTo / (numDoorCandidates - 1));
+		}
+
+		private class ChildCost extends RecursiveTask<Double> {
+			private static final long serialVersionUID = 1L;
+
+			private int signature;
+			private double probability;
+
+			ChildCost(int signature, double probability) {
+				this.signature = signature;
+				this.probability = probability;
+			}
+
+			@Override
+			protected Double compute() {
+				LocalRuleInference child = rules.copy();
+				child.observe(cell / numCols, cell % numCols, signature);
+				return getCost(child, cell, depth - 1, deadlineNanos);
+			}
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package studentworld.policy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import studentworld.knowledge.Zobrist;
+
+/*
+ * Read-only view of a policy table written by PolicyTableBuilder. The file is an
+ * open-addressing hash table of (state key, target cell) slots that is memory-mapped
+ * as is, so a lookup is a couple of probes into the mapping and nothing is parsed
+ * at startup.
+ *
+ * Layout: a HEADER_SIZE byte header followed by capacity slots of SLOT_SIZE bytes,
+ * each holding a 32 bit fingerprint of the state key (0 for an empty slot) and the
+ * target cell index. The slot position is taken from other bits of the key, so a
+ * false match needs a collision on both.
+ */
+public class PolicyTable {
+	static final int MAGIC = 0x53575054; // "SWPT"
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 32;
+	static final int SLOT_SIZE = 5;
+
+	private ByteBuffer buffer;
+	private int numRows;
+	private int numCols;
+	private int numStudents;
+	private int capacity;
+	private long numEntries;
+
+	private PolicyTable(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IOException("not a StudentWorld policy table");
+		}
+		this.numRows = buffer.getInt(8);
+		this.numCols = buffer.getInt(12);
+		this.numStudents = buffer.getInt(16);
+		this.capacity = buffer.getInt(20);
+		this.numEntries = buffer.getLong(24);
+		if(Integer.bitCount(capacity) != 1 || buffer.limit() < HEADER_SIZE + (long) capacity * SLOT_SIZE) {
+			throw new IOException("truncated or corrupt policy table");
+		}
+	}
+
+	public static PolicyTable load(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			// the mapping stays valid after the channel is closed
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new PolicyTable(mapped);
+		} finally {
+			raf.close();
+		}
+	}
+
+	// target cell index (row * numCols + col) for the state, or -1 if the state isn't in the table
+	public int lookup(long key) {
+		int mask = capacity - 1;
+		int slot = slotFor(key, mask);
+		int fingerprint = fingerprint(key);
+		int stored;
+		while((stored = buffer.getInt(HEADER_SIZE + slot * SLOT_SIZE)) != 0) {
+			if(stored == fingerprint) {
+				return buffer.get(HEADER_SIZE + slot * SLOT_SIZE + 4) & 0xFF;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	static int slotFor(long key, int mask) {
+		return (int) (Zobrist.mix(key) >>> 32) & mask;
+	}
+
+	static int fingerprint(long key) {
+		int fingerprint = (int) key;
+		return fingerprint == 0 ? 1 : fingerprint;
+	}
+
+	public int getNumRows() {
+		return this.numRows;
+	}
+
+	public int getNumCols() {
+		return this.numCols;
+	}
+
+	public int getNumStudents() {
+		return this.numStudents;
+	}
+
+	public long getNumEntries() {
+		return this.numEntries;
+	}
+}
@@ -0,0 +1,518 @@
+package studentworld.policy;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import studentworld.knowledge.DiagonalSymmetry;
+import studentworld.knowledge.Zobrist;
+
+/*
+ * Offline solver for the policy table used by CSPPlayer. It enumerates every world
+ * StudentWorldBoard can generate (door and students placed away from the start cell,
+ * door reachable moving only down and right), treats them as equally likely and runs
+ * an exact expectimax over the knowledge states the player can reach: each decision
+ * picks the fringe cell minimizing LOSS_COST * P(loss) + expected number of moves.
+ * While some fringe cell is safe in every consistent world only the closest safe cells
+ * are considered, so risky moves are optimized but safe exploration stays greedy.
+ *
+ * States are keyed like KnowledgeKey.getCanonicalStateKey, so the table can be
+ * queried directly from the observations the player made. On square boards a state
+ * and its mirror image across the main diagonal share one entry. Only feasible for small
+ * boards, the default 5x5 world with 5 students has about 4 * 10^5 worlds.
+ *
+ * Usage: PolicyTableBuilder <output file> [rows cols students]
+ */
+public class PolicyTableBuilder {
+	// one loss is worth this many moves
+	private static final double LOSS_COST = 1000.0;
+
+	private int numRows;
+	private int numCols;
+	private int numStudents;
+	private int numCells;
+	private long[] neighborMasks;
+	private long[] worldStudents;
+	private int[] worldDoors;
+	private int numWorlds;
+	private StateTable states;
+	private StateTable policy;
+	private double expectedCost;
+
+	public PolicyTableBuilder(int numRows, int numCols, int numStudents) {
+		if(numRows * numCols > 63) {
+			throw new IllegalArgumentException("policy tables are limited to boards of at most 63 cells");
+		}
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.numStudents = numStudents;
+		this.numCells = numRows * numCols;
+		this.neighborMasks = new long[numCells];
+		for(int row=0; row<numRows; row++) {
+			for(int col=0; col<numCols; col++) {
+				long mask = 0;
+				if(row > 0) {
+					mask |= 1L << index(row-1, col);
+				}
+				if(col < numCols-1) {
+					mask |= 1L << index(row, col+1);
+				}
+				if(row < numRows-1) {
+					mask |= 1L << index(row+1, col);
+				}
+				if(col > 0) {
+					mask |= 1L << index(row, col-1);
+				}
+				neighborMasks[index(row, col)] = mask;
+			}
+		}
+		this.states = new StateTable();
+	}
+
+	public void build() {
+		enumerateWorlds();
+		// the percept of the start cell is the first thing the player learns
+		int[][] roots = partitionBySignature(allWorlds(), numWorlds, 0);
+		long rootKey = Zobrist.boardKey(numRows, numCols);
+		expectedCost = 0;
+		for(int s=0; s<Zobrist.NUM_SIGNATURES; s++) {
+			if(roots[s] != null) {
+				long key = rootKey ^ Zobrist.observationKey(numCols, 0, 0, s);
+				expectedCost += (double) roots[s].length / numWorlds * solve(1L, 0, key, key, roots[s], roots[s].length);
+			}
+		}
+		// only the states the optimal policy actually reaches end up in the table
+		policy = new StateTable();
+		for(int s=0; s<Zobrist.NUM_SIGNATURES; s++) {
+			if(roots[s] != null) {
+				long key = rootKey ^ Zobrist.observationKey(numCols, 0, 0, s);
+				collectPolicyStates(1L, 0, key, key, roots[s], roots[s].length);
+			}
+		}
+	}
+
+	public int getNumWorlds() {
+		return this.numWorlds;
+	}
+
+	public int getNumStates() {
+		return states.size;
+	}
+
+	public int getNumPolicyStates() {
+		return policy.size;
+	}
+
+	public double getExpectedCost() {
+		return this.expectedCost;
+	}
+
+	// state keys of the policy states, what write() puts in the table
+	long[] getPolicyKeys() {
+		long[] keys = new long[policy.size];
+		int n = 0;
+		for(long key : policy.keys) {
+			if(key != 0) {
+				keys[n++] = key;
+			}
+		}
+		return keys;
+	}
+
+	// target cell the policy picks in the state, -1 for a state not in the policy
+	int getPolicyTarget(long key) {
+		int slot = policy.find(key);
+		return slot < 0 ? -1 : policy.actions[slot] & 0xFF;
+	}
+
+	public void write(File file) throws IOException {
+		int capacity = Integer.highestOneBit(Math.max(16, policy.size * 2 - 1)) << 1;
+		int[] slotFingerprints = new int[capacity];
+		byte[] slotCells = new byte[capacity];
+		int mask = capacity - 1;
+		for(int i=0; i<policy.keys.length; i++) {
+			long key = policy.keys[i];
+			if(key != 0) {
+				int slot = PolicyTable.slotFor(key, mask);
+				while(slotFingerprints[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				slotFingerprints[slot] = PolicyTable.fingerprint(key);
+				slotCells[slot] = policy.actions[i];
+			}
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(PolicyTable.MAGIC);
+			out.writeInt(PolicyTable.VERSION);
+			out.writeInt(numRows);
+			out.writeInt(numCols);
+			out.writeInt(numStudents);
+			out.writeInt(capacity);
+			out.writeLong(policy.size);
+			for(int slot=0; slot<capacity; slot++) {
+				out.writeInt(slotFingerprints[slot]);
+				out.writeByte(slotCells[slot]);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	// expected cost from a state, recording the best target cell for it
+	private double solve(long visited, int position, long key, long transposedKey, int[] worlds, int count) {
+		long stateKey = stateKey(key, position);
+		long transposedStateKey = transposedStateKey(transposedKey, position);
+		long canonicalKey = DiagonalSymmetry.canonical(stateKey, transposedStateKey);
+		int slot = states.find(canonicalKey);
+		if(slot >= 0) {
+			return states.values[slot];
+		}
+
+		int[] distances = distancesThroughVisited(visited, position);
+		long fringe = 0;
+		for(int cell=0; cell<numCells; cell++) {
+			if((visited & (1L << cell)) != 0) {
+				fringe |= neighborMasks[cell];
+			}
+		}
+		fringe &= ~visited;
+
+		// cheap lower bound per fringe cell: travel cost plus the risk of the step itself
+		int numFringe = Long.bitCount(fringe);
+		int[] fringeCells = new int[numFringe];
+		double[] bounds = new double[numFringe];
+		int[] losses = new int[numFringe];
+		int n = 0;
+		for(long rest = fringe; rest != 0; rest &= rest - 1) {
+			int cell = Long.numberOfTrailingZeros(rest);
+			int lost = 0;
+			for(int i=0; i<count; i++) {
+				if((worldStudents[worlds[i]] & (1L << cell)) != 0) {
+					lost++;
+				}
+			}
+			fringeCells[n] = cell;
+			losses[n] = lost;
+			bounds[n] = stepCost(distances, cell) + LOSS_COST * lost / count;
+			n++;
+		}
+		Integer[] order = new Integer[numFringe];
+		for(int i=0; i<numFringe; i++) {
+			order[i] = i;
+		}
+		final double[] sortBounds = bounds;
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(sortBounds[a], sortBounds[b]);
+			}
+		});
+
+		// like CSPPlayer, never take a risk while a cell is known to be safe: only the
+		// closest risk-free cells are candidates then, which keeps the state space tractable
+		double closestSafe = Double.POSITIVE_INFINITY;
+		for(int i=0; i<numFringe; i++) {
+			if(losses[i] == 0) {
+				closestSafe = Math.min(closestSafe, bounds[i]);
+			}
+		}
+
+		double best = Double.POSITIVE_INFINITY;
+		int bestCell = -1;
+		for(Integer i : order) {
+			if(bounds[i] >= best) {
+				break;
+			}
+			if(closestSafe < Double.POSITIVE_INFINITY && (losses[i] > 0 || bounds[i] > closestSafe)) {
+				continue;
+			}
+			int cell = fringeCells[i];
+			double value = bounds[i];
+			if(losses[i] < count) {
+				value += expectedAfterStep(visited, key, transposedKey, worlds, count, cell);
+			}
+			if(value < best) {
+				best = value;
+				bestCell = cell;
+			}
+		}
+		// mirror-image states share one entry, stored in the canonical orientation
+		if(DiagonalSymmetry.isTransposed(stateKey, transposedStateKey)) {
+			bestCell = DiagonalSymmetry.transposeCell(bestCell, numCols);
+		}
+		states.put(canonicalKey, best, (byte) bestCell);
+		return best;
+	}
+
+	// expected remaining cost after stepping onto a cell, weighted over the non-losing worlds
+	private double expectedAfterStep(long visited, long key, long transposedKey, int[] worlds, int count, int cell) {
+		int[][] bySignature = partitionBySignature(worlds, count, cell);
+		double expected = 0;
+		int row = cell / numCols;
+		int col = cell % numCols;
+		for(int s=0; s<Zobrist.NUM_SIGNATURES; s++) {
+			if(bySignature[s] != null) {
+				long childKey = key ^ Zobrist.observationKey(numCols, row, col, s);
+				long childTransposedKey = transposedKey ^ Zobrist.observationKey(numCols, col, row, s);
+				expected += (double) bySignature[s].length / count
+						* solve(visited | (1L << cell), cell, childKey, childTransposedKey, bySignature[s], bySignature[s].length);
+			}
+		}
+		return expected;
+	}
+
+	// walks the solved states along the best targets, following every percept outcome
+	private void collectPolicyStates(long visited, int position, long key, long transposedKey, int[] worlds, int count) {
+		long stateKey = stateKey(key, position);
+		long transposedStateKey = transposedStateKey(transposedKey, position);
+		long canonicalKey = DiagonalSymmetry.canonical(stateKey, transposedStateKey);
+		// the mirror image of a collected state has mirror-image successors, nothing new to collect
+		if(policy.find(canonicalKey) >= 0) {
+			return;
+		}
+		byte canonicalCell = states.actions[states.find(canonicalKey)];
+		policy.put(canonicalKey, 0, canonicalCell);
+		int cell = canonicalCell;
+		if(DiagonalSymmetry.isTransposed(stateKey, transposedStateKey)) {
+			cell = DiagonalSymmetry.transposeCell(cell, numCols);
+		}
+		int row = cell / numCols;
+		int col = cell % numCols;
+		int[][] bySignature = partitionBySignature(worlds, count, cell);
+		for(int s=0; s<Zobrist.NUM_SIGNATURES; s++) {
+			if(bySignature[s] != null) {
+				long childKey = key ^ Zobrist.observationKey(numCols, row, col, s);
+				long childTransposedKey = transposedKey ^ Zobrist.observationKey(numCols, col, row, s);
+				collectPolicyStates(visited | (1L << cell), cell, childKey, childTransposedKey, bySignature[s], bySignature[s].length);
+			}
+		}
+	}
+
+	private long stateKey(long key, int position) {
+		return key ^ Zobrist.positionKey(numCols, position / numCols, position % numCols);
+	}
+
+	// same as KnowledgeKey, non-square boards have no mirror image and use the plain key
+	private long transposedStateKey(long transposedKey, int position) {
+		if(numRows != numCols) {
+			return stateKey(transposedKey, position);
+		}
+		return transposedKey ^ Zobrist.positionKey(numCols, position % numCols, position / numCols);
+	}
+
+	// worlds in which the cell is neither a student nor the door, grouped by the percept found there
+	private int[][] partitionBySignature(int[] worlds, int count, int cell) {
+		int[] signatures = new int[count];
+		int[] sizes = new int[Zobrist.NUM_SIGNATURES];
+		for(int i=0; i<count; i++) {
+			int w = worlds[i];
+			if((worldStudents[w] & (1L << cell)) == 0 && worldDoors[w] != cell) {
+				signatures[i] = signature(w, cell);
+				sizes[signatures[i]]++;
+			} else {
+				signatures[i] = -1;
+			}
+		}
+		int[][] bySignature = new int[Zobrist.NUM_SIGNATURES][];
+		for(int s=0; s<Zobrist.NUM_SIGNATURES; s++) {
+			if(sizes[s] > 0) {
+				bySignature[s] = new int[sizes[s]];
+				sizes[s] = 0;
+			}
+		}
+		for(int i=0; i<count; i++) {
+			if(signatures[i] >= 0) {
+				bySignature[signatures[i]][sizes[signatures[i]]++] = worlds[i];
+			}
+		}
+		return bySignature;
+	}
+
+	private int[] allWorlds() {
+		int[] worlds = new int[numWorlds];
+		for(int w=0; w<numWorlds; w++) {
+			worlds[w] = w;
+		}
+		return worlds;
+	}
+
+	private double stepCost(int[] distances, int cell) {
+		int best = Integer.MAX_VALUE;
+		for(long rest = neighborMasks[cell]; rest != 0; rest &= rest - 1) {
+			int neighbor = Long.numberOfTrailingZeros(rest);
+			if(distances[neighbor] >= 0) {
+				best = Math.min(best, distances[neighbor]);
+			}
+		}
+		return best + 1;
+	}
+
+	// breadth-first distances from the position, moving through visited cells only
+	private int[] distancesThroughVisited(long visited, int position) {
+		int[] distances = new int[numCells];
+		Arrays.fill(distances, -1);
+		int[] queue = new int[numCells];
+		int head = 0;
+		int tail = 0;
+		distances[position] = 0;
+		queue[tail++] = position;
+		while(head < tail) {
+			int cell = queue[head++];
+			for(long rest = neighborMasks[cell] & visited; rest != 0; rest &= rest - 1) {
+				int neighbor = Long.numberOfTrailingZeros(rest);
+				if(distances[neighbor] < 0) {
+					distances[neighbor] = distances[cell] + 1;
+					queue[tail++] = neighbor;
+				}
+			}
+		}
+		return distances;
+	}
+
+	private int signature(int world, int cell) {
+		int signature = 0;
+		if((worldStudents[world] & neighborMasks[cell]) != 0) {
+			signature |= 1;
+		}
+		if((neighborMasks[cell] & (1L << worldDoors[world])) != 0) {
+			signature |= 2;
+		}
+		return signature;
+	}
+
+	private void enumerateWorlds() {
+		List<long[]> worlds = new ArrayList<long[]>();
+		for(int door=0; door<numCells; door++) {
+			if(door / numCols + door % numCols > 1) {
+				enumerateStudents(door, 0, 0L, numStudents, worlds);
+			}
+		}
+		numWorlds = worlds.size();
+		worldStudents = new long[numWorlds];
+		worldDoors = new int[numWorlds];
+		for(int w=0; w<numWorlds; w++) {
+			worldStudents[w] = worlds.get(w)[0];
+			worldDoors[w] = (int) worlds.get(w)[1];
+		}
+	}
+
+	private void enumerateStudents(int door, int from, long students, int remaining, List<long[]> worlds) {
+		if(remaining == 0) {
+			if(isSolveable(students, door)) {
+				worlds.add(new long[] {students, door});
+			}
+			return;
+		}
+		for(int cell=from; cell<numCells; cell++) {
+			// same placement rules as StudentWorldBoard
+			if(cell != door && cell / numCols + cell % numCols > 1) {
+				enumerateStudents(door, cell + 1, students | (1L << cell), remaining - 1, worlds);
+			}
+		}
+	}
+
+	// door reachable from the start moving only down and right, as StudentWorldBoard requires
+	private boolean isSolveable(long students, int door) {
+		boolean[] reachable = new boolean[numCells];
+		for(int row=0; row<numRows; row++) {
+			for(int col=0; col<numCols; col++) {
+				int cell = index(row, col);
+				if((students & (1L << cell)) != 0) {
+					continue;
+				}
+				reachable[cell] = (row == 0 && col == 0)
+						|| (row > 0 && reachable[index(row-1, col)] && index(row-1, col) != door)
+						|| (col > 0 && reachable[index(row, col-1)] && index(row, col-1) != door);
+				if(cell == door && reachable[cell]) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private int index(int row, int col) {
+		return row * numCols + col;
+	}
+
+	// open-addressing map from state key to (expected cost, best target cell)
+	private static class StateTable {
+		long[] keys = new long[1 << 16];
+		double[] values = new double[1 << 16];
+		byte[] actions = new byte[1 << 16];
+		int size;
+
+		int find(long key) {
+			int mask = keys.length - 1;
+			int slot = PolicyTable.slotFor(key, mask);
+			while(keys[slot] != 0) {
+				if(keys[slot] == key) {
+					return slot;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		void put(long key, double value, byte action) {
+			if(key == 0) {
+				return;
+			}
+			if(size * 2 >= keys.length) {
+				grow();
+			}
+			int mask = keys.length - 1;
+			int slot = PolicyTable.slotFor(key, mask);
+			while(keys[slot] != 0 && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			if(keys[slot] == 0) {
+				size++;
+			}
+			keys[slot] = key;
+			values[slot] = value;
+			actions[slot] = action;
+		}
+
+		void grow() {
+			long[] oldKeys = keys;
+			double[] oldValues = values;
+			byte[] oldActions = actions;
+			keys = new long[oldKeys.length * 2];
+			values = new double[oldKeys.length * 2];
+			actions = new byte[oldKeys.length * 2];
+			size = 0;
+			for(int i=0; i<oldKeys.length; i++) {
+				if(oldKeys[i] != 0) {
+					put(oldKeys[i], oldValues[i], oldActions[i]);
+				}
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length != 1 && args.length != 4) {
+			System.out.println("Usage: PolicyTableBuilder <output file> [rows cols students]");
+			return;
+		}
+		int numRows = args.length == 4 ? Integer.parseInt(args[1]) : 5;
+		int numCols = args.length == 4 ? Integer.parseInt(args[2]) : 5;
+		int numStudents = args.length == 4 ? Integer.parseInt(args[3]) : 5;
+
+		long start = System.currentTimeMillis();
+		PolicyTableBuilder builder = new PolicyTableBuilder(numRows, numCols, numStudents);
+		builder.build();
+		builder.write(new File(args[0]));
+		System.out.println("Solved " + builder.getNumStates() + " states over " + builder.getNumWorlds() + " worlds, wrote "
+				+ builder.getNumPolicyStates() + " policy states in "
+				+ (System.currentTimeMillis() - start) + " ms, expected cost " + String.format("%.3f", builder.getExpectedCost()));
+	}
+}
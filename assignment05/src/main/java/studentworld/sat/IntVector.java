@@ -0,0 +1,58 @@
+package studentworld.sat;
+
+import java.util.Arrays;
+
+/*
+ * Growable int array, used instead of List<Integer> on the solver's hot paths.
+ */
+class IntVector {
+	private int[] data;
+	private int size;
+
+	IntVector() {
+		this(4);
+	}
+
+	IntVector(int capacity) {
+		this.data = new int[Math.max(1, capacity)];
+	}
+
+	void add(int value) {
+		if(size == data.length) {
+			data = Arrays.copyOf(data, size * 2);
+		}
+		data[size++] = value;
+	}
+
+	int get(int index) {
+		return data[index];
+	}
+
+	void set(int index, int value) {
+		data[index] = value;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	int capacity() {
+		return data.length;
+	}
+
+	int last() {
+		return data[size - 1];
+	}
+
+	void shrink(int newSize) {
+		this.size = newSize;
+	}
+
+	void clear() {
+		this.size = 0;
+	}
+
+	int[] toArray() {
+		return Arrays.copyOf(data, size);
+	}
+}
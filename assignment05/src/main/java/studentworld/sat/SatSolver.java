@@ -0,0 +1,504 @@
+package studentworld.sat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import studentworld.knowledge.Deadline;
+
+/*
+ * Small conflict-driven clause learning SAT solver: two watched literals for unit
+ * propagation, first-UIP learning with non-chronological backjumping, activity
+ * based decisions with phase saving and geometric restarts.
+ *
+ * Variables are numbered from 0, literal positive(v) is v and negative(v) is not v.
+ * Clauses can be added between calls to solve(), facts derived without any decision
+ * are kept, as are learnt clauses, so asking many related questions is cheap.
+ * solve(assumptions) checks satisfiability with some literals temporarily forced,
+ * which is how getBackbone() finds the literals true in every model.
+ */
+public class SatSolver {
+	public static final byte FALSE = 0;
+	public static final byte TRUE = 1;
+	public static final byte UNDEF = 2;
+
+	private static final double ACTIVITY_DECAY = 0.95;
+	private static final int FIRST_RESTART = 100;
+	private static final double RESTART_GROWTH = 1.5;
+	// for getFootprintBytes(), as on a 64 bit HotSpot with compressed references
+	static final int HEADER_BYTES = 16;
+	static final int REFERENCE_BYTES = 4;
+
+	private int numVars;
+	private byte[] values = new byte[0];
+	private byte[] phases = new byte[0];
+	private byte[] model = new byte[0];
+	private int[] levels = new int[0];
+	private int[] reasons = new int[0];
+	private boolean[] seen = new boolean[0];
+	private double[] activity = new double[0];
+	private double activityIncrement = 1;
+	private VariableOrder order = new VariableOrder();
+
+	private int[] trail = new int[0];
+	private int trailSize;
+	private IntVector trailLimits = new IntVector();
+	private int propagateHead;
+
+	private List<int[]> clauses = new ArrayList<int[]>();
+	private IntVector[] watches = new IntVector[0];
+	private int numLearnt;
+	private long numClauseLiterals;
+	private long numConflicts;
+	private boolean unsatisfiable;
+	private boolean backboneComplete;
+
+	public static int positive(int var) {
+		return var << 1;
+	}
+
+	public static int negative(int var) {
+		return (var << 1) | 1;
+	}
+
+	public static int negate(int literal) {
+		return literal ^ 1;
+	}
+
+	public static int variable(int literal) {
+		return literal >> 1;
+	}
+
+	// adds a variable and returns its number
+	public int newVariable() {
+		ensureVariables(numVars + 1);
+		return numVars - 1;
+	}
+
+	// makes sure variables 0 to numVars-1 exist
+	public void ensureVariables(int numVars) {
+		if(numVars <= this.numVars) {
+			return;
+		}
+		int capacity = Math.max(numVars, values.length);
+		if(capacity > values.length) {
+			capacity = Math.max(capacity, values.length * 2);
+			values = Arrays.copyOf(values, capacity);
+			phases = Arrays.copyOf(phases, capacity);
+			levels = Arrays.copyOf(levels, capacity);
+			reasons = Arrays.copyOf(reasons, capacity);
+			seen = Arrays.copyOf(seen, capacity);
+			activity = Arrays.copyOf(activity, capacity);
+			trail = Arrays.copyOf(trail, capacity);
+			IntVector[] grown = Arrays.copyOf(watches, 2 * capacity);
+			for(int i=watches.length; i<grown.length; i++) {
+				grown[i] = new IntVector();
+			}
+			watches = grown;
+		}
+		for(int var=this.numVars; var<numVars; var++) {
+			values[var] = UNDEF;
+			phases[var] = FALSE;
+			reasons[var] = -1;
+		}
+		this.numVars = numVars;
+		order.grow(numVars, activity);
+	}
+
+	public int getNumVariables() {
+		return this.numVars;
+	}
+
+	public int getNumClauses() {
+		return clauses.size() - numLearnt;
+	}
+
+	public int getNumLearnt() {
+		return this.numLearnt;
+	}
+
+	public long getNumConflicts() {
+		return this.numConflicts;
+	}
+
+	/*
+	 * Estimated bytes the solver holds on to between solves: the clauses, learnt ones
+	 * included, their watch lists and the per-variable arrays. Object and array sizes
+	 * are assumed, not measured, so this is a model of the footprint for comparing
+	 * games and board sizes, not an exact heap figure.
+	 */
+	public long getFootprintBytes() {
+		long bytes = 8L * HEADER_BYTES + (long) values.length * (1 + 1 + 1 + 4 + 4 + 4 + 8) + model.length;
+		bytes += (long) clauses.size() * (HEADER_BYTES + REFERENCE_BYTES) + 4 * numClauseLiterals;
+		bytes += HEADER_BYTES + (long) watches.length * (REFERENCE_BYTES + 2 * HEADER_BYTES);
+		for(IntVector watch : watches) {
+			bytes += 4L * watch.capacity();
+		}
+		return bytes + order.getFootprintBytes();
+	}
+
+	// false once the clauses are known to be unsatisfiable, adding more can't change that
+	public boolean isSatisfiable() {
+		return !unsatisfiable;
+	}
+
+	public boolean addClause(int... literals) {
+		if(unsatisfiable) {
+			return false;
+		}
+		cancelUntil(0);
+		IntVector kept = new IntVector(literals.length);
+		for(int literal : literals) {
+			if(variable(literal) >= numVars || literal < 0) {
+				throw new IllegalArgumentException("unknown variable " + variable(literal));
+			}
+			byte value = literalValue(literal);
+			if(value == TRUE) {
+				return true;
+			}
+			if(value == FALSE || contains(kept, literal)) {
+				continue;
+			}
+			if(contains(kept, negate(literal))) {
+				return true;
+			}
+			kept.add(literal);
+		}
+
+		if(kept.size() == 0) {
+			unsatisfiable = true;
+			return false;
+		}
+		if(kept.size() == 1) {
+			enqueue(kept.get(0), -1);
+			if(propagate() >= 0) {
+				unsatisfiable = true;
+				return false;
+			}
+			return true;
+		}
+		attach(kept.toArray());
+		return true;
+	}
+
+	public boolean solve(int... assumptions) {
+		if(unsatisfiable) {
+			return false;
+		}
+		cancelUntil(0);
+		double restartLimit = FIRST_RESTART;
+		long conflictsUntilRestart = FIRST_RESTART;
+		IntVector learnt = new IntVector();
+
+		while(true) {
+			int conflict = propagate();
+			if(conflict >= 0) {
+				numConflicts++;
+				conflictsUntilRestart--;
+				if(decisionLevel() == 0) {
+					unsatisfiable = true;
+					return false;
+				}
+				int backjumpLevel = analyze(conflict, learnt);
+				cancelUntil(backjumpLevel);
+				if(learnt.size() == 1) {
+					enqueue(learnt.get(0), -1);
+				} else {
+					int index = attach(learnt.toArray());
+					numLearnt++;
+					enqueue(learnt.get(0), index);
+				}
+				activityIncrement /= ACTIVITY_DECAY;
+			} else {
+				if(conflictsUntilRestart <= 0) {
+					restartLimit *= RESTART_GROWTH;
+					conflictsUntilRestart = (long) restartLimit;
+					cancelUntil(0);
+					continue;
+				}
+				int next;
+				if(decisionLevel() < assumptions.length) {
+					next = assumptions[decisionLevel()];
+					byte value = literalValue(next);
+					if(value == TRUE) {
+						// already implied, keep the levels lined up with the assumptions
+						trailLimits.add(trailSize);
+						continue;
+					}
+					if(value == FALSE) {
+						cancelUntil(0);
+						return false;
+					}
+				} else {
+					next = pickBranchLiteral();
+					if(next < 0) {
+						if(model.length < numVars) {
+							model = new byte[values.length];
+						}
+						System.arraycopy(values, 0, model, 0, numVars);
+						cancelUntil(0);
+						return true;
+					}
+				}
+				trailLimits.add(trailSize);
+				enqueue(next, -1);
+			}
+		}
+	}
+
+	// value of var in the model found by the last successful solve()
+	public byte getModelValue(int var) {
+		return var < model.length ? model[var] : UNDEF;
+	}
+
+	// TRUE or FALSE if var has that value without any decision, UNDEF otherwise
+	public byte getFixedValue(int var) {
+		return values[var];
+	}
+
+	/*
+	 * For each of the variables: TRUE or FALSE if it has that value in every model,
+	 * UNDEF if it can take both. Each variable costs at most one solve() with its
+	 * value from a model negated, models found on the way rule out the variables they
+	 * disagree on. Returns null if the clauses are unsatisfiable.
+	 */
+	public byte[] getBackbone(int[] variables) {
+		return getBackbone(variables, Long.MAX_VALUE);
+	}
+
+	// as getBackbone(variables), but variables not yet checked at the System.nanoTime() deadline are left UNDEF
+	public byte[] getBackbone(int[] variables, long deadlineNanos) {
+		return getBackbone(variables, new int[0], deadlineNanos);
+	}
+
+	/*
+	 * As getBackbone(variables, deadlineNanos) for the models where the assumptions
+	 * hold. What is entailed is only kept as a clause conditional on the assumptions,
+	 * so dropping one of them later takes its consequences back out. Returns null if
+	 * the clauses contradict the assumptions.
+	 */
+	public byte[] getBackbone(int[] variables, int[] assumptions, long deadlineNanos) {
+		byte[] candidates = new byte[variables.length];
+		int[] negatedAssumptions = new int[assumptions.length + 1];
+		int[] withNegation = Arrays.copyOf(assumptions, assumptions.length + 1);
+		for(int i=0; i<assumptions.length; i++) {
+			negatedAssumptions[i] = negate(assumptions[i]);
+		}
+		backboneComplete = false;
+		if(!solve(assumptions)) {
+			return null;
+		}
+		for(int i=0; i<variables.length; i++) {
+			candidates[i] = model[variables[i]];
+		}
+		for(int i=0; i<variables.length; i++) {
+			int var = variables[i];
+			if(Deadline.isPast(deadlineNanos)) {
+				for(int k=i; k<variables.length; k++) {
+					candidates[k] = values[variables[k]];
+				}
+				return candidates;
+			}
+			if(candidates[i] == UNDEF || values[var] != UNDEF) {
+				continue;
+			}
+			int literal = candidates[i] == TRUE ? positive(var) : negative(var);
+			withNegation[assumptions.length] = negate(literal);
+			if(solve(withNegation)) {
+				for(int k=i; k<variables.length; k++) {
+					if(candidates[k] != UNDEF && model[variables[k]] != candidates[k]) {
+						candidates[k] = UNDEF;
+					}
+				}
+			} else if(unsatisfiable) {
+				return null;
+			} else {
+				// entailed, fixing it makes the remaining checks easier
+				negatedAssumptions[assumptions.length] = literal;
+				addClause(negatedAssumptions);
+			}
+		}
+		backboneComplete = true;
+		return candidates;
+	}
+
+	// false if the last getBackbone() ran out of time
+	public boolean isBackboneComplete() {
+		return this.backboneComplete;
+	}
+
+	private int decisionLevel() {
+		return trailLimits.size();
+	}
+
+	private byte literalValue(int literal) {
+		byte value = values[literal >> 1];
+		return value == UNDEF ? UNDEF : (byte) (value ^ (literal & 1));
+	}
+
+	private static boolean contains(IntVector literals, int literal) {
+		for(int i=0; i<literals.size(); i++) {
+			if(literals.get(i) == literal) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int attach(int[] clause) {
+		int index = clauses.size();
+		clauses.add(clause);
+		numClauseLiterals += clause.length;
+		watches[clause[0]].add(index);
+		watches[clause[1]].add(index);
+		return index;
+	}
+
+	private void enqueue(int literal, int reason) {
+		int var = literal >> 1;
+		values[var] = (byte) ((literal & 1) ^ 1);
+		levels[var] = decisionLevel();
+		reasons[var] = reason;
+		trail[trailSize++] = literal;
+	}
+
+	// returns the index of a conflicting clause, or -1
+	private int propagate() {
+		while(propagateHead < trailSize) {
+			int falseLiteral = negate(trail[propagateHead++]);
+			IntVector watching = watches[falseLiteral];
+			int size = watching.size();
+			int i = 0;
+			int j = 0;
+			while(i < size) {
+				int index = watching.get(i++);
+				int[] clause = clauses.get(index);
+				if(clause[0] == falseLiteral) {
+					clause[0] = clause[1];
+					clause[1] = falseLiteral;
+				}
+				if(literalValue(clause[0]) == TRUE) {
+					watching.set(j++, index);
+					continue;
+				}
+				boolean moved = false;
+				for(int k=2; k<clause.length; k++) {
+					if(literalValue(clause[k]) != FALSE) {
+						clause[1] = clause[k];
+						clause[k] = falseLiteral;
+						watches[clause[1]].add(index);
+						moved = true;
+						break;
+					}
+				}
+				if(moved) {
+					continue;
+				}
+				watching.set(j++, index);
+				if(literalValue(clause[0]) == FALSE) {
+					while(i < size) {
+						watching.set(j++, watching.get(i++));
+					}
+					watching.shrink(j);
+					propagateHead = trailSize;
+					return index;
+				}
+				enqueue(clause[0], index);
+			}
+			watching.shrink(j);
+		}
+		return -1;
+	}
+
+	// first-UIP clause for the conflict in learnt, asserting literal first; returns the level to backjump to
+	private int analyze(int conflict, IntVector learnt) {
+		learnt.clear();
+		learnt.add(-1);
+		int pathCount = 0;
+		int literal = -1;
+		int index = trailSize - 1;
+		int reason = conflict;
+
+		do {
+			int[] clause = clauses.get(reason);
+			for(int k=(literal == -1 ? 0 : 1); k<clause.length; k++) {
+				int var = clause[k] >> 1;
+				if(!seen[var] && levels[var] > 0) {
+					bumpActivity(var);
+					seen[var] = true;
+					if(levels[var] >= decisionLevel()) {
+						pathCount++;
+					} else {
+						learnt.add(clause[k]);
+					}
+				}
+			}
+			while(!seen[trail[index] >> 1]) {
+				index--;
+			}
+			literal = trail[index--];
+			reason = reasons[literal >> 1];
+			seen[literal >> 1] = false;
+			pathCount--;
+		} while(pathCount > 0);
+		learnt.set(0, negate(literal));
+
+		int backjumpLevel = 0;
+		int watchIndex = 1;
+		for(int i=1; i<learnt.size(); i++) {
+			int var = learnt.get(i) >> 1;
+			seen[var] = false;
+			if(levels[var] > backjumpLevel) {
+				backjumpLevel = levels[var];
+				watchIndex = i;
+			}
+		}
+		// the second watch goes on a literal of the backjump level so it is the last to be unassigned
+		if(learnt.size() > 1) {
+			int swap = learnt.get(1);
+			learnt.set(1, learnt.get(watchIndex));
+			learnt.set(watchIndex, swap);
+		}
+		return backjumpLevel;
+	}
+
+	private void bumpActivity(int var) {
+		activity[var] += activityIncrement;
+		if(activity[var] > 1e100) {
+			for(int i=0; i<numVars; i++) {
+				activity[i] *= 1e-100;
+			}
+			activityIncrement *= 1e-100;
+		}
+		order.increased(var);
+	}
+
+	private int pickBranchLiteral() {
+		while(!order.isEmpty()) {
+			int var = order.removeMax();
+			if(values[var] == UNDEF) {
+				return phases[var] == TRUE ? positive(var) : negative(var);
+			}
+		}
+		return -1;
+	}
+
+	private void cancelUntil(int level) {
+		if(decisionLevel() <= level) {
+			return;
+		}
+		int limit = trailLimits.get(level);
+		for(int i=trailSize-1; i>=limit; i--) {
+			int var = trail[i] >> 1;
+			phases[var] = values[var];
+			values[var] = UNDEF;
+			reasons[var] = -1;
+			if(!order.contains(var)) {
+				order.insert(var);
+			}
+		}
+		trailSize = limit;
+		propagateHead = limit;
+		trailLimits.shrink(level);
+	}
+}
@@ -0,0 +1,369 @@
+package studentworld.sat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import studentworld.data.StudentWorldPercept;
+import studentworld.knowledge.BoardKnowledge;
+
+/*
+ * The StudentWorld rules as clauses over one student and one door variable per cell:
+ *   smell:    student(n1) or ... or student(nk) over the neighbors
+ *   no smell: not student(n) for every neighbor
+ *   glow:     door(n1) or ... or door(nk), the at-most-one below makes it exactly one
+ *   no glow:  not door(n) for every neighbor
+ *   visited:  not student(c), not door(c)
+ * plus no cell holding both and exactly one door on the board.
+ *
+ * Variables are only created for a cell once it is observed or next to an observed
+ * one, so the formula grows with the explored region, not with the board. The one
+ * door is kept exact anyway: a sequential counter over the cells in the order they
+ * got variables says whether the door is among the first i of them, and a chain of
+ * "elsewhere" variables says whether it is among the cells still without variables,
+ * which the two may not both claim; the last cell of the board to get variables
+ * closes the chain.
+ *
+ * With setMovingStudents() the student variables are per epoch, the turns between two
+ * studentsMoved() calls. Clauses about an epoch's students carry its activation
+ * variable, and queries assume the current and the previous epoch active. Linking
+ * clauses say a student now was on the same cell or next to it an epoch ago, and a
+ * student next to an earlier smell is on or next to that cell now. When an epoch
+ * drops out of the window its activation variable and student variables are fixed
+ * to false, which satisfies every clause that mentions them, so old epochs cost
+ * nothing to later solves. Door clauses are never retracted, the door doesn't move.
+ */
+public class StudentWorldCnf {
+	// a HashMap or HashSet entry with its table slot and boxed Integers, for getFootprintBytes()
+	private static final int MAP_ENTRY_BYTES = 64;
+
+	private int numRows;
+	private int numCols;
+	private int numCells;
+	private SatSolver solver;
+	// cell index -> its student variable, the door variable is the next one
+	private Map<Integer, Integer> cellVariables = new HashMap<Integer, Integer>();
+	private IntVector cellsWithVariables = new IntVector();
+	private int doorAmongCells = -1;
+	private int doorElsewhere;
+	private boolean movingStudents;
+	private int epoch;
+	private int epochVariable = -1;
+	private int previousEpochVariable = -1;
+	// cell index -> student variable of the current and previous epoch, null for epoch 0
+	// whose student variables are the ones in cellVariables
+	private Map<Integer, Integer> epochStudents;
+	private Map<Integer, Integer> previousStudents;
+	private Set<Integer> observedThisEpoch = new HashSet<Integer>();
+	private Set<Integer> nextToSmell = new HashSet<Integer>();
+
+	public StudentWorldCnf(int numRows, int numCols) {
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.numCells = numRows * numCols;
+		this.solver = new SatSolver();
+		this.doorElsewhere = solver.newVariable();
+		solver.addClause(SatSolver.positive(doorElsewhere));
+	}
+
+	// number of cells with variables, see the class comment
+	public int getNumCellsWithVariables() {
+		return cellsWithVariables.size();
+	}
+
+	private int studentVariable(int cell) {
+		int student = createVariables(cell);
+		if(epochStudents == null) {
+			return student;
+		}
+		Integer existing = epochStudents.get(cell);
+		if(existing != null) {
+			return existing;
+		}
+		int var = solver.newVariable();
+		epochStudents.put(cell, var);
+		solver.addClause(SatSolver.negative(var), SatSolver.negative(student + 1));
+		//a student here now was here or next door an epoch ago
+		int[] neighbors = getNeighbors(cell);
+		int[] cameFrom = new int[neighbors.length + 3];
+		int size = 0;
+		cameFrom[size++] = SatSolver.negative(var);
+		cameFrom[size++] = SatSolver.positive(previousStudentVariable(cell));
+		for(int neighbor : neighbors) {
+			cameFrom[size++] = SatSolver.positive(previousStudentVariable(neighbor));
+		}
+		cameFrom[size++] = SatSolver.negative(previousEpochVariable);
+		solver.addClause(Arrays.copyOf(cameFrom, size));
+		return var;
+	}
+
+	private int previousStudentVariable(int cell) {
+		if(previousStudents == null) {
+			return createVariables(cell);
+		}
+		Integer existing = previousStudents.get(cell);
+		if(existing != null) {
+			return existing;
+		}
+		int var = solver.newVariable();
+		previousStudents.put(cell, var);
+		solver.addClause(SatSolver.negative(var), SatSolver.negative(doorVariable(cell)));
+		return var;
+	}
+
+	private int doorVariable(int cell) {
+		return createVariables(cell) + 1;
+	}
+
+	private int createVariables(int cell) {
+		Integer existing = cellVariables.get(cell);
+		if(existing != null) {
+			return existing;
+		}
+		int student = solver.newVariable();
+		int door = solver.newVariable();
+		cellVariables.put(cell, student);
+		cellsWithVariables.add(cell);
+		solver.addClause(SatSolver.negative(student), SatSolver.negative(door));
+		//epoch 0 is out of the window, its student variables only get in the way
+		if(movingStudents && epoch >= 2) {
+			solver.addClause(SatSolver.negative(student));
+		}
+
+		int doorAmongCellsNow = solver.newVariable();
+		solver.addClause(SatSolver.negative(door), SatSolver.positive(doorAmongCellsNow));
+		if(doorAmongCells >= 0) {
+			solver.addClause(SatSolver.negative(doorAmongCells), SatSolver.positive(doorAmongCellsNow));
+			solver.addClause(SatSolver.negative(door), SatSolver.negative(doorAmongCells));
+		}
+		//a door elsewhere before this cell is here or still elsewhere
+		if(cellsWithVariables.size() < numCells) {
+			int doorElsewhereNow = solver.newVariable();
+			solver.addClause(SatSolver.negative(doorElsewhere), SatSolver.positive(door), SatSolver.positive(doorElsewhereNow));
+			solver.addClause(SatSolver.negative(doorElsewhereNow), SatSolver.negative(doorAmongCellsNow));
+			doorElsewhere = doorElsewhereNow;
+		} else {
+			solver.addClause(SatSolver.negative(doorElsewhere), SatSolver.positive(door));
+		}
+		doorAmongCells = doorAmongCellsNow;
+		return student;
+	}
+
+	// call before the first observation, see the class comment
+	public void setMovingStudents() {
+		if(cellsWithVariables.size() > 0) {
+			throw new IllegalStateException("students must be set moving before the first observation");
+		}
+		movingStudents = true;
+		epochVariable = solver.newVariable();
+	}
+
+	// starts a new epoch, what was observed about the students before only holds for where they were
+	public void studentsMoved() {
+		if(!movingStudents) {
+			throw new IllegalStateException("students don't move, see setMovingStudents()");
+		}
+		if(previousEpochVariable >= 0) {
+			retireEpoch();
+		}
+		previousEpochVariable = epochVariable;
+		previousStudents = epochStudents;
+		epochVariable = solver.newVariable();
+		epochStudents = new HashMap<Integer, Integer>();
+		epoch++;
+		observedThisEpoch.clear();
+
+		//a student next to an earlier smell is on or next to that cell now
+		for(int cell : nextToSmell) {
+			int[] neighbors = getNeighbors(cell);
+			int[] movedTo = new int[neighbors.length + 3];
+			int size = 0;
+			movedTo[size++] = SatSolver.negative(previousStudentVariable(cell));
+			movedTo[size++] = SatSolver.positive(studentVariable(cell));
+			for(int neighbor : neighbors) {
+				movedTo[size++] = SatSolver.positive(studentVariable(neighbor));
+			}
+			movedTo[size++] = SatSolver.negative(previousEpochVariable);
+			solver.addClause(Arrays.copyOf(movedTo, size));
+		}
+		nextToSmell.clear();
+	}
+
+	private void retireEpoch() {
+		solver.addClause(SatSolver.negative(previousEpochVariable));
+		if(previousStudents == null) {
+			for(int i=0; i<cellsWithVariables.size(); i++) {
+				solver.addClause(SatSolver.negative(createVariables(cellsWithVariables.get(i))));
+			}
+		} else {
+			for(int var : previousStudents.values()) {
+				solver.addClause(SatSolver.negative(var));
+			}
+		}
+	}
+
+	// signature as in StudentWorldPercept.getSignature; false if the cell was already observed this epoch
+	public boolean observe(int row, int col, int signature) {
+		int cell = row * numCols + col;
+		if(movingStudents && !observedThisEpoch.add(cell)) {
+			return false;
+		}
+		addStudentClause(SatSolver.negative(studentVariable(cell)));
+		solver.addClause(SatSolver.negative(doorVariable(cell)));
+		addNeighborClauses(row, col, StudentWorldPercept.hasSmell(signature), true);
+		addNeighborClauses(row, col, StudentWorldPercept.hasGlow(signature), false);
+		return true;
+	}
+
+	// observe() for each (row, col, signature) triple; false if none was new
+	public boolean observeAll(int[] observations) {
+		boolean observed = false;
+		for(int i=0; i<observations.length; i+=3) {
+			observed |= observe(observations[i], observations[i+1], observations[i+2]);
+		}
+		return observed;
+	}
+
+	public boolean isSatisfiable() {
+		return solver.isSatisfiable();
+	}
+
+	public SatSolver getSolver() {
+		return this.solver;
+	}
+
+	// estimated bytes held by the encoding and its solver, see SatSolver.getFootprintBytes
+	public long getFootprintBytes() {
+		long numEntries = cellVariables.size() + observedThisEpoch.size() + nextToSmell.size();
+		if(epochStudents != null) {
+			numEntries += epochStudents.size();
+		}
+		if(previousStudents != null) {
+			numEntries += previousStudents.size();
+		}
+		return solver.getFootprintBytes() + numEntries * MAP_ENTRY_BYTES
+				+ SatSolver.HEADER_BYTES + 4L * cellsWithVariables.capacity();
+	}
+
+	/*
+	 * Knowledge entailed by the observations for the given cells (e.g. the fringe),
+	 * everything else with variables only as far as it follows without search, the
+	 * rest UNKNOWN. Returns null if the observations contradict each other.
+	 */
+	public BoardKnowledge getKnowledge(int[] cells) {
+		return getKnowledge(cells, Long.MAX_VALUE);
+	}
+
+	// cells not checked by the System.nanoTime() deadline keep what follows without search, see isComplete()
+	public BoardKnowledge getKnowledge(int[] cells, long deadlineNanos) {
+		int[] variables = new int[2 * cells.length];
+		for(int i=0; i<cells.length; i++) {
+			variables[2*i] = studentVariable(cells[i]);
+			variables[2*i+1] = doorVariable(cells[i]);
+		}
+		int[] assumptions = new int[0];
+		if(previousEpochVariable >= 0) {
+			assumptions = new int[] {SatSolver.positive(epochVariable), SatSolver.positive(previousEpochVariable)};
+		} else if(movingStudents) {
+			assumptions = new int[] {SatSolver.positive(epochVariable)};
+		}
+		byte[] backbone = solver.getBackbone(variables, assumptions, deadlineNanos);
+		if(backbone == null) {
+			return null;
+		}
+
+		BoardKnowledge knowledge = new BoardKnowledge(numRows, numCols);
+		for(int i=0; i<cellsWithVariables.size(); i++) {
+			int cell = cellsWithVariables.get(i);
+			//moving students are never fixed without the assumptions
+			if(!movingStudents) {
+				knowledge.setStudent(cell / numCols, cell % numCols, toKnowledge(solver.getFixedValue(studentVariable(cell))));
+			}
+			knowledge.setDoor(cell / numCols, cell % numCols, toKnowledge(solver.getFixedValue(doorVariable(cell))));
+		}
+		for(int i=0; i<cells.length; i++) {
+			knowledge.setStudent(cells[i] / numCols, cells[i] % numCols, toKnowledge(backbone[2*i]));
+			knowledge.setDoor(cells[i] / numCols, cells[i] % numCols, toKnowledge(backbone[2*i+1]));
+		}
+		return knowledge;
+	}
+
+	// false if the last getKnowledge() ran out of time before checking every cell
+	public boolean isComplete() {
+		return solver.isBackboneComplete();
+	}
+
+	private static byte toKnowledge(byte value) {
+		if(value == SatSolver.TRUE) {
+			return BoardKnowledge.TRUE;
+		} else if(value == SatSolver.FALSE) {
+			return BoardKnowledge.FALSE;
+		}
+		return BoardKnowledge.UNKNOWN;
+	}
+
+	private void addNeighborClauses(int row, int col, boolean sensed, boolean student) {
+		int[] neighbors = {row-1, col, row, col+1, row+1, col, row, col-1};
+		int[] clause = new int[4];
+		int size = 0;
+		for(int i=0; i<neighbors.length; i+=2) {
+			if(neighbors[i] < 0 || neighbors[i] >= numRows || neighbors[i+1] < 0 || neighbors[i+1] >= numCols) {
+				continue;
+			}
+			int cell = neighbors[i] * numCols + neighbors[i+1];
+			int var = student ? studentVariable(cell) : doorVariable(cell);
+			if(sensed) {
+				clause[size++] = SatSolver.positive(var);
+				if(student && movingStudents) {
+					nextToSmell.add(cell);
+				}
+			} else if(student) {
+				addStudentClause(SatSolver.negative(var));
+			} else {
+				solver.addClause(SatSolver.negative(var));
+			}
+		}
+		if(sensed) {
+			int[] atLeastOne = new int[size];
+			System.arraycopy(clause, 0, atLeastOne, 0, size);
+			if(student) {
+				addStudentClause(atLeastOne);
+			} else {
+				solver.addClause(atLeastOne);
+			}
+		}
+	}
+
+	// clauses about the students only hold while their epoch is active
+	private void addStudentClause(int... literals) {
+		if(!movingStudents) {
+			solver.addClause(literals);
+			return;
+		}
+		int[] guarded = Arrays.copyOf(literals, literals.length + 1);
+		guarded[literals.length] = SatSolver.negative(epochVariable);
+		solver.addClause(guarded);
+	}
+
+	private int[] getNeighbors(int cell) {
+		int row = cell / numCols;
+		int col = cell % numCols;
+		int[] neighbors = new int[4];
+		int size = 0;
+		if(row > 0) {
+			neighbors[size++] = cell - numCols;
+		}
+		if(col < numCols-1) {
+			neighbors[size++] = cell + 1;
+		}
+		if(row < numRows-1) {
+			neighbors[size++] = cell + numCols;
+		}
+		if(col > 0) {
+			neighbors[size++] = cell - 1;
+		}
+		return Arrays.copyOf(neighbors, size);
+	}
+}
@@ -0,0 +1,109 @@
+package studentworld.sat;
+
+import java.util.Arrays;
+
+/*
+ * Binary max-heap of variables by activity, for picking the next decision variable.
+ */
+class VariableOrder {
+	private double[] activity;
+	private int[] heap;
+	private int[] positions;
+	private int size;
+	private int numVars;
+
+	VariableOrder() {
+		this.activity = new double[0];
+		this.heap = new int[16];
+		this.positions = new int[0];
+	}
+
+	// grows geometrically, variables are also added one at a time while solving
+	void grow(int numVars, double[] activity) {
+		this.activity = activity;
+		if(numVars > positions.length) {
+			int oldCapacity = positions.length;
+			positions = Arrays.copyOf(positions, Math.max(numVars, 2 * oldCapacity));
+			Arrays.fill(positions, oldCapacity, positions.length, -1);
+		}
+		for(int var=this.numVars; var<numVars; var++) {
+			insert(var);
+		}
+		this.numVars = numVars;
+	}
+
+	// the activity array is the solver's and counted there
+	long getFootprintBytes() {
+		return 2L * SatSolver.HEADER_BYTES + 4L * (heap.length + positions.length);
+	}
+
+	boolean contains(int var) {
+		return positions[var] >= 0;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	void insert(int var) {
+		if(size == heap.length) {
+			heap = Arrays.copyOf(heap, size * 2);
+		}
+		heap[size] = var;
+		positions[var] = size;
+		size++;
+		up(size - 1);
+	}
+
+	int removeMax() {
+		int var = heap[0];
+		size--;
+		heap[0] = heap[size];
+		positions[heap[0]] = 0;
+		positions[var] = -1;
+		if(size > 0) {
+			down(0);
+		}
+		return var;
+	}
+
+	// call after the activity of var increased
+	void increased(int var) {
+		if(contains(var)) {
+			up(positions[var]);
+		}
+	}
+
+	private void up(int i) {
+		int var = heap[i];
+		while(i > 0) {
+			int parent = (i - 1) >> 1;
+			if(activity[heap[parent]] >= activity[var]) {
+				break;
+			}
+			heap[i] = heap[parent];
+			positions[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = var;
+		positions[var] = i;
+	}
+
+	private void down(int i) {
+		int var = heap[i];
+		while(2 * i + 1 < size) {
+			int child = 2 * i + 1;
+			if(child + 1 < size && activity[heap[child + 1]] > activity[heap[child]]) {
+				child++;
+			}
+			if(activity[heap[child]] <= activity[var]) {
+				break;
+			}
+			heap[i] = heap[child];
+			positions[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = var;
+		positions[var] = i;
+	}
+}
@@ -0,0 +1,199 @@
+package studentworld.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.knowledge.BoardKnowledge;
+
+/*
+ * Loopback front end for a SolverService, one request per line and one reply line
+ * per request:
+ *
+ *   OPEN                                  -> OK <session>
+ *   OBSERVE <session> <row> <col> <signature> [<row> <col> <signature> ...]
+ *                                         -> OK
+ *   QUERY <session> [<budget millis>]     -> OK <cells>
+ *   CLOSE <session>                       -> OK
+ *
+ * Anything that fails is answered with ERROR <message>. <cells> has one digit per
+ * cell in row-major order, student * 3 + door, with each value a BoardKnowledge
+ * FALSE (0), TRUE (1) or UNKNOWN (2).
+ *
+ * A client can keep one connection open for many games. Each open connection holds
+ * one of numThreads threads. A connection made while every thread is busy gets
+ * ERROR server busy and is closed, rather than waiting without being served. A
+ * connection that sends nothing for the service's idle timeout is closed, which
+ * frees its thread.
+ */
+public class SolverServer {
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	private SolverService service;
+	private ServerSocket serverSocket;
+	private ThreadPoolExecutor connections;
+
+	// port 0 picks a free port, see getPort()
+	public SolverServer(SolverService service, int port, int numThreads) throws IOException {
+		this.service = service;
+		this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		// no queue: a connection is taken by a free thread or refused
+		this.connections = new ThreadPoolExecutor(numThreads, numThreads, 0, TimeUnit.MILLISECONDS,
+				new SynchronousQueue<Runnable>(), new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	// accepts connections until close()
+	public void serve() throws IOException {
+		try {
+			while(true) {
+				final Socket socket = serverSocket.accept();
+				try {
+					connections.execute(new Runnable() {
+						@Override
+						public void run() {
+							handle(socket);
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					refuse(socket);
+				}
+			}
+		} catch (SocketException e) {
+			if(!serverSocket.isClosed()) {
+				throw e;
+			}
+		}
+	}
+
+	public void close() throws IOException {
+		serverSocket.close();
+		connections.shutdownNow();
+	}
+
+	private void refuse(Socket socket) {
+		try {
+			Writer out = new OutputStreamWriter(socket.getOutputStream(), ASCII);
+			out.write("ERROR server busy\n");
+			out.flush();
+		} catch (IOException e) {
+			// the client went away
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// already closed
+			}
+		}
+	}
+
+	private void handle(Socket socket) {
+		try {
+			socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, Math.max(1, service.getIdleTimeoutMillis())));
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), ASCII));
+			Writer out = new OutputStreamWriter(socket.getOutputStream(), ASCII);
+			String line;
+			while((line = in.readLine()) != null) {
+				out.write(reply(line));
+				out.write('\n');
+				out.flush();
+			}
+		} catch (IOException e) {
+			// the client went away or stayed idle past the timeout
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// already closed
+			}
+		}
+	}
+
+	String reply(String request) {
+		String[] words = request.trim().split("\\s+");
+		try {
+			if("OPEN".equals(words[0])) {
+				return "OK " + service.openSession();
+			} else if("OBSERVE".equals(words[0])) {
+				int[] observations = new int[words.length - 2];
+				for(int i=0; i<observations.length; i++) {
+					observations[i] = Integer.parseInt(words[i+2]);
+				}
+				service.observe(Long.parseLong(words[1]), observations);
+				return "OK";
+			} else if("QUERY".equals(words[0])) {
+				long budgetMillis = words.length > 2 ? Long.parseLong(words[2]) : 0;
+				return "OK " + encode(service.query(Long.parseLong(words[1]), budgetMillis));
+			} else if("CLOSE".equals(words[0])) {
+				service.closeSession(Long.parseLong(words[1]));
+				return "OK";
+			}
+			return "ERROR unknown request " + words[0];
+		} catch (ArrayIndexOutOfBoundsException e) {
+			return "ERROR missing session";
+		} catch (RuntimeException e) {
+			return "ERROR " + e.getMessage();
+		}
+	}
+
+	static String encode(BoardKnowledge knowledge) {
+		StringBuilder sb = new StringBuilder(knowledge.getNumRows() * knowledge.getNumCols());
+		for(int row=0; row<knowledge.getNumRows(); row++) {
+			for(int col=0; col<knowledge.getNumCols(); col++) {
+				sb.append((char) ('0' + knowledge.getStudent(row, col) * 3 + knowledge.getDoor(row, col)));
+			}
+		}
+		return sb.toString();
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length < 1) {
+			System.out.println("Usage: SolverServer <port> [-size <rows> <cols>] [-sat] [-threads <n>] [-sessions <n>] [-idle <seconds>]");
+			return;
+		}
+		int port = Integer.parseInt(args[0]);
+		int numRows = 5;
+		int numCols = 5;
+		StudentWorldConstraintSolver.Backend backend = StudentWorldConstraintSolver.Backend.CHOCO;
+		int numThreads = 8;
+		int maxSessions = 1024;
+		long idleSeconds = 300;
+		for(int i=1; i<args.length; i++) {
+			if("-size".equals(args[i])) {
+				numRows = Integer.parseInt(args[++i]);
+				numCols = Integer.parseInt(args[++i]);
+			} else if("-sat".equals(args[i])) {
+				backend = StudentWorldConstraintSolver.Backend.SAT;
+			} else if("-threads".equals(args[i])) {
+				numThreads = Integer.parseInt(args[++i]);
+			} else if("-sessions".equals(args[i])) {
+				maxSessions = Integer.parseInt(args[++i]);
+			} else if("-idle".equals(args[i])) {
+				idleSeconds = Long.parseLong(args[++i]);
+			}
+		}
+		SolverService service = new SolverService(backend, numRows, numCols, numThreads, maxSessions, idleSeconds * 1000);
+		SolverServer server = new SolverServer(service, port, numThreads);
+		System.out.println("Serving " + numRows + "x" + numCols + " solver sessions on 127.0.0.1:" + server.getPort());
+		try {
+			server.serve();
+		} finally {
+			service.close();
+		}
+	}
+}
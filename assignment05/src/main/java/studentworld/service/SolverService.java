@@ -0,0 +1,268 @@
+package studentworld.service;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.knowledge.BoardKnowledge;
+import studentworld.knowledge.KnowledgeCache;
+
+/*
+ * Constraint solvers for many concurrent games of one board size, handed out as
+ * sessions. A maintenance thread keeps a pool of solvers built ahead of time, so
+ * opening a session doesn't pay for building the model, and evicts sessions left
+ * idle longer than the idle timeout. Observations can't be taken back out of a
+ * solver, so a closed session's solver is dropped rather than reused; the pool
+ * builds its replacement off the request path. All sessions share one KnowledgeCache.
+ *
+ * Requests on one session are serialized, requests on different sessions run in
+ * parallel. A session with a request running is never evicted, however long the
+ * request takes. Memory is bounded by maxSessions solvers for the board size plus
+ * the pool and the cache: the limit is checked and the session added under one lock.
+ */
+public class SolverService {
+	private static final int CACHE_CAPACITY = 1 << 16;
+
+	private StudentWorldConstraintSolver.Backend backend;
+	private int numRows;
+	private int numCols;
+	private int maxSessions;
+	private long idleTimeoutMillis;
+	private KnowledgeCache knowledgeCache;
+	private BlockingQueue<StudentWorldConstraintSolver> pool;
+	// guarded by itself, as are the sessions' numRequests
+	private Map<Long, Session> sessions = new HashMap<Long, Session>();
+	private AtomicLong nextSessionId = new AtomicLong();
+	private AtomicLong numEvictions = new AtomicLong();
+	private Thread maintenance;
+	private volatile boolean closed;
+
+	private static class Session {
+		private StudentWorldConstraintSolver solver;
+		private long lastUsedMillis;
+		// requests holding the session, it can't be evicted while there are any
+		private int numRequests;
+
+		Session(StudentWorldConstraintSolver solver) {
+			this.solver = solver;
+			this.lastUsedMillis = System.currentTimeMillis();
+		}
+	}
+
+	public SolverService(StudentWorldConstraintSolver.Backend backend, int numRows, int numCols,
+			int poolSize, int maxSessions, long idleTimeoutMillis) {
+		this.backend = backend;
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.maxSessions = maxSessions;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.knowledgeCache = new KnowledgeCache(CACHE_CAPACITY);
+		this.pool = new ArrayBlockingQueue<StudentWorldConstraintSolver>(Math.max(1, poolSize));
+		this.maintenance = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				maintain();
+			}
+		}, "solver-pool");
+		this.maintenance.setDaemon(true);
+		this.maintenance.start();
+	}
+
+	private void maintain() {
+		long checkIntervalMillis = Math.max(1, Math.min(idleTimeoutMillis / 2, 1000));
+		StudentWorldConstraintSolver spare = null;
+		try {
+			while(!closed) {
+				if(spare == null) {
+					spare = newSolver();
+				}
+				// waits for room in the pool, checking for idle sessions meanwhile
+				if(pool.offer(spare, checkIntervalMillis, TimeUnit.MILLISECONDS)) {
+					spare = null;
+				}
+				evictIdleSessions();
+			}
+		} catch (InterruptedException e) {
+			// closed
+		}
+	}
+
+	private StudentWorldConstraintSolver newSolver() {
+		StudentWorldConstraintSolver solver = new StudentWorldConstraintSolver(null, knowledgeCache, backend, numRows, numCols);
+		solver.setPrintVariables(false);
+		solver.setProbing(true);
+		return solver;
+	}
+
+	public long openSession() {
+		if(closed) {
+			throw new IllegalStateException("service is closed");
+		}
+		// fails before a solver is taken or built if the service is clearly full
+		checkRoomForSession();
+		StudentWorldConstraintSolver solver = pool.poll();
+		if(solver == null) {
+			solver = newSolver();
+		}
+		synchronized(sessions) {
+			try {
+				checkRoomForSession();
+			} catch (IllegalStateException e) {
+				// another session took the last place meanwhile, the solver is still unused
+				pool.offer(solver);
+				throw e;
+			}
+			long id = nextSessionId.incrementAndGet();
+			sessions.put(id, new Session(solver));
+			return id;
+		}
+	}
+
+	private void checkRoomForSession() {
+		synchronized(sessions) {
+			if(sessions.size() >= maxSessions) {
+				evictIdleSessions();
+				if(sessions.size() >= maxSessions) {
+					throw new IllegalStateException("too many sessions: " + maxSessions);
+				}
+			}
+		}
+	}
+
+	public void observe(long sessionId, int row, int col, int signature) {
+		observe(sessionId, new int[] {row, col, signature});
+	}
+
+	// observations as (row, col, percept signature) triples, see StudentWorldPercept.getSignature
+	public void observe(long sessionId, int[] observations) {
+		if(observations.length % 3 != 0) {
+			throw new IllegalArgumentException("observations must be (row, col, signature) triples");
+		}
+		for(int i=0; i<observations.length; i+=3) {
+			checkCell(observations[i], observations[i+1]);
+		}
+		Session session = acquire(sessionId);
+		try {
+			synchronized(session) {
+				session.solver.observeAll(observations);
+			}
+		} finally {
+			release(session);
+		}
+	}
+
+	// what the session's observations imply; budgetMillis bounds the solve as CSPPlayer.setTurnBudget, 0 for no bound
+	public BoardKnowledge query(long sessionId, long budgetMillis) {
+		long deadline = StudentWorldConstraintSolver.NO_DEADLINE;
+		if(budgetMillis > 0) {
+			deadline = System.nanoTime() + budgetMillis * 1000000L;
+		}
+		Session session = acquire(sessionId);
+		try {
+			synchronized(session) {
+				return session.solver.getKnowledge(deadline);
+			}
+		} finally {
+			release(session);
+		}
+	}
+
+	// one round trip for the usual turn: post what was seen, get what it implies
+	public BoardKnowledge observeAndQuery(long sessionId, int[] observations, long budgetMillis) {
+		observe(sessionId, observations);
+		return query(sessionId, budgetMillis);
+	}
+
+	public void closeSession(long sessionId) {
+		synchronized(sessions) {
+			sessions.remove(sessionId);
+		}
+	}
+
+	// the session, held against eviction until release()
+	private Session acquire(long sessionId) {
+		synchronized(sessions) {
+			Session session = sessions.get(sessionId);
+			if(session == null) {
+				throw new IllegalArgumentException("no session " + sessionId);
+			}
+			session.numRequests++;
+			session.lastUsedMillis = System.currentTimeMillis();
+			return session;
+		}
+	}
+
+	private void release(Session session) {
+		synchronized(sessions) {
+			session.numRequests--;
+			session.lastUsedMillis = System.currentTimeMillis();
+		}
+	}
+
+	private void checkCell(int row, int col) {
+		if(row < 0 || row >= numRows || col < 0 || col >= numCols) {
+			throw new IllegalArgumentException("cell (" + row + "," + col + ") is off the board");
+		}
+	}
+
+	// drops sessions idle for longer than the idle timeout, sessions with a request running are kept
+	public void evictIdleSessions() {
+		long idleSince = System.currentTimeMillis() - idleTimeoutMillis;
+		synchronized(sessions) {
+			Iterator<Session> iterator = sessions.values().iterator();
+			while(iterator.hasNext()) {
+				Session session = iterator.next();
+				if(session.numRequests == 0 && session.lastUsedMillis < idleSince) {
+					iterator.remove();
+					numEvictions.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	public void close() throws InterruptedException {
+		closed = true;
+		maintenance.interrupt();
+		maintenance.join();
+		synchronized(sessions) {
+			sessions.clear();
+		}
+		pool.clear();
+	}
+
+	public int getNumRows() {
+		return this.numRows;
+	}
+
+	public int getNumCols() {
+		return this.numCols;
+	}
+
+	public int getNumSessions() {
+		synchronized(sessions) {
+			return sessions.size();
+		}
+	}
+
+	public long getIdleTimeoutMillis() {
+		return this.idleTimeoutMillis;
+	}
+
+	// solvers built ahead and waiting for a session
+	public int getNumPooledSolvers() {
+		return pool.size();
+	}
+
+	public long getNumEvictions() {
+		return numEvictions.get();
+	}
+
+	public KnowledgeCache getKnowledgeCache() {
+		return this.knowledgeCache;
+	}
+}
@@ -0,0 +1,139 @@
+package studentworld.trace;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/*
+ * Opt-in memory accounting for one game, for sizing the heap of a process running
+ * many games or sessions at once. Counts the bytes the game's thread allocates per
+ * turn and per phase of a turn, and keeps the solver's model footprint after every
+ * turn, so how the model grows over a game can be read back turn by turn.
+ *
+ * Allocations are read from HotSpot's per-thread counter (com.sun.management.ThreadMXBean);
+ * on a JVM without one isSupported() is false and nothing is counted. Allocations on
+ * other threads, e.g. the sampling or lookahead workers, aren't charged to the game.
+ */
+public class AllocationProfile {
+	public enum Phase {
+		// taking in the current cell, and the students' moves if they wander
+		OBSERVE,
+		// the solver or the shared knowledge base working out what is known
+		KNOWLEDGE,
+		// picking the cell to head for
+		TARGET,
+		// planning the moves to it
+		PATH,
+		// the rest of the turn
+		OTHER
+	}
+
+	private static final com.sun.management.ThreadMXBean THREADS = getThreadBean();
+
+	private long[] phaseBytes = new long[Phase.values().length];
+	private long[] turnBytes = new long[16];
+	private long[] turnModelBytes = new long[16];
+	private int numTurns;
+	private long turnStart;
+	private long mark;
+	private long maxTurnBytes;
+	private long peakModelBytes = -1;
+
+	private static com.sun.management.ThreadMXBean getThreadBean() {
+		try {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			if(!threads.isThreadAllocatedMemorySupported()) {
+				return null;
+			}
+			if(!threads.isThreadAllocatedMemoryEnabled()) {
+				threads.setThreadAllocatedMemoryEnabled(true);
+			}
+			return threads;
+		} catch (ClassCastException | UnsupportedOperationException | SecurityException e) {
+			return null;
+		}
+	}
+
+	public static boolean isSupported() {
+		return THREADS != null;
+	}
+
+	// bytes allocated by the calling thread since it started, 0 if not supported
+	public static long getAllocatedBytes() {
+		return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	public void startTurn() {
+		turnStart = getAllocatedBytes();
+		mark = turnStart;
+	}
+
+	// charges what was allocated since the turn started or the last phase ended to phase
+	public void endPhase(Phase phase) {
+		long now = getAllocatedBytes();
+		phaseBytes[phase.ordinal()] += now - mark;
+		mark = now;
+	}
+
+	// modelBytes is the solver's footprint at the end of the turn, -1 if it isn't known
+	public void endTurn(long modelBytes) {
+		endPhase(Phase.OTHER);
+		if(numTurns == turnBytes.length) {
+			turnBytes = Arrays.copyOf(turnBytes, 2 * numTurns);
+			turnModelBytes = Arrays.copyOf(turnModelBytes, 2 * numTurns);
+		}
+		turnBytes[numTurns] = mark - turnStart;
+		turnModelBytes[numTurns] = modelBytes;
+		numTurns++;
+		maxTurnBytes = Math.max(maxTurnBytes, mark - turnStart);
+		peakModelBytes = Math.max(peakModelBytes, modelBytes);
+	}
+
+	public int getNumTurns() {
+		return this.numTurns;
+	}
+
+	public long getAllocatedBytes(Phase phase) {
+		return phaseBytes[phase.ordinal()];
+	}
+
+	public long getTotalAllocatedBytes() {
+		long total = 0;
+		for(long bytes : phaseBytes) {
+			total += bytes;
+		}
+		return total;
+	}
+
+	public long getTurnAllocatedBytes(int turn) {
+		return turnBytes[turn];
+	}
+
+	public long getMaxTurnAllocatedBytes() {
+		return this.maxTurnBytes;
+	}
+
+	// the solver's footprint after the turn, -1 if it wasn't known
+	public long getTurnModelBytes(int turn) {
+		return turnModelBytes[turn];
+	}
+
+	// largest footprint after any turn, -1 if it was never known
+	public long getPeakModelBytes() {
+		return this.peakModelBytes;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(numTurns).append(" turns, ").append(getTotalAllocatedBytes() / 1024).append(" KB allocated (");
+		for(Phase phase : Phase.values()) {
+			sb.append(phase.ordinal() == 0 ? "" : ", ").append(phase.name().toLowerCase()).append(' ')
+					.append(phaseBytes[phase.ordinal()] / 1024).append(" KB");
+		}
+		sb.append("), max ").append(maxTurnBytes / 1024).append(" KB in a turn");
+		if(peakModelBytes >= 0) {
+			sb.append(", model peak ").append(peakModelBytes / 1024).append(" KB");
+		}
+		return sb.toString();
+	}
+}
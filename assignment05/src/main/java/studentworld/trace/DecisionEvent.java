@@ -0,0 +1,24 @@
+package studentworld.trace;
+
+/*
+ * What a DecisionLog entry records. Each entry has a cell and a value whose meaning
+ * depends on the event, and a duration where there is one.
+ */
+public enum DecisionEvent {
+	// cell: where the player stands, value: turn number
+	TURN_STARTED,
+	// cell: where the player stands, value: InferenceTier ordinal (-1 if none), duration: the solver's
+	KNOWLEDGE,
+	// cell: target, value: -1
+	TARGET_DOOR,
+	// cell: target, value: -1
+	TARGET_SAFE,
+	// cell: target, value: estimated student probability in thousandths, -1 if there was none
+	TARGET_RISKY,
+	// cell: target, value: -1; from a policy table, the shared knowledge or the beliefs
+	TARGET_OTHER,
+	// cell: target, value: number of moves to it
+	PATH_PLANNED,
+	// cell: where the player stands, value: moves left on the path, duration: the whole turn's
+	TURN_ENDED
+}
@@ -0,0 +1,107 @@
+package studentworld.trace;
+
+import java.io.PrintStream;
+
+import studentworld.knowledge.InferenceTier;
+
+/*
+ * The last few decisions of a game, for finding out why a game was slow or lost
+ * without printing the solver's variables every turn. Entries go into a ring of
+ * primitive arrays, so recording allocates nothing and costs a few stores; the ring
+ * is only read when it is dumped, e.g. by a DecisionLogDumper after a loss or by the
+ * solver on a contradiction.
+ */
+public class DecisionLog {
+	private int numCols;
+	private int capacity;
+	private byte[] events;
+	private int[] cells;
+	private int[] values;
+	private long[] times;
+	private long[] durations;
+	private long numRecorded;
+	private long startNanos;
+
+	public DecisionLog(int numCols, int capacity) {
+		this.numCols = numCols;
+		this.capacity = capacity;
+		this.events = new byte[capacity];
+		this.cells = new int[capacity];
+		this.values = new int[capacity];
+		this.times = new long[capacity];
+		this.durations = new long[capacity];
+		this.startNanos = System.nanoTime();
+	}
+
+	// starts over, e.g. for the next game with the same player
+	public void clear() {
+		numRecorded = 0;
+		startNanos = System.nanoTime();
+	}
+
+	public void record(DecisionEvent event, int cell, int value) {
+		record(event, cell, value, -1);
+	}
+
+	// cell is a cell index (row * numCols + col) or -1, durationNanos -1 if there is none
+	public void record(DecisionEvent event, int cell, int value, long durationNanos) {
+		int i = (int) (numRecorded % capacity);
+		events[i] = (byte) event.ordinal();
+		cells[i] = cell;
+		values[i] = value;
+		times[i] = System.nanoTime() - startNanos;
+		durations[i] = durationNanos;
+		numRecorded++;
+	}
+
+	// entries recorded since the last clear(), including those the ring no longer holds
+	public long getNumRecorded() {
+		return this.numRecorded;
+	}
+
+	public int size() {
+		return (int) Math.min(numRecorded, capacity);
+	}
+
+	// i-th oldest entry still held
+	public DecisionEvent getEvent(int i) {
+		return DecisionEvent.values()[events[index(i)]];
+	}
+
+	public int getCell(int i) {
+		return cells[index(i)];
+	}
+
+	public int getValue(int i) {
+		return values[index(i)];
+	}
+
+	private int index(int i) {
+		return (int) ((numRecorded - size() + i) % capacity);
+	}
+
+	// one line per entry, oldest first, after the reason for the dump
+	public void dump(PrintStream out, String reason) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(reason).append(", last ").append(size()).append(" of ").append(numRecorded).append(" decisions:\n");
+		for(int i=0; i<size(); i++) {
+			int j = index(i);
+			DecisionEvent event = DecisionEvent.values()[events[j]];
+			sb.append(String.format("%10.3fms %-13s", times[j] / 1e6, event));
+			if(cells[j] >= 0) {
+				sb.append(" (").append(cells[j] / numCols).append(',').append(cells[j] % numCols).append(')');
+			}
+			if(event == DecisionEvent.KNOWLEDGE && values[j] >= 0) {
+				sb.append(' ').append(InferenceTier.values()[values[j]]);
+			} else if(values[j] >= 0) {
+				sb.append(' ').append(values[j]);
+			}
+			if(durations[j] >= 0) {
+				sb.append(String.format(" took %.3fms", durations[j] / 1e6));
+			}
+			sb.append('\n');
+		}
+		out.print(sb);
+		out.flush();
+	}
+}
@@ -0,0 +1,52 @@
+package studentworld.trace;
+
+import java.io.PrintStream;
+
+import gridgames.data.action.Action;
+import gridgames.player.EV3Player;
+import gridgames.player.Player;
+import studentworld.StudentWorldListener;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.grid.StudentWorldCell;
+import studentworld.player.CSPPlayer;
+
+/*
+ * Dumps a CSPPlayer's DecisionLog when it loses a game on a StudentWorld this
+ * listens to; games that are won cost nothing but clearing the log at the start.
+ * Players driving an EV3 are looked through to the player deciding the moves.
+ */
+public class DecisionLogDumper implements StudentWorldListener {
+	private PrintStream out;
+
+	public DecisionLogDumper(PrintStream out) {
+		this.out = out;
+	}
+
+	@Override
+	public void gameStarted(StudentWorldBoard board, Player player) {
+		DecisionLog log = getDecisionLog(player);
+		if(log != null) {
+			log.clear();
+		}
+	}
+
+	@Override
+	public void turnPlayed(StudentWorldCell cell, Action move, long decisionNanos) {
+		// the player logs its own decisions
+	}
+
+	@Override
+	public void gameEnded(StudentWorldBoard board, Player player, boolean won) {
+		DecisionLog log = getDecisionLog(player);
+		if(log != null && !won) {
+			log.dump(out, "Game lost");
+		}
+	}
+
+	private static DecisionLog getDecisionLog(Player player) {
+		if(player instanceof EV3Player) {
+			player = ((EV3Player) player).getGamePlayer();
+		}
+		return player instanceof CSPPlayer ? ((CSPPlayer) player).getDecisionLog() : null;
+	}
+}
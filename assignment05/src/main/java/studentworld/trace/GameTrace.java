@@ -0,0 +1,139 @@
+package studentworld.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gridgames.data.action.MoveAction;
+
+/*
+ * One recorded game: the board it was played on, the settings of the player and,
+ * per turn, the cell the player stood on, the percept signature seen there, the
+ * move chosen and how long the player took to choose it.
+ */
+public class GameTrace {
+	private int numRows;
+	private int numCols;
+	private int numStudents;
+	private long seed;
+	private byte[] layout;
+	private PlayerSettings playerSettings;
+	private List<Turn> turns;
+	private boolean ended;
+	private boolean won;
+	private int numActions;
+
+	public GameTrace(int numRows, int numCols, int numStudents, long seed, byte[] layout, PlayerSettings playerSettings) {
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.numStudents = numStudents;
+		this.seed = seed;
+		this.layout = layout;
+		this.playerSettings = playerSettings;
+		this.turns = new ArrayList<Turn>();
+	}
+
+	public void addTurn(Turn turn) {
+		turns.add(turn);
+	}
+
+	public void end(boolean won, int numActions) {
+		this.ended = true;
+		this.won = won;
+		this.numActions = numActions;
+	}
+
+	public int getNumRows() {
+		return this.numRows;
+	}
+
+	public int getNumCols() {
+		return this.numCols;
+	}
+
+	public int getNumStudents() {
+		return this.numStudents;
+	}
+
+	public long getSeed() {
+		return this.seed;
+	}
+
+	public byte[] getLayout() {
+		return this.layout;
+	}
+
+	public PlayerSettings getPlayerSettings() {
+		return this.playerSettings;
+	}
+
+	public List<Turn> getTurns() {
+		return this.turns;
+	}
+
+	// false if the recording stopped before the game did
+	public boolean isEnded() {
+		return this.ended;
+	}
+
+	public boolean isWon() {
+		return this.won;
+	}
+
+	public int getNumActions() {
+		return this.numActions;
+	}
+
+	public long getTotalDecisionNanos() {
+		long total = 0;
+		for(Turn turn : turns) {
+			total += turn.getDecisionNanos();
+		}
+		return total;
+	}
+
+	public long getMaxDecisionNanos() {
+		long max = 0;
+		for(Turn turn : turns) {
+			max = Math.max(max, turn.getDecisionNanos());
+		}
+		return max;
+	}
+
+	public static class Turn {
+		private int row;
+		private int col;
+		private int signature;
+		private MoveAction move;
+		private long decisionNanos;
+
+		public Turn(int row, int col, int signature, MoveAction move, long decisionNanos) {
+			this.row = row;
+			this.col = col;
+			this.signature = signature;
+			this.move = move;
+			this.decisionNanos = decisionNanos;
+		}
+
+		public int getRow() {
+			return this.row;
+		}
+
+		public int getCol() {
+			return this.col;
+		}
+
+		// see StudentWorldPercept.getSignature
+		public int getSignature() {
+			return this.signature;
+		}
+
+		// null if the player returned something other than a MoveAction
+		public MoveAction getMove() {
+			return this.move;
+		}
+
+		public long getDecisionNanos() {
+			return this.decisionNanos;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package studentworld.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import gridgames.data.action.MoveAction;
+import studentworld.StudentWorldConstraintSolver;
+
+/*
+ * Reads the games of a file written by GameTraceRecorder. A game cut short by
+ * the end of the file (e.g. the recording program was killed) is returned with
+ * the turns that made it to disk and isEnded() false.
+ */
+public class GameTraceReader {
+
+	private GameTraceReader() {
+	}
+
+	public static List<GameTrace> read(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	public static List<GameTrace> read(ByteBuffer buffer) throws IOException {
+		List<GameTrace> traces = new ArrayList<GameTrace>();
+		MoveAction[] moves = MoveAction.values();
+		GameTrace trace = null;
+		byte type;
+
+		try {
+			while(buffer.hasRemaining()) {
+				type = buffer.get();
+				if(type == GameTraceRecorder.GAME) {
+					trace = readGame(buffer);
+					traces.add(trace);
+				} else if(trace == null) {
+					throw new IOException("trace doesn't start with a game record");
+				} else if(type == GameTraceRecorder.TURN) {
+					int row = (int) VarInt.getUnsigned(buffer);
+					int col = (int) VarInt.getUnsigned(buffer);
+					int signature = buffer.get();
+					int move = buffer.get();
+					long decisionNanos = VarInt.getUnsigned(buffer);
+					trace.addTurn(new GameTrace.Turn(row, col, signature, move > 0 && move <= moves.length ? moves[move-1] : null, decisionNanos));
+				} else if(type == GameTraceRecorder.END) {
+					boolean won = buffer.get() != 0;
+					trace.end(won, (int) VarInt.getUnsigned(buffer));
+				} else {
+					throw new IOException("unknown record type " + type + " at offset " + (buffer.position() - 1));
+				}
+			}
+		} catch (BufferUnderflowException e) {
+			//truncated last record, keep what was complete
+		}
+		return traces;
+	}
+
+	private static GameTrace readGame(ByteBuffer buffer) throws IOException {
+		int version = buffer.get();
+		if(version < 1 || version > GameTraceRecorder.VERSION) {
+			throw new IOException("unsupported trace version " + version);
+		}
+		int numRows = (int) VarInt.getUnsigned(buffer);
+		int numCols = (int) VarInt.getUnsigned(buffer);
+		int numStudents = (int) VarInt.getUnsigned(buffer);
+		long seed = buffer.getLong();
+		PlayerSettings settings = new PlayerSettings();
+		if(version >= 2) {
+			StudentWorldConstraintSolver.Backend[] backends = StudentWorldConstraintSolver.Backend.values();
+			int backend = buffer.get();
+			if(backend < 0 || backend >= backends.length) {
+				throw new IOException("unknown solver backend " + backend);
+			}
+			long turnBudgetMillis = VarInt.getUnsigned(buffer);
+			int numSamplingThreads = (int) VarInt.getUnsigned(buffer);
+			int studentMoveInterval = (int) VarInt.getUnsigned(buffer);
+			int lookaheadDepth = (int) VarInt.getUnsigned(buffer);
+			int numLookaheadThreads = (int) VarInt.getUnsigned(buffer);
+			double studentDensity = buffer.getDouble();
+			settings = new PlayerSettings(backends[backend], turnBudgetMillis, numSamplingThreads, studentMoveInterval,
+					lookaheadDepth, studentDensity, numLookaheadThreads);
+		}
+		byte[] layout = new byte[numRows * numCols];
+		int packed = 0;
+		for(int i=0; i<layout.length; i++) {
+			if(i % 4 == 0) {
+				packed = buffer.get();
+			}
+			layout[i] = (byte) ((packed >> (2 * (i % 4))) & 3);
+		}
+		return new GameTrace(numRows, numCols, numStudents, seed, layout, settings);
+	}
+}
@@ -0,0 +1,144 @@
+package studentworld.trace;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import gridgames.data.action.Action;
+import gridgames.data.action.MoveAction;
+import gridgames.player.Player;
+import studentworld.StudentWorldListener;
+import studentworld.data.StudentWorldPercept;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.grid.StudentWorldCell;
+
+/*
+ * Appends every game played on a StudentWorld it listens to to a trace file.
+ * Records are buffered and written through the channel once the buffer fills up
+ * or a game ends, so recording costs next to nothing per turn.
+ *
+ * A game is written as
+ *   GAME  'G', version, rows, cols, students, seed (8 bytes), player settings, layout (2 bits per cell)
+ *   TURN  'T', row, col, percept signature, move ordinal + 1 (0 if not a MoveAction), decision nanos
+ *   END   'E', won (0/1), number of actions
+ * with the player settings (see PlayerSettings) as
+ *   backend ordinal, turn budget millis, sampling threads, student move interval,
+ *   lookahead depth, lookahead threads, student density (8 bytes)
+ * and all numbers but the seed, the density and single bytes as unsigned varints.
+ * Version 1 games have no player settings and replay with the defaults.
+ */
+public class GameTraceRecorder implements StudentWorldListener, Closeable {
+	static final byte GAME = 'G';
+	static final byte TURN = 'T';
+	static final byte END = 'E';
+	static final int VERSION = 2;
+	static final int BUFFER_SIZE = 64 * 1024;
+	// largest TURN or END record, the GAME record is written in pieces
+	private static final int MAX_RECORD_SIZE = 3 + 4 * VarInt.MAX_LONG_BYTES;
+
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private int numGames;
+
+	public GameTraceRecorder(File file) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	}
+
+	@Override
+	public void gameStarted(StudentWorldBoard board, Player player) {
+		byte[] layout = board.getLayout();
+		PlayerSettings settings = PlayerSettings.of(player);
+		try {
+			ensureRemaining(3 + 8 * VarInt.MAX_LONG_BYTES + 16);
+			buffer.put(GAME);
+			buffer.put((byte) VERSION);
+			VarInt.putUnsigned(buffer, board.getNumRows());
+			VarInt.putUnsigned(buffer, board.getNumCols());
+			VarInt.putUnsigned(buffer, board.getNumStudents());
+			buffer.putLong(board.getSeed());
+			buffer.put((byte) settings.getBackend().ordinal());
+			VarInt.putUnsigned(buffer, settings.getTurnBudgetMillis());
+			VarInt.putUnsigned(buffer, settings.getNumSamplingThreads());
+			VarInt.putUnsigned(buffer, settings.getStudentMoveInterval());
+			VarInt.putUnsigned(buffer, settings.getLookaheadDepth());
+			VarInt.putUnsigned(buffer, settings.getNumLookaheadThreads());
+			buffer.putDouble(settings.getStudentDensity());
+			for(int i=0; i<layout.length; i+=4) {
+				ensureRemaining(1);
+				buffer.put(packLayout(layout, i));
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void turnPlayed(StudentWorldCell cell, Action move, long decisionNanos) {
+		try {
+			ensureRemaining(MAX_RECORD_SIZE);
+			buffer.put(TURN);
+			VarInt.putUnsigned(buffer, cell.getRow());
+			VarInt.putUnsigned(buffer, cell.getCol());
+			buffer.put((byte) StudentWorldPercept.getSignature(cell.getPercepts()));
+			buffer.put(move instanceof MoveAction ? (byte) (((MoveAction) move).ordinal() + 1) : 0);
+			VarInt.putUnsigned(buffer, Math.max(0, decisionNanos));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void gameEnded(StudentWorldBoard board, Player player, boolean won) {
+		try {
+			ensureRemaining(MAX_RECORD_SIZE);
+			buffer.put(END);
+			buffer.put(won ? (byte) 1 : 0);
+			VarInt.putUnsigned(buffer, player.getGamePlayer().getNumActionsExecuted());
+			//a finished game is on disk even if the program is killed later
+			flush();
+			numGames++;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public int getNumGames() {
+		return this.numGames;
+	}
+
+	public void flush() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void ensureRemaining(int numBytes) throws IOException {
+		if(buffer.remaining() < numBytes) {
+			flush();
+		}
+	}
+
+	// four cells per byte, first cell in the low bits
+	static byte packLayout(byte[] layout, int start) {
+		int packed = 0;
+		for(int i=0; i<4 && start+i<layout.length; i++) {
+			packed |= (layout[start+i] & 3) << (2 * i);
+		}
+		return (byte) packed;
+	}
+}
@@ -0,0 +1,158 @@
+package studentworld.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import gridgames.data.action.Action;
+import gridgames.player.Player;
+import studentworld.StudentWorld;
+import studentworld.StudentWorldListener;
+import studentworld.data.StudentWorldPercept;
+import studentworld.display.SilentDisplay;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.grid.StudentWorldCell;
+import studentworld.player.CSPPlayer;
+
+/*
+ * Plays recorded games again on the recorded board with a fresh CSPPlayer set up
+ * as recorded (see PlayerSettings), with nothing rendered, and reports the first
+ * turn where the replay doesn't match the recording. The player is deterministic,
+ * so a replay of a CSPPlayer game only diverges if the solver or player changed
+ * since it was recorded, or a turn budget ran out at a different point.
+ */
+public class GameTraceReplayer {
+
+	private GameTraceReplayer() {
+	}
+
+	public static Result replay(GameTrace trace) {
+		StudentWorldBoard board = new StudentWorldBoard(trace.getNumRows(), trace.getNumCols(), trace.getNumStudents(), trace.getSeed());
+		board.initializeBoard(trace.getLayout());
+		SilentDisplay display = new SilentDisplay();
+		StudentWorld game = new StudentWorld(display, board);
+		PlayerSettings settings = trace.getPlayerSettings();
+		if(settings.getStudentMoveInterval() > 0) {
+			game.setStudentMoveInterval(settings.getStudentMoveInterval());
+		}
+		CSPPlayer player = settings.newPlayer(display, board.getPlayerCell(), trace.getNumRows(), trace.getNumCols());
+		Result result = new Result(trace);
+
+		game.addListener(result);
+		game.play(player);
+		return result;
+	}
+
+	// usage: GameTraceReplayer <trace file> [-losses] [-slowest <ms>]
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1) {
+			System.out.println("usage: GameTraceReplayer <trace file> [-losses] [-slowest <ms>]");
+			return;
+		}
+		boolean onlyLosses = false;
+		long slowestNanos = -1;
+		for(int i=1; i<args.length; i++) {
+			if("-losses".equals(args[i])) {
+				onlyLosses = true;
+			} else if("-slowest".equals(args[i]) && i+1 < args.length) {
+				slowestNanos = Long.parseLong(args[++i]) * 1000000L;
+			}
+		}
+
+		List<GameTrace> traces = GameTraceReader.read(new File(args[0]));
+		int numReplayed = 0;
+		int numDiverged = 0;
+		long start = System.nanoTime();
+		for(int i=0; i<traces.size(); i++) {
+			GameTrace trace = traces.get(i);
+			if((onlyLosses && (!trace.isEnded() || trace.isWon())) || trace.getMaxDecisionNanos() < slowestNanos) {
+				continue;
+			}
+			Result result = replay(trace);
+			numReplayed++;
+			if(result.getDivergedTurn() >= 0) {
+				numDiverged++;
+			}
+			System.out.println("game " + i + ": " + result);
+		}
+		System.out.println(numReplayed + " of " + traces.size() + " games replayed in " + (System.nanoTime() - start) / 1000000 + " ms, " + numDiverged + " diverged");
+	}
+
+	/*
+	 * Outcome of one replay compared turn by turn against its recording.
+	 */
+	public static class Result implements StudentWorldListener {
+		private GameTrace trace;
+		private int numTurns;
+		private int divergedTurn = -1;
+		private long decisionNanos;
+		private long maxDecisionNanos;
+		private boolean won;
+
+		private Result(GameTrace trace) {
+			this.trace = trace;
+		}
+
+		@Override
+		public void gameStarted(StudentWorldBoard board, Player player) {
+		}
+
+		@Override
+		public void turnPlayed(StudentWorldCell cell, Action move, long decisionNanos) {
+			List<GameTrace.Turn> turns = trace.getTurns();
+			if(divergedTurn < 0) {
+				if(numTurns >= turns.size()) {
+					divergedTurn = numTurns;
+				} else {
+					GameTrace.Turn turn = turns.get(numTurns);
+					if(turn.getRow() != cell.getRow() || turn.getCol() != cell.getCol()
+							|| turn.getSignature() != StudentWorldPercept.getSignature(cell.getPercepts())
+							|| turn.getMove() != move) {
+						divergedTurn = numTurns;
+					}
+				}
+			}
+			numTurns++;
+			this.decisionNanos += decisionNanos;
+			this.maxDecisionNanos = Math.max(this.maxDecisionNanos, decisionNanos);
+		}
+
+		@Override
+		public void gameEnded(StudentWorldBoard board, Player player, boolean won) {
+			this.won = won;
+			//a recording that goes on longer than the replay also diverges
+			if(divergedTurn < 0 && trace.isEnded() && numTurns != trace.getTurns().size()) {
+				divergedTurn = numTurns;
+			}
+		}
+
+		// index of the first turn that differs from the recording, -1 if the replay matched
+		public int getDivergedTurn() {
+			return this.divergedTurn;
+		}
+
+		public int getNumTurns() {
+			return this.numTurns;
+		}
+
+		public long getDecisionNanos() {
+			return this.decisionNanos;
+		}
+
+		public long getMaxDecisionNanos() {
+			return this.maxDecisionNanos;
+		}
+
+		public boolean isWon() {
+			return this.won;
+		}
+
+		@Override
+		public String toString() {
+			return (won ? "won" : "lost") + " in " + numTurns + " turns (recorded " + trace.getTurns().size() + ")"
+					+ (divergedTurn >= 0 ? ", diverged at turn " + divergedTurn : ", matched")
+					+ ", decisions " + decisionNanos / 1000 + " us (recorded " + trace.getTotalDecisionNanos() / 1000 + " us)"
+					+ ", slowest " + maxDecisionNanos / 1000 + " us (recorded " + trace.getMaxDecisionNanos() / 1000 + " us)";
+		}
+	}
+}
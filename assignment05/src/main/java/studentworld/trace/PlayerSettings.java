@@ -0,0 +1,93 @@
+package studentworld.trace;
+
+import gridgames.data.action.MoveAction;
+import gridgames.display.Display;
+import gridgames.grid.Cell;
+import gridgames.player.Player;
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.player.CSPPlayer;
+
+/*
+ * The CSPPlayer settings a game was recorded with, so a replay sets up the same
+ * player. A game played by anything else records the defaults. Knowledge caches,
+ * policy tables and shared knowledge bases can't be rebuilt from a trace and are
+ * left out, a replay of a game that used one plays without it.
+ */
+public class PlayerSettings {
+	private StudentWorldConstraintSolver.Backend backend = StudentWorldConstraintSolver.Backend.CHOCO;
+	private long turnBudgetMillis;
+	private int numSamplingThreads;
+	private int studentMoveInterval;
+	// 0 without lookahead
+	private int lookaheadDepth;
+	private double studentDensity;
+	private int numLookaheadThreads;
+
+	public PlayerSettings() {
+	}
+
+	public PlayerSettings(StudentWorldConstraintSolver.Backend backend, long turnBudgetMillis, int numSamplingThreads,
+			int studentMoveInterval, int lookaheadDepth, double studentDensity, int numLookaheadThreads) {
+		this.backend = backend;
+		this.turnBudgetMillis = turnBudgetMillis;
+		this.numSamplingThreads = numSamplingThreads;
+		this.studentMoveInterval = studentMoveInterval;
+		this.lookaheadDepth = lookaheadDepth;
+		this.studentDensity = studentDensity;
+		this.numLookaheadThreads = numLookaheadThreads;
+	}
+
+	public static PlayerSettings of(Player player) {
+		if(!(player instanceof CSPPlayer)) {
+			return new PlayerSettings();
+		}
+		CSPPlayer cspPlayer = (CSPPlayer) player;
+		if(cspPlayer.getPlanner() == null) {
+			return new PlayerSettings(cspPlayer.getBackend(), cspPlayer.getTurnBudget(), cspPlayer.getNumSamplingThreads(),
+					cspPlayer.getStudentMoveInterval(), 0, 0, 0);
+		}
+		return new PlayerSettings(cspPlayer.getBackend(), cspPlayer.getTurnBudget(), cspPlayer.getNumSamplingThreads(),
+				cspPlayer.getStudentMoveInterval(), cspPlayer.getPlanner().getDepth(), cspPlayer.getPlanner().getStudentDensity(),
+				cspPlayer.getPlanner().getNumThreads());
+	}
+
+	public CSPPlayer newPlayer(Display display, Cell initialCell, int numRows, int numCols) {
+		CSPPlayer player = new CSPPlayer(MoveAction.getAllActions(), display, initialCell, null, backend, numRows, numCols);
+		player.setPrintSolverVariables(false);
+		player.setTurnBudget(turnBudgetMillis);
+		player.setSampling(numSamplingThreads);
+		player.setStudentMoveInterval(studentMoveInterval);
+		if(lookaheadDepth > 0) {
+			player.setLookahead(lookaheadDepth, studentDensity, numLookaheadThreads);
+		}
+		return player;
+	}
+
+	public StudentWorldConstraintSolver.Backend getBackend() {
+		return this.backend;
+	}
+
+	public long getTurnBudgetMillis() {
+		return this.turnBudgetMillis;
+	}
+
+	public int getNumSamplingThreads() {
+		return this.numSamplingThreads;
+	}
+
+	public int getStudentMoveInterval() {
+		return this.studentMoveInterval;
+	}
+
+	public int getLookaheadDepth() {
+		return this.lookaheadDepth;
+	}
+
+	public double getStudentDensity() {
+		return this.studentDensity;
+	}
+
+	public int getNumLookaheadThreads() {
+		return this.numLookaheadThreads;
+	}
+}
@@ -0,0 +1,37 @@
+package studentworld.trace;
+
+import java.nio.ByteBuffer;
+
+/*
+ * LEB128 style variable length integers: 7 bits per byte, high bit set on every
+ * byte but the last.
+ */
+public final class VarInt {
+	public static final int MAX_LONG_BYTES = 10;
+
+	private VarInt() {
+	}
+
+	public static void putUnsigned(ByteBuffer buffer, long value) {
+		while((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	public static long getUnsigned(ByteBuffer buffer) {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			if(shift >= 64) {
+				throw new IllegalArgumentException("malformed varint");
+			}
+			b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while((b & 0x80) != 0);
+		return value;
+	}
+}
@@ -0,0 +1,54 @@
+package studentworld;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ConstraintSkeletonTest {
+
+	@Test
+	public void testFarDoorsMatchTheConstraintsTheyReplace() {
+		int[][] sizes = {{1, 1}, {1, 5}, {5, 5}, {4, 7}};
+		for(int[] size : sizes) {
+			int numRows = size[0];
+			int numCols = size[1];
+			ConstraintSkeleton skeleton = ConstraintSkeleton.forBoard(numRows, numCols);
+			for(int row=0; row<numRows; row++) {
+				for(int col=0; col<numCols; col++) {
+					int cell = row * numCols + col;
+					// the loop createConstraints used to build the non-adjacent doors with
+					List<Integer> farDoors = new ArrayList<Integer>();
+					for(int r=0; r<numRows-1; r++) {
+						for(int c=0; c<numCols-1; c++) {
+							if(!(r == row && c == col) && r != row - 1 && !(r == row && c == col + 1) && r != row + 1
+									&& !(r == row && c == col - 1)) {
+								farDoors.add(r * numCols + c);
+							}
+						}
+					}
+					assertEquals(farDoors, farDoors(skeleton, cell));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSkeletonIsSharedPerBoardSize() {
+		ConstraintSkeleton skeleton = ConstraintSkeleton.forBoard(6, 3);
+		assertSame(skeleton, ConstraintSkeleton.forBoard(6, 3));
+		assertNotSame(skeleton, ConstraintSkeleton.forBoard(3, 6));
+		assertEquals("door (5,2)", skeleton.getName(ConstraintSkeleton.DOOR, 17));
+		assertEquals("smelly (0,1)", skeleton.getName(ConstraintSkeleton.SMELLY, 1));
+	}
+
+	private static List<Integer> farDoors(ConstraintSkeleton skeleton, int cell) {
+		List<Integer> cells = new ArrayList<Integer>();
+		for(int i=skeleton.getFarDoorStart(cell); i<skeleton.getFarDoorEnd(cell); i++) {
+			cells.add(skeleton.getFarDoor(i));
+		}
+		return cells;
+	}
+}
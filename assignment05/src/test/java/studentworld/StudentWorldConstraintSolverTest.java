@@ -1,484 +1,655 @@
-package studentworld;
-
-import static org.junit.Assert.*;
-
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.List;
-import java.util.Random;
-
-import gridgames.player.Player;
-import org.chocosolver.solver.Model;
-import org.chocosolver.solver.Solver;
-import org.chocosolver.solver.variables.BoolVar;
-import org.junit.Before;
-import org.junit.Test;
-
-import gridgames.data.action.Action;
-import gridgames.data.action.MoveAction;
-import gridgames.display.ConsoleDisplay;
-import gridgames.display.Display;
-import gridgames.grid.Cell;
-import studentworld.StudentWorld;
-import studentworld.StudentWorldConstraintSolver;
-import studentworld.data.StudentWorldPercept;
-import studentworld.grid.StudentWorldCell;
-import studentworld.player.StudentWorldPlayer;
-
-public class StudentWorldConstraintSolverTest {
-
-	private StudentWorldConstraintSolver swConstraintSolver;
-	private StudentWorldPlayer player;
-	private Field model;
-	private Field smellyCells;
-	private Field glowyCells;
-	private Field studentCells;
-	private Field doorCells;
-	private Field solver;
-	private Method updateCurrentCellVariables;
-
-	@Before
-	public void setUp() throws Exception {
-		List<Action> actions = MoveAction.getAllActions();
-		Display display = new ConsoleDisplay();
-		StudentWorld sw = new StudentWorld(display, 5, 5, 5);
-		Cell initialCell = sw.getInitialCell();
-		player = new StudentWorldPlayer(actions, display, initialCell);
-		swConstraintSolver = new StudentWorldConstraintSolver(player);
-
-		model = StudentWorldConstraintSolver.class.getDeclaredField("model");
-		model.setAccessible(true);
-		smellyCells = StudentWorldConstraintSolver.class.getDeclaredField("smellyCells");
-		smellyCells.setAccessible(true);
-		glowyCells = StudentWorldConstraintSolver.class.getDeclaredField("glowyCells");
-		glowyCells.setAccessible(true);
-		studentCells = StudentWorldConstraintSolver.class.getDeclaredField("studentCells");
-		studentCells.setAccessible(true);
-		doorCells = StudentWorldConstraintSolver.class.getDeclaredField("doorCells");
-		doorCells.setAccessible(true);
-		solver = StudentWorldConstraintSolver.class.getDeclaredField("solver");
-		solver.setAccessible(true);
-		updateCurrentCellVariables = StudentWorldConstraintSolver.class.getDeclaredMethod("updateCurrentCellVariables");
-		updateCurrentCellVariables.setAccessible(true);
-	}
-
-	@Test
-	public void testInitialSetup() {
-		try {
-			BoolVar[][] smellyCells = (BoolVar[][])this.smellyCells.get(swConstraintSolver);
-			BoolVar[][] glowyCells = (BoolVar[][])this.glowyCells.get(swConstraintSolver);
-			BoolVar[][] studentCells = (BoolVar[][])this.studentCells.get(swConstraintSolver);
-			BoolVar[][] doorCells = (BoolVar[][])this.doorCells.get(swConstraintSolver);
-
-			for(int row=0; row<5; row++) {
-				for(int col=0; col<5; col++) {
-					assertEquals("smellyCells not correct after initial setup", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-					assertEquals("glowyCells not correct after initial setup", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
-					assertEquals("studentCells not correct after initial setup", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
-					assertEquals("doorCells not correct after initial setup", "door ("+row+","+col+") = [0,1]", doorCells[row][col].toString());
-				}
-			}
-		} catch (IllegalArgumentException e1) {
-			e1.printStackTrace();
-			fail("check the console for the exception stack trace");
-		} catch (IllegalAccessException e1) {
-			e1.printStackTrace();
-			fail("check the console for the exception stack trace");
-		} catch(Exception e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		}
-	}
-
-	@Test
-	public void testWithoutPercepts() {
-		try {
-			Model model = (Model)this.model.get(swConstraintSolver);
-			BoolVar[][] smellyCells = (BoolVar[][])this.smellyCells.get(swConstraintSolver);
-			BoolVar[][] glowyCells = (BoolVar[][])this.glowyCells.get(swConstraintSolver);
-			BoolVar[][] studentCells = (BoolVar[][])this.studentCells.get(swConstraintSolver);
-			BoolVar[][] doorCells = (BoolVar[][])this.doorCells.get(swConstraintSolver);
-			Solver solver = (Solver)this.solver.get(swConstraintSolver);
-
-			model.arithm(smellyCells[0][0], "=", 0).post();
-			model.arithm(glowyCells[0][0], "=", 0).post();
-			model.arithm(studentCells[0][0], "=", 0).post();
-			model.arithm(doorCells[0][0], "=", 0).post();
-			solver.propagate();
-
-			for(int row=0; row<5; row++) {
-				for(int col=0; col<5; col++) {
-					if(row==0 && col==0) {
-						assertEquals("smellyCells not correct after propagation following a cell with no percepts", "smelly ("+row+","+col+") = 0", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a cell with no percepts", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a cell with no percepts", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a cell with no percepts", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if((row==0 && col==1) || (row==1 && col==0)) {
-						assertEquals("smellyCells not correct after propagation following a cell with no percepts", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a cell with no percepts", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a cell with no percepts", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a cell with no percepts", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else {
-						assertEquals("smellyCells not correct after propagation following a cell with no percepts", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a cell with no percepts", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a cell with no percepts", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a cell with no percepts", "door ("+row+","+col+") = [0,1]", doorCells[row][col].toString());
-					}
-				}
-			}
-		} catch (IllegalArgumentException e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		} catch (IllegalAccessException e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		} catch(Exception e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		}
-	}
-
-	@Test
-	public void testWithSmellyCell() {
-		try {
-			Model model = (Model)this.model.get(swConstraintSolver);
-			BoolVar[][] smellyCells = (BoolVar[][])this.smellyCells.get(swConstraintSolver);
-			BoolVar[][] glowyCells = (BoolVar[][])this.glowyCells.get(swConstraintSolver);
-			BoolVar[][] studentCells = (BoolVar[][])this.studentCells.get(swConstraintSolver);
-			BoolVar[][] doorCells = (BoolVar[][])this.doorCells.get(swConstraintSolver);
-			Solver solver = (Solver)this.solver.get(swConstraintSolver);
-
-			model.arithm(smellyCells[0][0], "=", 0).post();
-			model.arithm(glowyCells[0][0], "=", 0).post();
-			model.arithm(studentCells[0][0], "=", 0).post();
-			model.arithm(doorCells[0][0], "=", 0).post();
-			model.arithm(smellyCells[0][1], "=", 1).post();
-			model.arithm(glowyCells[0][1], "=", 0).post();
-			model.arithm(studentCells[0][1], "=", 0).post();
-			model.arithm(doorCells[0][1], "=", 0).post();
-			solver.propagate();
-
-			for(int row=0; row<5; row++) {
-				for(int col=0; col<5; col++) {
-					if(row==0 && col==0) {
-						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = 0", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if(row==1 && col==0) {
-						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if(row==0 && col==1) {
-						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = 1", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if((row==0 && col==2) || (row==1 && col==1)) {
-						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else {
-						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = [0,1]", doorCells[row][col].toString());
-					}
-				}
-			}
-		} catch (IllegalArgumentException e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		} catch (IllegalAccessException e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		} catch(Exception e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		}
-	}
-
-	@Test
-	public void testWithGlowyCell() {
-		try {
-			Model model = (Model)this.model.get(swConstraintSolver);
-			BoolVar[][] smellyCells = (BoolVar[][])this.smellyCells.get(swConstraintSolver);
-			BoolVar[][] glowyCells = (BoolVar[][])this.glowyCells.get(swConstraintSolver);
-			BoolVar[][] studentCells = (BoolVar[][])this.studentCells.get(swConstraintSolver);
-			BoolVar[][] doorCells = (BoolVar[][])this.doorCells.get(swConstraintSolver);
-			Solver solver = (Solver)this.solver.get(swConstraintSolver);
-
-			model.arithm(smellyCells[0][0], "=", 0).post();
-			model.arithm(glowyCells[0][0], "=", 0).post();
-			model.arithm(studentCells[0][0], "=", 0).post();
-			model.arithm(doorCells[0][0], "=", 0).post();
-			model.arithm(smellyCells[0][1], "=", 0).post();
-			model.arithm(glowyCells[0][1], "=", 1).post();
-			model.arithm(studentCells[0][1], "=", 0).post();
-			model.arithm(doorCells[0][1], "=", 0).post();
-			solver.propagate();
-
-			for(int row=0; row<5; row++) {
-				for(int col=0; col<5; col++) {
-					if(row==0 && col==0) {
-						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = 0", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if(row==1 && col==0) {
-						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if(row==0 && col==1) {
-						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = 0", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 1", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if((row==0 && col==2) || (row==1 && col==1)) {
-						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertNotEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 1", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = [0,1]", doorCells[row][col].toString());
-					} else {
-						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertNotEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 1", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
-						assertNotEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 1", doorCells[row][col].toString());
-					}
-				}
-			}
-		} catch (IllegalArgumentException e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		} catch (IllegalAccessException e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		} catch(Exception e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		}
-	}
-
-	@Test
-	public void testWithSmellyCellAndPropagatedSafety() {
-		try {
-			Model model = (Model)this.model.get(swConstraintSolver);
-			BoolVar[][] smellyCells = (BoolVar[][])this.smellyCells.get(swConstraintSolver);
-			BoolVar[][] glowyCells = (BoolVar[][])this.glowyCells.get(swConstraintSolver);
-			BoolVar[][] studentCells = (BoolVar[][])this.studentCells.get(swConstraintSolver);
-			BoolVar[][] doorCells = (BoolVar[][])this.doorCells.get(swConstraintSolver);
-			Solver solver = (Solver)this.solver.get(swConstraintSolver);
-
-			model.arithm(smellyCells[0][0], "=", 0).post();
-			model.arithm(glowyCells[0][0], "=", 0).post();
-			model.arithm(studentCells[0][0], "=", 0).post();
-			model.arithm(doorCells[0][0], "=", 0).post();
-			model.arithm(smellyCells[0][1], "=", 1).post();
-			model.arithm(glowyCells[0][1], "=", 0).post();
-			model.arithm(studentCells[0][1], "=", 0).post();
-			model.arithm(doorCells[0][1], "=", 0).post();
-			model.arithm(smellyCells[1][0], "=", 0).post();
-			model.arithm(glowyCells[1][0], "=", 0).post();
-			model.arithm(studentCells[1][0], "=", 0).post();
-			model.arithm(doorCells[1][0], "=", 0).post();
-			solver.propagate();
-
-			for(int row=0; row<5; row++) {
-				for(int col=0; col<5; col++) {
-					if(row==0 && col==0) {
-						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = 0", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if(row==1 && col==0) {
-						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = 0", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if(row==0 && col==1) {
-						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = 1", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if(row==1 && col==1) {
-						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if(row==0 && col==2) {
-						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 1", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if((row==0 && col==3) || (row==1 && col==2)){
-						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = 1", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = [0,1]", doorCells[row][col].toString());
-					} else if(row==2 && col==0){
-						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else {
-						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = [0,1]", doorCells[row][col].toString());
-					}
-				}
-			}
-		} catch (IllegalArgumentException e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		} catch (IllegalAccessException e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		} catch(Exception e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		}
-	}
-
-	@Test
-	public void testWithSmellyGlowyAndPropagation() {
-		try {
-			Model model = (Model)this.model.get(swConstraintSolver);
-			BoolVar[][] smellyCells = (BoolVar[][])this.smellyCells.get(swConstraintSolver);
-			BoolVar[][] glowyCells = (BoolVar[][])this.glowyCells.get(swConstraintSolver);
-			BoolVar[][] studentCells = (BoolVar[][])this.studentCells.get(swConstraintSolver);
-			BoolVar[][] doorCells = (BoolVar[][])this.doorCells.get(swConstraintSolver);
-			Solver solver = (Solver)this.solver.get(swConstraintSolver);
-
-			model.arithm(smellyCells[0][0], "=", 0).post();
-			model.arithm(glowyCells[0][0], "=", 0).post();
-			model.arithm(studentCells[0][0], "=", 0).post();
-			model.arithm(doorCells[0][0], "=", 0).post();
-			model.arithm(smellyCells[0][1], "=", 0).post();
-			model.arithm(glowyCells[0][1], "=", 1).post();
-			model.arithm(studentCells[0][1], "=", 0).post();
-			model.arithm(doorCells[0][1], "=", 0).post();
-			model.arithm(smellyCells[1][0], "=", 1).post();
-			model.arithm(glowyCells[1][0], "=", 1).post();
-			model.arithm(studentCells[1][0], "=", 0).post();
-			model.arithm(doorCells[1][0], "=", 0).post();
-			solver.propagate();
-
-			for(int row=0; row<5; row++) {
-				for(int col=0; col<5; col++) {
-					if(row==0 && col==0) {
-						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = 0", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if(row==0 && col==1) {
-						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = 0", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 1", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if(row==1 && col==0) {
-						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = 1", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 1", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if(row==1 && col==1) {
-						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 1", doorCells[row][col].toString());
-					} else if(row==2 && col==0){
-						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 1", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if(row==2 && col==1){
-						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = 1", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 1", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if(row==1 && col==2){
-						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 1", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if(row==0 && col==2){
-						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else if(row==3 && col==0) {
-						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = 1", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					} else {
-						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
-						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
-						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
-						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
-					}
-				}
-			}
-		} catch (IllegalArgumentException e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		} catch (IllegalAccessException e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		} catch(Exception e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		}
-	}
-
-	@Test
-	public void testUpdateCurrentCellVariables() {
-		BoolVar[][] smellyCells;
-		BoolVar[][] glowyCells;
-		BoolVar[][] studentCells;
-		BoolVar[][] doorCells;
-		Solver solver;
-		try {
-			StudentWorldCell currentCell;
-			Random r = new Random();
-			int randomRow;
-			int randomCol;
-
-			for(int i=0; i<10; i++) {
-				swConstraintSolver = new StudentWorldConstraintSolver(player);
-				smellyCells = (BoolVar[][])this.smellyCells.get(swConstraintSolver);
-				glowyCells = (BoolVar[][])this.glowyCells.get(swConstraintSolver);
-				studentCells = (BoolVar[][])this.studentCells.get(swConstraintSolver);
-				doorCells = (BoolVar[][])this.doorCells.get(swConstraintSolver);
-				solver = (Solver)this.solver.get(swConstraintSolver);
-				do {
-					randomRow = r.nextInt(5);
-					randomCol = r.nextInt(5);
-				} while(randomRow+randomCol <= 1);
-				currentCell = new StudentWorldCell(randomRow,randomCol);
-				currentCell.addPercept(StudentWorldPercept.SMELL);
-				currentCell.addPercept(StudentWorldPercept.GLOW);
-				player.getGamePlayer().setCell(currentCell);
-				updateCurrentCellVariables.invoke(swConstraintSolver);
-				solver.propagate();
-
-				assertEquals("smellyCells not correct after propagation following updateCurrentCellVariables call", "smelly ("+randomRow+","+randomCol+") = 1", smellyCells[randomRow][randomCol].toString());
-				assertEquals("glowyCells not correct after propagation following updateCurrentCellVariables call", "glowy ("+randomRow+","+randomCol+") = 1", glowyCells[randomRow][randomCol].toString());
-				assertEquals("studentCells not correct after propagation following updateCurrentCellVariables call", "student ("+randomRow+","+randomCol+") = 0", studentCells[randomRow][randomCol].toString());
-				assertEquals("doorCells not correct after propagation following updateCurrentCellVariables call", "door ("+randomRow+","+randomCol+") = 0", doorCells[randomRow][randomCol].toString());
-			}
-		} catch (IllegalArgumentException e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		} catch (IllegalAccessException e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		} catch(Exception e) {
-			e.printStackTrace();
-			fail("check the console for the exception stack trace");
-		}
-	}
-}
+package studentworld;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import gridgames.player.Player;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.variables.BoolVar;
+import org.junit.Before;
+import org.junit.Test;
+
+import gridgames.data.action.Action;
+import gridgames.data.action.MoveAction;
+import gridgames.display.ConsoleDisplay;
+import gridgames.display.Display;
+import gridgames.grid.Cell;
+import studentworld.StudentWorld;
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.data.PerceptRule;
+import studentworld.data.StudentWorldItem;
+import studentworld.data.StudentWorldPercept;
+import studentworld.display.SilentDisplay;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.grid.StudentWorldCell;
+import studentworld.player.CSPPlayer;
+import studentworld.player.StudentWorldPlayer;
+
+public class StudentWorldConstraintSolverTest {
+
+	private StudentWorldConstraintSolver swConstraintSolver;
+	private StudentWorldPlayer player;
+	private Field model;
+	private Field smellyCells;
+	private Field glowyCells;
+	private Field studentCells;
+	private Field doorCells;
+	private Field solver;
+	private Method updateCurrentCellVariables;
+
+	@Before
+	public void setUp() throws Exception {
+		List<Action> actions = MoveAction.getAllActions();
+		Display display = new ConsoleDisplay();
+		StudentWorld sw = new StudentWorld(display, 5, 5, 5);
+		Cell initialCell = sw.getInitialCell();
+		player = new StudentWorldPlayer(actions, display, initialCell);
+		swConstraintSolver = new StudentWorldConstraintSolver(player);
+
+		model = StudentWorldConstraintSolver.class.getDeclaredField("model");
+		model.setAccessible(true);
+		smellyCells = StudentWorldConstraintSolver.class.getDeclaredField("smellyCells");
+		smellyCells.setAccessible(true);
+		glowyCells = StudentWorldConstraintSolver.class.getDeclaredField("glowyCells");
+		glowyCells.setAccessible(true);
+		studentCells = StudentWorldConstraintSolver.class.getDeclaredField("studentCells");
+		studentCells.setAccessible(true);
+		doorCells = StudentWorldConstraintSolver.class.getDeclaredField("doorCells");
+		doorCells.setAccessible(true);
+		solver = StudentWorldConstraintSolver.class.getDeclaredField("solver");
+		solver.setAccessible(true);
+		updateCurrentCellVariables = StudentWorldConstraintSolver.class.getDeclaredMethod("updateCurrentCellVariables");
+		updateCurrentCellVariables.setAccessible(true);
+	}
+
+	@Test
+	public void testInitialSetup() {
+		try {
+			BoolVar[][] smellyCells = (BoolVar[][])this.smellyCells.get(swConstraintSolver);
+			BoolVar[][] glowyCells = (BoolVar[][])this.glowyCells.get(swConstraintSolver);
+			BoolVar[][] studentCells = (BoolVar[][])this.studentCells.get(swConstraintSolver);
+			BoolVar[][] doorCells = (BoolVar[][])this.doorCells.get(swConstraintSolver);
+
+			for(int row=0; row<5; row++) {
+				for(int col=0; col<5; col++) {
+					assertEquals("smellyCells not correct after initial setup", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+					assertEquals("glowyCells not correct after initial setup", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
+					assertEquals("studentCells not correct after initial setup", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
+					assertEquals("doorCells not correct after initial setup", "door ("+row+","+col+") = [0,1]", doorCells[row][col].toString());
+				}
+			}
+		} catch (IllegalArgumentException e1) {
+			e1.printStackTrace();
+			fail("check the console for the exception stack trace");
+		} catch (IllegalAccessException e1) {
+			e1.printStackTrace();
+			fail("check the console for the exception stack trace");
+		} catch(Exception e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		}
+	}
+
+	@Test
+	public void testWithoutPercepts() {
+		try {
+			Model model = (Model)this.model.get(swConstraintSolver);
+			BoolVar[][] smellyCells = (BoolVar[][])this.smellyCells.get(swConstraintSolver);
+			BoolVar[][] glowyCells = (BoolVar[][])this.glowyCells.get(swConstraintSolver);
+			BoolVar[][] studentCells = (BoolVar[][])this.studentCells.get(swConstraintSolver);
+			BoolVar[][] doorCells = (BoolVar[][])this.doorCells.get(swConstraintSolver);
+			Solver solver = (Solver)this.solver.get(swConstraintSolver);
+
+			model.arithm(smellyCells[0][0], "=", 0).post();
+			model.arithm(glowyCells[0][0], "=", 0).post();
+			model.arithm(studentCells[0][0], "=", 0).post();
+			model.arithm(doorCells[0][0], "=", 0).post();
+			solver.propagate();
+
+			for(int row=0; row<5; row++) {
+				for(int col=0; col<5; col++) {
+					if(row==0 && col==0) {
+						assertEquals("smellyCells not correct after propagation following a cell with no percepts", "smelly ("+row+","+col+") = 0", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a cell with no percepts", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a cell with no percepts", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a cell with no percepts", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if((row==0 && col==1) || (row==1 && col==0)) {
+						assertEquals("smellyCells not correct after propagation following a cell with no percepts", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a cell with no percepts", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a cell with no percepts", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a cell with no percepts", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else {
+						assertEquals("smellyCells not correct after propagation following a cell with no percepts", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a cell with no percepts", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a cell with no percepts", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a cell with no percepts", "door ("+row+","+col+") = [0,1]", doorCells[row][col].toString());
+					}
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		} catch(Exception e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		}
+	}
+
+	@Test
+	public void testWithSmellyCell() {
+		try {
+			Model model = (Model)this.model.get(swConstraintSolver);
+			BoolVar[][] smellyCells = (BoolVar[][])this.smellyCells.get(swConstraintSolver);
+			BoolVar[][] glowyCells = (BoolVar[][])this.glowyCells.get(swConstraintSolver);
+			BoolVar[][] studentCells = (BoolVar[][])this.studentCells.get(swConstraintSolver);
+			BoolVar[][] doorCells = (BoolVar[][])this.doorCells.get(swConstraintSolver);
+			Solver solver = (Solver)this.solver.get(swConstraintSolver);
+
+			model.arithm(smellyCells[0][0], "=", 0).post();
+			model.arithm(glowyCells[0][0], "=", 0).post();
+			model.arithm(studentCells[0][0], "=", 0).post();
+			model.arithm(doorCells[0][0], "=", 0).post();
+			model.arithm(smellyCells[0][1], "=", 1).post();
+			model.arithm(glowyCells[0][1], "=", 0).post();
+			model.arithm(studentCells[0][1], "=", 0).post();
+			model.arithm(doorCells[0][1], "=", 0).post();
+			solver.propagate();
+
+			for(int row=0; row<5; row++) {
+				for(int col=0; col<5; col++) {
+					if(row==0 && col==0) {
+						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = 0", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if(row==1 && col==0) {
+						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if(row==0 && col==1) {
+						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = 1", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if((row==0 && col==2) || (row==1 && col==1)) {
+						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else {
+						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = [0,1]", doorCells[row][col].toString());
+					}
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		} catch(Exception e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		}
+	}
+
+	@Test
+	public void testWithGlowyCell() {
+		try {
+			Model model = (Model)this.model.get(swConstraintSolver);
+			BoolVar[][] smellyCells = (BoolVar[][])this.smellyCells.get(swConstraintSolver);
+			BoolVar[][] glowyCells = (BoolVar[][])this.glowyCells.get(swConstraintSolver);
+			BoolVar[][] studentCells = (BoolVar[][])this.studentCells.get(swConstraintSolver);
+			BoolVar[][] doorCells = (BoolVar[][])this.doorCells.get(swConstraintSolver);
+			Solver solver = (Solver)this.solver.get(swConstraintSolver);
+
+			model.arithm(smellyCells[0][0], "=", 0).post();
+			model.arithm(glowyCells[0][0], "=", 0).post();
+			model.arithm(studentCells[0][0], "=", 0).post();
+			model.arithm(doorCells[0][0], "=", 0).post();
+			model.arithm(smellyCells[0][1], "=", 0).post();
+			model.arithm(glowyCells[0][1], "=", 1).post();
+			model.arithm(studentCells[0][1], "=", 0).post();
+			model.arithm(doorCells[0][1], "=", 0).post();
+			solver.propagate();
+
+			for(int row=0; row<5; row++) {
+				for(int col=0; col<5; col++) {
+					if(row==0 && col==0) {
+						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = 0", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if(row==1 && col==0) {
+						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if(row==0 && col==1) {
+						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = 0", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 1", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if((row==0 && col==2) || (row==1 && col==1)) {
+						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertNotEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 1", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = [0,1]", doorCells[row][col].toString());
+					} else {
+						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertNotEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 1", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
+						assertNotEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 1", doorCells[row][col].toString());
+					}
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		} catch(Exception e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		}
+	}
+
+	@Test
+	public void testWithSmellyCellAndPropagatedSafety() {
+		try {
+			Model model = (Model)this.model.get(swConstraintSolver);
+			BoolVar[][] smellyCells = (BoolVar[][])this.smellyCells.get(swConstraintSolver);
+			BoolVar[][] glowyCells = (BoolVar[][])this.glowyCells.get(swConstraintSolver);
+			BoolVar[][] studentCells = (BoolVar[][])this.studentCells.get(swConstraintSolver);
+			BoolVar[][] doorCells = (BoolVar[][])this.doorCells.get(swConstraintSolver);
+			Solver solver = (Solver)this.solver.get(swConstraintSolver);
+
+			model.arithm(smellyCells[0][0], "=", 0).post();
+			model.arithm(glowyCells[0][0], "=", 0).post();
+			model.arithm(studentCells[0][0], "=", 0).post();
+			model.arithm(doorCells[0][0], "=", 0).post();
+			model.arithm(smellyCells[0][1], "=", 1).post();
+			model.arithm(glowyCells[0][1], "=", 0).post();
+			model.arithm(studentCells[0][1], "=", 0).post();
+			model.arithm(doorCells[0][1], "=", 0).post();
+			model.arithm(smellyCells[1][0], "=", 0).post();
+			model.arithm(glowyCells[1][0], "=", 0).post();
+			model.arithm(studentCells[1][0], "=", 0).post();
+			model.arithm(doorCells[1][0], "=", 0).post();
+			solver.propagate();
+
+			for(int row=0; row<5; row++) {
+				for(int col=0; col<5; col++) {
+					if(row==0 && col==0) {
+						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = 0", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if(row==1 && col==0) {
+						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = 0", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if(row==0 && col==1) {
+						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = 1", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if(row==1 && col==1) {
+						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if(row==0 && col==2) {
+						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 1", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if((row==0 && col==3) || (row==1 && col==2)){
+						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = 1", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = [0,1]", doorCells[row][col].toString());
+					} else if(row==2 && col==0){
+						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else {
+						assertEquals("smellyCells not correct after propagation following a smelly cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a smelly cell", "glowy ("+row+","+col+") = [0,1]", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a smelly cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a smelly cell", "door ("+row+","+col+") = [0,1]", doorCells[row][col].toString());
+					}
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		} catch(Exception e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		}
+	}
+
+	@Test
+	public void testWithSmellyGlowyAndPropagation() {
+		try {
+			Model model = (Model)this.model.get(swConstraintSolver);
+			BoolVar[][] smellyCells = (BoolVar[][])this.smellyCells.get(swConstraintSolver);
+			BoolVar[][] glowyCells = (BoolVar[][])this.glowyCells.get(swConstraintSolver);
+			BoolVar[][] studentCells = (BoolVar[][])this.studentCells.get(swConstraintSolver);
+			BoolVar[][] doorCells = (BoolVar[][])this.doorCells.get(swConstraintSolver);
+			Solver solver = (Solver)this.solver.get(swConstraintSolver);
+
+			model.arithm(smellyCells[0][0], "=", 0).post();
+			model.arithm(glowyCells[0][0], "=", 0).post();
+			model.arithm(studentCells[0][0], "=", 0).post();
+			model.arithm(doorCells[0][0], "=", 0).post();
+			model.arithm(smellyCells[0][1], "=", 0).post();
+			model.arithm(glowyCells[0][1], "=", 1).post();
+			model.arithm(studentCells[0][1], "=", 0).post();
+			model.arithm(doorCells[0][1], "=", 0).post();
+			model.arithm(smellyCells[1][0], "=", 1).post();
+			model.arithm(glowyCells[1][0], "=", 1).post();
+			model.arithm(studentCells[1][0], "=", 0).post();
+			model.arithm(doorCells[1][0], "=", 0).post();
+			solver.propagate();
+
+			for(int row=0; row<5; row++) {
+				for(int col=0; col<5; col++) {
+					if(row==0 && col==0) {
+						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = 0", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if(row==0 && col==1) {
+						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = 0", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 1", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if(row==1 && col==0) {
+						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = 1", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 1", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if(row==1 && col==1) {
+						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 1", doorCells[row][col].toString());
+					} else if(row==2 && col==0){
+						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 1", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if(row==2 && col==1){
+						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = 1", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 1", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if(row==1 && col==2){
+						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 1", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if(row==0 && col==2){
+						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = 0", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else if(row==3 && col==0) {
+						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = 1", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					} else {
+						assertEquals("smellyCells not correct after propagation following a glowy cell", "smelly ("+row+","+col+") = [0,1]", smellyCells[row][col].toString());
+						assertEquals("glowyCells not correct after propagation following a glowy cell", "glowy ("+row+","+col+") = 0", glowyCells[row][col].toString());
+						assertEquals("studentCells not correct after propagation following a glowy cell", "student ("+row+","+col+") = [0,1]", studentCells[row][col].toString());
+						assertEquals("doorCells not correct after propagation following a glowy cell", "door ("+row+","+col+") = 0", doorCells[row][col].toString());
+					}
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		} catch(Exception e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		}
+	}
+
+	@Test
+	public void testUpdateCurrentCellVariables() {
+		BoolVar[][] smellyCells;
+		BoolVar[][] glowyCells;
+		BoolVar[][] studentCells;
+		BoolVar[][] doorCells;
+		Solver solver;
+		try {
+			StudentWorldCell currentCell;
+			Random r = new Random();
+			int randomRow;
+			int randomCol;
+
+			for(int i=0; i<10; i++) {
+				swConstraintSolver = new StudentWorldConstraintSolver(player);
+				smellyCells = (BoolVar[][])this.smellyCells.get(swConstraintSolver);
+				glowyCells = (BoolVar[][])this.glowyCells.get(swConstraintSolver);
+				studentCells = (BoolVar[][])this.studentCells.get(swConstraintSolver);
+				doorCells = (BoolVar[][])this.doorCells.get(swConstraintSolver);
+				solver = (Solver)this.solver.get(swConstraintSolver);
+				do {
+					randomRow = r.nextInt(5);
+					randomCol = r.nextInt(5);
+				} while(randomRow+randomCol <= 1);
+				currentCell = new StudentWorldCell(randomRow,randomCol);
+				currentCell.addPercept(StudentWorldPercept.SMELL);
+				currentCell.addPercept(StudentWorldPercept.GLOW);
+				player.getGamePlayer().setCell(currentCell);
+				updateCurrentCellVariables.invoke(swConstraintSolver);
+				solver.propagate();
+
+				assertEquals("smellyCells not correct after propagation following updateCurrentCellVariables call", "smelly ("+randomRow+","+randomCol+") = 1", smellyCells[randomRow][randomCol].toString());
+				assertEquals("glowyCells not correct after propagation following updateCurrentCellVariables call", "glowy ("+randomRow+","+randomCol+") = 1", glowyCells[randomRow][randomCol].toString());
+				assertEquals("studentCells not correct after propagation following updateCurrentCellVariables call", "student ("+randomRow+","+randomCol+") = 0", studentCells[randomRow][randomCol].toString());
+				assertEquals("doorCells not correct after propagation following updateCurrentCellVariables call", "door ("+randomRow+","+randomCol+") = 0", doorCells[randomRow][randomCol].toString());
+			}
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		} catch(Exception e) {
+			e.printStackTrace();
+			fail("check the console for the exception stack trace");
+		}
+	}
+
+	@Test
+	public void testMovingStudentsAreRejectedBeforeTheGame() {
+		StudentWorldBoard board = new StudentWorldBoard(5, 5, 2, 1);
+		board.initializeBoard();
+		SilentDisplay display = new SilentDisplay();
+		CSPPlayer chocoPlayer = new CSPPlayer(MoveAction.getAllActions(), display, board.getPlayerCell(), null,
+				StudentWorldConstraintSolver.Backend.CHOCO, 5, 5);
+		try {
+			chocoPlayer.setStudentMoveInterval(3);
+			fail("Choco can't follow moving students");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		// a player that wasn't told the students move isn't let into the game
+		StudentWorld game = new StudentWorld(display, board);
+		game.setStudentMoveInterval(3);
+		CSPPlayer satPlayer = new CSPPlayer(MoveAction.getAllActions(), display, board.getPlayerCell(), null,
+				StudentWorldConstraintSolver.Backend.SAT, 5, 5);
+		try {
+			game.play(satPlayer);
+			fail("the player doesn't expect the students to move");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(0, satPlayer.getNumActionsExecuted());
+	}
+
+	@Test
+	public void testContradictionsAreCounted() {
+		StudentWorldBoard board = new StudentWorldBoard(5, 5, 2, 1);
+		board.initializeBoard();
+		CSPPlayer satPlayer = new CSPPlayer(MoveAction.getAllActions(), new SilentDisplay(), board.getPlayerCell(), null,
+				StudentWorldConstraintSolver.Backend.SAT, 5, 5);
+		StudentWorldConstraintSolver satSolver = new StudentWorldConstraintSolver(satPlayer, null,
+				StudentWorldConstraintSolver.Backend.SAT, 5, 5);
+		satSolver.setPrintVariables(false);
+		// two corners can't both glow, there is only one door
+		satSolver.observeAll(new int[] {0, 0, 3, 4, 4, 3});
+		assertEquals(0, satSolver.getNumContradictions());
+		satSolver.getKnowledge();
+		assertEquals(1, satSolver.getNumContradictions());
+	}
+
+	/*
+	 * 7x7, (2,2) and (3,3) glow and the rest of the path doesn't sense anything. The door
+	 * is one of (2,1), (2,3) and (3,2) for (2,2), and (3,3) only has (2,3) and (3,2) left,
+	 * so (2,1) can't hold it. Each sum alone allows it, so propagation leaves it open.
+	 */
+	private StudentWorldConstraintSolver newTwoGlowSolver() {
+		StudentWorldConstraintSolver twoGlows = new StudentWorldConstraintSolver(null, null,
+				StudentWorldConstraintSolver.Backend.CHOCO, 7, 7);
+		twoGlows.setPrintVariables(false);
+		int[][] path = {{0, 0}, {0, 1}, {0, 2}, {1, 2}, {2, 2}, {0, 3}, {0, 4}, {1, 4}, {1, 5}, {2, 5}, {3, 5}, {3, 4}, {3, 3}};
+		for(int[] cell : path) {
+			boolean glows = (cell[0] == 2 && cell[1] == 2) || (cell[0] == 3 && cell[1] == 3);
+			twoGlows.observe(cell[0], cell[1], glows ? EnumSet.of(StudentWorldPercept.GLOW) : EnumSet.noneOf(StudentWorldPercept.class));
+		}
+		return twoGlows;
+	}
+
+	@Test
+	public void testProbingSettlesWhatPropagationLeavesOpen() throws Exception {
+		StudentWorldConstraintSolver twoGlows = newTwoGlowSolver();
+		BoolVar[][] doorCells = (BoolVar[][]) this.doorCells.get(twoGlows);
+		((Solver) this.solver.get(twoGlows)).propagate();
+		assertFalse(doorCells[2][1].isInstantiated());
+
+		Method probeFringe = StudentWorldConstraintSolver.class.getDeclaredMethod("probeFringe", long.class);
+		probeFringe.setAccessible(true);
+		assertTrue((Boolean) probeFringe.invoke(twoGlows, StudentWorldConstraintSolver.NO_DEADLINE));
+		assertEquals("door (2,1) = 0", doorCells[2][1].toString());
+		// either of the other two can still hold the door
+		assertFalse(doorCells[2][3].isInstantiated());
+		assertFalse(doorCells[3][2].isInstantiated());
+		assertTrue(twoGlows.getNumProbes() > 0);
+	}
+
+	@Test
+	public void testFailedProbeFixesTheOtherValue() throws Exception {
+		StudentWorldConstraintSolver twoGlows = newTwoGlowSolver();
+		BoolVar[][] doorCells = (BoolVar[][]) this.doorCells.get(twoGlows);
+		((Solver) this.solver.get(twoGlows)).propagate();
+		Method probe = StudentWorldConstraintSolver.class.getDeclaredMethod("probe", BoolVar.class, int.class, int.class);
+		probe.setAccessible(true);
+
+		// 0 is consistent, 1 fails, so 0 is posted
+		assertTrue((Boolean) probe.invoke(twoGlows, doorCells[2][1], 2, 1));
+		assertEquals("door (2,1) = 0", doorCells[2][1].toString());
+		assertEquals(2, twoGlows.getNumProbes());
+
+		// both values are consistent, nothing is posted
+		assertFalse((Boolean) probe.invoke(twoGlows, doorCells[2][3], 2, 3));
+		assertFalse(doorCells[2][3].isInstantiated());
+		assertEquals(4, twoGlows.getNumProbes());
+	}
+
+	@Test
+	public void testOnlyCellsNearAnObservationAreProbedAgain() throws Exception {
+		StudentWorldConstraintSolver twoGlows = newTwoGlowSolver();
+		((Solver) this.solver.get(twoGlows)).propagate();
+		Method probeFringe = StudentWorldConstraintSolver.class.getDeclaredMethod("probeFringe", long.class);
+		probeFringe.setAccessible(true);
+		probeFringe.invoke(twoGlows, StudentWorldConstraintSolver.NO_DEADLINE);
+		Field probeDirtyField = StudentWorldConstraintSolver.class.getDeclaredField("probeDirty");
+		probeDirtyField.setAccessible(true);
+		boolean[][] probeDirty = (boolean[][]) probeDirtyField.get(twoGlows);
+		for(int cell : twoGlows.getFringeCells()) {
+			assertFalse(probeDirty[cell / 7][cell % 7]);
+		}
+
+		// the percept constraints reach one cell, so cells within two of (5,5) may have changed
+		twoGlows.observe(5, 5, EnumSet.noneOf(StudentWorldPercept.class));
+		((Solver) this.solver.get(twoGlows)).propagate();
+		int numDirty = 0;
+		for(int cell : twoGlows.getFringeCells()) {
+			int distance = Math.abs(cell / 7 - 5) + Math.abs(cell % 7 - 5);
+			assertEquals(distance <= 2, probeDirty[cell / 7][cell % 7]);
+			if(probeDirty[cell / 7][cell % 7]) {
+				numDirty++;
+			}
+		}
+		int numProbes = twoGlows.getNumProbes();
+		probeFringe.invoke(twoGlows, StudentWorldConstraintSolver.NO_DEADLINE);
+		// at most both values of both variables of each dirty cell
+		assertTrue(twoGlows.getNumProbes() - numProbes <= 4 * numDirty);
+		for(int cell : twoGlows.getFringeCells()) {
+			assertFalse(probeDirty[cell / 7][cell % 7]);
+		}
+	}
+
+	@Test
+	public void testModelFollowsOtherRules() throws Exception {
+		// students are smelt two steps away, the door on the eight cells around it
+		List<PerceptRule> rules = Arrays.asList(
+				new PerceptRule(StudentWorldItem.STUDENT, StudentWorldPercept.SMELL, PerceptRule.Shape.ORTHOGONAL, 2, PerceptRule.Cardinality.AT_LEAST_ONE),
+				new PerceptRule(StudentWorldItem.DOOR, StudentWorldPercept.GLOW, PerceptRule.Shape.SQUARE, 1, PerceptRule.Cardinality.EXACTLY_ONE));
+		StudentWorldConstraintSolver otherRules = new StudentWorldConstraintSolver(null, null,
+				StudentWorldConstraintSolver.Backend.CHOCO, 5, 5, rules);
+		otherRules.setPrintVariables(false);
+		BoolVar[][] studentCells = (BoolVar[][]) this.studentCells.get(otherRules);
+		BoolVar[][] doorCells = (BoolVar[][]) this.doorCells.get(otherRules);
+		Solver solver = (Solver) this.solver.get(otherRules);
+
+		otherRules.observe(0, 0, EnumSet.noneOf(StudentWorldPercept.class));
+		solver.propagate();
+		assertEquals("student (2,0) = 0", studentCells[2][0].toString());
+		assertEquals("student (1,1) = 0", studentCells[1][1].toString());
+		assertEquals("student (3,0) = [0,1]", studentCells[3][0].toString());
+		assertEquals("door (1,1) = 0", doorCells[1][1].toString());
+		assertEquals("door (0,2) = [0,1]", doorCells[0][2].toString());
+
+		// the door is next to (0,1), diagonals included, and (2,2) doesn't see (1,2)
+		otherRules.observe(0, 1, EnumSet.of(StudentWorldPercept.GLOW));
+		otherRules.observe(2, 2, EnumSet.noneOf(StudentWorldPercept.class));
+		solver.propagate();
+		assertEquals("door (0,2) = 1", doorCells[0][2].toString());
+		assertEquals("door (1,2) = 0", doorCells[1][2].toString());
+		assertEquals("door (3,3) = 0", doorCells[3][3].toString());
+		// two steps from (2,2), the standard rules would leave it open
+		assertEquals("student (4,2) = 0", studentCells[4][2].toString());
+		assertEquals("student (3,4) = [0,1]", studentCells[3][4].toString());
+	}
+}
@@ -0,0 +1,144 @@
+package studentworld.batch;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import studentworld.trace.AllocationProfile;
+
+public class ColumnarResultTest {
+
+	@Test
+	public void testResultsRoundTripAcrossBlocks() throws Exception {
+		File file = File.createTempFile("studentworld", ".results");
+		file.deleteOnExit();
+		Random random = new Random(5);
+		List<GameResult> written = new ArrayList<GameResult>();
+		ResultSummary expected = new ResultSummary();
+
+		ColumnarResultWriter writer = new ColumnarResultWriter(file, 64);
+		for(int i=0; i<1000; i++) {
+			GameResult result = new GameResult(random.nextLong(), 5, 5 + i % 2, random.nextInt(5) != 0,
+					1 + random.nextInt(40), random.nextInt(1 << 24), random.nextInt(3));
+			writer.add(result);
+			written.add(result);
+			expected.add(result);
+		}
+		assertEquals(1000, writer.getNumResults());
+		writer.close();
+
+		final List<GameResult> read = new ArrayList<GameResult>();
+		ColumnarResultReader reader = new ColumnarResultReader(file);
+		reader.read(new GameResultSink() {
+			@Override
+			public void add(GameResult result) {
+				read.add(result);
+			}
+		});
+		ResultSummary summary = reader.summarize();
+		reader.close();
+
+		assertEquals(written.size(), read.size());
+		for(int i=0; i<written.size(); i++) {
+			assertEquals(written.get(i).toString(), read.get(i).toString());
+		}
+		assertEquals(expected.toString(), summary.toString());
+		assertEquals(1000, summary.getNumGames());
+	}
+
+	@Test
+	public void testMemoryProfileRoundTrips() throws Exception {
+		File file = File.createTempFile("studentworld", ".results");
+		file.deleteOnExit();
+		ResultSummary expected = new ResultSummary();
+		ColumnarResultWriter writer = new ColumnarResultWriter(file, 16);
+		for(int i=0; i<100; i++) {
+			GameResult result;
+			if(i % 3 == 0) {
+				result = new GameResult(i, 8, 8, true, 20, 1000, 0);
+			} else {
+				// a Choco game doesn't know its model footprint
+				result = new GameResult(i, 8, 8, i % 2 == 0, 10 + i, 1000 + i, 1,
+						new long[] {1000 * i, 50000 + i, 2000, 300 * i, 40}, 9000 + i, i % 5 == 0 ? -1 : 100000 + 7 * i);
+			}
+			writer.add(result);
+			expected.add(result);
+		}
+		writer.close();
+
+		ColumnarResultReader reader = new ColumnarResultReader(file);
+		final List<GameResult> read = new ArrayList<GameResult>();
+		reader.read(new GameResultSink() {
+			@Override
+			public void add(GameResult result) {
+				read.add(result);
+			}
+		});
+		ResultSummary summary = reader.summarize();
+		reader.close();
+
+		assertFalse(read.get(0).isAccounted());
+		assertEquals(1000 + 50001 + 2000 + 300 + 40, read.get(1).getAllocatedBytes());
+		assertEquals(50001, read.get(1).getAllocatedBytes(AllocationProfile.Phase.KNOWLEDGE));
+		assertEquals(9001, read.get(1).getMaxTurnAllocatedBytes());
+		assertEquals(100007, read.get(1).getPeakModelBytes());
+		assertEquals(-1, read.get(5).getPeakModelBytes());
+		assertEquals(66, summary.getNumAccountedGames());
+		// the unknown footprints stay out of the mean instead of counting as 0
+		assertEquals(53, summary.getNumModelSizedGames());
+		assertTrue(summary.getMeanPeakModelBytes() > 100000);
+		assertEquals(100000 + 7 * 98, summary.getMaxPeakModelBytes());
+		assertEquals(expected.getMaxPeakModelBytes(), summary.getMaxPeakModelBytes());
+		assertEquals(expected.toString(), summary.toString());
+	}
+
+	@Test
+	public void testFailedBlockIsReported() throws Exception {
+		File file = File.createTempFile("studentworld", ".results");
+		file.deleteOnExit();
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+		ColumnarResultWriter writer = new ColumnarResultWriter(channel, 4);
+		channel.close();
+		for(int i=0; i<3; i++) {
+			writer.add(new GameResult(i, 5, 5, true, 10, 1000, 0));
+		}
+		try {
+			writer.add(new GameResult(3, 5, 5, true, 10, 1000, 0));
+			fail("the block couldn't be written");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		// later results are refused rather than overflowing the block
+		try {
+			writer.add(new GameResult(4, 5, 5, true, 10, 1000, 0));
+			fail("the file is incomplete");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		try {
+			writer.close();
+			fail("the file is incomplete");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testEmptyFile() throws Exception {
+		File file = File.createTempFile("studentworld", ".results");
+		file.deleteOnExit();
+		new ColumnarResultWriter(file).close();
+
+		ColumnarResultReader reader = new ColumnarResultReader(file);
+		assertEquals(0, reader.summarize().getNumGames());
+		reader.close();
+	}
+}
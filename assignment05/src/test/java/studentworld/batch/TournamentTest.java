@@ -0,0 +1,80 @@
+package studentworld.batch;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TournamentTest {
+
+	@Test
+	public void testSignTestDetectsOnlyRealDifferences() {
+		Random random = new Random(3);
+		int numFalseDifferences = 0;
+		for(int run=0; run<200; run++) {
+			SequentialSignTest test = new SequentialSignTest(0.05, 0.1, 0.1);
+			for(int i=0; i<100000 && !test.isDecided(); i++) {
+				test.add(random.nextBoolean());
+			}
+			assertTrue(test.isDecided());
+			numFalseDifferences += test.isDifferent() ? 1 : 0;
+		}
+		assertTrue(numFalseDifferences < 25);
+
+		SequentialSignTest test = new SequentialSignTest(0.05, 0.1, 0.1);
+		for(int i=0; i<100000 && !test.isDecided(); i++) {
+			test.add(random.nextDouble() < 0.3);
+		}
+		assertEquals(SequentialSignTest.Decision.SECOND_BETTER, test.getDecision());
+		assertTrue(test.getNumFirst() + test.getNumSecond() < 200);
+	}
+
+	@Test
+	public void testOutcomeIsTheSameForAnyNumberOfThreads() throws Exception {
+		Tournament.Result[] results = new Tournament.Result[2];
+		for(int i=0; i<results.length; i++) {
+			Tournament tournament = new Tournament(Tournament.parseStrategy("sat", 8, 8), Tournament.parseStrategy("lookahead:2", 8, 8), 11);
+			tournament.setBoardSize(8, 8, 6);
+			results[i] = tournament.run(500, 1 + 3 * i);
+		}
+		assertTrue(results[0].isDone());
+		assertEquals(results[0].toString(), results[1].toString());
+	}
+
+	@Test
+	public void testTiesAloneEndInNoDifference() {
+		SequentialSignTest test = new SequentialSignTest(0.05, 0.1, 0.1, 0.02);
+		for(int i=0; i<100000 && !test.isDecided(); i++) {
+			test.addTie();
+		}
+		assertEquals(SequentialSignTest.Decision.NO_DIFFERENCE, test.getDecision());
+		assertTrue(test.getNumTies() < 200);
+
+		// pairs that differ often enough leave the decision to the sign test
+		Random random = new Random(5);
+		test = new SequentialSignTest(0.05, 0.1, 0.1, 0.02);
+		for(int i=0; i<100000 && !test.isDecided(); i++) {
+			if(random.nextDouble() < 0.1) {
+				test.add(random.nextDouble() < 0.3);
+			} else {
+				test.addTie();
+			}
+		}
+		assertEquals(SequentialSignTest.Decision.SECOND_BETTER, test.getDecision());
+
+		test = new SequentialSignTest(0.05, 0.1, 0.1);
+		for(int i=0; i<1000; i++) {
+			test.addTie();
+		}
+		assertFalse(test.isDecided());
+	}
+
+	@Test
+	public void testSameStrategyStopsEarly() throws Exception {
+		Tournament tournament = new Tournament(Tournament.parseStrategy("sat", 5, 5), Tournament.parseStrategy("sat", 5, 5), 2);
+		Tournament.Result result = tournament.run(100000, 2);
+		assertEquals(SequentialSignTest.Decision.NO_DIFFERENCE, result.getDecision());
+		assertTrue(result.getNumPairs() < 1000);
+	}
+}
@@ -0,0 +1,122 @@
+package studentworld.coop;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import gridgames.data.action.MoveAction;
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.data.StudentWorldItem;
+import studentworld.display.SilentDisplay;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.grid.StudentWorldCell;
+import studentworld.knowledge.BoardKnowledge;
+import studentworld.knowledge.Zobrist;
+import studentworld.player.CSPPlayer;
+
+public class CooperativeStudentWorldTest {
+
+	@Test
+	public void testEachCellIsObservedOnce() throws InterruptedException {
+		final StudentWorldBoard board = new StudentWorldBoard(12, 12, 10, 3);
+		board.initializeBoard();
+		final SharedKnowledgeBase shared = new SharedKnowledgeBase(StudentWorldConstraintSolver.Backend.SAT, 12, 12);
+		final AtomicInteger numPosted = new AtomicInteger();
+		List<Thread> threads = new ArrayList<Thread>();
+		for(int i=0; i<4; i++) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for(int cell=0; cell<144; cell++) {
+						if(shared.observe((StudentWorldCell) board.getCell(cell / 12, cell % 12))) {
+							numPosted.incrementAndGet();
+						}
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(144, numPosted.get());
+		assertEquals(144, shared.getVisitedCells().size());
+		assertTrue(shared.isVisited(143));
+	}
+
+	@Test
+	public void testClaimsAreExclusiveUntilReleased() {
+		SharedKnowledgeBase shared = new SharedKnowledgeBase(StudentWorldConstraintSolver.Backend.SAT, 5, 5);
+		Object first = new Object();
+		Object second = new Object();
+		assertTrue(shared.claim(7, first));
+		assertTrue(shared.claim(7, first));
+		assertFalse(shared.claim(7, second));
+		assertTrue(shared.isClaimedByOther(7, second));
+		shared.release(7, first);
+		assertTrue(shared.claim(7, second));
+	}
+
+	@Test
+	public void testAgentsSplitTheSafeCells() {
+		// nothing is ever placed next to the start, so (0,1) and (1,0) are safe from the first turn
+		StudentWorldBoard board = new StudentWorldBoard(6, 6, 4, 8);
+		board.initializeBoard();
+		SharedKnowledgeBase shared = new SharedKnowledgeBase(StudentWorldConstraintSolver.Backend.SAT, 6, 6);
+		CSPPlayer first = new CSPPlayer(MoveAction.getAllActions(), new SilentDisplay(), board.getPlayerCell(), shared);
+		CSPPlayer second = new CSPPlayer(MoveAction.getAllActions(), new SilentDisplay(), board.getPlayerCell(), shared);
+		CSPPlayer third = new CSPPlayer(MoveAction.getAllActions(), new SilentDisplay(), board.getPlayerCell(), shared);
+
+		assertEquals(MoveAction.RIGHT, first.getActionIfAny());
+		assertTrue(shared.isClaimedByOther(1, second));
+		assertEquals(MoveAction.DOWN, second.getActionIfAny());
+		// both safe cells are taken, the third agent waits instead of doubling up or taking a risk
+		assertNull(third.getActionIfAny());
+		assertTrue(shared.hasClaimsByOthers(third));
+		assertEquals(0, third.getNumRiskyMoves());
+
+		first.releaseClaim();
+		assertEquals(MoveAction.RIGHT, third.getActionIfAny());
+	}
+
+	@Test
+	public void testAgentsOnlyLearnWhatIsTrue() throws InterruptedException {
+		for(int i=0; i<20; i++) {
+			StudentWorldBoard board = new StudentWorldBoard(10, 10, 12, Zobrist.mix(i));
+			board.initializeBoard();
+			CooperativeStudentWorld game = new CooperativeStudentWorld(board, StudentWorldConstraintSolver.Backend.SAT);
+			boolean won = game.play(3, 0);
+			boolean allTrapped = game.isTrapped(0) && game.isTrapped(1) && game.isTrapped(2);
+			assertTrue(won != allTrapped);
+
+			BoardKnowledge knowledge = game.getSharedKnowledge().getSnapshot().getKnowledge();
+			for(int row=0; row<10; row++) {
+				for(int col=0; col<10; col++) {
+					boolean student = ((StudentWorldCell) board.getCell(row, col)).contains(StudentWorldItem.STUDENT);
+					if(knowledge.getStudent(row, col) != BoardKnowledge.UNKNOWN) {
+						assertEquals(student, knowledge.getStudent(row, col) == BoardKnowledge.TRUE);
+					}
+					assertFalse(student && game.getSharedKnowledge().isVisited(row * 10 + col));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testWithoutStudentsTheTeamAlwaysGetsOut() throws InterruptedException {
+		for(int i=0; i<10; i++) {
+			StudentWorldBoard board = new StudentWorldBoard(8, 8, 0, Zobrist.mix(i));
+			board.initializeBoard();
+			CooperativeStudentWorld game = new CooperativeStudentWorld(board, StudentWorldConstraintSolver.Backend.SAT);
+			assertTrue(game.play(4, 0));
+			for(int agent=0; agent<4; agent++) {
+				assertFalse(game.isTrapped(agent));
+			}
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package studentworld.corpus;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Test;
+
+import studentworld.grid.StudentWorldBoard;
+
+public class BoardCorpusTest {
+
+	@Test
+	public void testViewsMatchGeneratedBoards() throws Exception {
+		File file = File.createTempFile("studentworld", ".corpus");
+		file.deleteOnExit();
+		new BoardCorpusWriter(5, 5, 5).write(file, 100, 11L);
+
+		BoardCorpus corpus = BoardCorpus.load(file);
+		assertEquals(100, corpus.getNumBoards());
+		assertEquals(5, corpus.getNumStudents());
+
+		Random seeds = new Random(11L);
+		BoardView view = corpus.view();
+		byte[] layout = new byte[25];
+		for(int i=0; i<100; i++) {
+			long seed = seeds.nextLong();
+			StudentWorldBoard board = new StudentWorldBoard(5, 5, 5, seed);
+			board.initializeBoard();
+
+			view.moveTo(i);
+			assertEquals(seed, view.getSeed());
+			view.copyLayoutTo(layout);
+			assertArrayEquals(board.getLayout(), layout);
+			assertEquals(board.getLayout()[7] == StudentWorldBoard.LAYOUT_DOOR, view.isDoor(1, 2));
+			assertEquals(board.toString(), view.toBoard().toString());
+		}
+	}
+
+	@Test
+	public void testPartsCoverCorpus() throws Exception {
+		File file = File.createTempFile("studentworld", ".corpus");
+		file.deleteOnExit();
+		new BoardCorpusWriter(4, 6, 3).write(file, 10, 3L);
+
+		BoardCorpus corpus = BoardCorpus.load(file);
+		assertEquals(0, corpus.getPartStart(0, 3));
+		assertEquals(3, corpus.getPartStart(1, 3));
+		assertEquals(10, corpus.getPartStart(3, 3));
+		assertEquals(6, corpus.view().moveTo(9).toBoard().getNumCols());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testMoveOutsideCorpus() throws Exception {
+		File file = File.createTempFile("studentworld", ".corpus");
+		file.deleteOnExit();
+		new BoardCorpusWriter(5, 5, 5).write(file, 2, 0L);
+		BoardCorpus.load(file).view().moveTo(2);
+	}
+}
@@ -0,0 +1,98 @@
+package studentworld.data;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import studentworld.grid.StudentWorldBoard;
+import studentworld.grid.StudentWorldCell;
+
+public class PerceptRuleTableTest {
+
+	@Test
+	public void testStandardNeighborhoodsAreUpRightDownLeft() {
+		int[][] sizes = {{1, 1}, {1, 5}, {5, 5}, {4, 7}};
+		for(int[] size : sizes) {
+			int numRows = size[0];
+			int numCols = size[1];
+			PerceptRuleTable table = PerceptRuleTable.compile(PerceptRule.STANDARD, numRows, numCols);
+			assertSame(table, PerceptRuleTable.compile(PerceptRule.STANDARD, numRows, numCols));
+			assertTrue(table.isStandard());
+			for(int cell=0; cell<numRows*numCols; cell++) {
+				List<Integer> neighbors = new ArrayList<Integer>();
+				int[][] offsets = {{-1, 0}, {0, 1}, {1, 0}, {0, -1}};
+				for(int[] offset : offsets) {
+					int row = cell / numCols + offset[0];
+					int col = cell % numCols + offset[1];
+					if(row >= 0 && row < numRows && col >= 0 && col < numCols) {
+						neighbors.add(row * numCols + col);
+					}
+				}
+				for(int rule=0; rule<table.getNumRules(); rule++) {
+					assertEquals(neighbors, neighborhood(table, rule, cell));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNeighborhoodShapes() {
+		PerceptRule diamond = new PerceptRule(StudentWorldItem.STUDENT, StudentWorldPercept.SMELL, PerceptRule.Shape.ORTHOGONAL, 2,
+				PerceptRule.Cardinality.AT_LEAST_ONE);
+		PerceptRule square = new PerceptRule(StudentWorldItem.DOOR, StudentWorldPercept.GLOW, PerceptRule.Shape.SQUARE, 2,
+				PerceptRule.Cardinality.EXACTLY_ONE);
+		PerceptRuleTable table = PerceptRuleTable.compile(Arrays.asList(diamond, square), 7, 7);
+		assertFalse(table.isStandard());
+		assertEquals(12, neighborhood(table, 0, 3 * 7 + 3).size());
+		assertEquals(24, neighborhood(table, 1, 3 * 7 + 3).size());
+		// clipped at the corner: (0,1), (1,0), (0,2), (1,1), (2,0)
+		assertEquals(5, neighborhood(table, 0, 0).size());
+		for(int rule=0; rule<2; rule++) {
+			for(int cell=0; cell<49; cell++) {
+				for(int neighbor : neighborhood(table, rule, cell)) {
+					assertTrue("neighborhoods are symmetric", neighborhood(table, rule, neighbor).contains(cell));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBoardSensesByTheRules() {
+		List<PerceptRule> rules = Arrays.asList(
+				new PerceptRule(StudentWorldItem.STUDENT, StudentWorldPercept.SMELL, PerceptRule.Shape.ORTHOGONAL, 2, PerceptRule.Cardinality.AT_LEAST_ONE),
+				PerceptRule.STANDARD_GLOW);
+		for(int seed=0; seed<50; seed++) {
+			for(List<PerceptRule> boardRules : Arrays.asList(PerceptRule.STANDARD, rules)) {
+				StudentWorldBoard board = new StudentWorldBoard(6, 6, 4, seed);
+				board.setPerceptRules(boardRules);
+				board.initializeBoard();
+				byte[] layout = board.getLayout();
+				int smellRadius = boardRules.get(0).getRadius();
+				for(int cell=0; cell<36; cell++) {
+					boolean smell = false;
+					boolean glow = false;
+					for(int other=0; other<36; other++) {
+						int distance = Math.abs(other / 6 - cell / 6) + Math.abs(other % 6 - cell % 6);
+						smell |= layout[other] == StudentWorldBoard.LAYOUT_STUDENT && distance >= 1 && distance <= smellRadius;
+						glow |= layout[other] == StudentWorldBoard.LAYOUT_DOOR && distance == 1;
+					}
+					int signature = StudentWorldPercept.getSignature(((StudentWorldCell) board.getCell(cell / 6, cell % 6)).getPercepts());
+					assertEquals(smell, StudentWorldPercept.SMELL.isIn(signature));
+					assertEquals(glow, StudentWorldPercept.GLOW.isIn(signature));
+				}
+			}
+		}
+	}
+
+	private static List<Integer> neighborhood(PerceptRuleTable table, int rule, int cell) {
+		List<Integer> cells = new ArrayList<Integer>();
+		for(int i=table.getNeighborhoodStart(rule, cell); i<table.getNeighborhoodEnd(rule, cell); i++) {
+			cells.add(table.getNeighborhoodCell(rule, i));
+		}
+		return cells;
+	}
+}
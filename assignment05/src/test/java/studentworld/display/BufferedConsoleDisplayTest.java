@@ -0,0 +1,124 @@
+package studentworld.display;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+
+import gridgames.data.action.MoveAction;
+import gridgames.display.ConsoleDisplay;
+import gridgames.grid.Cell;
+import studentworld.grid.StudentWorldBoard;
+
+public class BufferedConsoleDisplayTest {
+
+	@Test
+	public void testFullFramesMatchConsoleDisplay() {
+		StudentWorldBoard board = new StudentWorldBoard(4, 5, 2, 7);
+		board.initializeBoard();
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		PrintStream stdout = System.out;
+		System.setOut(new PrintStream(expected));
+		try {
+			ConsoleDisplay console = new ConsoleDisplay();
+			console.setBoard(board);
+			console.addMessage("You smell a student.");
+			console.printState(false);
+		} finally {
+			System.setOut(stdout);
+		}
+
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		BufferedConsoleDisplay display = new BufferedConsoleDisplay(new PrintStream(actual), false);
+		display.setBoard(board);
+		display.addMessage("You smell a student.");
+		display.printState(false);
+		assertEquals(expected.toString().replace(System.getProperty("line.separator"), "\n"), actual.toString());
+	}
+
+	@Test
+	public void testOnlyChangedCellsAreRedrawn() {
+		StudentWorldBoard board = new StudentWorldBoard(4, 5, 0, 7);
+		board.initializeBoard();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BufferedConsoleDisplay display = new BufferedConsoleDisplay(new PrintStream(out), true);
+		display.setBoard(board);
+		display.printState(false);
+		assertTrue(out.toString().contains("+---+"));
+
+		out.reset();
+		display.printState(false);
+		// nothing changed: only the message area is cleared
+		assertEquals("\u001B[10;1H\u001B[J", out.toString());
+
+		out.reset();
+		board.movePlayer(MoveAction.RIGHT);
+		display.addMessage("moved");
+		display.printState(false);
+		String frame = out.toString();
+		assertTrue(frame.contains("\u001B[2;2H"));
+		assertTrue(frame.contains("\u001B[2;6H"));
+		assertFalse(frame.contains("\u001B[4;"));
+		assertTrue(frame.endsWith("\u001B[10;1H\u001B[Jmoved\n"));
+	}
+
+	@Test
+	public void testOnlyThePlayersCellsAreLookedAt() {
+		final int[] numLookups = new int[1];
+		StudentWorldBoard board = new StudentWorldBoard(20, 20, 0, 7) {
+			@Override
+			public Cell getCell(int row, int col) {
+				numLookups[0]++;
+				return super.getCell(row, col);
+			}
+		};
+		board.initializeBoard();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BufferedConsoleDisplay display = new BufferedConsoleDisplay(new PrintStream(out), true);
+		display.setMaxFramesPerSecond(1);
+		display.setBoard(board);
+		display.printBoard(false);
+
+		// the frames in between are dropped, the cells the player passed are drawn with the next one
+		board.movePlayer(MoveAction.RIGHT);
+		display.printBoard(false);
+		board.movePlayer(MoveAction.DOWN);
+		display.printBoard(false);
+		assertEquals(1, display.getNumFramesDrawn());
+		out.reset();
+		numLookups[0] = 0;
+		display.setMaxFramesPerSecond(0);
+		display.printBoard(false);
+		display.printMessages();
+		assertEquals(3, numLookups[0]);
+		String frame = out.toString();
+		assertTrue(frame.contains("\u001B[2;2H"));
+		assertTrue(frame.contains("\u001B[2;6H *"));
+		assertTrue(frame.contains("\u001B[4;6H"));
+	}
+
+	@Test
+	public void testFrameCapDropsFramesButNotGameOver() {
+		StudentWorldBoard board = new StudentWorldBoard(3, 3, 0, 1);
+		board.initializeBoard();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BufferedConsoleDisplay display = new BufferedConsoleDisplay(new PrintStream(out), true);
+		display.setMaxFramesPerSecond(1);
+		display.setBoard(board);
+		for(int i=0; i<10; i++) {
+			display.addMessage("turn " + i);
+			display.printBoard(false);
+			display.printMessages();
+		}
+		assertEquals(1, display.getNumFramesDrawn());
+		assertEquals(9, display.getNumFramesSkipped());
+		assertFalse(out.toString().contains("turn 9"));
+
+		display.addMessage("game over");
+		display.printState(true);
+		assertEquals(2, display.getNumFramesDrawn());
+		assertTrue(out.toString().endsWith("game over\n"));
+	}
+}
@@ -0,0 +1,160 @@
+package studentworld.grid;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import gridgames.data.action.MoveAction;
+import gridgames.data.item.MoveItem;
+import studentworld.data.StudentWorldItem;
+import studentworld.data.StudentWorldPercept;
+
+public class SparseStudentWorldBoardTest {
+
+	@Test
+	public void testOnlyTouchedTilesAreCreated() {
+		SparseStudentWorldBoard board = new SparseStudentWorldBoard(1000, 1000, 20000, 5);
+		board.initializeBoard();
+		assertEquals(1, board.getNumMaterializedTiles());
+
+		board.getCell(999, 999);
+		assertEquals(2, board.getNumMaterializedTiles());
+	}
+
+	@Test
+	public void testCellsAgreeWithContentAndPercepts() {
+		SparseStudentWorldBoard board = new SparseStudentWorldBoard(150, 130, 2000, 11);
+		board.initializeBoard();
+		int numDoors = 0;
+		for(int row=0; row<150; row++) {
+			for(int col=0; col<130; col++) {
+				StudentWorldCell cell = (StudentWorldCell) board.getCell(row, col);
+				byte content = board.getContent(row, col);
+				assertEquals(content == StudentWorldBoard.LAYOUT_STUDENT, cell.contains(StudentWorldItem.STUDENT));
+				assertEquals(content == StudentWorldBoard.LAYOUT_DOOR, cell.contains(StudentWorldItem.DOOR));
+				if(content == StudentWorldBoard.LAYOUT_DOOR) {
+					numDoors++;
+				}
+				boolean smell = false;
+				boolean glow = false;
+				int[] neighbors = {row-1, col, row, col+1, row+1, col, row, col-1};
+				for(int i=0; i<neighbors.length; i+=2) {
+					if(neighbors[i] >= 0 && neighbors[i] < 150 && neighbors[i+1] >= 0 && neighbors[i+1] < 130) {
+						smell |= board.getContent(neighbors[i], neighbors[i+1]) == StudentWorldBoard.LAYOUT_STUDENT;
+						glow |= board.getContent(neighbors[i], neighbors[i+1]) == StudentWorldBoard.LAYOUT_DOOR;
+					}
+				}
+				assertEquals(smell, cell.getPercepts().contains(StudentWorldPercept.SMELL));
+				assertEquals(glow, cell.getPercepts().contains(StudentWorldPercept.GLOW));
+			}
+		}
+		assertEquals(1, numDoors);
+		assertEquals(StudentWorldBoard.LAYOUT_EMPTY, board.getContent(0, 1));
+		assertEquals(StudentWorldBoard.LAYOUT_EMPTY, board.getContent(1, 0));
+	}
+
+	@Test
+	public void testSameSeedSameBoard() {
+		byte[] layout = new SparseStudentWorldBoard(100, 100, 500, 3).getLayout();
+		assertArrayEquals(layout, new SparseStudentWorldBoard(100, 100, 500, 3).getLayout());
+	}
+
+	@Test
+	public void testPlayerMoves() {
+		SparseStudentWorldBoard board = new SparseStudentWorldBoard(1000, 1000, 0, 7);
+		board.initializeBoard();
+		board.movePlayer(MoveAction.UP);
+		assertSame(board.getCell(0, 0), board.getPlayerCell());
+
+		board.movePlayer(MoveAction.RIGHT);
+		board.movePlayer(MoveAction.DOWN);
+		assertSame(board.getCell(1, 1), board.getPlayerCell());
+		assertTrue(board.getPlayerCell().wasVisited());
+		assertFalse(board.getCell(0, 0).getItems().contains(MoveItem.PLAYER));
+	}
+
+	@Test
+	public void testLayoutReplacesTheSeed() {
+		byte[] layout = new SparseStudentWorldBoard(100, 100, 500, 3).getLayout();
+		SparseStudentWorldBoard board = new SparseStudentWorldBoard(100, 100, 500, 4);
+		board.getCell(99, 99);
+		board.initializeBoard(layout);
+		assertArrayEquals(layout, board.getLayout());
+		assertEquals(1, board.getNumMaterializedTiles());
+		assertAgreesWithContent(board, 100, 100);
+		assertSame(board.getCell(0, 0), board.getPlayerCell());
+	}
+
+	@Test
+	public void testMovingStudentsKeepPerceptsRight() {
+		SparseStudentWorldBoard board = new SparseStudentWorldBoard(150, 130, 2000, 11);
+		board.initializeBoard();
+		board.getCell(70, 70);
+		int numTiles = board.getNumMaterializedTiles();
+		byte[] before = board.getLayout();
+		Random random = new Random(1);
+		for(int turn=0; turn<20; turn++) {
+			board.moveStudents(random);
+		}
+		assertEquals(numTiles, board.getNumMaterializedTiles());
+		byte[] after = board.getLayout();
+		assertFalse(Arrays.equals(before, after));
+		assertEquals(count(before, StudentWorldBoard.LAYOUT_STUDENT), count(after, StudentWorldBoard.LAYOUT_STUDENT));
+		assertAgreesWithContent(board, 150, 130);
+	}
+
+	@Test
+	public void testCloneKeepsVisitedCellsAndStudents() {
+		SparseStudentWorldBoard board = new SparseStudentWorldBoard(1000, 1000, 0, 7);
+		board.initializeBoard();
+		board.movePlayer(MoveAction.RIGHT);
+		board.movePlayer(MoveAction.RIGHT);
+		board.getCell(999, 999);
+		SparseStudentWorldBoard moving = new SparseStudentWorldBoard(100, 100, 500, 3);
+		moving.initializeBoard();
+		moving.moveStudents(new Random(2));
+
+		SparseStudentWorldBoard copy = (SparseStudentWorldBoard) board.clone();
+		assertEquals(board.getNumMaterializedTiles(), copy.getNumMaterializedTiles());
+		assertTrue(copy.getCell(0, 1).wasVisited());
+		assertFalse(copy.getCell(1, 1).wasVisited());
+		assertSame(copy.getCell(0, 2), copy.getPlayerCell());
+
+		SparseStudentWorldBoard movingCopy = (SparseStudentWorldBoard) moving.clone();
+		assertArrayEquals(moving.getLayout(), movingCopy.getLayout());
+		moving.moveStudents(new Random(3));
+		movingCopy.moveStudents(new Random(3));
+		assertArrayEquals(moving.getLayout(), movingCopy.getLayout());
+	}
+
+	private static int count(byte[] layout, byte content) {
+		int n = 0;
+		for(byte b : layout) {
+			if(b == content) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	// every created cell holds its content and senses its neighbors' contents
+	private static void assertAgreesWithContent(SparseStudentWorldBoard board, int numRows, int numCols) {
+		for(int row=0; row<numRows; row++) {
+			for(int col=0; col<numCols; col++) {
+				StudentWorldCell cell = (StudentWorldCell) board.getCell(row, col);
+				assertEquals(board.getContent(row, col) == StudentWorldBoard.LAYOUT_STUDENT, cell.contains(StudentWorldItem.STUDENT));
+				boolean smell = false;
+				int[] neighbors = {row-1, col, row, col+1, row+1, col, row, col-1};
+				for(int i=0; i<neighbors.length; i+=2) {
+					if(neighbors[i] >= 0 && neighbors[i] < numRows && neighbors[i+1] >= 0 && neighbors[i+1] < numCols) {
+						smell |= board.getContent(neighbors[i], neighbors[i+1]) == StudentWorldBoard.LAYOUT_STUDENT;
+					}
+				}
+				assertEquals(smell, cell.getPercepts().contains(StudentWorldPercept.SMELL));
+			}
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package studentworld.grid;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import gridgames.data.item.MoveItem;
+import studentworld.data.StudentWorldItem;
+import studentworld.data.StudentWorldPercept;
+
+public class StudentWorldBoardTest {
+
+	@Test
+	public void testMovedStudentsKeepPerceptsConsistent() {
+		StudentWorldBoard board = new StudentWorldBoard(9, 7, 10, 13);
+		board.initializeBoard();
+		Random random = new Random(2);
+		for(int turn=0; turn<200; turn++) {
+			board.moveStudents(random);
+			int numStudents = 0;
+			for(int row=0; row<9; row++) {
+				for(int col=0; col<7; col++) {
+					StudentWorldCell cell = (StudentWorldCell) board.getCell(row, col);
+					if(cell.contains(StudentWorldItem.STUDENT)) {
+						numStudents++;
+						assertFalse(cell.contains(StudentWorldItem.DOOR));
+						assertFalse(cell.contains(MoveItem.PLAYER));
+					}
+					boolean smell = false;
+					int[] neighbors = {row-1, col, row, col+1, row+1, col, row, col-1};
+					for(int i=0; i<neighbors.length; i+=2) {
+						if(neighbors[i] >= 0 && neighbors[i] < 9 && neighbors[i+1] >= 0 && neighbors[i+1] < 7) {
+							smell |= board.getCell(neighbors[i], neighbors[i+1]).contains(StudentWorldItem.STUDENT);
+						}
+					}
+					assertEquals(smell, cell.getPercepts().contains(StudentWorldPercept.SMELL));
+				}
+			}
+			assertEquals(10, numStudents);
+		}
+	}
+}
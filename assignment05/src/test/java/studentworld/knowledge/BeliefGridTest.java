@@ -0,0 +1,93 @@
+package studentworld.knowledge;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import gridgames.data.action.MoveAction;
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.data.StudentWorldItem;
+import studentworld.data.StudentWorldPercept;
+import studentworld.display.SilentDisplay;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.grid.StudentWorldCell;
+import studentworld.player.CSPPlayer;
+
+public class BeliefGridTest {
+
+	@Test
+	public void testSmellRaisesAndQuietLowersRisk() {
+		BeliefGrid beliefs = new BeliefGrid(5, 5, 0.2, 0.1, 0.1);
+		assertEquals(0.2, beliefs.getStudentProbability(0, 1), 1e-6);
+		beliefs.observe(0, 0, 1);
+		assertTrue(beliefs.getStudentProbability(0, 1) > 0.2);
+		assertEquals(beliefs.getStudentProbability(0, 1), beliefs.getStudentProbability(1, 0), 1e-6);
+
+		// (1,1) smells nothing, which speaks against (0,1) and (1,0) as well
+		float smelled = beliefs.getStudentProbability(0, 1);
+		beliefs.observe(1, 1, 0);
+		assertTrue(beliefs.getStudentProbability(0, 1) < smelled);
+		assertTrue(beliefs.getStudentProbability(1, 2) < 0.2);
+		assertFalse("a cell is read once", beliefs.observe(1, 1, 1));
+		assertEquals(4, beliefs.getFringeCells().length);
+	}
+
+	@Test
+	public void testContradictoryReadingsAreTolerated() {
+		BeliefGrid beliefs = new BeliefGrid(1, 3, 0.3, 0.05, 0.05);
+		// (0,0) smells a student, only (0,1) could hold it, yet the player stands there next
+		beliefs.observe(0, 0, 1);
+		assertTrue(beliefs.getStudentProbability(0, 1) > 0.8);
+		beliefs.observe(0, 1, 2);
+		assertEquals(0, beliefs.getStudentProbability(0, 1), 0);
+		assertEquals(0, beliefs.getDoorProbability(0, 1), 0);
+		assertEquals(1, beliefs.getDoorProbability(0, 2), 1e-6);
+		float risk = beliefs.getStudentProbability(0, 2);
+		assertTrue(risk > 0 && risk < 1);
+	}
+
+	@Test
+	public void testDoorProbabilitiesSumToOne() {
+		StudentWorldBoard board = new StudentWorldBoard(8, 8, 6, 5);
+		board.initializeBoard();
+		BeliefGrid beliefs = new BeliefGrid(8, 8, 0.1, 0.1, 0.05);
+		Random random = new Random(5);
+		for(int i=0; i<20; i++) {
+			StudentWorldCell cell = (StudentWorldCell) board.getCell(random.nextInt(8), random.nextInt(8));
+			if(!cell.contains(StudentWorldItem.STUDENT)) {
+				beliefs.observe(cell.getRow(), cell.getCol(), StudentWorldPercept.getSignature(cell.getPercepts()));
+			}
+		}
+		double total = 0;
+		for(int row=0; row<8; row++) {
+			for(int col=0; col<8; col++) {
+				float door = beliefs.getDoorProbability(row, col);
+				assertTrue(door >= 0 && door <= 1);
+				total += door;
+				if(beliefs.isObserved(row, col)) {
+					assertEquals(0, beliefs.getStudentProbability(row, col), 0);
+				}
+			}
+		}
+		assertEquals(1, total, 1e-4);
+	}
+
+	@Test
+	public void testNoisyPlayerStopsTheSampler() {
+		StudentWorldBoard board = new StudentWorldBoard(5, 5, 3, 2);
+		board.initializeBoard();
+		CSPPlayer player = new CSPPlayer(MoveAction.getAllActions(), new SilentDisplay(), board.getPlayerCell(), null,
+				StudentWorldConstraintSolver.Backend.SAT, 5, 5);
+		player.setPrintSolverVariables(false);
+		player.setSampling(2);
+		assertNotNull(player.getActionIfAny());
+		WorldSampler sampler = player.getWorldSampler();
+		assertFalse(sampler.isShutdown());
+
+		player.setNoisyPercepts(3 / 25.0, 0.1, 0.1);
+		assertTrue(sampler.isShutdown());
+		assertNull(player.getWorldSampler());
+	}
+}
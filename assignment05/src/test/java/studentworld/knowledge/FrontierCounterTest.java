@@ -0,0 +1,46 @@
+package studentworld.knowledge;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class FrontierCounterTest {
+
+	@Test
+	public void testSharedCandidateIsMostLikely() {
+		LocalRuleInference rules = new LocalRuleInference(5, 5);
+		rules.observe(0, 0, 0);
+		rules.observe(0, 1, 1);
+		rules.observe(1, 0, 1);
+		BoardKnowledge knowledge = rules.getKnowledge().copy();
+
+		// (0,2) or (1,1) holds a student, and (1,1) or (2,0): 5 placements agree
+		assertTrue(new FrontierCounter(5, 5).count(rules, knowledge, rules.getFringeCells(), Long.MAX_VALUE));
+		assertEquals(4f / 5, knowledge.getStudentProbability(1, 1), 1e-6);
+		assertEquals(3f / 5, knowledge.getStudentProbability(0, 2), 1e-6);
+		assertEquals(3f / 5, knowledge.getStudentProbability(2, 0), 1e-6);
+	}
+
+	@Test
+	public void testKnownCellsGetNoEstimate() {
+		LocalRuleInference rules = new LocalRuleInference(5, 5);
+		rules.observe(0, 0, 0);
+		rules.observe(0, 1, 1);
+		BoardKnowledge knowledge = rules.getKnowledge().copy();
+
+		assertTrue(new FrontierCounter(5, 5).count(rules, knowledge, rules.getFringeCells(), Long.MAX_VALUE));
+		assertTrue(knowledge.isSafe(1, 0));
+		assertTrue(Float.isNaN(knowledge.getStudentProbability(1, 0)));
+		assertEquals(2f / 3, knowledge.getStudentProbability(0, 2), 1e-6);
+		assertEquals(2f / 3, knowledge.getStudentProbability(1, 1), 1e-6);
+	}
+
+	@Test
+	public void testCopyKeepsEstimates() {
+		BoardKnowledge knowledge = new BoardKnowledge(2, 2);
+		knowledge.setStudentProbability(1, 0, 0.25f);
+
+		assertEquals(0.25f, knowledge.copy().getStudentProbability(1, 0), 0);
+		assertTrue(Float.isNaN(knowledge.copy().getStudentProbability(0, 0)));
+	}
+}
@@ -0,0 +1,144 @@
+package studentworld.knowledge;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import studentworld.data.PerceptRule;
+import studentworld.data.StudentWorldItem;
+import studentworld.data.StudentWorldPercept;
+
+public class KnowledgeCacheTest {
+
+	@Test
+	public void testKeyIsOrderIndependent() {
+		Set<StudentWorldPercept> smell = EnumSet.of(StudentWorldPercept.SMELL);
+		Set<StudentWorldPercept> none = EnumSet.noneOf(StudentWorldPercept.class);
+
+		KnowledgeKey first = new KnowledgeKey(5, 5);
+		first.observe(0, 0, none);
+		first.observe(0, 1, smell);
+		first.observe(1, 0, none);
+
+		KnowledgeKey second = new KnowledgeKey(5, 5);
+		second.observe(1, 0, none);
+		second.observe(0, 0, none);
+		second.observe(0, 1, smell);
+
+		assertEquals("keys should not depend on visiting order", first.getKey(), second.getKey());
+		assertEquals(3, first.getNumObserved());
+	}
+
+	@Test
+	public void testRevisitDoesNotChangeKey() {
+		KnowledgeKey key = new KnowledgeKey(5, 5);
+		key.observe(0, 0, EnumSet.of(StudentWorldPercept.GLOW));
+		long before = key.getKey();
+
+		assertFalse("revisiting a cell should not count as a new observation", key.observe(0, 0, EnumSet.of(StudentWorldPercept.GLOW)));
+		assertEquals(before, key.getKey());
+		assertEquals(StudentWorldPercept.getSignature(EnumSet.of(StudentWorldPercept.GLOW)), key.getSignature(0, 0));
+		assertEquals(-1, key.getSignature(4, 4));
+	}
+
+	@Test
+	public void testDifferentPerceptsGiveDifferentKeys() {
+		KnowledgeKey smelly = new KnowledgeKey(5, 5);
+		smelly.observe(0, 0, EnumSet.of(StudentWorldPercept.SMELL));
+		KnowledgeKey glowy = new KnowledgeKey(5, 5);
+		glowy.observe(0, 0, EnumSet.of(StudentWorldPercept.GLOW));
+		KnowledgeKey larger = new KnowledgeKey(6, 6);
+		larger.observe(0, 0, EnumSet.of(StudentWorldPercept.SMELL));
+
+		assertNotEquals(smelly.getKey(), glowy.getKey());
+		assertNotEquals("board size should be part of the key", smelly.getKey(), larger.getKey());
+	}
+
+	@Test
+	public void testModelIsPartOfTheKey() {
+		long standard = Zobrist.modelKey(0, PerceptRule.STANDARD);
+		PerceptRule widerSmell = new PerceptRule(StudentWorldItem.STUDENT, StudentWorldPercept.SMELL, PerceptRule.Shape.ORTHOGONAL, 2,
+				PerceptRule.Cardinality.AT_LEAST_ONE);
+		assertEquals(standard, Zobrist.modelKey(0, Arrays.asList(PerceptRule.STANDARD_SMELL, PerceptRule.STANDARD_GLOW)));
+		assertNotEquals("rules should be part of the key", standard, Zobrist.modelKey(0, Arrays.asList(widerSmell, PerceptRule.STANDARD_GLOW)));
+		assertNotEquals("backend should be part of the key", standard, Zobrist.modelKey(1, PerceptRule.STANDARD));
+
+		KnowledgeKey first = new KnowledgeKey(5, 5, standard);
+		first.observe(0, 0, EnumSet.of(StudentWorldPercept.SMELL));
+		KnowledgeKey second = new KnowledgeKey(5, 5, Zobrist.modelKey(1, PerceptRule.STANDARD));
+		second.observe(0, 0, EnumSet.of(StudentWorldPercept.SMELL));
+		assertNotEquals(first.getCanonicalKey(), second.getCanonicalKey());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() {
+		KnowledgeCache cache = new KnowledgeCache(2);
+		cache.put(1L, new BoardKnowledge(5, 5));
+		cache.put(2L, new BoardKnowledge(5, 5));
+		// touch 1 so that 2 becomes the eldest entry
+		assertNotNull(cache.get(1L));
+		cache.put(3L, new BoardKnowledge(5, 5));
+
+		assertEquals(2, cache.size());
+		assertNull("least recently used entry should have been evicted", cache.get(2L));
+		assertNotNull(cache.get(1L));
+		assertNotNull(cache.get(3L));
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testHitAndMissCounts() {
+		KnowledgeCache cache = new KnowledgeCache(8);
+		cache.get(42L);
+		cache.put(42L, new BoardKnowledge(5, 5));
+		cache.get(42L);
+		cache.get(42L);
+
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(2.0 / 3.0, cache.getHitRate(), 1e-9);
+	}
+
+	@Test
+	public void testKnowledgePrintsLikeSolverVariables() {
+		BoardKnowledge knowledge = new BoardKnowledge(1, 2);
+		knowledge.setStudent(0, 0, BoardKnowledge.FALSE);
+		knowledge.setDoor(0, 0, BoardKnowledge.FALSE);
+		knowledge.setDoor(0, 1, BoardKnowledge.TRUE);
+
+		assertEquals("student (0,0) = 0\ndoor (0,0) = 0\nstudent (0,1) = [0,1]\ndoor (0,1) = 1\n", knowledge.toString());
+	}
+	@Test
+	public void testMirrorImagesShareCanonicalKey() {
+		KnowledgeKey key = new KnowledgeKey(5, 5);
+		key.observe(0, 0, EnumSet.noneOf(StudentWorldPercept.class));
+		key.observe(0, 1, EnumSet.of(StudentWorldPercept.SMELL));
+		KnowledgeKey mirror = new KnowledgeKey(5, 5);
+		mirror.observe(0, 0, EnumSet.noneOf(StudentWorldPercept.class));
+		mirror.observe(1, 0, EnumSet.of(StudentWorldPercept.SMELL));
+
+		assertNotEquals(key.getKey(), mirror.getKey());
+		assertEquals(key.getCanonicalKey(), mirror.getCanonicalKey());
+		assertEquals(key.getCanonicalStateKey(0, 1), mirror.getCanonicalStateKey(1, 0));
+		assertTrue("exactly one orientation should be canonical", key.isTransposed() != mirror.isTransposed());
+	}
+
+	@Test
+	public void testTransposeMapsCellsBack() {
+		assertEquals(5, DiagonalSymmetry.transposeCell(1, 5));
+		assertEquals(1, DiagonalSymmetry.transposeCell(DiagonalSymmetry.transposeCell(1, 5), 5));
+
+		BoardKnowledge knowledge = new BoardKnowledge(5, 5);
+		knowledge.setStudent(0, 2, BoardKnowledge.TRUE);
+		knowledge.setDoor(3, 1, BoardKnowledge.FALSE);
+		BoardKnowledge transposed = DiagonalSymmetry.transpose(knowledge);
+
+		assertEquals(BoardKnowledge.TRUE, transposed.getStudent(2, 0));
+		assertEquals(BoardKnowledge.FALSE, transposed.getDoor(1, 3));
+		assertEquals(knowledge.toString(), DiagonalSymmetry.transpose(transposed).toString());
+	}
+}
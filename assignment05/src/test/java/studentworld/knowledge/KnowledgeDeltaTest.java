@@ -0,0 +1,48 @@
+package studentworld.knowledge;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class KnowledgeDeltaTest {
+
+	@Test
+	public void testDeltaListsOnlyNewlyDecidedCells() {
+		BoardKnowledge decided = new BoardKnowledge(10, 10);
+		BoardKnowledge turn = new BoardKnowledge(10, 10);
+		turn.setStudent(0, 1, BoardKnowledge.FALSE);
+		turn.setDoor(9, 9, BoardKnowledge.TRUE);
+
+		KnowledgeDelta delta = decided.addDecided(turn);
+		assertEquals(2, delta.size());
+		assertEquals(1, delta.getCell(0));
+		assertEquals(BoardKnowledge.FALSE, delta.getStudent(0));
+		assertEquals(BoardKnowledge.UNKNOWN, delta.getDoor(0));
+		assertEquals(99, delta.getCell(1));
+		assertEquals(BoardKnowledge.TRUE, delta.getDoor(1));
+		assertTrue(decided.isDoor(9, 9));
+
+		// the same turn again changes nothing, a turn knowing less doesn't undo anything
+		assertTrue(decided.addDecided(turn).isEmpty());
+		assertTrue(decided.addDecided(new BoardKnowledge(10, 10)).isEmpty());
+		assertTrue(decided.isSafe(0, 1));
+	}
+
+	@Test
+	public void testValuesSurviveBitPacking() {
+		BoardKnowledge knowledge = new BoardKnowledge(9, 9);
+		knowledge.setStudent(8, 8, BoardKnowledge.TRUE);
+		knowledge.setStudent(7, 1, BoardKnowledge.FALSE);
+		knowledge.setDoor(0, 0, BoardKnowledge.FALSE);
+		knowledge.setStudent(8, 8, BoardKnowledge.FALSE);
+		BoardKnowledge copy = knowledge.copy();
+
+		assertEquals(BoardKnowledge.FALSE, copy.getStudent(8, 8));
+		assertEquals(BoardKnowledge.FALSE, copy.getStudent(7, 1));
+		assertEquals(BoardKnowledge.FALSE, copy.getDoor(0, 0));
+		assertEquals(BoardKnowledge.UNKNOWN, copy.getDoor(8, 8));
+		copy.setStudent(7, 1, BoardKnowledge.UNKNOWN);
+		assertEquals(BoardKnowledge.UNKNOWN, copy.getStudent(7, 1));
+		assertEquals(BoardKnowledge.FALSE, knowledge.getStudent(7, 1));
+	}
+}
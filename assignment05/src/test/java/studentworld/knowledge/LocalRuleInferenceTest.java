@@ -0,0 +1,113 @@
+package studentworld.knowledge;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import studentworld.data.StudentWorldPercept;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.grid.StudentWorldCell;
+
+public class LocalRuleInferenceTest {
+
+	@Test
+	public void testNoPerceptsMakeNeighborsSafe() {
+		LocalRuleInference rules = new LocalRuleInference(5, 5);
+		rules.observe(0, 0, 0);
+
+		assertTrue(rules.getKnowledge().isSafe(0, 1));
+		assertTrue(rules.getKnowledge().isSafe(1, 0));
+		assertEquals(BoardKnowledge.UNKNOWN, rules.getKnowledge().getStudent(1, 1));
+		assertTrue("a safe unvisited neighbor should be enough to decide", rules.isDecisive());
+	}
+
+	@Test
+	public void testSingleCandidateIsSettled() {
+		LocalRuleInference rules = new LocalRuleInference(5, 5);
+		// (0,1) smells and of its neighbors only (0,2) hasn't been visited
+		rules.observe(0, 0, 0);
+		rules.observe(1, 1, 0);
+		rules.observe(0, 1, 1);
+
+		assertEquals(BoardKnowledge.TRUE, rules.getKnowledge().getStudent(0, 2));
+		assertEquals(BoardKnowledge.FALSE, rules.getKnowledge().getDoor(0, 2));
+	}
+
+	@Test
+	public void testGlowLocatesDoor() {
+		LocalRuleInference rules = new LocalRuleInference(5, 5);
+		rules.observe(0, 0, 0);
+		rules.observe(1, 0, 2);
+		rules.observe(1, 1, 0);
+
+		// (1,0) glows, its neighbors (0,0) and (1,1) are visited, so the door is (2,0)
+		assertTrue(rules.getKnowledge().isDoor(2, 0));
+		assertEquals(BoardKnowledge.FALSE, rules.getKnowledge().getDoor(4, 4));
+		assertTrue(rules.isDecisive());
+	}
+
+	@Test
+	public void testRulesAgreeWithRandomBoards() {
+		Random random = new Random(17);
+		for(int game=0; game<500; game++) {
+			StudentWorldBoard board = new StudentWorldBoard(5, 5, 5, random.nextLong());
+			board.initializeBoard();
+			byte[] layout = board.getLayout();
+			LocalRuleInference rules = new LocalRuleInference(5, 5);
+
+			// visit random empty cells, as a player could before finding the door
+			for(int i=0; i<12; i++) {
+				int cell = random.nextInt(25);
+				if(layout[cell] == StudentWorldBoard.LAYOUT_EMPTY) {
+					StudentWorldCell visited = (StudentWorldCell) board.getCell(cell / 5, cell % 5);
+					rules.observe(cell / 5, cell % 5, StudentWorldPercept.getSignature(visited.getPercepts()));
+				}
+			}
+
+			BoardKnowledge knowledge = rules.getKnowledge();
+			for(int cell=0; cell<25; cell++) {
+				byte student = knowledge.getStudent(cell / 5, cell % 5);
+				byte door = knowledge.getDoor(cell / 5, cell % 5);
+				if(student != BoardKnowledge.UNKNOWN) {
+					assertEquals("student at " + cell, layout[cell] == StudentWorldBoard.LAYOUT_STUDENT, student == BoardKnowledge.TRUE);
+				}
+				if(door != BoardKnowledge.UNKNOWN) {
+					assertEquals("door at " + cell, layout[cell] == StudentWorldBoard.LAYOUT_DOOR, door == BoardKnowledge.TRUE);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBatchMatchesOneByOne() {
+		Random random = new Random(23);
+		for(int game=0; game<200; game++) {
+			StudentWorldBoard board = new StudentWorldBoard(6, 6, 5, random.nextLong());
+			board.initializeBoard();
+			byte[] layout = board.getLayout();
+			LocalRuleInference single = new LocalRuleInference(6, 6);
+			LocalRuleInference batched = new LocalRuleInference(6, 6);
+			int[] observations = new int[3 * 20];
+			int size = 0;
+			for(int i=0; i<20; i++) {
+				int cell = random.nextInt(36);
+				if(layout[cell] == StudentWorldBoard.LAYOUT_EMPTY) {
+					StudentWorldCell visited = (StudentWorldCell) board.getCell(cell / 6, cell % 6);
+					int signature = StudentWorldPercept.getSignature(visited.getPercepts());
+					single.observe(cell / 6, cell % 6, signature);
+					observations[size++] = cell / 6;
+					observations[size++] = cell % 6;
+					observations[size++] = signature;
+				}
+			}
+			batched.observeAll(Arrays.copyOf(observations, size));
+
+			assertEquals(single.getKey(), batched.getKey());
+			assertEquals(single.getKnowledge().toString(), batched.getKnowledge().toString());
+			assertEquals(single.isDecisive(), batched.isDecisive());
+		}
+	}
+}
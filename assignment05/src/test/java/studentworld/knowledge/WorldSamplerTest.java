@@ -0,0 +1,78 @@
+package studentworld.knowledge;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class WorldSamplerTest {
+
+	@Test
+	public void testAgreesWithCounting() {
+		LocalRuleInference rules = checkerboard(4, 4);
+		BoardKnowledge counted = rules.getKnowledge().copy();
+		BoardKnowledge sampled = rules.getKnowledge().copy();
+		assertTrue(new FrontierCounter(4, 4).count(rules, counted, rules.getFringeCells(), Long.MAX_VALUE));
+		WorldSampler sampler = new WorldSampler(4, 4, 2, 1);
+		try {
+			assertTrue(sampler.sample(rules, sampled, rules.getFringeCells(), Long.MAX_VALUE));
+			for(int cell : rules.getFringeCells()) {
+				float radius = sampler.getConfidenceRadius(cell / 4, cell % 4);
+				assertTrue(radius >= 0 && radius < 0.05);
+				assertEquals(counted.getStudentProbability(cell / 4, cell % 4), sampled.getStudentProbability(cell / 4, cell % 4), 0.05);
+			}
+		} finally {
+			sampler.shutdown();
+		}
+	}
+
+	@Test
+	public void testEstimatesWhatCountingCannotFinish() {
+		// one group of 200 open cells, far too many placements to enumerate
+		LocalRuleInference rules = checkerboard(20, 20);
+		BoardKnowledge knowledge = rules.getKnowledge().copy();
+		long deadline = System.nanoTime() + 100 * 1000000L;
+		assertFalse(new FrontierCounter(20, 20).count(rules, knowledge, rules.getFringeCells(), deadline));
+		WorldSampler sampler = new WorldSampler(20, 20, 2, 1);
+		try {
+			assertTrue(sampler.sample(rules, knowledge, rules.getFringeCells(), System.nanoTime() + 200 * 1000000L));
+			assertTrue(sampler.getNumSweeps() > 0);
+			for(int cell : rules.getFringeCells()) {
+				float probability = knowledge.getStudentProbability(cell / 20, cell % 20);
+				assertTrue(probability > 0 && probability < 1);
+			}
+			assertTrue(Float.isNaN(sampler.getConfidenceRadius(0, 0)));
+		} finally {
+			sampler.shutdown();
+		}
+	}
+
+	@Test
+	public void testCountedCellsAreKept() {
+		LocalRuleInference rules = new LocalRuleInference(5, 5);
+		rules.observe(0, 0, 0);
+		rules.observe(0, 1, 1);
+		BoardKnowledge knowledge = rules.getKnowledge().copy();
+		knowledge.setStudentProbability(0, 2, 0.5f);
+		WorldSampler sampler = new WorldSampler(5, 5, 1, 1);
+		try {
+			assertTrue(sampler.sample(rules, knowledge, rules.getFringeCells(), Long.MAX_VALUE));
+			assertEquals(0.5f, knowledge.getStudentProbability(0, 2), 0);
+			assertEquals(2f / 3, knowledge.getStudentProbability(1, 1), 0.05);
+		} finally {
+			sampler.shutdown();
+		}
+	}
+
+	// every other cell visited and smelling, the rest open and all in one group
+	private static LocalRuleInference checkerboard(int numRows, int numCols) {
+		LocalRuleInference rules = new LocalRuleInference(numRows, numCols);
+		for(int row=0; row<numRows; row++) {
+			for(int col=0; col<numCols; col++) {
+				if((row + col) % 2 == 0) {
+					rules.observe(row, col, 1);
+				}
+			}
+		}
+		return rules;
+	}
+}
@@ -0,0 +1,76 @@
+package studentworld.policy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import gridgames.data.action.MoveAction;
+import studentworld.StudentWorld;
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.display.SilentDisplay;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.knowledge.BoardKnowledge;
+import studentworld.knowledge.LocalRuleInference;
+import studentworld.player.CSPPlayer;
+
+public class LookaheadPlannerTest {
+
+	@Test
+	public void testAvoidsTheSharedCandidate() {
+		LocalRuleInference rules = new LocalRuleInference(5, 5);
+		rules.observe(0, 0, 0);
+		rules.observe(0, 1, 1);
+		rules.observe(1, 0, 1);
+		// (1,1) holds a student in 4 of the 5 placements, (0,2) and (2,0) in 3
+		LookaheadPlanner planner = new LookaheadPlanner(5, 5, 2, 0.2, 2);
+		try {
+			int cell = planner.plan(rules, rules.getKnowledge(), 0, Long.MAX_VALUE);
+			assertTrue(cell == 2 || cell == 10);
+			assertEquals(cell, planner.plan(rules, rules.getKnowledge(), 0, Long.MAX_VALUE));
+			assertTrue("the second plan reuses the counted states", planner.getNumEstimateHits() > 0);
+		} finally {
+			planner.shutdown();
+		}
+	}
+
+	@Test
+	public void testGoesForAKnownDoor() {
+		LocalRuleInference rules = new LocalRuleInference(5, 5);
+		rules.observe(0, 0, 2);
+		rules.observe(0, 1, 0);
+		assertEquals(BoardKnowledge.TRUE, rules.getKnowledge().getDoor(1, 0));
+		LookaheadPlanner planner = new LookaheadPlanner(5, 5, 3, 0.2, 1);
+		try {
+			assertEquals(5, planner.plan(rules, rules.getKnowledge(), 1, Long.MAX_VALUE));
+		} finally {
+			planner.shutdown();
+		}
+	}
+
+	@Test
+	public void testPastTheDeadlineStillPicksAFringeCell() {
+		LocalRuleInference rules = new LocalRuleInference(6, 6);
+		rules.observe(0, 0, 1);
+		LookaheadPlanner planner = new LookaheadPlanner(6, 6, 4, 0.2, 2);
+		try {
+			int cell = planner.plan(rules, rules.getKnowledge(), 0, System.nanoTime() - 1);
+			assertTrue(cell == 1 || cell == 6);
+		} finally {
+			planner.shutdown();
+		}
+	}
+
+	@Test
+	public void testThreadsStopWithTheGame() {
+		StudentWorldBoard board = new StudentWorldBoard(5, 5, 3, 2);
+		board.initializeBoard();
+		SilentDisplay display = new SilentDisplay();
+		CSPPlayer player = new CSPPlayer(MoveAction.getAllActions(), display, board.getPlayerCell(), null,
+				StudentWorldConstraintSolver.Backend.SAT, 5, 5);
+		player.setPrintSolverVariables(false);
+		player.setLookahead(2, 0.1, 2);
+		player.setSampling(2);
+		new StudentWorld(display, board).play(player);
+		assertTrue(player.getPlanner().isShutdown());
+	}
+}
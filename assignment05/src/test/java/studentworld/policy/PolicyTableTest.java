@@ -0,0 +1,161 @@
+package studentworld.policy;
+
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+import gridgames.data.action.MoveAction;
+import studentworld.StudentWorld;
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.data.StudentWorldPercept;
+import studentworld.display.SilentDisplay;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.grid.StudentWorldCell;
+import studentworld.knowledge.DiagonalSymmetry;
+import studentworld.knowledge.KnowledgeKey;
+import studentworld.player.CSPPlayer;
+
+public class PolicyTableTest {
+
+	@Test
+	public void testLookupsMatchTheBuiltPolicy() throws Exception {
+		PolicyTableBuilder builder = new PolicyTableBuilder(4, 4, 2);
+		builder.build();
+		File file = File.createTempFile("studentworld", ".policy");
+		file.deleteOnExit();
+		builder.write(file);
+
+		PolicyTable table = PolicyTable.load(file);
+		assertEquals(4, table.getNumRows());
+		assertEquals(4, table.getNumCols());
+		assertEquals(2, table.getNumStudents());
+		long[] keys = builder.getPolicyKeys();
+		assertEquals(builder.getNumPolicyStates(), keys.length);
+		assertEquals(keys.length, table.getNumEntries());
+		for(long key : keys) {
+			assertEquals(builder.getPolicyTarget(key), table.lookup(key));
+		}
+
+		// the table plays whole games on the boards it was built for
+		for(int seed=0; seed<50; seed++) {
+			StudentWorldBoard board = new StudentWorldBoard(4, 4, 2, seed);
+			board.initializeBoard();
+			SilentDisplay display = new SilentDisplay();
+			CSPPlayer player = new CSPPlayer(MoveAction.getAllActions(), display, board.getPlayerCell(), table,
+					StudentWorldConstraintSolver.Backend.SAT);
+			player.setPrintSolverVariables(false);
+			new StudentWorld(display, board).play(player);
+			assertTrue(board.didWin() || board.didLose());
+		}
+	}
+
+	@Test
+	public void testInvalidTargetsFallBackToTheSolver() throws Exception {
+		PolicyTableBuilder builder = new PolicyTableBuilder(4, 4, 2);
+		builder.build();
+		File file = File.createTempFile("studentworld", ".policy");
+		file.deleteOnExit();
+		builder.write(file);
+		// every entry answers with the start cell, as a false match on another state could
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			for(long slot=PolicyTable.HEADER_SIZE; slot<raf.length(); slot+=PolicyTable.SLOT_SIZE) {
+				raf.seek(slot);
+				if(raf.readInt() != 0) {
+					raf.writeByte(0);
+				}
+			}
+		} finally {
+			raf.close();
+		}
+		PolicyTable table = PolicyTable.load(file);
+
+		for(int seed=0; seed<50; seed++) {
+			StudentWorldBoard board = new StudentWorldBoard(4, 4, 2, seed);
+			board.initializeBoard();
+			SilentDisplay display = new SilentDisplay();
+			CSPPlayer player = new CSPPlayer(MoveAction.getAllActions(), display, board.getPlayerCell(), table,
+					StudentWorldConstraintSolver.Backend.SAT);
+			player.setPrintSolverVariables(false);
+			new StudentWorld(display, board).play(player);
+
+			StudentWorldBoard sameBoard = new StudentWorldBoard(4, 4, 2, seed);
+			sameBoard.initializeBoard();
+			CSPPlayer solverOnly = new CSPPlayer(MoveAction.getAllActions(), display, sameBoard.getPlayerCell(), null,
+					StudentWorldConstraintSolver.Backend.SAT, 4, 4);
+			solverOnly.setPrintSolverVariables(false);
+			new StudentWorld(display, sameBoard).play(solverOnly);
+
+			// the table is never followed, so the game is the solver's
+			assertEquals(sameBoard.didWin(), board.didWin());
+			assertEquals(solverOnly.getNumActionsExecuted(), player.getNumActionsExecuted());
+		}
+	}
+
+	@Test
+	public void testSafeCellsFoundWhileCheckingATargetAreUsed() throws Exception {
+		// one student at (0,2), so (0,1) smells and (1,0) is the only fringe cell known to be safe there
+		byte[] layout = new byte[16];
+		layout[2] = StudentWorldBoard.LAYOUT_STUDENT;
+		layout[15] = StudentWorldBoard.LAYOUT_DOOR;
+		StudentWorldBoard board = new StudentWorldBoard(4, 4, 1);
+		board.initializeBoard(layout);
+
+		// the table steps right, then answers (1,1) next to the smell, which the solver turns down
+		KnowledgeKey key = new KnowledgeKey(4, 4);
+		key.observe(0, 0, 0);
+		long startKey = key.getCanonicalStateKey(0, 0);
+		int startTarget = key.isStateTransposed(0, 0) ? DiagonalSymmetry.transposeCell(1, 4) : 1;
+		key.observe(0, 1, StudentWorldPercept.getSignature(((StudentWorldCell) board.getCell(0, 1)).getPercepts()));
+		long smellKey = key.getCanonicalStateKey(0, 1);
+		int smellTarget = key.isStateTransposed(0, 1) ? DiagonalSymmetry.transposeCell(5, 4) : 5;
+		File file = File.createTempFile("studentworld", ".policy");
+		file.deleteOnExit();
+		writeTable(file, new long[] {startKey, smellKey}, new int[] {startTarget, smellTarget});
+
+		SilentDisplay display = new SilentDisplay();
+		CSPPlayer player = new CSPPlayer(MoveAction.getAllActions(), display, board.getPlayerCell(), PolicyTable.load(file),
+				StudentWorldConstraintSolver.Backend.SAT);
+		player.setPrintSolverVariables(false);
+		new StudentWorld(display, board).play(player);
+		assertTrue(board.didWin());
+		assertEquals(0, player.getNumRiskyMoves());
+	}
+
+	// a 4x4 table with one student holding just the given entries, laid out as PolicyTableBuilder.write does
+	private static void writeTable(File file, long[] keys, int[] targets) throws IOException {
+		int capacity = 16;
+		int[] slotFingerprints = new int[capacity];
+		byte[] slotCells = new byte[capacity];
+		for(int i=0; i<keys.length; i++) {
+			int slot = PolicyTable.slotFor(keys[i], capacity - 1);
+			while(slotFingerprints[slot] != 0) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+			slotFingerprints[slot] = PolicyTable.fingerprint(keys[i]);
+			slotCells[slot] = (byte) targets[i];
+		}
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+		try {
+			out.writeInt(PolicyTable.MAGIC);
+			out.writeInt(PolicyTable.VERSION);
+			out.writeInt(4);
+			out.writeInt(4);
+			out.writeInt(1);
+			out.writeInt(capacity);
+			out.writeLong(keys.length);
+			for(int slot=0; slot<capacity; slot++) {
+				out.writeInt(slotFingerprints[slot]);
+				out.writeByte(slotCells[slot]);
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package studentworld.sat;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import studentworld.data.StudentWorldItem;
+import studentworld.data.StudentWorldPercept;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.grid.StudentWorldCell;
+import studentworld.knowledge.BoardKnowledge;
+
+public class SatSolverTest {
+
+	@Test
+	public void testAgreesWithBruteForce() {
+		Random random = new Random(3);
+		for(int instance=0; instance<500; instance++) {
+			int numVars = 3 + random.nextInt(8);
+			int[][] clauses = new int[random.nextInt(4 * numVars)][];
+			SatSolver solver = new SatSolver();
+			solver.ensureVariables(numVars);
+			for(int i=0; i<clauses.length; i++) {
+				clauses[i] = new int[1 + random.nextInt(3)];
+				for(int j=0; j<clauses[i].length; j++) {
+					int var = random.nextInt(numVars);
+					clauses[i][j] = random.nextBoolean() ? SatSolver.positive(var) : SatSolver.negative(var);
+				}
+				solver.addClause(clauses[i]);
+			}
+
+			int numModels = 0;
+			int[] numTrue = new int[numVars];
+			for(int assignment=0; assignment<(1 << numVars); assignment++) {
+				if(satisfies(clauses, assignment)) {
+					numModels++;
+					for(int var=0; var<numVars; var++) {
+						numTrue[var] += (assignment >> var) & 1;
+					}
+				}
+			}
+
+			int[] variables = new int[numVars];
+			for(int var=0; var<numVars; var++) {
+				variables[var] = var;
+			}
+			byte[] backbone = solver.getBackbone(variables);
+			assertEquals(numModels > 0, backbone != null);
+			for(int var=0; numModels > 0 && var<numVars; var++) {
+				byte expected = numTrue[var] == numModels ? SatSolver.TRUE : numTrue[var] == 0 ? SatSolver.FALSE : SatSolver.UNDEF;
+				assertEquals("instance " + instance + " var " + var, expected, backbone[var]);
+				assertEquals(numTrue[var] > 0, solver.solve(SatSolver.positive(var)));
+			}
+		}
+	}
+
+	@Test
+	public void testBoardKnowledgeIsSound() {
+		Random random = new Random(8);
+		for(int game=0; game<100; game++) {
+			StudentWorldBoard board = new StudentWorldBoard(6, 6, 6, random.nextLong());
+			board.initializeBoard();
+			byte[] layout = board.getLayout();
+			StudentWorldCnf cnf = new StudentWorldCnf(6, 6);
+			int[] cells = new int[36];
+			for(int cell=0; cell<36; cell++) {
+				cells[cell] = cell;
+				if(layout[cell] == StudentWorldBoard.LAYOUT_EMPTY && random.nextInt(3) == 0) {
+					StudentWorldCell visited = (StudentWorldCell) board.getCell(cell / 6, cell % 6);
+					cnf.observe(cell / 6, cell % 6, StudentWorldPercept.getSignature(visited.getPercepts()));
+				}
+			}
+
+			BoardKnowledge knowledge = cnf.getKnowledge(cells);
+			assertNotNull("the real board satisfies the observations", knowledge);
+			for(int cell=0; cell<36; cell++) {
+				byte student = knowledge.getStudent(cell / 6, cell % 6);
+				byte door = knowledge.getDoor(cell / 6, cell % 6);
+				if(student != BoardKnowledge.UNKNOWN) {
+					assertEquals(layout[cell] == StudentWorldBoard.LAYOUT_STUDENT, student == BoardKnowledge.TRUE);
+				}
+				if(door != BoardKnowledge.UNKNOWN) {
+					assertEquals(layout[cell] == StudentWorldBoard.LAYOUT_DOOR, door == BoardKnowledge.TRUE);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDoorLeftForLastCell() {
+		// (0,0) and (0,1) can't hold the door, and asking for (0,2) gives the last cell variables
+		StudentWorldCnf cnf = new StudentWorldCnf(1, 3);
+		cnf.observe(0, 0, 0);
+		assertEquals(2, cnf.getNumCellsWithVariables());
+		assertEquals(BoardKnowledge.TRUE, cnf.getKnowledge(new int[] {2}).getDoor(0, 2));
+
+		// with a fourth cell still without variables the door may be there instead
+		cnf = new StudentWorldCnf(1, 5);
+		cnf.observe(0, 0, 0);
+		assertEquals(BoardKnowledge.UNKNOWN, cnf.getKnowledge(new int[] {2}).getDoor(0, 2));
+		assertEquals(3, cnf.getNumCellsWithVariables());
+	}
+
+	@Test
+	public void testVariablesOnlyNearObservations() {
+		StudentWorldCnf cnf = new StudentWorldCnf(1000, 1000);
+		cnf.observe(0, 0, 1);
+		cnf.observe(0, 1, 0);
+		assertEquals(5, cnf.getNumCellsWithVariables());
+		assertTrue(cnf.getKnowledge(new int[] {2}).isSafe(0, 2));
+	}
+
+	@Test
+	public void testAssumedBackboneIsConditional() {
+		SatSolver solver = new SatSolver();
+		int assumption = solver.newVariable();
+		int var = solver.newVariable();
+		solver.addClause(SatSolver.negative(assumption), SatSolver.positive(var));
+		int[] assumptions = {SatSolver.positive(assumption)};
+		assertEquals(SatSolver.TRUE, solver.getBackbone(new int[] {var}, assumptions, Long.MAX_VALUE)[0]);
+		assertEquals(SatSolver.UNDEF, solver.getBackbone(new int[] {var})[0]);
+
+		solver.addClause(SatSolver.negative(assumption));
+		assertNull(solver.getBackbone(new int[] {var}, assumptions, Long.MAX_VALUE));
+		assertEquals(SatSolver.UNDEF, solver.getBackbone(new int[] {var})[0]);
+	}
+
+	@Test
+	public void testMovingStudentsOnlyKeepWhatStillHolds() {
+		// (0,0) smells nothing: (0,1) is safe, after a move a student may come from (0,2)
+		StudentWorldCnf cnf = new StudentWorldCnf(1, 5);
+		cnf.setMovingStudents();
+		cnf.observe(0, 0, 0);
+		assertTrue(cnf.getKnowledge(new int[] {1}).isSafe(0, 1));
+		cnf.studentsMoved();
+		assertEquals(BoardKnowledge.UNKNOWN, cnf.getKnowledge(new int[] {1}).getStudent(0, 1));
+		// the door stays where it was ruled out
+		assertEquals(BoardKnowledge.FALSE, cnf.getKnowledge(new int[] {1}).getDoor(0, 1));
+
+		// with (0,2) safe as well nothing could have moved onto (0,1)
+		cnf = new StudentWorldCnf(1, 5);
+		cnf.setMovingStudents();
+		cnf.observe(0, 0, 0);
+		cnf.observe(0, 1, 0);
+		cnf.studentsMoved();
+		assertTrue(cnf.getKnowledge(new int[] {1}).isSafe(0, 1));
+		assertEquals(BoardKnowledge.UNKNOWN, cnf.getKnowledge(new int[] {2}).getStudent(0, 2));
+		cnf.studentsMoved();
+		cnf.studentsMoved();
+		assertEquals(BoardKnowledge.UNKNOWN, cnf.getKnowledge(new int[] {1}).getStudent(0, 1));
+	}
+
+	@Test
+	public void testMovingStudentsKnowledgeIsSound() {
+		Random random = new Random(4);
+		for(int game=0; game<50; game++) {
+			StudentWorldBoard board = new StudentWorldBoard(7, 7, 5, random.nextLong());
+			board.initializeBoard();
+			StudentWorldCnf cnf = new StudentWorldCnf(7, 7);
+			cnf.setMovingStudents();
+			int[] cells = new int[49];
+			for(int cell=0; cell<49; cell++) {
+				cells[cell] = cell;
+			}
+			for(int turn=0; turn<40; turn++) {
+				if(turn % 2 == 1) {
+					board.moveStudents(random);
+					cnf.studentsMoved();
+				}
+				//observe a few empty cells, students never move onto the door or a cell with the player
+				for(int cell=0; cell<49; cell++) {
+					StudentWorldCell visited = (StudentWorldCell) board.getCell(cell / 7, cell % 7);
+					if(visited.getItems().isEmpty() && random.nextInt(8) == 0) {
+						cnf.observe(cell / 7, cell % 7, StudentWorldPercept.getSignature(visited.getPercepts()));
+					}
+				}
+				BoardKnowledge knowledge = cnf.getKnowledge(cells);
+				assertNotNull("the real board satisfies the observations", knowledge);
+				for(int cell=0; cell<49; cell++) {
+					byte student = knowledge.getStudent(cell / 7, cell % 7);
+					if(student != BoardKnowledge.UNKNOWN) {
+						assertEquals(board.getCell(cell / 7, cell % 7).contains(StudentWorldItem.STUDENT), student == BoardKnowledge.TRUE);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBatchedObservationsMatchOneByOne() {
+		Random random = new Random(9);
+		int[] cells = new int[64];
+		for(int cell=0; cell<64; cell++) {
+			cells[cell] = cell;
+		}
+		for(int game=0; game<50; game++) {
+			StudentWorldBoard board = new StudentWorldBoard(8, 8, 7, random.nextLong());
+			board.initializeBoard();
+			StudentWorldCnf single = new StudentWorldCnf(8, 8);
+			StudentWorldCnf batched = new StudentWorldCnf(8, 8);
+			int[] observations = new int[3 * 64];
+			int size = 0;
+			for(int cell=0; cell<64; cell++) {
+				StudentWorldCell visited = (StudentWorldCell) board.getCell(cell / 8, cell % 8);
+				if(visited.getItems().isEmpty() && random.nextInt(3) == 0) {
+					int signature = StudentWorldPercept.getSignature(visited.getPercepts());
+					single.observe(cell / 8, cell % 8, signature);
+					observations[size++] = cell / 8;
+					observations[size++] = cell % 8;
+					observations[size++] = signature;
+				}
+			}
+			assertEquals(size > 0, batched.observeAll(Arrays.copyOf(observations, size)));
+			assertEquals(single.getKnowledge(cells).toString(), batched.getKnowledge(cells).toString());
+		}
+	}
+
+	private static boolean satisfies(int[][] clauses, int assignment) {
+		for(int[] clause : clauses) {
+			boolean satisfied = false;
+			for(int literal : clause) {
+				boolean value = ((assignment >> SatSolver.variable(literal)) & 1) == 1;
+				if(value == (literal == SatSolver.positive(SatSolver.variable(literal)))) {
+					satisfied = true;
+				}
+			}
+			if(!satisfied) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,204 @@
+package studentworld.service;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.data.StudentWorldPercept;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.grid.StudentWorldCell;
+import studentworld.knowledge.BoardKnowledge;
+
+public class SolverServiceTest {
+
+	@Test
+	public void testSessionsAnswerLikeTheirOwnSolver() throws InterruptedException {
+		StudentWorldBoard board = new StudentWorldBoard(6, 6, 4, 21);
+		board.initializeBoard();
+		SolverService service = new SolverService(StudentWorldConstraintSolver.Backend.SAT, 6, 6, 2, 8, 60000);
+		try {
+			long first = service.openSession();
+			long second = service.openSession();
+			assertTrue(first != second);
+
+			int[][] path = {{0, 0}, {0, 1}, {1, 1}, {1, 0}};
+			int[] observations = new int[path.length * 3];
+			for(int i=0; i<path.length; i++) {
+				StudentWorldCell cell = (StudentWorldCell) board.getCell(path[i][0], path[i][1]);
+				observations[i*3] = path[i][0];
+				observations[i*3+1] = path[i][1];
+				observations[i*3+2] = StudentWorldPercept.getSignature(cell.getPercepts());
+			}
+			StudentWorldConstraintSolver solver = new StudentWorldConstraintSolver(null, null, StudentWorldConstraintSolver.Backend.SAT, 6, 6);
+			solver.setPrintVariables(false);
+			for(int i=0; i<observations.length; i+=3) {
+				solver.observe(observations[i], observations[i+1], StudentWorldPercept.fromSignature(observations[i+2]));
+			}
+			BoardKnowledge expected = solver.getKnowledge();
+
+			BoardKnowledge knowledge = service.observeAndQuery(first, observations, 0);
+			assertEquals(expected.toString(), knowledge.toString());
+			// the other session saw nothing
+			assertEquals(BoardKnowledge.UNKNOWN, service.query(second, 0).getStudent(1, 1));
+		} finally {
+			service.close();
+		}
+	}
+
+	@Test
+	public void testIdleSessionsAreEvicted() throws InterruptedException {
+		SolverService service = new SolverService(StudentWorldConstraintSolver.Backend.SAT, 5, 5, 1, 2, 50);
+		try {
+			long first = service.openSession();
+			service.openSession();
+			try {
+				service.openSession();
+				fail("opened more sessions than allowed");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+			Thread.sleep(200);
+			assertEquals(0, service.getNumSessions());
+			assertEquals(2, service.getNumEvictions());
+			try {
+				service.query(first, 0);
+				fail("queried an evicted session");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+			service.openSession();
+			assertEquals(1, service.getNumSessions());
+		} finally {
+			service.close();
+		}
+	}
+
+	@Test
+	public void testLoopbackProtocol() throws Exception {
+		SolverService service = new SolverService(StudentWorldConstraintSolver.Backend.SAT, 5, 5, 1, 4, 60000);
+		final SolverServer server = new SolverServer(service, 0, 2);
+		Thread serving = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					server.serve();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		serving.start();
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+			Writer out = new OutputStreamWriter(socket.getOutputStream(), "US-ASCII");
+			String opened = request(in, out, "OPEN");
+			assertTrue(opened.startsWith("OK "));
+			String session = opened.substring(3);
+
+			// nothing around (0,0), so its neighbors are safe and can't be the door
+			assertEquals("OK", request(in, out, "OBSERVE " + session + " 0 0 0"));
+			String cells = request(in, out, "QUERY " + session + " 100").substring(3);
+			assertEquals(25, cells.length());
+			assertEquals('0', cells.charAt(0));
+			assertEquals('0', cells.charAt(1));
+			assertEquals('0', cells.charAt(5));
+			assertEquals('8', cells.charAt(24));
+
+			assertTrue(request(in, out, "OBSERVE " + session + " 9 9 0").startsWith("ERROR"));
+			assertEquals("OK", request(in, out, "CLOSE " + session));
+			assertTrue(request(in, out, "QUERY " + session).startsWith("ERROR"));
+		} finally {
+			socket.close();
+			server.close();
+			serving.join();
+			service.close();
+		}
+	}
+
+	@Test
+	public void testSessionLimitHoldsUnderConcurrentOpens() throws Exception {
+		final SolverService service = new SolverService(StudentWorldConstraintSolver.Backend.SAT, 5, 5, 2, 4, 60000);
+		final AtomicInteger numOpened = new AtomicInteger();
+		List<Thread> threads = new ArrayList<Thread>();
+		try {
+			for(int i=0; i<16; i++) {
+				Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							service.openSession();
+							numOpened.incrementAndGet();
+						} catch (IllegalStateException e) {
+							// full
+						}
+					}
+				});
+				threads.add(thread);
+				thread.start();
+			}
+			for(Thread thread : threads) {
+				thread.join();
+			}
+			assertEquals(4, numOpened.get());
+			assertEquals(4, service.getNumSessions());
+		} finally {
+			service.close();
+		}
+	}
+
+	@Test
+	public void testBusyServerRefusesConnections() throws Exception {
+		SolverService service = new SolverService(StudentWorldConstraintSolver.Backend.SAT, 5, 5, 1, 4, 60000);
+		final SolverServer server = new SolverServer(service, 0, 1);
+		Thread serving = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					server.serve();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		serving.start();
+		Socket first = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+		Socket second = null;
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(first.getInputStream(), "US-ASCII"));
+			Writer out = new OutputStreamWriter(first.getOutputStream(), "US-ASCII");
+			// the first connection holds the only thread
+			assertTrue(request(in, out, "OPEN").startsWith("OK "));
+
+			second = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+			BufferedReader refused = new BufferedReader(new InputStreamReader(second.getInputStream(), "US-ASCII"));
+			assertEquals("ERROR server busy", refused.readLine());
+			assertNull(refused.readLine());
+		} finally {
+			first.close();
+			if(second != null) {
+				second.close();
+			}
+			server.close();
+			serving.join();
+			service.close();
+		}
+	}
+
+	private static String request(BufferedReader in, Writer out, String request) throws Exception {
+		out.write(request + "\n");
+		out.flush();
+		return in.readLine();
+	}
+}
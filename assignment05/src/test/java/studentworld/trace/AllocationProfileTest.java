@@ -0,0 +1,58 @@
+package studentworld.trace;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import gridgames.data.action.MoveAction;
+import studentworld.StudentWorld;
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.display.SilentDisplay;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.player.CSPPlayer;
+
+public class AllocationProfileTest {
+
+	@Test
+	public void testTurnsAndPhasesAddUp() {
+		// nothing is counted on a JVM without per-thread allocation counters
+		if(!AllocationProfile.isSupported()) {
+			return;
+		}
+		StudentWorldBoard board = new StudentWorldBoard(8, 8, 6, 3);
+		board.initializeBoard();
+		SilentDisplay display = new SilentDisplay();
+		StudentWorld game = new StudentWorld(display, board);
+		CSPPlayer player = new CSPPlayer(MoveAction.getAllActions(), display, board.getPlayerCell(), null,
+				StudentWorldConstraintSolver.Backend.SAT, 8, 8);
+		player.setPrintSolverVariables(false);
+		player.setAllocationAccounting(true);
+		game.play(player);
+
+		AllocationProfile profile = player.getAllocationProfile();
+		assertEquals(player.getNumActionsExecuted(), profile.getNumTurns());
+		long turnTotal = 0;
+		long maxTurn = 0;
+		long lastModel = 0;
+		for(int turn=0; turn<profile.getNumTurns(); turn++) {
+			turnTotal += profile.getTurnAllocatedBytes(turn);
+			maxTurn = Math.max(maxTurn, profile.getTurnAllocatedBytes(turn));
+			// clauses are only ever added
+			assertTrue(profile.getTurnModelBytes(turn) >= lastModel);
+			lastModel = profile.getTurnModelBytes(turn);
+		}
+		assertEquals(turnTotal, profile.getTotalAllocatedBytes());
+		assertEquals(maxTurn, profile.getMaxTurnAllocatedBytes());
+		assertEquals(lastModel, profile.getPeakModelBytes());
+		assertTrue(profile.getAllocatedBytes(AllocationProfile.Phase.KNOWLEDGE) > 0);
+	}
+
+	@Test
+	public void testOffByDefault() {
+		StudentWorldBoard board = new StudentWorldBoard(5, 5, 5, 1);
+		board.initializeBoard();
+		CSPPlayer player = new CSPPlayer(MoveAction.getAllActions(), new SilentDisplay(), board.getPlayerCell(), null,
+				StudentWorldConstraintSolver.Backend.SAT, 5, 5);
+		assertNull(player.getAllocationProfile());
+	}
+}
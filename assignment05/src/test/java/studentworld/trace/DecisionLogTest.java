@@ -0,0 +1,71 @@
+package studentworld.trace;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+
+import gridgames.data.action.MoveAction;
+import studentworld.StudentWorld;
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.display.SilentDisplay;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.player.CSPPlayer;
+
+public class DecisionLogTest {
+
+	@Test
+	public void testRingKeepsTheLastEntries() {
+		DecisionLog log = new DecisionLog(5, 4);
+		for(int turn=0; turn<10; turn++) {
+			log.record(DecisionEvent.TURN_STARTED, turn, turn);
+		}
+		assertEquals(10, log.getNumRecorded());
+		assertEquals(4, log.size());
+		for(int i=0; i<4; i++) {
+			assertEquals(6 + i, log.getValue(i));
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		log.record(DecisionEvent.TARGET_RISKY, 12, 250, 1500000);
+		log.dump(new PrintStream(bytes), "Game lost");
+		String dump = bytes.toString();
+		assertTrue(dump.startsWith("Game lost, last 4 of 11 decisions:"));
+		assertTrue(dump.contains("TARGET_RISKY  (2,2) 250 took 1.500ms"));
+
+		log.clear();
+		assertEquals(0, log.size());
+	}
+
+	@Test
+	public void testOnlyLostGamesAreDumped() {
+		int numLost = 0;
+		int numWon = 0;
+		for(int seed=0; numLost == 0 || numWon == 0; seed++) {
+			StudentWorldBoard board = new StudentWorldBoard(5, 5, 5, seed);
+			board.initializeBoard();
+			SilentDisplay display = new SilentDisplay();
+			StudentWorld game = new StudentWorld(display, board);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			game.addListener(new DecisionLogDumper(new PrintStream(bytes)));
+			CSPPlayer player = new CSPPlayer(MoveAction.getAllActions(), display, board.getPlayerCell(), null,
+					StudentWorldConstraintSolver.Backend.SAT, 5, 5);
+			player.setPrintSolverVariables(false);
+			game.play(player);
+
+			if(board.didWin()) {
+				numWon++;
+				assertEquals(0, bytes.size());
+			} else {
+				numLost++;
+				assertTrue(bytes.toString().startsWith("Game lost"));
+				// the move into the student was the last decision
+				DecisionLog log = player.getDecisionLog();
+				assertEquals(DecisionEvent.TURN_ENDED, log.getEvent(log.size() - 1));
+				assertTrue(bytes.toString().contains("TARGET_"));
+			}
+		}
+	}
+}
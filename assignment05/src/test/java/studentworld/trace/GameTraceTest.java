@@ -0,0 +1,119 @@
+package studentworld.trace;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+import gridgames.data.action.MoveAction;
+import studentworld.StudentWorld;
+import studentworld.StudentWorldConstraintSolver;
+import studentworld.display.SilentDisplay;
+import studentworld.grid.StudentWorldBoard;
+import studentworld.grid.StudentWorldCell;
+import studentworld.player.CSPPlayer;
+import studentworld.player.StudentWorldPlayer;
+
+public class GameTraceTest {
+
+	@Test
+	public void testVarIntRoundTrip() {
+		long[] values = {0, 1, 127, 128, 300, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+		ByteBuffer buffer = ByteBuffer.allocate(values.length * VarInt.MAX_LONG_BYTES);
+		for(long value : values) {
+			VarInt.putUnsigned(buffer, value);
+		}
+		buffer.flip();
+		for(long value : values) {
+			assertEquals(value, VarInt.getUnsigned(buffer));
+		}
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	public void testSeedReproducesBoard() {
+		StudentWorldBoard first = new StudentWorldBoard(5, 5, 5, 42L);
+		first.initializeBoard();
+		StudentWorldBoard second = new StudentWorldBoard(5, 5, 5, 42L);
+		second.initializeBoard();
+		StudentWorldBoard rebuilt = new StudentWorldBoard(5, 5, 5, 0L);
+		rebuilt.initializeBoard(first.getLayout());
+
+		assertArrayEquals(first.getLayout(), second.getLayout());
+		assertArrayEquals(first.getLayout(), rebuilt.getLayout());
+		assertEquals(first.toString(), rebuilt.toString());
+	}
+
+	@Test
+	public void testRecordAndRead() throws Exception {
+		File file = File.createTempFile("studentworld", ".trace");
+		file.deleteOnExit();
+		StudentWorldBoard board = new StudentWorldBoard(5, 5, 5, 7L);
+		board.initializeBoard();
+		StudentWorldPlayer player = new StudentWorldPlayer(MoveAction.getAllActions(), new SilentDisplay(), board.getPlayerCell());
+
+		GameTraceRecorder recorder = new GameTraceRecorder(file);
+		for(int game=0; game<2; game++) {
+			recorder.gameStarted(board, player);
+			recorder.turnPlayed((StudentWorldCell) board.getCell(0, 0), MoveAction.RIGHT, 1500);
+			recorder.turnPlayed((StudentWorldCell) board.getCell(0, 1), MoveAction.DOWN, 123456789L);
+			player.incrementNumActionsExecuted();
+			recorder.gameEnded(board, player, game == 0);
+		}
+		//an unfinished game at the end of the file
+		recorder.gameStarted(board, player);
+		recorder.close();
+
+		List<GameTrace> traces = GameTraceReader.read(file);
+		assertEquals(3, traces.size());
+		GameTrace trace = traces.get(0);
+		assertEquals(7L, trace.getSeed());
+		assertEquals(5, trace.getNumStudents());
+		assertArrayEquals(board.getLayout(), trace.getLayout());
+		assertEquals(2, trace.getTurns().size());
+		assertEquals(MoveAction.DOWN, trace.getTurns().get(1).getMove());
+		assertEquals(1, trace.getTurns().get(1).getCol());
+		assertEquals(123456789L, trace.getMaxDecisionNanos());
+		assertTrue(trace.isEnded());
+		assertTrue(trace.isWon());
+		assertFalse(traces.get(1).isWon());
+		assertEquals(2, traces.get(1).getNumActions());
+		assertFalse(traces.get(2).isEnded());
+	}
+
+	@Test
+	public void testReplayUsesTheRecordedPlayer() throws Exception {
+		File file = File.createTempFile("studentworld", ".trace");
+		file.deleteOnExit();
+		GameTraceRecorder recorder = new GameTraceRecorder(file);
+		for(int seed=0; seed<5; seed++) {
+			StudentWorldBoard board = new StudentWorldBoard(8, 8, 6, seed);
+			board.initializeBoard();
+			SilentDisplay display = new SilentDisplay();
+			CSPPlayer player = new CSPPlayer(MoveAction.getAllActions(), display, board.getPlayerCell(), null,
+					StudentWorldConstraintSolver.Backend.SAT, 8, 8);
+			player.setPrintSolverVariables(false);
+			player.setTurnBudget(1000);
+			player.setLookahead(2, 0.1, 1);
+			StudentWorld game = new StudentWorld(display, board);
+			game.addListener(recorder);
+			game.play(player);
+		}
+		recorder.close();
+
+		List<GameTrace> traces = GameTraceReader.read(file);
+		assertEquals(5, traces.size());
+		PlayerSettings settings = traces.get(0).getPlayerSettings();
+		assertEquals(StudentWorldConstraintSolver.Backend.SAT, settings.getBackend());
+		assertEquals(1000, settings.getTurnBudgetMillis());
+		assertEquals(2, settings.getLookaheadDepth());
+		assertEquals(0.1, settings.getStudentDensity(), 0);
+		assertEquals(1, settings.getNumLookaheadThreads());
+		for(GameTrace trace : traces) {
+			assertEquals(-1, GameTraceReplayer.replay(trace).getDivergedTurn());
+		}
+	}
+}